@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.benchmark;
+
+import gg.pistol.scissors.game.GameResult;
+import gg.pistol.scissors.game.Gesture;
+import gg.pistol.scissors.history.GameRecord;
+import gg.pistol.scissors.player.PlayerDirectory;
+import gg.pistol.scissors.stats.Leaderboard;
+import gg.pistol.scissors.stats.LeaderboardEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the {@link Leaderboard} rating updates and ranking queries, alone and concurrently (the
+ * <code>mixed</code> group has one updating thread, two ranking threads and one top querying thread).
+ *
+ * @author Bogdan Pistol
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class LeaderboardBenchmark {
+
+    private static final int TOP_COUNT = 10;
+    private static final int PREPARED_GAMES = 4096; // power of 2
+
+    @Param({"1000", "100000"})
+    public int playerCount;
+
+    private Leaderboard leaderboard;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        PlayerDirectory directory = new PlayerDirectory();
+        for (int i = 0; i < playerCount; i++) {
+            directory.getId("player " + i);
+        }
+        leaderboard = new Leaderboard(directory);
+        Random random = new Random(42);
+        for (int i = 0; i < playerCount * 4; i++) {
+            leaderboard.add(createGame(random, playerCount, i));
+        }
+    }
+
+    private static GameRecord createGame(Random random, int playerCount, long gameId) {
+        int first = random.nextInt(playerCount);
+        int second = (first + 1 + random.nextInt(playerCount - 1)) % playerCount;
+        GameResult result = GameResult.values()[random.nextInt(GameResult.values().length)];
+        GameResult opponentResult = result == GameResult.WIN ? GameResult.LOSS
+                : result == GameResult.LOSS ? GameResult.WIN : GameResult.TIE;
+        return new GameRecord(gameId, 0L, new int[] {first, second}, new Gesture[] {null, null},
+                new GameResult[] {result, opponentResult}, new long[] {GameRecord.NO_THROW, GameRecord.NO_THROW});
+    }
+
+    /**
+     * The games and the players used by a benchmark thread, prepared in advance.
+     */
+    @State(Scope.Thread)
+    public static class ThreadData {
+        private GameRecord[] games;
+        private int[] playerIds;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp(LeaderboardBenchmark benchmark) {
+            Random random = new Random();
+            games = new GameRecord[PREPARED_GAMES];
+            playerIds = new int[PREPARED_GAMES];
+            for (int i = 0; i < PREPARED_GAMES; i++) {
+                games[i] = createGame(random, benchmark.playerCount, i);
+                playerIds[i] = random.nextInt(benchmark.playerCount);
+            }
+        }
+
+        GameRecord nextGame() {
+            return games[next++ & (PREPARED_GAMES - 1)];
+        }
+
+        int nextPlayerId() {
+            return playerIds[next++ & (PREPARED_GAMES - 1)];
+        }
+    }
+
+    @Benchmark
+    public void update(ThreadData data) {
+        leaderboard.add(data.nextGame());
+    }
+
+    @Benchmark
+    public List<LeaderboardEntry> top() {
+        return leaderboard.getTop(TOP_COUNT);
+    }
+
+    @Benchmark
+    public int rank(ThreadData data) {
+        return leaderboard.getRank(data.nextPlayerId());
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void mixedUpdate(ThreadData data) {
+        leaderboard.add(data.nextGame());
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public int mixedRank(ThreadData data) {
+        return leaderboard.getRank(data.nextPlayerId());
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public List<LeaderboardEntry> mixedTop() {
+        return leaderboard.getTop(TOP_COUNT);
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.benchmark;
+
+import gg.pistol.scissors.match.GameStarter;
+import gg.pistol.scissors.match.MatchTicket;
+import gg.pistol.scissors.match.Matchmaker;
+import gg.pistol.scissors.metrics.MetricsRegistry;
+import gg.pistol.scissors.player.Player;
+import gg.pistol.scissors.player.PlayerDirectory;
+import gg.pistol.scissors.player.RandomComputerPlayer;
+import gg.pistol.scissors.stats.Leaderboard;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of queuing players in the {@link Matchmaker} (the formed games are discarded). The number of producer
+ * threads is set with the -t option, the time to match percentiles are printed at the end of every trial.
+ *
+ * @author Bogdan Pistol
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class MatchmakerBenchmark {
+
+    private static final int PREPARED_PLAYERS = 4096; // power of 2
+    private static final int RATING_RANGE = 1000;
+    private static final double BUCKET_WIDTH = 100.0;
+
+    /**
+     * The number of shards when the players are matched by rating, 0 to match them regardless of the rating.
+     */
+    @Param({"0", "4"})
+    public int shards;
+
+    @Param({"2", "8"})
+    public int playersPerGame;
+
+    private Matchmaker matchmaker;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        GameStarter starter = new GameStarter() {
+            @Override
+            public void startGame(List<Player> players) {
+            }
+        };
+        MetricsRegistry registry = new MetricsRegistry();
+        if (shards == 0) {
+            matchmaker = new Matchmaker(playersPerGame, starter, registry);
+        } else {
+            // the rating is derived from the name, so the players are spread over the buckets
+            Leaderboard ratings = new Leaderboard(new PlayerDirectory()) {
+                @Override
+                public double getRating(Player player) {
+                    return (player.getName().hashCode() & Integer.MAX_VALUE) % RATING_RANGE;
+                }
+            };
+            matchmaker = new Matchmaker(playersPerGame, shards, ratings, BUCKET_WIDTH, starter, registry);
+        }
+        matchmaker.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        matchmaker.close();
+        System.out.println();
+        System.out.println("time to match: p50 " + matchmaker.getTimeToMatch().getValueAtPercentile(50.0) +
+                " ns, p99 " + matchmaker.getTimeToMatch().getValueAtPercentile(99.0) + " ns");
+    }
+
+    /**
+     * The players queued by a benchmark thread, prepared in advance.
+     */
+    @State(Scope.Thread)
+    public static class ThreadData {
+        private Player[] players;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            players = new Player[PREPARED_PLAYERS];
+            for (int i = 0; i < PREPARED_PLAYERS; i++) {
+                players[i] = new RandomComputerPlayer("player " + Thread.currentThread().getId() + "-" + i);
+            }
+        }
+
+        Player nextPlayer() {
+            return players[next++ & (PREPARED_PLAYERS - 1)];
+        }
+    }
+
+    @Benchmark
+    public MatchTicket enqueue(ThreadData data) {
+        return matchmaker.enqueue(data.nextPlayer());
+    }
+
+}
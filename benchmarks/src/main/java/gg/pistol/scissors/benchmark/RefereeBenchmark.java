@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.benchmark;
+
+import gg.pistol.scissors.game.Game;
+import gg.pistol.scissors.game.GameAlreadyStartedException;
+import gg.pistol.scissors.game.GameState;
+import gg.pistol.scissors.game.Gesture;
+import gg.pistol.scissors.game.RefereeImpl;
+import gg.pistol.scissors.game.RefereeMonitor;
+import gg.pistol.scissors.game.RefereeMonitorAdapter;
+import gg.pistol.scissors.player.GameObserver;
+import gg.pistol.scissors.player.Player;
+import gg.pistol.scissors.player.RandomComputerPlayer;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Benchmark of complete games refereed by {@link RefereeImpl} with zero time between counts.
+ *
+ * <p>The games per second are measured by {@link #gamesPerSecond} and the latency distribution of a whole game by
+ * {@link #gameLatency}. The number of concurrently refereed games is the number of benchmark threads (the JMH
+ * <code>-t</code> option), every game using its own referee threads.
+ *
+ * <p>Both benchmarks also report the per phase latency as secondary results, in nanoseconds summed over all the
+ * games of an iteration (divide by <code>games</code> for the average):
+ * <ul>
+ * <li><code>countingNanos</code>: from the start of the game until the throwing phase</li>
+ * <li><code>throwingNanos</code>: from the throwing phase until all the gestures are received</li>
+ * <li><code>finishingNanos</code>: from the end of the throwing phase until the results are announced</li>
+ * </ul>
+ *
+ * @author Bogdan Pistol
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class RefereeBenchmark {
+
+    private static final long THROW_TIME_LIMIT = 10000L;
+    private static final long FINISH_TIMEOUT = 30000L;
+
+    // keep a strong reference, the logging configuration is lost when the logger is garbage collected
+    private static final Logger ROOT_LOGGER = Logger.getLogger("gg.pistol.scissors");
+
+    @Param({"2", "8", "32"})
+    public int playerCount;
+
+    @Param({"0", "4", "16"})
+    public int observerCount;
+
+    @Param({"0", "3"})
+    public int countdownStart;
+
+    private List<Player> players;
+    private List<GameObserver> observers;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ROOT_LOGGER.setLevel(java.util.logging.Level.WARNING);
+        players = new ArrayList<Player>();
+        for (int i = 0; i < playerCount; i++) {
+            players.add(new RandomComputerPlayer("player " + i));
+        }
+        observers = new ArrayList<GameObserver>();
+        for (int i = 0; i < observerCount; i++) {
+            observers.add(new NullObserver());
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public Game gamesPerSecond(PhaseLatency latency) throws Exception {
+        return playGame(latency);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Game gameLatency(PhaseLatency latency) throws Exception {
+        return playGame(latency);
+    }
+
+    private Game playGame(PhaseLatency latency) throws GameAlreadyStartedException, InterruptedException {
+        PhaseTimer timer = new PhaseTimer();
+        RefereeImpl referee = new RefereeImpl(countdownStart, 0L, THROW_TIME_LIMIT, players, observers,
+                Collections.<RefereeMonitor>singletonList(timer));
+        referee.startGame();
+        if (!timer.done.await(FINISH_TIMEOUT, TimeUnit.MILLISECONDS)) {
+            referee.stopGame();
+            throw new IllegalStateException("The game did not finish in time.");
+        }
+        latency.add(timer);
+        return referee.getGame();
+    }
+
+    /**
+     * The per phase latency, reported by JMH as secondary results.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class PhaseLatency {
+        public long games;
+        public long countingNanos;
+        public long throwingNanos;
+        public long finishingNanos;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            games = 0;
+            countingNanos = 0;
+            throwingNanos = 0;
+            finishingNanos = 0;
+        }
+
+        void add(PhaseTimer timer) {
+            games++;
+            countingNanos += timer.throwing - timer.counting;
+            throwingNanos += timer.finishing - timer.throwing;
+            finishingNanos += timer.finished - timer.finishing;
+        }
+    }
+
+    /**
+     * Monitor recording when a game enters every phase.
+     */
+    private static class PhaseTimer extends RefereeMonitorAdapter {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile long counting;
+        private volatile long throwing;
+        private volatile long finishing;
+        private volatile long finished;
+
+        @Override
+        public void stateChanged(Game game, GameState state) {
+            long now = System.nanoTime();
+            switch (state) {
+                case COUNTING:
+                    counting = now;
+                    break;
+                case THROWING:
+                    throwing = now;
+                    break;
+                case FINISHED:
+                    finishing = now;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void gameFinished(Game game) {
+            finished = System.nanoTime();
+            done.countDown();
+        }
+    }
+
+    private static class NullObserver implements GameObserver {
+        @Override
+        public void countdown(int count) {
+        }
+
+        @Override
+        public void gestureThrown(Player player, Gesture gesture) {
+        }
+
+        @Override
+        public void gameFinished(Game game) {
+        }
+    }
+
+}
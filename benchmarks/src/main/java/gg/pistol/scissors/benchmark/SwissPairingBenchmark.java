@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.benchmark;
+
+import gg.pistol.scissors.game.GameResult;
+import gg.pistol.scissors.tournament.PairingListener;
+import gg.pistol.scissors.tournament.SwissPairing;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of pairing a round of a large {@link SwissPairing} after a number of rounds with random results were
+ * played (the later rounds have more score buckets and more past opponents to avoid).
+ *
+ * @author Bogdan Pistol
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SwissPairingBenchmark {
+
+    private static final GameResult[] RESULTS = GameResult.values();
+
+    @Param({"100000"})
+    public int players;
+
+    /**
+     * The rounds played before the measured round.
+     */
+    @Param({"0", "8", "16"})
+    public int playedRounds;
+
+    private SwissPairing pairing;
+    private int pairs;
+
+    @Setup(Level.Invocation) // a round takes milliseconds, much more than the invocation setup overhead
+    public void setUp() {
+        final Random random = new Random(playedRounds);
+        pairing = new SwissPairing(players, playedRounds + 1);
+        for (int round = 0; round < playedRounds; round++) {
+            pairing.pairRound(new PairingListener() {
+                @Override
+                public void paired(int player1, int player2) {
+                    pairing.recordResult(player1, player2, RESULTS[random.nextInt(RESULTS.length)]);
+                }
+
+                @Override
+                public void bye(int player) {
+                }
+            });
+        }
+    }
+
+    @Benchmark
+    public int pairRound() {
+        pairs = 0;
+        pairing.pairRound(new PairingListener() {
+            @Override
+            public void paired(int player1, int player2) {
+                pairs++;
+            }
+
+            @Override
+            public void bye(int player) {
+            }
+        });
+        return pairs;
+    }
+
+}
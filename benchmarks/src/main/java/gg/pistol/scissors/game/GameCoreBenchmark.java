@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.game;
+
+import gg.pistol.scissors.player.Player;
+import gg.pistol.scissors.player.RandomComputerPlayer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Microbenchmarks of the game core hot paths. The benchmark lives in the game package to reach the package private
+ * game implementation.
+ *
+ * <p>Run it with the GC profiler (<code>-prof gc</code>, or through {@link #main} that enables it) to see the bytes
+ * allocated per operation (<code>gc.alloc.rate.norm</code>). The allocation budget per game is also enforced by
+ * <code>AllocationBudgetTest</code> of the scissors tests.
+ *
+ * @author Bogdan Pistol
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class GameCoreBenchmark {
+
+    private static final Gesture[] GESTURES = Gesture.values();
+    private static final Gesture[] NULLABLE_GESTURES = {Gesture.ROCK, Gesture.PAPER, Gesture.SCISSORS, null};
+
+    private GestureComparator comparator;
+    private List<Player> players;
+    private Random random;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        comparator = Gesture.getGestureComparator();
+        players = Arrays.<Player>asList(new RandomComputerPlayer("player 1"), new RandomComputerPlayer("player 2"));
+        random = new Random(42);
+    }
+
+    @Benchmark
+    public int compare() {
+        int i = next++;
+        return comparator.compare(NULLABLE_GESTURES[i & 3], NULLABLE_GESTURES[(i >> 2) & 3]);
+    }
+
+    /**
+     * The random selection as it was done by the computer players, cloning the array twice on every call.
+     */
+    @Benchmark
+    public Gesture randomGestureValues() {
+        return Gesture.values()[random.nextInt(Gesture.values().length)];
+    }
+
+    @Benchmark
+    public Gesture randomGestureCached() {
+        return GESTURES[random.nextInt(GESTURES.length)];
+    }
+
+    /**
+     * A new game in which both players throw and the gestures are read back.
+     */
+    @Benchmark
+    public Gesture throwGestures() {
+        return throwGestures(next++).getPlayerGesture(players.get(1));
+    }
+
+    /**
+     * A new game in which both players throw and the results are computed.
+     */
+    @Benchmark
+    public GameResult finishGame() {
+        GameImpl game = throwGestures(next++);
+        game.setState(GameState.FINISHED);
+        RefereeImpl.computeResults(game);
+        return game.getPlayerResult(players.get(0));
+    }
+
+    private GameImpl throwGestures(int i) {
+        GameImpl game = new GameImpl(0, 0L, 0L, players);
+        game.setState(GameState.THROWING);
+        game.setPlayerGesture(players.get(0), GESTURES[i % 3]);
+        game.setPlayerGesture(players.get(1), GESTURES[(i / 3) % 3]);
+        game.getPlayerGesture(players.get(0));
+        return game;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(GameCoreBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+
+}
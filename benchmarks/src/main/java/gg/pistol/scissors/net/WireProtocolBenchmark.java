@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.net;
+
+import gg.pistol.scissors.game.GameResult;
+import gg.pistol.scissors.game.Gesture;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the wire protocol codec in messages per second. The benchmark runs on a single thread, so the score
+ * is per core; it lives in the net package to reach the package private codec.
+ *
+ * <p>Every operation encodes a batch of frames of a game (countdowns, the gesture request, the thrown gestures and the
+ * result header) in a pooled direct buffer and decodes them back, as the server and the clients do. Run it with the GC
+ * profiler (<code>-prof gc</code>, or through {@link #main} that enables it) to check that the codec does not
+ * allocate.
+ *
+ * @author Bogdan Pistol
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Threads(1)
+@Fork(1)
+public class WireProtocolBenchmark {
+
+    private static final int FRAMES_PER_GAME = 8;
+    private static final Gesture[] GESTURES = Gesture.values();
+    private static final GameResult[] RESULTS = GameResult.values();
+
+    private BufferPool pool;
+    private long gameId;
+
+    @Setup
+    public void setUp() {
+        pool = new BufferPool(256, 16);
+    }
+
+    /**
+     * Encode and decode the frames of a game, the score is in frames (messages) per second.
+     */
+    @Benchmark
+    @OperationsPerInvocation(FRAMES_PER_GAME)
+    public long encodeDecode() {
+        int index = pool.acquire();
+        ByteBuffer buffer = pool.get(index);
+        long id = gameId++;
+        WireProtocol.encodeCountdown(buffer, id, 2);
+        WireProtocol.encodeCountdown(buffer, id, 1);
+        WireProtocol.encodeCountdown(buffer, id, 0);
+        WireProtocol.encodeRequest(buffer, id);
+        WireProtocol.encodeThrow(buffer, id, GESTURES[(int) (id % 3)]);
+        WireProtocol.encodeGesture(buffer, id, 1, GESTURES[(int) (id % 3)]);
+        WireProtocol.encodeGesture(buffer, id, 2, Gesture.ROCK);
+        WireProtocol.encodeOutcomeHeader(buffer, id, RESULTS[(int) (id % 3)], 2);
+        buffer.flip();
+
+        long checksum = 0;
+        while (buffer.hasRemaining()) {
+            int position = buffer.position();
+            byte type = buffer.get(position);
+            int size = type == WireProtocol.THROW ? WireProtocol.clientFrameSize(buffer) :
+                    type == WireProtocol.RESULT ? WireProtocol.OUTCOME_HEADER_SIZE : WireProtocol.serverFrameSize(buffer);
+            checksum += WireProtocol.getGameId(buffer, position) + type;
+            if (type == WireProtocol.THROW) {
+                checksum += WireProtocol.getThrownGesture(buffer, position).ordinal();
+            } else if (type == WireProtocol.RESULT) {
+                checksum += WireProtocol.getResult(buffer, position).ordinal();
+            }
+            buffer.position(position + size);
+        }
+        pool.release(index);
+        return checksum;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(WireProtocolBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+
+}
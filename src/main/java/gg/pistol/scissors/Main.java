@@ -15,16 +15,133 @@
  */
 package gg.pistol.scissors;
 
+import gg.pistol.scissors.game.Game;
+import gg.pistol.scissors.game.GameState;
+import gg.pistol.scissors.game.Gesture;
+import gg.pistol.scissors.game.RefereeMonitor;
+import gg.pistol.scissors.game.RefereeMonitorAdapter;
+import gg.pistol.scissors.game.RefereeWorkerGroups;
 import gg.pistol.scissors.gui.GameDialog;
+import gg.pistol.scissors.history.HistoryWriter;
+import gg.pistol.scissors.jfr.JfrSupport;
+import gg.pistol.scissors.load.LoadGenerator;
+import gg.pistol.scissors.load.LoadOptions;
+import gg.pistol.scissors.metrics.EngineMetrics;
+import gg.pistol.scissors.metrics.MetricsRegistry;
+import gg.pistol.scissors.metrics.WorkerGroupMetrics;
+import gg.pistol.scissors.net.GameServer;
+import gg.pistol.scissors.net.LoadClient;
+import gg.pistol.scissors.net.MatchmakingLobby;
+import gg.pistol.scissors.net.NetOptions;
+import gg.pistol.scissors.player.GameObserver;
+import gg.pistol.scissors.player.Player;
+import gg.pistol.scissors.trace.TimelineRecorder;
 
+import javax.annotation.Nullable;
+import javax.management.JMException;
 import javax.swing.*;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class Main {
 
+    private static final Logger LOG = Logger.getLogger(Main.class.getName());
+
+    /**
+     * The system property with the file where to write the trace of the recent games when the application exits.
+     */
+    private static final String TRACE_PROPERTY = "scissors.trace";
+
+    /**
+     * The system property with the directory of the history of the finished games.
+     */
+    private static final String HISTORY_PROPERTY = "scissors.history";
+
+    /**
+     * The system property with the file where to write the metrics when the application exits.
+     */
+    private static final String METRICS_PROPERTY = "scissors.metrics";
+
+    /**
+     * The first argument that runs the headless load generator instead of the game dialog.
+     */
+    private static final String LOAD_COMMAND = "load";
+
+    /**
+     * The first arguments that run the network game server and its load test client.
+     */
+    private static final String SERVER_COMMAND = "server";
+    private static final String CLIENT_COMMAND = "client";
+    private static final String HELP_OPTION = "--help";
+    private static final String ROOT_LOGGER = "gg.pistol.scissors";
+
     public static void main(String args[]) {
+        MetricsRegistry registry = new MetricsRegistry();
+        final List<RefereeMonitor> monitors = new ArrayList<RefereeMonitor>();
+        final List<Closeable> sinks = new ArrayList<Closeable>(); // closed when the application exits
+        monitors.add(new EngineMetrics(registry));
+        RefereeMonitor jfrMonitor = JfrSupport.createMonitor();
+        if (jfrMonitor != null) {
+            monitors.add(jfrMonitor);
+        }
+        String traceFile = System.getProperty(TRACE_PROPERTY);
+        if (traceFile != null) {
+            monitors.add(createTimelineRecorder(registry, traceFile, sinks));
+        }
+        String historyDirectory = System.getProperty(HISTORY_PROPERTY);
+        if (historyDirectory != null) {
+            RefereeMonitor historyMonitor = createHistoryMonitor(historyDirectory, sinks);
+            if (historyMonitor != null) {
+                monitors.add(historyMonitor);
+            }
+        }
+        String metricsFile = System.getProperty(METRICS_PROPERTY);
+        if (metricsFile != null) {
+            addMetricsSink(registry, metricsFile, sinks); // the last sink, after the others updated the metrics
+        }
+        try {
+            registry.registerMBeans(ManagementFactory.getPlatformMBeanServer());
+        } catch (JMException e) {
+            LOG.log(Level.WARNING, "Cannot register the metrics MBeans", e);
+        }
+
+        if (args.length > 0 && SERVER_COMMAND.equals(args[0])) {
+            // the server drains its games before closing the sinks
+            runNetwork(args[0], Arrays.copyOfRange(args, 1, args.length), monitors, registry, sinks);
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                closeSinks(sinks);
+            }
+        }, "sink-closer"));
+
+        if (args.length > 0 && LOAD_COMMAND.equals(args[0])) {
+            runLoad(Arrays.copyOfRange(args, 1, args.length), monitors, registry);
+            return;
+        }
+        if (args.length > 0 && CLIENT_COMMAND.equals(args[0])) {
+            runNetwork(args[0], Arrays.copyOfRange(args, 1, args.length), monitors, registry, sinks);
+            return;
+        }
+
         SwingUtilities.invokeLater(new Runnable() {
             public void run() {
-                GameDialog dialog = new GameDialog();
+                GameDialog dialog = new GameDialog(monitors);
                 dialog.pack();
                 dialog.setLocationRelativeTo(null);
                 dialog.setVisible(true);
@@ -33,4 +150,204 @@ public class Main {
         });
     }
 
+    /**
+     * Run the headless load generator, without touching AWT.
+     */
+    private static void runLoad(String[] args, List<RefereeMonitor> monitors, MetricsRegistry registry) {
+        System.setProperty("java.awt.headless", "true");
+        if (Arrays.asList(args).contains(HELP_OPTION)) {
+            System.out.println(LoadOptions.USAGE);
+            return;
+        }
+        LoadOptions options;
+        try {
+            options = LoadOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(LoadOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+        // the per game messages would flood the log
+        Logger.getLogger(ROOT_LOGGER).setLevel(Level.WARNING);
+        try {
+            new LoadGenerator(options, System.out, monitors, createWorkerGroups(registry)).run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Run the network game server or its load test client, without touching AWT.
+     */
+    private static void runNetwork(String command, String[] args, List<RefereeMonitor> monitors,
+                                   MetricsRegistry registry, List<Closeable> sinks) {
+        System.setProperty("java.awt.headless", "true");
+        if (Arrays.asList(args).contains(HELP_OPTION)) {
+            System.out.println(NetOptions.USAGE);
+            return;
+        }
+        NetOptions options;
+        try {
+            options = NetOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(NetOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+        try {
+            if (SERVER_COMMAND.equals(command)) {
+                // the per game messages would flood the log
+                Logger.getLogger(ROOT_LOGGER).setLevel(Level.WARNING);
+                final MatchmakingLobby lobby = new MatchmakingLobby(options.getPlayersPerGame(),
+                        options.getCountdownStart(), options.getTimeBetweenCounts(), options.getThrowTimeLimit(),
+                        monitors, createWorkerGroups(registry), options.getAdmissionPolicy(),
+                        options.getMaxRunningGames(), options.getMaxPendingGames(), registry);
+                lobby.start();
+                final GameServer server = new GameServer(new InetSocketAddress(options.getPort()),
+                        options.getSelectorThreads(), lobby);
+                server.start();
+                addDrainHook(lobby, server, options.getDrainTimeout(), sinks);
+                System.out.println("Listening on port " + server.getLocalPort());
+                server.awaitTermination();
+            } else {
+                new LoadClient(new InetSocketAddress(options.getHost(), options.getPort()), options.getConnections(),
+                        options.getDuration(), System.out).run();
+            }
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Drain the server when the process is asked to stop (e.g. a rolling restart): the running games can finish
+     * until the timeout and the players are disconnected only afterwards.
+     */
+    private static void addDrainHook(final MatchmakingLobby lobby, final GameServer server, final long timeout,
+                                     final List<Closeable> sinks) {
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    System.out.println(lobby.drain(timeout, sinks));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    server.close();
+                }
+            }
+        }, "server-drain"));
+    }
+
+    private static void closeSinks(List<Closeable> sinks) {
+        for (Closeable sink : sinks) {
+            try {
+                sink.close();
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Cannot close the sink " + sink, e);
+            }
+        }
+    }
+
+    /**
+     * The threads shared by the referees of the headless commands, which play many games concurrently.
+     */
+    private static RefereeWorkerGroups createWorkerGroups(MetricsRegistry registry) {
+        RefereeWorkerGroups groups = new RefereeWorkerGroups(Runtime.getRuntime().availableProcessors());
+        WorkerGroupMetrics.register(registry, groups);
+        return groups;
+    }
+
+    private static TimelineRecorder createTimelineRecorder(MetricsRegistry registry, final String traceFile,
+                                                           List<Closeable> sinks) {
+        final TimelineRecorder recorder = new TimelineRecorder(registry, TimelineRecorder.DEFAULT_RECENT_GAMES);
+        sinks.add(new Closeable() {
+            @Override
+            public void close() throws IOException {
+                Writer out = new OutputStreamWriter(new FileOutputStream(traceFile), "UTF-8");
+                try {
+                    recorder.writeTrace(out);
+                } finally {
+                    out.close();
+                }
+            }
+
+            @Override
+            public String toString() {
+                return "trace " + traceFile;
+            }
+        });
+        return recorder;
+    }
+
+    /**
+     * Record the history of the games through a monitor, so the games started without observers (e.g. the degraded
+     * games of the server) are recorded as well.
+     *
+     * @return the monitor or null if the history cannot be opened
+     */
+    @Nullable
+    private static RefereeMonitor createHistoryMonitor(String historyDirectory, List<Closeable> sinks) {
+        final HistoryWriter history;
+        try {
+            history = new HistoryWriter(new File(historyDirectory));
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Cannot open the history " + historyDirectory, e);
+            return null;
+        }
+        sinks.add(history);
+        return new RefereeMonitorAdapter() {
+            private final ConcurrentMap<Game, GameObserver> games = new ConcurrentHashMap<Game, GameObserver>();
+
+            @Override
+            public void stateChanged(Game game, GameState state) {
+                if (state == GameState.COUNTING) {
+                    games.put(game, history.newGameObserver());
+                } else if (state == GameState.STOPPED) {
+                    games.remove(game);
+                }
+            }
+
+            @Override
+            public void gestureReceived(Game game, Player player, Gesture gesture) {
+                GameObserver observer = games.get(game);
+                if (observer != null) {
+                    observer.gestureThrown(player, gesture);
+                }
+            }
+
+            @Override
+            public void gameFinished(Game game) {
+                GameObserver observer = games.remove(game);
+                if (observer != null) {
+                    observer.gameFinished(game);
+                }
+            }
+        };
+    }
+
+    private static void addMetricsSink(final MetricsRegistry registry, final String metricsFile,
+                                       List<Closeable> sinks) {
+        sinks.add(new Closeable() {
+            @Override
+            public void close() throws IOException {
+                Writer out = new OutputStreamWriter(new FileOutputStream(metricsFile), "UTF-8");
+                try {
+                    registry.writeSnapshot(out);
+                } finally {
+                    out.close();
+                }
+            }
+
+            @Override
+            public String toString() {
+                return "metrics " + metricsFile;
+            }
+        });
+    }
+
 }
@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.export;
+
+import gg.pistol.scissors.game.Gesture;
+import gg.pistol.scissors.history.GameRecord;
+import gg.pistol.scissors.history.HistoryReader;
+import gg.pistol.scissors.io.Varints;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Streaming exporter of finished games in a compressed columnar layout (see {@link ColumnarFormat}).
+ *
+ * <p>The games are buffered in primitive arrays and written as a block when the buffer is full, so the memory used
+ * by the exporter is fixed by the memory budget no matter how many games are exported.
+ *
+ * @author Bogdan Pistol
+ */
+@NotThreadSafe
+public class ColumnarExporter implements Closeable {
+
+    public static final int DEFAULT_MEMORY_BUDGET = 4 * 1024 * 1024;
+    private static final int BYTES_PER_SLOT = 64; // upper bound of the buffered values and encoded columns of a slot
+    private static final int MIN_SLOTS = ColumnarFormat.CODES_PER_WORD;
+
+    private final DataOutputStream out;
+    private final int slotCapacity;
+    private final ByteBuffer column;
+    private long exportedGames;
+
+    // the buffered block, per game
+    private final long[] gameIds;
+    private final long[] finishTimes;
+    private final int[] playerCounts;
+    private int games;
+
+    // the buffered block, per player slot
+    private final int[] playerIds;
+    private final long[] throwTimes;
+    private final long[] gestureWords;
+    private final long[] resultWords;
+    private int slots;
+
+    /**
+     * Export with the default memory budget.
+     *
+     * @param out where to write the export
+     */
+    public ColumnarExporter(OutputStream out) {
+        this(out, DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * @param out where to write the export
+     * @param memoryBudget the number of bytes the exporter can use to buffer a block
+     */
+    public ColumnarExporter(OutputStream out, int memoryBudget) {
+        if (out == null) {
+            throw new NullPointerException("The out is null.");
+        }
+        if (memoryBudget < MIN_SLOTS * BYTES_PER_SLOT) {
+            throw new IllegalArgumentException("The memory budget is too small.");
+        }
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        slotCapacity = memoryBudget / BYTES_PER_SLOT;
+        column = ByteBuffer.allocate(slotCapacity * Varints.MAX_LONG_SIZE);
+        gameIds = new long[slotCapacity]; // every game has at least one slot
+        finishTimes = new long[slotCapacity];
+        playerCounts = new int[slotCapacity];
+        playerIds = new int[slotCapacity];
+        throwTimes = new long[slotCapacity];
+        gestureWords = new long[ColumnarFormat.words(slotCapacity)];
+        resultWords = new long[ColumnarFormat.words(slotCapacity)];
+    }
+
+    /**
+     * Export a game. Games without players are ignored.
+     *
+     * @param record
+     * @throws IOException
+     */
+    public void add(GameRecord record) throws IOException {
+        if (record == null) {
+            throw new NullPointerException("The record is null.");
+        }
+        int count = record.getPlayerCount();
+        if (count == 0) {
+            return;
+        }
+        if (count > slotCapacity) {
+            throw new IllegalArgumentException("The game has too many players for the memory budget.");
+        }
+        if (slots + count > slotCapacity) {
+            flush();
+        }
+        gameIds[games] = record.getGameId();
+        finishTimes[games] = record.getFinishTime();
+        playerCounts[games] = count;
+        games++;
+        for (int i = 0; i < count; i++) {
+            Gesture gesture = record.getGesture(i);
+            playerIds[slots] = record.getPlayerId(i);
+            throwTimes[slots] = record.getThrowTime(i);
+            setCode(gestureWords, slots, gesture != null ? gesture.ordinal() + 1 : 0);
+            setCode(resultWords, slots, record.getResult(i).ordinal());
+            slots++;
+        }
+        exportedGames++;
+    }
+
+    /**
+     * Export all the remaining games of a history.
+     *
+     * @param reader
+     * @return the number of exported games
+     * @throws IOException
+     */
+    public long addAll(HistoryReader reader) throws IOException {
+        if (reader == null) {
+            throw new NullPointerException("The reader is null.");
+        }
+        long count = 0;
+        for (GameRecord record = reader.next(); record != null; record = reader.next()) {
+            add(record);
+            count++;
+        }
+        return count;
+    }
+
+    private static void setCode(long[] words, int slot, int code) {
+        int shift = 2 * (slot % ColumnarFormat.CODES_PER_WORD);
+        int word = slot / ColumnarFormat.CODES_PER_WORD;
+        words[word] = (words[word] & ~(ColumnarFormat.CODE_MASK << shift)) | ((long) code << shift);
+    }
+
+    /**
+     * Write the buffered games as a block.
+     *
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        if (games > 0) {
+            writeBlock();
+        }
+        out.flush();
+    }
+
+    private void writeBlock() throws IOException {
+        out.writeInt(ColumnarFormat.BLOCK_MAGIC);
+        out.writeInt(games);
+        out.writeInt(slots);
+
+        // game id
+        long previous = 0;
+        for (int i = 0; i < games; i++) {
+            Varints.putLong(column, Varints.zigzag(gameIds[i] - previous));
+            previous = gameIds[i];
+        }
+        writeColumn();
+
+        // finish time
+        previous = 0;
+        for (int i = 0; i < games; i++) {
+            Varints.putLong(column, Varints.zigzag(finishTimes[i] - previous));
+            previous = finishTimes[i];
+        }
+        writeColumn();
+
+        // player count
+        for (int i = 0; i < games; i++) {
+            Varints.putInt(column, playerCounts[i]);
+        }
+        writeColumn();
+
+        // player id
+        int previousId = 0;
+        for (int i = 0; i < slots; i++) {
+            Varints.putLong(column, Varints.zigzag((long) playerIds[i] - previousId));
+            previousId = playerIds[i];
+        }
+        writeColumn();
+
+        // throw time (relative to the finish time of the game)
+        int slot = 0;
+        for (int i = 0; i < games; i++) {
+            for (int j = 0; j < playerCounts[i]; j++, slot++) {
+                long throwTime = throwTimes[slot];
+                Varints.putLong(column, throwTime == GameRecord.NO_THROW ? 0L
+                        : Varints.zigzag(finishTimes[i] - throwTime) + 1);
+            }
+        }
+        writeColumn();
+
+        // gesture and result
+        int words = ColumnarFormat.words(slots);
+        for (int i = 0; i < words; i++) {
+            column.putLong(gestureWords[i]);
+        }
+        writeColumn();
+        for (int i = 0; i < words; i++) {
+            column.putLong(resultWords[i]);
+        }
+        writeColumn();
+
+        Arrays.fill(gestureWords, 0, words, 0L);
+        Arrays.fill(resultWords, 0, words, 0L);
+        games = 0;
+        slots = 0;
+    }
+
+    private void writeColumn() throws IOException {
+        out.writeInt(column.position());
+        out.write(column.array(), 0, column.position());
+        column.clear();
+    }
+
+    /**
+     * @return the number of games exported so far
+     */
+    public long getExportedGameCount() {
+        return exportedGames;
+    }
+
+    /**
+     * Write the buffered games and close the output.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            out.close();
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.export;
+
+/**
+ * The layout of the columnar export.
+ *
+ * <p>The export is a sequence of blocks, every block holds a bounded number of games. A block starts with a header
+ * (magic, number of games, number of player slots) followed by the columns, each one prefixed by its length in
+ * bytes so that a reader can skip the columns it does not need:
+ * <ul>
+ * <li>game id: per game, zigzag varint of the delta from the previous game id</li>
+ * <li>finish time: per game, zigzag varint of the delta from the previous finish time</li>
+ * <li>player count: per game, varint</li>
+ * <li>player id: per player slot, zigzag varint of the delta from the previous player id</li>
+ * <li>throw time: per player slot, varint of the time before the finish time plus one (zero if no throw)</li>
+ * <li>gesture: per player slot, 2 bits (0 for no gesture, otherwise the gesture ordinal plus one), 32 per long</li>
+ * <li>result: per player slot, 2 bits (the result ordinal), 32 per long</li>
+ * </ul>
+ * The deltas restart from zero in every block so that the blocks can be decoded independently.
+ *
+ * @author Bogdan Pistol
+ */
+// package private
+final class ColumnarFormat {
+
+    static final int BLOCK_MAGIC = 0x52505343; // "RPSC"
+    static final int HEADER_SIZE = 12;
+
+    static final int GAME_ID = 0;
+    static final int FINISH_TIME = 1;
+    static final int PLAYER_COUNT = 2;
+    static final int PLAYER_ID = 3;
+    static final int THROW_TIME = 4;
+    static final int GESTURE = 5;
+    static final int RESULT = 6;
+    static final int COLUMNS = 7;
+
+    static final int CODES_PER_WORD = 32; // 2 bits codes in a long
+    static final long CODE_MASK = 3L;
+
+    private ColumnarFormat() {
+    }
+
+    /**
+     * @return the number of longs holding the 2 bits codes of the given number of slots
+     */
+    static int words(int slots) {
+        return (slots + CODES_PER_WORD - 1) / CODES_PER_WORD;
+    }
+
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.export;
+
+import gg.pistol.scissors.game.GameResult;
+import gg.pistol.scissors.game.Gesture;
+import gg.pistol.scissors.history.GameRecord;
+import gg.pistol.scissors.io.Varints;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Reader of the columnar export written by {@link ColumnarExporter}.
+ *
+ * <p>The games can be read one by one with {@link #next()}, which decodes all the columns, or aggregated with
+ * {@link #aggregateWinRates()}, which decodes only the player id and the result columns (skipping the bytes of the
+ * other columns) a whole block at a time into primitive counters, without creating objects for the games.
+ *
+ * @author Bogdan Pistol
+ */
+@NotThreadSafe
+public class ColumnarReader implements Closeable {
+
+    private static final Gesture[] GESTURES = Gesture.values();
+    private static final GameResult[] RESULTS = GameResult.values();
+
+    private final DataInputStream in;
+    private final ByteBuffer[] columns;
+
+    // the current block
+    private int games;
+    private int slots;
+
+    // the decoded games of the current block, for next()
+    private long[] gameIds;
+    private long[] finishTimes;
+    private int[] playerCounts;
+    private int[] playerIds;
+    private long[] throwTimes;
+    private int nextGame;
+    private int nextSlot;
+
+    /**
+     * @param in the export
+     */
+    public ColumnarReader(InputStream in) {
+        if (in == null) {
+            throw new NullPointerException("The in is null.");
+        }
+        this.in = new DataInputStream(new BufferedInputStream(in));
+        columns = new ByteBuffer[ColumnarFormat.COLUMNS];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = ByteBuffer.allocate(0);
+        }
+        gameIds = new long[0];
+        finishTimes = new long[0];
+        playerCounts = new int[0];
+        playerIds = new int[0];
+        throwTimes = new long[0];
+    }
+
+    /**
+     * Read the header of the next block.
+     *
+     * @return false in case there are no more blocks
+     */
+    private boolean readHeader() throws IOException {
+        int magic;
+        try {
+            magic = in.readInt();
+        } catch (EOFException e) {
+            return false;
+        }
+        if (magic != ColumnarFormat.BLOCK_MAGIC) {
+            throw new IOException("Not a columnar export block.");
+        }
+        games = in.readInt();
+        slots = in.readInt();
+        return true;
+    }
+
+    /**
+     * Read the columns of the current block, the columns that are not needed are skipped.
+     */
+    private void readColumns(boolean[] needed) throws IOException {
+        for (int i = 0; i < ColumnarFormat.COLUMNS; i++) {
+            int length = in.readInt();
+            if (!needed[i]) {
+                skipFully(length);
+                continue;
+            }
+            ByteBuffer column = columns[i];
+            if (column.capacity() < length) {
+                column = ByteBuffer.allocate(length);
+                columns[i] = column;
+            }
+            column.clear();
+            in.readFully(column.array(), 0, length);
+            column.limit(length);
+        }
+    }
+
+    private void skipFully(int length) throws IOException {
+        int skipped = 0;
+        while (skipped < length) {
+            int n = in.skipBytes(length - skipped);
+            if (n <= 0) {
+                throw new EOFException("Truncated columnar export.");
+            }
+            skipped += n;
+        }
+    }
+
+    /**
+     * Read the next game.
+     *
+     * @return the next game or null in case there are no more games
+     * @throws IOException
+     */
+    @Nullable
+    public GameRecord next() throws IOException {
+        if (nextGame == games) {
+            if (!readHeader()) {
+                return null;
+            }
+            boolean[] all = new boolean[ColumnarFormat.COLUMNS];
+            Arrays.fill(all, true);
+            readColumns(all);
+            decodeBlock();
+        }
+        int count = playerCounts[nextGame];
+        int[] ids = new int[count];
+        Gesture[] gestures = new Gesture[count];
+        GameResult[] results = new GameResult[count];
+        long[] times = new long[count];
+        for (int i = 0; i < count; i++, nextSlot++) {
+            ids[i] = playerIds[nextSlot];
+            int gesture = code(ColumnarFormat.GESTURE, nextSlot);
+            gestures[i] = gesture > 0 ? GESTURES[gesture - 1] : null;
+            results[i] = RESULTS[code(ColumnarFormat.RESULT, nextSlot)];
+            times[i] = throwTimes[nextSlot];
+        }
+        GameRecord record = new GameRecord(gameIds[nextGame], finishTimes[nextGame], ids, gestures, results, times);
+        nextGame++;
+        return record;
+    }
+
+    private int code(int column, int slot) {
+        long word = columns[column].getLong((slot / ColumnarFormat.CODES_PER_WORD) * 8);
+        return (int) ((word >>> (2 * (slot % ColumnarFormat.CODES_PER_WORD))) & ColumnarFormat.CODE_MASK);
+    }
+
+    private void decodeBlock() {
+        if (gameIds.length < games) {
+            gameIds = new long[games];
+            finishTimes = new long[games];
+            playerCounts = new int[games];
+        }
+        if (playerIds.length < slots) {
+            playerIds = new int[slots];
+            throwTimes = new long[slots];
+        }
+        long previous = 0;
+        for (int i = 0; i < games; i++) {
+            previous += Varints.unzigzag(Varints.getLong(columns[ColumnarFormat.GAME_ID]));
+            gameIds[i] = previous;
+        }
+        previous = 0;
+        for (int i = 0; i < games; i++) {
+            previous += Varints.unzigzag(Varints.getLong(columns[ColumnarFormat.FINISH_TIME]));
+            finishTimes[i] = previous;
+        }
+        for (int i = 0; i < games; i++) {
+            playerCounts[i] = Varints.getInt(columns[ColumnarFormat.PLAYER_COUNT]);
+        }
+        decodePlayerIds(columns[ColumnarFormat.PLAYER_ID], playerIds, slots);
+        int slot = 0;
+        for (int i = 0; i < games; i++) {
+            for (int j = 0; j < playerCounts[i]; j++, slot++) {
+                long code = Varints.getLong(columns[ColumnarFormat.THROW_TIME]);
+                throwTimes[slot] = code == 0 ? GameRecord.NO_THROW : finishTimes[i] - Varints.unzigzag(code - 1);
+            }
+        }
+        nextGame = 0;
+        nextSlot = 0;
+    }
+
+    private static void decodePlayerIds(ByteBuffer column, int[] ids, int count) {
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            previous += (int) Varints.unzigzag(Varints.getLong(column));
+            ids[i] = previous;
+        }
+    }
+
+    /**
+     * Aggregate the results of the players over all the remaining blocks of the export (the games of the current
+     * block that were not returned by {@link #next()} are not included).
+     *
+     * @return the results by player
+     * @throws IOException
+     */
+    public WinRates aggregateWinRates() throws IOException {
+        boolean[] needed = new boolean[ColumnarFormat.COLUMNS];
+        needed[ColumnarFormat.PLAYER_ID] = true;
+        needed[ColumnarFormat.RESULT] = true;
+        int resultCount = RESULTS.length;
+
+        long[] counts = new long[64 * resultCount];
+        int playerCount = 0;
+        int[] ids = new int[0];
+        while (readHeader()) {
+            readColumns(needed);
+            if (ids.length < slots) {
+                ids = new int[slots];
+            }
+            decodePlayerIds(columns[ColumnarFormat.PLAYER_ID], ids, slots);
+            for (int i = 0; i < slots; i++) {
+                if (ids[i] >= playerCount) {
+                    playerCount = ids[i] + 1;
+                    if (playerCount * resultCount > counts.length) {
+                        counts = Arrays.copyOf(counts, Math.max(counts.length * 2, playerCount * resultCount));
+                    }
+                }
+            }
+
+            // 32 results per word
+            ByteBuffer results = columns[ColumnarFormat.RESULT];
+            int slot = 0;
+            while (slot < slots) {
+                long word = results.getLong();
+                int end = Math.min(slots, slot + ColumnarFormat.CODES_PER_WORD);
+                for (; slot < end; slot++) {
+                    counts[ids[slot] * resultCount + (int) (word & ColumnarFormat.CODE_MASK)]++;
+                    word >>>= 2;
+                }
+            }
+        }
+        games = 0;
+        nextGame = 0;
+        return new WinRates(counts, playerCount);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.export;
+
+import gg.pistol.scissors.game.GameResult;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * The results of the players aggregated from an export, by player identifier.
+ *
+ * @author Bogdan Pistol
+ */
+@Immutable
+public final class WinRates {
+
+    private static final int RESULTS = GameResult.values().length;
+
+    private final long[] counts; // RESULTS counters for every player, by result ordinal
+
+    // package private
+    WinRates(long[] counts, int playerCount) {
+        this.counts = new long[playerCount * RESULTS];
+        System.arraycopy(counts, 0, this.counts, 0, Math.min(counts.length, this.counts.length));
+    }
+
+    /**
+     * @return the number of players, the player identifiers are between 0 and this value (exclusive)
+     */
+    public int getPlayerCount() {
+        return counts.length / RESULTS;
+    }
+
+    public long getResultCount(int playerId, GameResult result) {
+        if (result == null) {
+            throw new NullPointerException("The result is null.");
+        }
+        int index = playerId * RESULTS + result.ordinal();
+        return playerId >= 0 && index < counts.length ? counts[index] : 0L;
+    }
+
+    public long getWins(int playerId) {
+        return getResultCount(playerId, GameResult.WIN);
+    }
+
+    public long getLosses(int playerId) {
+        return getResultCount(playerId, GameResult.LOSS);
+    }
+
+    public long getTies(int playerId) {
+        return getResultCount(playerId, GameResult.TIE);
+    }
+
+    public long getGameCount(int playerId) {
+        return getWins(playerId) + getLosses(playerId) + getTies(playerId);
+    }
+
+    /**
+     * @return the ratio of won games or 0 in case the player has no games
+     */
+    public double getWinRate(int playerId) {
+        long games = getGameCount(playerId);
+        return games > 0 ? (double) getWins(playerId) / games : 0.0;
+    }
+
+}
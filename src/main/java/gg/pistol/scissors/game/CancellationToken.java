@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.game;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The cancellation of the tasks of one game that run on shared threads (see {@link RefereeWorkerGroups}).
+ *
+ * <p>The tasks register their threads while they run, so cancelling interrupts only the threads running a task of
+ * the game, in time proportional to the number of those tasks, and the tasks that did not start yet are skipped.
+ * The interrupt is cleared when the task exits, so the shared thread does not carry it to the tasks of other games.
+ *
+ * @author Bogdan Pistol
+ */
+@ThreadSafe
+public final class CancellationToken {
+
+    private final Lock lock;
+    @GuardedBy("lock") private final Set<Thread> threads;
+    private volatile boolean cancelled;
+
+    public CancellationToken() {
+        lock = new ReentrantLock();
+        threads = new HashSet<Thread>();
+    }
+
+    /**
+     * Cancel the game: interrupt its running tasks and skip the ones that did not start.
+     */
+    public void cancel() {
+        lock.lock();
+        try {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Register the current thread before running a task of the game.
+     *
+     * @return false if the game was cancelled and the task should be skipped
+     */
+    // package private
+    boolean enter() {
+        lock.lock();
+        try {
+            if (cancelled) {
+                return false;
+            }
+            threads.add(Thread.currentThread());
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Unregister the current thread after running a task of the game (only after a successful {@link #enter()}).
+     */
+    // package private
+    void exit() {
+        lock.lock();
+        try {
+            threads.remove(Thread.currentThread());
+            Thread.interrupted(); // the cancellation ends with the task, the thread is not interrupted afterwards
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
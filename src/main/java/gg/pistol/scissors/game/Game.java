@@ -36,6 +36,19 @@ import java.util.Set;
  */
 public interface Game {
 
+    /**
+     * Return the identifier of the game. The identifiers are assigned in increasing order to the games created
+     * by the current process.
+     *
+     * @return the game identifier
+     */
+    long getId();
+
+    /**
+     * @return when the game was created ({@link System#nanoTime()}), the referee creates the game when it is created
+     */
+    long getCreationTime();
+
     /**
      * Return the gesture thrown by a player.
      *
@@ -45,6 +58,16 @@ public interface Game {
     @Nullable
     Gesture getPlayerGesture(Player player);
 
+    /**
+     * @return from where the referee starts the countdown
+     */
+    int getCountdownStart();
+
+    /**
+     * @return how much time the referee waits between counts in millis
+     */
+    long getTimeBetweenCounts();
+
     /**
      * The players could have the strategy to wait and try to see what the opponent throws. In order to limit
      * this strategy and to make the game more balanced there is a gesture throw time limit in place.
@@ -55,6 +78,32 @@ public interface Game {
      */
     long getThrowTimeLimit();
 
+    /**
+     * Return the absolute throw deadline, the gestures received later are late. The deadline is set when the game
+     * enters the throwing state, using the monotonic clock so that it is not affected by the wall clock adjustments.
+     *
+     * @return when the throw time limit expires ({@link System#nanoTime()})
+     * @throws IllegalStateException in case the game did not enter the throwing state
+     */
+    long getThrowDeadline();
+
+    /**
+     * @return how much time is left until the throw deadline in nanoseconds, the whole throw time limit before the
+     *         throwing state and 0 after the deadline
+     */
+    long getThrowTimeRemaining();
+
+    /**
+     * Return when the referee received the gesture of a player. The arrival time is also recorded for the gestures
+     * received outside of the throwing state (which are ignored), so the late gestures can be audited.
+     *
+     * @param player
+     * @return the arrival time of the first gesture of the player ({@link System#nanoTime()}) or null in case the
+     *         referee did not receive a gesture from the player
+     */
+    @Nullable
+    Long getGestureArrivalTime(Player player);
+
     /**
      * Return the list of players participating in the game. The returned list is unmodifiable.
      *
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.game;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The executor of the referee tasks of one game, running them on the threads of a {@link RefereeWorkerGroups} group.
+ *
+ * <p>It has the lifecycle of a per game thread pool: it terminates after it is shut down and its tasks completed, and
+ * {@link #shutdownNow()} cancels the {@link CancellationToken} of the game, interrupting the running tasks of the game
+ * (and only them, the threads are shared) and skipping the tasks that did not start yet.
+ *
+ * @author Bogdan Pistol
+ */
+@ThreadSafe
+// package private
+class GameExecutor extends AbstractExecutorService {
+
+    private final RefereeWorkerGroups groups;
+    private final int group;
+    private final CancellationToken cancellation;
+    private final Lock lock;
+    private final Condition terminated;
+    @GuardedBy("lock") private int tasks; // the submitted tasks that did not complete
+    @GuardedBy("lock") private boolean started; // counted in the live games of the group from the first task
+    @GuardedBy("lock") private boolean shutdown;
+
+    GameExecutor(RefereeWorkerGroups groups, int group, CancellationToken cancellation) {
+        this.groups = groups;
+        this.group = group;
+        this.cancellation = cancellation;
+        lock = new ReentrantLock();
+        terminated = lock.newCondition();
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (command == null) {
+            throw new NullPointerException("The command is null.");
+        }
+        lock.lock();
+        try {
+            if (shutdown) {
+                throw new RejectedExecutionException("The game executor is shut down.");
+            }
+            tasks++;
+            if (!started) {
+                started = true;
+                groups.gameStarted(group);
+            }
+        } finally {
+            lock.unlock();
+        }
+        groups.execute(group, new Task(command));
+    }
+
+    @Override
+    public void shutdown() {
+        lock.lock();
+        try {
+            if (!shutdown) {
+                shutdown = true;
+                terminateIfDone();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        cancellation.cancel();
+        shutdown();
+        return Collections.emptyList(); // the tasks were handed to the group, they are skipped when they start
+    }
+
+    @GuardedBy("lock")
+    private void terminateIfDone() {
+        if (shutdown && tasks == 0) {
+            terminated.signalAll();
+            if (started) {
+                groups.gameTerminated(group);
+            }
+        }
+    }
+
+    @Override
+    public boolean isShutdown() {
+        lock.lock();
+        try {
+            return shutdown;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isTerminated() {
+        lock.lock();
+        try {
+            return shutdown && tasks == 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (!(shutdown && tasks == 0)) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = terminated.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private class Task implements Runnable {
+        private final Runnable command;
+
+        Task(Runnable command) {
+            this.command = command;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (cancellation.enter()) {
+                    try {
+                        command.run();
+                    } finally {
+                        cancellation.exit();
+                    }
+                }
+            } finally { // a failed task (e.g. a throwing listener) completes as well, or the game would never end
+                lock.lock();
+                try {
+                    tasks--;
+                    terminateIfDone();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+}
@@ -20,13 +20,11 @@ import gg.pistol.scissors.player.Player;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedHashSet;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -34,15 +32,26 @@ import java.util.concurrent.locks.ReentrantLock;
 @ThreadSafe
 class GameImpl implements Game {
 
+    private static final AtomicLong ID_SEQUENCE = new AtomicLong();
+    private static final Gesture[] GESTURES = Gesture.values(); // values() clones the array on every call
+    private static final GameResult[] RESULTS = GameResult.values();
+
+    private final long id;
+    private final long creationTime; // nanos
     private final int countdownStart;
     private final long timeBetweenCounts; // millis
     private final long throwTimeLimit; // millis
-    private final List<Player> players;
-    private final Set<Player> playerSet; // the same players as in the "players" field, but with efficient retrieval
+    private final PlayerIndex playerIndex; // the unique players and their positions
 
-    @GuardedBy("lock") private final Map<Player, Gesture> playerGestures;
-    @GuardedBy("lock") private final Map<Player, GameResult> playerResults;
+    // the per player state is kept in arrays in the order of the players, compact enough for large games
+    @GuardedBy("lock") private final PackedCodes playerGestures; // gesture ordinal + 1
+    @GuardedBy("lock") private final PackedCodes playerResults; // result ordinal + 1
+    @GuardedBy("lock") private int thrownGestures;
+    @GuardedBy("lock") private final long[] gestureArrivals; // nanos
+    @GuardedBy("lock") private final BitSet gestureArrived;
     @GuardedBy("lock") private GameState state;
+    @GuardedBy("lock") private boolean throwDeadlineSet; // the game entered the throwing state
+    @GuardedBy("lock") private long throwDeadline; // nanos
     private final Lock lock;
 
     // package private
@@ -50,14 +59,17 @@ class GameImpl implements Game {
         if (players == null) {
             throw new NullPointerException("The players list is null.");
         }
+        creationTime = System.nanoTime();
+        id = ID_SEQUENCE.incrementAndGet();
         this.countdownStart = countdownStart;
         this.timeBetweenCounts = timeBetweenCounts;
 
         this.throwTimeLimit = throwTimeLimit;
-        playerSet = new LinkedHashSet<Player>(players);
-        this.players = new ArrayList<Player>(playerSet); // the list will contain unique players
-        playerGestures = new HashMap<Player, Gesture>();
-        playerResults = new HashMap<Player, GameResult>();
+        playerIndex = new PlayerIndex(players); // the index will contain unique players
+        playerGestures = new PackedCodes(playerIndex.size());
+        playerResults = new PackedCodes(playerIndex.size());
+        gestureArrivals = new long[playerIndex.size()];
+        gestureArrived = new BitSet(playerIndex.size());
         state = GameState.NOT_STARTED;
         lock = new ReentrantLock();
     }
@@ -71,21 +83,37 @@ class GameImpl implements Game {
      */
     // package private
     void setPlayerGesture(Player player, Gesture gesture) {
+        setPlayerGesture(player, gesture, System.nanoTime());
+    }
+
+    /**
+     * Associate a player with his/her thrown gesture, received by the referee at the given time. The arrival time of
+     * the first received gesture is recorded even if the gesture is ignored.
+     *
+     * @param player
+     * @param gesture
+     * @param arrivalTime when the referee received the gesture ({@link System#nanoTime()})
+     */
+    // package private
+    void setPlayerGesture(Player player, Gesture gesture, long arrivalTime) {
         if (player == null || gesture == null) {
             throw new NullPointerException("The player or/and gesture are null.");
         }
-        if (!playerSet.contains(player)) {
-            throw new IllegalArgumentException("The player is not from this game.");
-        }
+        int index = getPlayerIndex(player);
         lock.lock();
         try {
+            if (!gestureArrived.get(index)) {
+                gestureArrived.set(index);
+                gestureArrivals[index] = arrivalTime;
+            }
             if (state != GameState.THROWING) {
                 return; // the game is not in the throwing phase and the gesture is ignored
             }
-            if (playerGestures.get(player) != null) {
+            if (playerGestures.get(index) != PackedCodes.NONE) {
                 throw new IllegalStateException("The player has already thrown the gesture.");
             }
-            playerGestures.put(player, gesture);
+            playerGestures.set(index, gesture.ordinal() + 1);
+            thrownGestures++;
         } finally {
             lock.unlock();
         }
@@ -102,32 +130,103 @@ class GameImpl implements Game {
         if (player == null || result == null) {
             throw new NullPointerException("The player or/and result are null.");
         }
-        if (!playerSet.contains(player)) {
-            throw new IllegalArgumentException("The player is not from this game.");
+        int index = getPlayerIndex(player);
+        lock.lock();
+        try {
+            checkFinished();
+            if (playerResults.get(index) != PackedCodes.NONE) {
+                throw new IllegalStateException("The player result is already set.");
+            }
+            playerResults.set(index, result.ordinal() + 1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Set the results of all the players at once. This should be called only when the game is finished.
+     *
+     * @param results the results in the order of the players
+     */
+    // package private
+    void setPlayerResults(GameResult[] results) {
+        if (results == null) {
+            throw new NullPointerException("The results are null.");
+        }
+        if (results.length != playerIndex.size()) {
+            throw new IllegalArgumentException("The results are not for the players of this game.");
         }
         lock.lock();
         try {
-            if (state != GameState.FINISHED) {
-                throw new IllegalStateException("The game is not finished.");
+            checkFinished();
+            for (int i = 0; i < results.length; i++) {
+                if (playerResults.get(i) != PackedCodes.NONE) {
+                    throw new IllegalStateException("The player result is already set.");
+                }
             }
-            if (playerResults.get(player) != null) {
-                throw new IllegalStateException("The player result is already set.");
+            for (int i = 0; i < results.length; i++) {
+                playerResults.set(i, results[i].ordinal() + 1);
             }
-            playerResults.put(player, result);
         } finally {
             lock.unlock();
         }
     }
 
+    @GuardedBy("lock")
+    private void checkFinished() {
+        if (state != GameState.FINISHED) {
+            throw new IllegalStateException("The game is not finished.");
+        }
+    }
+
+    private int getPlayerIndex(Player player) {
+        int index = playerIndex.indexOf(player);
+        if (index < 0) {
+            throw new IllegalArgumentException("The player is not from this game.");
+        }
+        return index;
+    }
+
+    /**
+     * @return a snapshot of the gestures in the order of the players (null for the players without a gesture)
+     */
+    // package private
+    Gesture[] getPlayerGestures() {
+        Gesture[] gestures = new Gesture[playerIndex.size()];
+        lock.lock();
+        try {
+            for (int i = 0; i < gestures.length; i++) {
+                gestures[i] = decodeGesture(playerGestures.get(i));
+            }
+        } finally {
+            lock.unlock();
+        }
+        return gestures;
+    }
+
+    @Nullable
+    private static Gesture decodeGesture(int code) {
+        return code == PackedCodes.NONE ? null : GESTURES[code - 1];
+    }
+
+    @Nullable
+    private static GameResult decodeResult(int code) {
+        return code == PackedCodes.NONE ? null : RESULTS[code - 1];
+    }
+
     @Nullable
     @Override
     public Gesture getPlayerGesture(Player player) {
         if (player == null) {
             throw new NullPointerException("The player is null.");
         }
+        int index = playerIndex.indexOf(player);
+        if (index < 0) {
+            return null;
+        }
         lock.lock();
         try {
-            return playerGestures.get(player);
+            return decodeGesture(playerGestures.get(index));
         } finally {
             lock.unlock();
         }
@@ -140,19 +239,29 @@ class GameImpl implements Game {
     boolean isGameFinishReady() {
         lock.lock();
         try {
-            return playerGestures.values().size() == players.size();
+            return thrownGestures == playerIndex.size();
         } finally {
             lock.unlock();
         }
     }
 
-    // package private
-    int getCountdownStart() {
+    @Override
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public long getCreationTime() {
+        return creationTime;
+    }
+
+    @Override
+    public int getCountdownStart() {
         return countdownStart;
     }
 
-    // package private
-    long getTimeBetweenCounts() {
+    @Override
+    public long getTimeBetweenCounts() {
         return timeBetweenCounts;
     }
 
@@ -163,15 +272,19 @@ class GameImpl implements Game {
 
     @Override
     public List<Player> getPlayers() {
-        return Collections.unmodifiableList(players);
+        return playerIndex.getPlayers();
     }
 
     @Nullable
     @Override
     public GameResult getPlayerResult(Player player) {
+        int index = playerIndex.indexOf(player);
+        if (index < 0) {
+            return null;
+        }
         lock.lock();
         try {
-            return playerResults.get(player);
+            return decodeResult(playerResults.get(index));
         } finally {
             lock.unlock();
         }
@@ -187,7 +300,84 @@ class GameImpl implements Game {
             if (state.ordinal() > newState.ordinal()) {
                 throw new IllegalArgumentException("The newState is illegal because it is smaller than the current state " + state);
             }
-            state = newState;
+            enterState(newState);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @GuardedBy("lock")
+    private void enterState(GameState newState) {
+        if (newState == GameState.THROWING && !throwDeadlineSet) {
+            throwDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(throwTimeLimit);
+            throwDeadlineSet = true;
+        }
+        state = newState;
+    }
+
+    /**
+     * Atomically change the state of the game only if the current state is the expected one.
+     *
+     * @param expectedState
+     * @param newState
+     * @return true if the state was changed, false if the current state is not the expected one
+     */
+    // package private
+    boolean compareAndSetState(GameState expectedState, GameState newState) {
+        if (expectedState == null || newState == null) {
+            throw new NullPointerException("The expectedState or/and newState are null.");
+        }
+        lock.lock();
+        try {
+            if (state != expectedState) {
+                return false;
+            }
+            enterState(newState);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getThrowDeadline() {
+        lock.lock();
+        try {
+            if (!throwDeadlineSet) {
+                throw new IllegalStateException("The game did not enter the throwing state.");
+            }
+            return throwDeadline;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getThrowTimeRemaining() {
+        lock.lock();
+        try {
+            if (!throwDeadlineSet) {
+                return TimeUnit.MILLISECONDS.toNanos(throwTimeLimit);
+            }
+            return Math.max(0L, throwDeadline - System.nanoTime());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Nullable
+    @Override
+    public Long getGestureArrivalTime(Player player) {
+        if (player == null) {
+            throw new NullPointerException("The player is null.");
+        }
+        int index = playerIndex.indexOf(player);
+        if (index < 0) {
+            return null;
+        }
+        lock.lock();
+        try {
+            return gestureArrived.get(index) ? gestureArrivals[index] : null;
         } finally {
             lock.unlock();
         }
@@ -205,19 +395,29 @@ class GameImpl implements Game {
 
     @Override
     public String toString() {
+        Gesture[] gestures = new Gesture[playerIndex.size()];
+        GameResult[] results = new GameResult[playerIndex.size()];
+        GameState currentState;
         lock.lock();
         try {
-            return "GameImpl{" +
-                    "countdownStart=" + countdownStart +
-                    ", throwTimeLimit=" + throwTimeLimit +
-                    ", players=" + players +
-                    ", playerGestures=" + playerGestures +
-                    ", playerResults=" + playerResults +
-                    ", state=" + state +
-                    '}';
+            // copy the state and format it outside the lock, the player names are formatted by foreign code
+            for (int i = 0; i < gestures.length; i++) {
+                gestures[i] = decodeGesture(playerGestures.get(i));
+                results[i] = decodeResult(playerResults.get(i));
+            }
+            currentState = state;
         } finally {
             lock.unlock();
         }
+        return "GameImpl{" +
+                "id=" + id +
+                ", countdownStart=" + countdownStart +
+                ", throwTimeLimit=" + throwTimeLimit +
+                ", players=" + playerIndex.getPlayers() +
+                ", playerGestures=" + Arrays.toString(gestures) +
+                ", playerResults=" + Arrays.toString(results) +
+                ", state=" + currentState +
+                '}';
     }
 
 }
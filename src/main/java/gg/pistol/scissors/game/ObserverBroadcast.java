@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.game;
+
+import gg.pistol.scissors.log.AsyncLogger;
+import gg.pistol.scissors.player.GameObserver;
+import gg.pistol.scissors.player.Player;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Level;
+
+/**
+ * Tree structured broadcast of the game events to a large audience of observers.
+ *
+ * <p>The observers are split into shards and every shard is owned by a worker (a node of the tree) that delivers the
+ * events to its observers one after the other. The referee publishes an event once into the root node and every node
+ * forwards it to its children before delivering it to its own shard, so the cost of a broadcast grows with the number
+ * of workers (and the publisher only pays for the root) instead of with the number of observers. The same immutable
+ * message is shared by all the nodes.
+ *
+ * <p>Every node has a FIFO queue, so the observers receive the events in the order they were published. After a
+ * delivery to a shard the monitors are told about the delivery times of the shard (see
+ * {@link RefereeMonitor#broadcastDelivered}), so the skew of every shard stays measurable.
+ *
+ * @author Bogdan Pistol
+ */
+// package private
+@ThreadSafe
+class ObserverBroadcast {
+
+    /**
+     * The smallest shard worth a worker of its own.
+     */
+    static final int MIN_SHARD_SIZE = 256;
+
+    /**
+     * The number of children of every node.
+     */
+    static final int FAN_OUT = 4;
+
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(ObserverBroadcast.class.getName());
+    private static final Message CLOSE = new Message(null, 0L);
+
+    private final Game game;
+    private final List<RefereeMonitor> monitors;
+    private final List<Node> nodes; // in heap order, the children of the node i are FAN_OUT * i + 1 ...
+
+    /**
+     * @param game the broadcast game
+     * @param observers the audience
+     * @param workerCount the maximum number of workers
+     * @param monitors the monitors to tell about the deliveries
+     */
+    ObserverBroadcast(Game game, List<GameObserver> observers, int workerCount, List<RefereeMonitor> monitors) {
+        if (game == null || observers == null || monitors == null) {
+            throw new NullPointerException("The game or/and the observers or/and the monitors are null.");
+        }
+        if (workerCount <= 0) {
+            throw new IllegalArgumentException("The workerCount must be positive.");
+        }
+        this.game = game;
+        this.monitors = monitors;
+        List<GameObserver> audience = Collections.unmodifiableList(new ArrayList<GameObserver>(observers));
+        int workers = Math.max(1, Math.min(workerCount, audience.size() / MIN_SHARD_SIZE));
+        nodes = new ArrayList<Node>(workers);
+        for (int i = 0; i < workers; i++) {
+            // the shards are contiguous views of the audience with sizes that differ by at most one
+            int from = (int) ((long) audience.size() * i / workers);
+            int to = (int) ((long) audience.size() * (i + 1) / workers);
+            nodes.add(new Node(i, audience.subList(from, to)));
+        }
+        for (int i = 0; i < workers; i++) {
+            for (int child = FAN_OUT * i + 1; child <= FAN_OUT * i + FAN_OUT && child < workers; child++) {
+                nodes.get(i).children.add(nodes.get(child));
+            }
+        }
+    }
+
+    /**
+     * Start the workers, every worker runs until the broadcast is closed or its thread is interrupted.
+     *
+     * @param executor
+     */
+    void start(Executor executor) {
+        for (Node node : nodes) {
+            executor.execute(node);
+        }
+    }
+
+    /**
+     * Publish an event to all the observers, the method returns without waiting for the delivery.
+     *
+     * @param event
+     */
+    void publish(ObserverEvent event) {
+        if (event == null) {
+            throw new NullPointerException("The event is null.");
+        }
+        nodes.get(0).queue.offer(new Message(event, System.nanoTime()));
+    }
+
+    /**
+     * Stop the workers after they delivered the events published so far.
+     */
+    void close() {
+        nodes.get(0).queue.offer(CLOSE);
+    }
+
+    int getWorkerCount() {
+        return nodes.size();
+    }
+
+    /**
+     * An event that is delivered in the same way to every observer.
+     */
+    interface ObserverEvent {
+        void deliver(GameObserver observer);
+    }
+
+    @Immutable
+    static class CountdownNotice implements ObserverEvent {
+        private final int count;
+
+        CountdownNotice(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public void deliver(GameObserver observer) {
+            observer.countdown(count);
+        }
+    }
+
+    @Immutable
+    static class GestureNotice implements ObserverEvent {
+        private final Player player;
+        private final Gesture gesture;
+
+        GestureNotice(Player player, Gesture gesture) {
+            this.player = player;
+            this.gesture = gesture;
+        }
+
+        @Override
+        public void deliver(GameObserver observer) {
+            observer.gestureThrown(player, gesture);
+        }
+    }
+
+    @Immutable
+    static class FinishNotice implements ObserverEvent {
+        private final Game game;
+
+        FinishNotice(Game game) {
+            this.game = game;
+        }
+
+        @Override
+        public void deliver(GameObserver observer) {
+            observer.gameFinished(game);
+        }
+    }
+
+    @Immutable
+    private static class Message {
+        @Nullable private final ObserverEvent event; // null for closing
+        private final long publishTime; // nanos
+
+        Message(@Nullable ObserverEvent event, long publishTime) {
+            this.event = event;
+            this.publishTime = publishTime;
+        }
+    }
+
+    private class Node implements Runnable {
+        private final int shard;
+        private final List<GameObserver> observers;
+        private final List<Node> children;
+        private final BlockingQueue<Message> queue;
+
+        Node(int shard, List<GameObserver> observers) {
+            this.shard = shard;
+            this.observers = observers;
+            children = new ArrayList<Node>(FAN_OUT);
+            queue = new LinkedBlockingQueue<Message>();
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (;;) {
+                    Message message = queue.take();
+                    for (Node child : children) {
+                        child.queue.offer(message);
+                    }
+                    if (message == CLOSE) {
+                        return;
+                    }
+                    deliver(message);
+                }
+            } catch (InterruptedException e) {
+                // the game was stopped
+            }
+        }
+
+        private void deliver(Message message) {
+            long[] deliveryTimes = monitors.isEmpty() ? null : new long[observers.size()];
+            for (int i = 0; i < observers.size(); i++) {
+                if (deliveryTimes != null) {
+                    deliveryTimes[i] = System.nanoTime();
+                }
+                GameObserver observer = observers.get(i);
+                try {
+                    message.event.deliver(observer);
+                } catch (RuntimeException e) {
+                    // a failing observer should not stop the delivery to the rest of the shard and to the subtree
+                    LOG.log(Level.WARNING, "The observer {} failed: {}", observer, e);
+                }
+            }
+            if (deliveryTimes != null) {
+                for (RefereeMonitor monitor : monitors) {
+                    monitor.broadcastDelivered(game, shard, observers, message.publishTime, deliveryTimes);
+                }
+            }
+        }
+    }
+
+}
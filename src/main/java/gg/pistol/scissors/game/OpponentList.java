@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.game;
+
+import gg.pistol.scissors.player.Player;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Unmodifiable view of the players of a game without one of them (the opponents of that player). The view takes
+ * constant memory, so making every player of a large game aware of its opponents does not copy the players.
+ *
+ * @author Bogdan Pistol
+ */
+// package private
+@Immutable
+final class OpponentList extends AbstractList<Player> implements RandomAccess {
+
+    private final List<Player> players; // unmodifiable with random access
+    private final int excluded;
+
+    /**
+     * @param players all the players of the game (unmodifiable with random access)
+     * @param excluded the position of the player that is not its own opponent
+     */
+    OpponentList(List<Player> players, int excluded) {
+        if (players == null) {
+            throw new NullPointerException("The players list is null.");
+        }
+        if (excluded < 0 || excluded >= players.size()) {
+            throw new IndexOutOfBoundsException("Excluded: " + excluded + ", Size: " + players.size());
+        }
+        this.players = players;
+        this.excluded = excluded;
+    }
+
+    @Override
+    public Player get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        return players.get(index < excluded ? index : index + 1);
+    }
+
+    @Override
+    public int size() {
+        return players.size() - 1;
+    }
+
+}
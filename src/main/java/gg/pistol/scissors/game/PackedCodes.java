@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.game;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Array of 2-bit codes packed 32 per long, for the per player state of large games (e.g. the gesture or the result
+ * ordinal + 1, with 0 for none).
+ *
+ * @author Bogdan Pistol
+ */
+// package private
+@NotThreadSafe
+final class PackedCodes {
+
+    static final int NONE = 0;
+    static final int MAX_CODE = 3;
+
+    private static final int CODES_PER_WORD_SHIFT = 5; // 32 codes per long
+    private static final int POSITION_MASK = (1 << CODES_PER_WORD_SHIFT) - 1;
+
+    private final long[] words;
+
+    PackedCodes(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("The size is negative.");
+        }
+        words = new long[(size + POSITION_MASK) >>> CODES_PER_WORD_SHIFT];
+    }
+
+    int get(int index) {
+        return (int) (words[index >>> CODES_PER_WORD_SHIFT] >>> ((index & POSITION_MASK) << 1)) & MAX_CODE;
+    }
+
+    void set(int index, int code) {
+        if (code < NONE || code > MAX_CODE) {
+            throw new IllegalArgumentException("The code does not fit in 2 bits.");
+        }
+        int word = index >>> CODES_PER_WORD_SHIFT;
+        int shift = (index & POSITION_MASK) << 1;
+        words[word] = (words[word] & ~((long) MAX_CODE << shift)) | ((long) code << shift);
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.game;
+
+import gg.pistol.scissors.player.Player;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The unique players of a game and their positions, looked up in an open addressing table of ints so that large
+ * games need about 4 bytes per player besides the list (instead of a hash entry and a boxed integer per player).
+ *
+ * @author Bogdan Pistol
+ */
+// package private
+@Immutable
+final class PlayerIndex {
+
+    private static final int HASH_MULTIPLIER = 0x9E3779B9;
+
+    private final List<Player> players; // unique
+    private final List<Player> unmodifiablePlayers;
+    private final int[] table; // the position + 1 of the player hashed in the slot, 0 for an empty slot
+    private final int mask;
+
+    /**
+     * @param players the players in their order, the duplicates after the first occurrence are dropped
+     */
+    PlayerIndex(List<Player> players) {
+        if (players == null) {
+            throw new NullPointerException("The players list is null.");
+        }
+        // at most half full
+        table = new int[Integer.highestOneBit(Math.max(1, players.size() * 2 - 1)) << 1];
+        mask = table.length - 1;
+        this.players = new ArrayList<Player>(players.size());
+        for (Player player : players) {
+            if (player == null) {
+                throw new NullPointerException("A player is null.");
+            }
+            int slot = slot(player);
+            if (table[slot] == 0) {
+                this.players.add(player);
+                table[slot] = this.players.size();
+            }
+        }
+        unmodifiablePlayers = Collections.unmodifiableList(this.players);
+    }
+
+    private int slot(Object player) {
+        int hash = player.hashCode() * HASH_MULTIPLIER;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (table[slot] != 0 && !players.get(table[slot] - 1).equals(player)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * @param player
+     * @return the position of the player or -1 in case it is not a player of the game
+     */
+    int indexOf(Object player) {
+        if (player == null) {
+            return -1;
+        }
+        return table[slot(player)] - 1;
+    }
+
+    /**
+     * @return the unique players (unmodifiable)
+     */
+    List<Player> getPlayers() {
+        return unmodifiablePlayers;
+    }
+
+    int size() {
+        return players.size();
+    }
+
+}
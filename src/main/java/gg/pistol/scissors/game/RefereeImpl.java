@@ -15,19 +15,26 @@
  */
 package gg.pistol.scissors.game;
 
+import gg.pistol.scissors.player.AsyncPlayer;
 import gg.pistol.scissors.player.GameObserver;
+import gg.pistol.scissors.player.GestureCallback;
 import gg.pistol.scissors.player.OpponentAwarePlayer;
 import gg.pistol.scissors.player.Player;
+import gg.pistol.scissors.log.AsyncLogger;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Referee implementation that provides fairness to all the players. When the game starts the referee will start
@@ -46,16 +53,60 @@ import java.util.logging.Logger;
  * while delivering the events. This is achieved by delivering the events to N players and M observers using N+M threads
  * and by synchronizing the execution of all the threads (with a CountDownLatch).
  *
+ * <p>A thread per observer and event does not scale to large audiences (e.g. a featured game with thousands of
+ * spectators), so from {@value #LARGE_AUDIENCE} observers the events are published to an {@link ObserverBroadcast}
+ * whose workers deliver them to shards of the audience. The players are still synchronized as above, the observers
+ * receive the events in order but asynchronously (the results may reach the audience after the game finished).
+ *
+ * <p>The gestures of the {@link AsyncPlayer}s (e.g. remote players) are requested with the same fairness but no
+ * thread waits for them: the gesture is handled by a new task when the player completes the request.
+ *
+ * <p>By default every game runs on new threads. When many games are refereed concurrently the games can share the
+ * threads of {@link RefereeWorkerGroups} instead.
+ *
  * @author Bogdan Pistol
  */
 @ThreadSafe
 public class RefereeImpl implements Referee {
 
-    private static final Logger LOG = Logger.getLogger(RefereeImpl.class.getName());
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(RefereeImpl.class.getName());
+    private static final Gesture[] GESTURES = Gesture.values(); // values() clones the array on every call
+
+    // the audiences from this size are broadcast by the workers of a tree instead of a thread per observer and event
+    private static final int LARGE_AUDIENCE = 2 * ObserverBroadcast.MIN_SHARD_SIZE;
+    private static final int BROADCAST_WORKERS = 2 * Runtime.getRuntime().availableProcessors();
+
+    // the gauges of all the referees, adders because all the referee threads update them
+    private static final LongAdder THREADS = new LongAdder();
+    private static final LongAdder QUEUED_EVENTS = new LongAdder();
+
+    // package private
+    static final ThreadFactory THREAD_FACTORY = new ThreadFactory() {
+        private final ThreadFactory threadFactory = Executors.defaultThreadFactory();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return threadFactory.newThread(new Runnable() {
+                @Override
+                public void run() {
+                    THREADS.increment();
+                    try {
+                        runnable.run();
+                    } finally {
+                        THREADS.add(-1L);
+                    }
+                }
+            });
+        }
+    };
 
     private final GameImpl game;
     private final List<GameObserver> observers;
+    private final List<RefereeMonitor> monitors;
     private final ExecutorService executor;
+    private final CancellationToken cancellation;
+    @Nullable private final ObserverBroadcast broadcast; // for large audiences, the observers are not sent events
+    private final CountDownLatch allGesturesThrown; // released when the gestures of every player were handled
 
     /**
      * @param countdownStart from where to start the countdown
@@ -65,41 +116,92 @@ public class RefereeImpl implements Referee {
      * @param observers all the game observers that will watch the game
      */
     public RefereeImpl(int countdownStart, long timeBetweenCounts, long throwTimeLimit, List<Player> players, List<GameObserver> observers) {
-        if (players == null || observers == null) {
-            throw new NullPointerException("The players or/and the observers are null.");
+        this(countdownStart, timeBetweenCounts, throwTimeLimit, players, observers,
+                Collections.<RefereeMonitor>emptyList());
+    }
+
+    /**
+     * @param countdownStart from where to start the countdown
+     * @param timeBetweenCounts how much time to wait between counts in millis
+     * @param throwTimeLimit how much time to wait for every player to throw the gesture in millis
+     * @param players all the players participating in the game
+     * @param observers all the game observers that will watch the game
+     * @param monitors all the monitors of the referee
+     */
+    public RefereeImpl(int countdownStart, long timeBetweenCounts, long throwTimeLimit, List<Player> players,
+                       List<GameObserver> observers, List<RefereeMonitor> monitors) {
+        this(countdownStart, timeBetweenCounts, throwTimeLimit, players, observers, monitors, null);
+    }
+
+    /**
+     * @param countdownStart from where to start the countdown
+     * @param timeBetweenCounts how much time to wait between counts in millis
+     * @param throwTimeLimit how much time to wait for every player to throw the gesture in millis
+     * @param players all the players participating in the game
+     * @param observers all the game observers that will watch the game
+     * @param monitors all the monitors of the referee
+     * @param workerGroups the shared threads that run the referee tasks or null to create threads for this game
+     */
+    public RefereeImpl(int countdownStart, long timeBetweenCounts, long throwTimeLimit, List<Player> players,
+                       List<GameObserver> observers, List<RefereeMonitor> monitors,
+                       @Nullable RefereeWorkerGroups workerGroups) {
+        if (players == null || observers == null || monitors == null) {
+            throw new NullPointerException("The players or/and the observers or/and the monitors are null.");
         }
         game = new GameImpl(countdownStart, timeBetweenCounts, throwTimeLimit, players);
         this.observers = new ArrayList<GameObserver>(observers);
-        executor = Executors.newCachedThreadPool();
-
-        // for all the players implementing OpponentAwarePlayer make them aware of their opponents
-        for (Player p : game.getPlayers()) {
+        this.monitors = new ArrayList<RefereeMonitor>(monitors);
+        cancellation = new CancellationToken();
+        executor = workerGroups != null ? workerGroups.newGameExecutor(game.getId(), cancellation) :
+                Executors.newCachedThreadPool(THREAD_FACTORY);
+        allGesturesThrown = new CountDownLatch(game.getPlayers().size());
+        broadcast = this.observers.size() >= LARGE_AUDIENCE ?
+                new ObserverBroadcast(game, this.observers, BROADCAST_WORKERS, this.monitors) : null;
+
+        // for all the players implementing OpponentAwarePlayer make them aware of their opponents (with views of the
+        // players list, a copy per player would take quadratic time and memory for large games)
+        List<Player> gamePlayers = game.getPlayers();
+        for (int i = 0; i < gamePlayers.size(); i++) {
+            Player p = gamePlayers.get(i);
             if (p instanceof OpponentAwarePlayer) {
-                ((OpponentAwarePlayer) p).observeGame(game, getOpponentPlayers(p));
+                ((OpponentAwarePlayer) p).observeGame(game, new OpponentList(gamePlayers, i));
             }
         }
-    }
-
-    private List<Player> getOpponentPlayers(Player player) {
-        List<Player> ret = new ArrayList<Player>();
-        for (Player p : game.getPlayers()) {
-            if (!player.equals(p)) {
-                ret.add(p);
-            }
+        for (RefereeMonitor monitor : this.monitors) {
+            monitor.gameCreated(game);
         }
-        return ret;
     }
 
     public void startGame() throws GameAlreadyStartedException {
-        if (LOG.isLoggable(Level.INFO)) {
-            LOG.info("Starting new game " + game);
-        }
-        if (game.getState() != GameState.NOT_STARTED) {
+        LOG.info("Starting new game {} with the players {}", game.getId(), game.getPlayers());
+        if (!game.compareAndSetState(GameState.NOT_STARTED, GameState.COUNTING)) {
+            for (RefereeMonitor monitor : monitors) {
+                monitor.gameAlreadyStarted(game);
+            }
             throw new GameAlreadyStartedException();
         }
+        notifyStateChanged(GameState.COUNTING);
+        if (broadcast != null) {
+            broadcast.start(executor);
+        }
         executor.execute(new RefereeTask());
     }
 
+    /**
+     * @return the number of threads of all the referees
+     */
+    public static long getThreadCount() {
+        return THREADS.sum();
+    }
+
+    /**
+     * @return the number of events of all the referees that are waiting to be delivered (their recipients are waiting
+     *         for each other)
+     */
+    public static long getQueuedEventCount() {
+        return QUEUED_EVENTS.sum();
+    }
+
     /**
      * Wait until the game is finished or the <code>awaitTime</code> is exceeded.
      *
@@ -107,9 +209,7 @@ public class RefereeImpl implements Referee {
      */
     // package private
     void waitGameFinish(long awaitTime) {
-        if (LOG.isLoggable(Level.INFO)) {
-            LOG.info("Waiting for the game to finish.");
-        }
+        LOG.info("Waiting for the game {} to finish.", game.getId());
         try {
             executor.awaitTermination(awaitTime, TimeUnit.MILLISECONDS);
         } catch (InterruptedException e) {
@@ -122,13 +222,40 @@ public class RefereeImpl implements Referee {
         return game;
     }
 
+    /**
+     * Stop the game: interrupt the tasks of this game only (its pending gesture requests, listener deliveries and
+     * throw time limit wait) and move the game to the stopped state. Stopping a game twice has no effect.
+     */
     @Override
     public void stopGame() {
-        if (LOG.isLoggable(Level.INFO)) {
-            LOG.info("Stopping current game " + game);
-        }
+        LOG.info("Stopping current game {}", game.getId());
+        cancellation.cancel();
         executor.shutdownNow();
-        game.setState(GameState.STOPPED);
+        for (GameState state = game.getState(); state != GameState.STOPPED; state = game.getState()) {
+            if (game.compareAndSetState(state, GameState.STOPPED)) {
+                notifyStateChanged(GameState.STOPPED);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Move the game to the next phase unless it was stopped in the meantime.
+     *
+     * @return false if the game was stopped
+     */
+    private boolean advance(GameState from, GameState to) {
+        if (!game.compareAndSetState(from, to)) {
+            return false;
+        }
+        notifyStateChanged(to);
+        return true;
+    }
+
+    private void notifyStateChanged(GameState state) {
+        for (RefereeMonitor monitor : monitors) {
+            monitor.stateChanged(game, state);
+        }
     }
 
     /**
@@ -136,106 +263,186 @@ public class RefereeImpl implements Referee {
      */
     private void sendCountdown(int count) throws InterruptedException {
         List<Runnable> events = new ArrayList<Runnable>();
+        List<RefereeListener> recipients = new ArrayList<RefereeListener>();
         for (Player player : game.getPlayers()) {
             events.add(new CountdownEvent(player, count));
+            recipients.add(player);
         }
-        for (GameObserver observer : observers) {
-            events.add(new CountdownEvent(observer, count));
+        if (broadcast != null) {
+            broadcast.publish(new ObserverBroadcast.CountdownNotice(count));
+        } else {
+            for (GameObserver observer : observers) {
+                events.add(new CountdownEvent(observer, count));
+                recipients.add(observer);
+            }
+        }
+        sendConcurrentEvents(events, recipients);
+        for (RefereeMonitor monitor : monitors) {
+            monitor.countdownSent(game, count);
         }
-        sendConcurrentEvents(events);
     }
 
     /**
      * Notify the players to throw their gestures.
      */
-    private void retrievePlayerGestures(Thread refereeThread) throws InterruptedException {
+    private void retrievePlayerGestures() throws InterruptedException {
         List<Runnable> events = new ArrayList<Runnable>();
         for (Player player : game.getPlayers()) {
-            events.add(new PlayerGestureRetriever(player, refereeThread));
+            events.add(player instanceof AsyncPlayer ? new AsyncGestureRequest((AsyncPlayer) player) :
+                    new PlayerGestureRetriever(player));
         }
-        sendConcurrentEvents(events);
+        sendConcurrentEvents(events, new ArrayList<RefereeListener>(game.getPlayers()));
     }
 
     /**
      * Handle the gesture thrown by a player.
      */
-    private void handlePlayerGesture(Player player, Gesture gesture, Thread refereeThread) throws InterruptedException {
-        game.setPlayerGesture(player, gesture);
+    private void handlePlayerGesture(Player player, Gesture gesture, long arrivalTime) throws InterruptedException {
+        game.setPlayerGesture(player, gesture, arrivalTime);
+        for (RefereeMonitor monitor : monitors) {
+            monitor.gestureReceived(game, player, gesture);
+        }
 
         // notify the observers of the thrown gesture
-        List<Runnable> events = new ArrayList<Runnable>();
-        for (GameObserver observer : observers) {
-            events.add(new GestureThrownEvent(observer, player, gesture));
+        if (broadcast != null) {
+            broadcast.publish(new ObserverBroadcast.GestureNotice(player, gesture));
+        } else {
+            List<Runnable> events = new ArrayList<Runnable>();
+            for (GameObserver observer : observers) {
+                events.add(new GestureThrownEvent(observer, player, gesture));
+            }
+            sendConcurrentEvents(events, new ArrayList<RefereeListener>(observers));
         }
-        sendConcurrentEvents(events);
 
-        if (game.isGameFinishReady()) {
-            // In case all the players threw their gestures then the game can finish.
-            // Wake up the RefereeTask from Thread.sleep (by interrupting the referee thread) to finish the game.
-            refereeThread.interrupt();
-        }
+        // When all the players threw their gestures and the observers were notified the game can finish.
+        // Wake up the RefereeTask that is waiting for the throw time limit to finish the game (counting down only
+        // after the notification keeps the executor running until every gesture was announced).
+        allGesturesThrown.countDown();
     }
 
     private void finishGame() throws InterruptedException {
-        // compute the game results
-        GestureComparator comparator = Gesture.getGestureComparator();
-        int loserPlayers = 0;
+        computeResults(game);
+
+        // notify the players and the observers with the game results
+        List<Runnable> events = new ArrayList<Runnable>();
+        List<RefereeListener> recipients = new ArrayList<RefereeListener>();
         for (Player player : game.getPlayers()) {
-            Gesture playerGesture = game.getPlayerGesture(player);
+            events.add(new GameFinishedEvent(player, game));
+            recipients.add(player);
+        }
+        if (broadcast != null) {
+            broadcast.publish(new ObserverBroadcast.FinishNotice(game));
+            broadcast.close(); // the executor terminates after the audience received the results
+        } else {
+            for (GameObserver observer : observers) {
+                events.add(new GameFinishedEvent(observer, game));
+                recipients.add(observer);
+            }
+        }
+        sendConcurrentEvents(events, recipients);
+        for (RefereeMonitor monitor : monitors) {
+            monitor.gameFinished(game);
+        }
+    }
 
+    /**
+     * Compute the results of a finished game from the thrown gestures.
+     *
+     * <p>The result of a player depends only on its gesture and on which gestures the opponents threw, so the results
+     * are computed once per gesture (and for no gesture) from the gesture counts, in linear time for large games.
+     */
+    // package private
+    static void computeResults(GameImpl game) {
+        GestureComparator comparator = Gesture.getGestureComparator();
+        Gesture[] gestures = game.getPlayerGestures();
+        int[] counts = new int[GESTURES.length + 1]; // by gesture code: 0 for no gesture, ordinal + 1 otherwise
+        for (Gesture gesture : gestures) {
+            counts[code(gesture)]++;
+        }
+
+        GameResult[] resultsByCode = new GameResult[counts.length];
+        int loserPlayers = 0;
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] == 0) {
+                continue;
+            }
+            Gesture playerGesture = code == 0 ? null : GESTURES[code - 1];
             boolean oneWin = false;
             boolean oneLoss = false;
-            for (Player opponent : game.getPlayers()) {
-                if (player.equals(opponent)) {
+            for (int opponentCode = 0; opponentCode < counts.length; opponentCode++) {
+                int opponents = counts[opponentCode] - (opponentCode == code ? 1 : 0); // the players are unique
+                if (opponents == 0) {
                     continue;
                 }
-                Gesture opponentGesture = game.getPlayerGesture(opponent);
-                if (comparator.compare(playerGesture, opponentGesture) > 0) {
+                Gesture opponentGesture = opponentCode == 0 ? null : GESTURES[opponentCode - 1];
+                int comparison = comparator.compare(playerGesture, opponentGesture);
+                if (comparison > 0) {
                     oneWin = true;
-                } else if (comparator.compare(playerGesture, opponentGesture) < 0) {
+                } else if (comparison < 0) {
                     oneLoss = true;
                 }
             }
             if (oneLoss) {
-                game.setPlayerResult(player, GameResult.LOSS);
-                loserPlayers++;
+                resultsByCode[code] = GameResult.LOSS;
+                loserPlayers += counts[code];
             } else if (oneWin) {
-                game.setPlayerResult(player, GameResult.WIN);
+                resultsByCode[code] = GameResult.WIN;
             } else {
-                game.setPlayerResult(player, GameResult.TIE);
+                resultsByCode[code] = GameResult.TIE;
             }
         }
-        if (loserPlayers == game.getPlayers().size()) { // all players lost the game so it is a tie for everybody
-            for (Player player : game.getPlayers()) {
-                game.setPlayerResult(player, GameResult.TIE);
-            }
+        boolean allLost = loserPlayers == gestures.length; // so it is a tie for everybody
+        GameResult[] results = new GameResult[gestures.length];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = allLost ? GameResult.TIE : resultsByCode[code(gestures[i])];
         }
+        game.setPlayerResults(results);
+    }
 
-        // notify the players and the observers with the game results
-        List<Runnable> events = new ArrayList<Runnable>();
-        for (Player player : game.getPlayers()) {
-            events.add(new GameFinishedEvent(player, game));
-        }
-        for (GameObserver observer : observers) {
-            events.add(new GameFinishedEvent(observer, game));
-        }
-        sendConcurrentEvents(events);
+    private static int code(@Nullable Gesture gesture) {
+        return gesture == null ? 0 : gesture.ordinal() + 1;
     }
 
     /**
      * Send a list of events concurrently and fairly by not favoring any event recipient.
+     *
+     * @param events the events to send
+     * @param recipients the recipients of the events, in the same order
      */
-    private void sendConcurrentEvents(List<Runnable> events) throws InterruptedException {
+    private void sendConcurrentEvents(List<Runnable> events, List<RefereeListener> recipients)
+            throws InterruptedException {
         // The +1 is because the current thread also needs to synchronize its execution (awaiting for all the threads
         // to be ready before continuing and returning from this method).
         CountDownLatch ready = new CountDownLatch(events.size() + 1);
 
-        for (Runnable event : events) {
+        // the delivery times are measured only when there are monitors to report them to
+        boolean measured = !monitors.isEmpty() && !events.isEmpty();
+        long[] deliveryTimes = measured ? new long[events.size()] : null;
+        CountDownLatch delivered = measured ? new CountDownLatch(events.size()) : null;
+        long sendTime = measured ? System.nanoTime() : 0L;
+
+        for (int i = 0; i < events.size(); i++) {
             // all the submitted tasks to the executor will block awaiting on the CountDownLatch
-            executor.execute(new ConcurrentEvent(event, ready));
+            try {
+                executor.execute(new ConcurrentEvent(events.get(i), ready, deliveryTimes, i, delivered));
+            } catch (RejectedExecutionException e) {
+                // release the submitted tasks: count down the slots of the rejected and unsubmitted events and the
+                // slot of the current thread
+                for (int slot = i; slot <= events.size(); slot++) {
+                    ready.countDown();
+                }
+                throw e;
+            }
         }
         ready.countDown();
         ready.await();
+
+        if (measured) {
+            delivered.await(); // the recipients are already released, this waits only for their timestamps
+            for (RefereeMonitor monitor : monitors) {
+                monitor.eventDelivered(game, recipients, sendTime, deliveryTimes);
+            }
+        }
     }
 
     /**
@@ -245,7 +452,6 @@ public class RefereeImpl implements Referee {
         @Override
         public void run() {
             try {
-                game.setState(GameState.COUNTING);
                 for (int i = game.getCountdownStart(); i >= 0; i--) {
                     sendCountdown(i);
                     if (i > 0) {
@@ -253,18 +459,17 @@ public class RefereeImpl implements Referee {
                     }
                 }
 
-                game.setState(GameState.THROWING);
-                retrievePlayerGestures(Thread.currentThread());
-                try {
-                    Thread.sleep(game.getThrowTimeLimit());
-                } catch (InterruptedException e) {
-                    if (!game.isGameFinishReady()) { // interrupted by stopping the game, quiting
-                        throw e;
-                    }
-                    // interrupted because all the players threw their gestures, can finish the game
+                if (!advance(GameState.COUNTING, GameState.THROWING)) {
+                    return;
                 }
+                retrievePlayerGestures();
+                // returns at the throw deadline or earlier when all the players threw their gestures, interrupted by
+                // stopping the game
+                allGesturesThrown.await(game.getThrowTimeRemaining(), TimeUnit.NANOSECONDS);
 
-                game.setState(GameState.FINISHED);
+                if (!advance(GameState.THROWING, GameState.FINISHED)) {
+                    return;
+                }
                 finishGame();
                 executor.shutdown();
             } catch (InterruptedException e) {
@@ -305,19 +510,18 @@ public class RefereeImpl implements Referee {
 
     private class PlayerGestureRetriever implements Runnable {
         private final Player player;
-        private final Thread refereeThread;
 
-        PlayerGestureRetriever(Player player, Thread refereeThread) {
+        PlayerGestureRetriever(Player player) {
             this.player = player;
-            this.refereeThread = refereeThread;
         }
 
         @Override
         public void run() {
             try {
                 Gesture gesture = player.getPlayerGesture();
+                long arrivalTime = System.nanoTime();
                 if (gesture != null) {
-                    handlePlayerGesture(player, gesture, refereeThread);
+                    handlePlayerGesture(player, gesture, arrivalTime);
                 }
             } catch (InterruptedException e) {
                 // quit task
@@ -325,6 +529,44 @@ public class RefereeImpl implements Referee {
         }
     }
 
+    private class AsyncGestureRequest implements Runnable, GestureCallback {
+        private final AsyncPlayer player;
+        private final AtomicBoolean completed;
+
+        AsyncGestureRequest(AsyncPlayer player) {
+            this.player = player;
+            completed = new AtomicBoolean();
+        }
+
+        @Override
+        public void run() {
+            player.requestPlayerGesture(this);
+        }
+
+        @Override
+        public void complete(@Nullable final Gesture gesture) {
+            final long arrivalTime = System.nanoTime();
+            if (gesture == null || cancellation.isCancelled() || !completed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                // the completing thread (e.g. a network thread) does not wait for the observers to be notified
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            handlePlayerGesture(player, gesture, arrivalTime);
+                        } catch (InterruptedException e) {
+                            // quit task
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // the game is finished or stopped and the gesture is ignored
+            }
+        }
+    }
+
     private static class GestureThrownEvent implements Runnable {
         private final GameObserver listener;
         private final Player player;
@@ -348,19 +590,34 @@ public class RefereeImpl implements Referee {
     private static class ConcurrentEvent implements Runnable {
         private final Runnable event;
         private final CountDownLatch ready;
+        @Nullable private final long[] deliveryTimes; // null when the delivery is not measured
+        private final int index;
+        @Nullable private final CountDownLatch delivered;
 
-        ConcurrentEvent(Runnable event, CountDownLatch ready) {
+        ConcurrentEvent(Runnable event, CountDownLatch ready, @Nullable long[] deliveryTimes, int index,
+                        @Nullable CountDownLatch delivered) {
             this.event = event;
             this.ready = ready;
+            this.deliveryTimes = deliveryTimes;
+            this.index = index;
+            this.delivered = delivered;
         }
 
         @Override
         public void run() {
+            // counted only once running, a task that is rejected or skipped (the game was stopped) is not counted
+            QUEUED_EVENTS.increment();
             ready.countDown();
             try {
                 ready.await(); // await until all other concurrent threads are ready
             } catch (InterruptedException e) { // can happen if the game is stopped
                 return;
+            } finally {
+                QUEUED_EVENTS.add(-1L);
+            }
+            if (deliveryTimes != null) {
+                deliveryTimes[index] = System.nanoTime();
+                delivered.countDown(); // publishes the delivery time
             }
             event.run();
         }
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.game;
+
+import gg.pistol.scissors.player.GameObserver;
+import gg.pistol.scissors.player.Player;
+
+import java.util.List;
+
+/**
+ * Entity that monitors how a referee manages a game (e.g. to journal, trace or measure the game).
+ *
+ * <p>Unlike the {@link RefereeListener}s, the monitors are not part of the game: they are called synchronously by
+ * the referee threads when the events happen, so the implementations should return quickly and should not throw.
+ *
+ * <p>The implementations of this interface should be thread-safe. The monitors interested only in some of the
+ * events can extend {@link RefereeMonitorAdapter}.
+ *
+ * @author Bogdan Pistol
+ */
+public interface RefereeMonitor {
+
+    /**
+     * The referee created the game, it is not started yet.
+     *
+     * @param game
+     */
+    void gameCreated(Game game);
+
+    /**
+     * The referee rejected a request to start the game because the game was already started.
+     *
+     * @param game
+     */
+    void gameAlreadyStarted(Game game);
+
+    /**
+     * The state of the game changed.
+     *
+     * @param game
+     * @param state the new state
+     */
+    void stateChanged(Game game, GameState state);
+
+    /**
+     * The referee sent a count down event to the players and to the observers.
+     *
+     * @param game
+     * @param count
+     */
+    void countdownSent(Game game, int count);
+
+    /**
+     * The referee received the gesture of a player.
+     *
+     * @param game
+     * @param player
+     * @param gesture
+     */
+    void gestureReceived(Game game, Player player, Gesture gesture);
+
+    /**
+     * The referee delivered an event concurrently to a group of recipients. The recipients are released together
+     * (see {@link RefereeImpl}) and the spread of the delivery times shows how fair the delivery was.
+     *
+     * @param game
+     * @param recipients the recipients of the event
+     * @param sendTime when the referee started sending the event ({@link System#nanoTime()}), the time until the
+     *        first delivery is spent waiting for all the recipients to be ready
+     * @param deliveryTimes when every recipient was invoked ({@link System#nanoTime()}), in the order of the
+     *        recipients
+     */
+    void eventDelivered(Game game, List<RefereeListener> recipients, long sendTime, long[] deliveryTimes);
+
+    /**
+     * The referee delivered an event to a shard of a large audience of observers (see {@link RefereeImpl}). The
+     * observers of a shard are invoked one after the other by the worker that owns the shard.
+     *
+     * @param game
+     * @param shard the index of the shard
+     * @param observers the observers of the shard
+     * @param publishTime when the referee published the event ({@link System#nanoTime()})
+     * @param deliveryTimes when every observer of the shard was invoked ({@link System#nanoTime()}), in the order of
+     *        the observers
+     */
+    void broadcastDelivered(Game game, int shard, List<GameObserver> observers, long publishTime,
+                            long[] deliveryTimes);
+
+    /**
+     * The referee computed the results and announced them to the players and to the observers.
+     *
+     * @param game
+     */
+    void gameFinished(Game game);
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.game;
+
+import gg.pistol.scissors.player.GameObserver;
+import gg.pistol.scissors.player.Player;
+
+import java.util.List;
+
+/**
+ * Referee monitor with empty methods, to be extended by the monitors interested only in some of the events.
+ *
+ * @author Bogdan Pistol
+ */
+public abstract class RefereeMonitorAdapter implements RefereeMonitor {
+
+    @Override
+    public void gameCreated(Game game) {
+    }
+
+    @Override
+    public void gameAlreadyStarted(Game game) {
+    }
+
+    @Override
+    public void stateChanged(Game game, GameState state) {
+    }
+
+    @Override
+    public void countdownSent(Game game, int count) {
+    }
+
+    @Override
+    public void gestureReceived(Game game, Player player, Gesture gesture) {
+    }
+
+    @Override
+    public void eventDelivered(Game game, List<RefereeListener> recipients, long sendTime, long[] deliveryTimes) {
+    }
+
+    @Override
+    public void broadcastDelivered(Game game, int shard, List<GameObserver> observers, long publishTime,
+                                   long[] deliveryTimes) {
+    }
+
+    @Override
+    public void gameFinished(Game game) {
+    }
+
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.game;
+
+import gg.pistol.scissors.log.AsyncLogger;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Groups of referee worker threads shared by many games, instead of new threads for every game.
+ *
+ * <p>Every game is assigned to a group by its identifier and the tasks of its referee (see {@link
+ * RefereeImpl#RefereeImpl(int, long, long, java.util.List, java.util.List, java.util.List, RefereeWorkerGroups)})
+ * are run by the threads of that group, so the state of a game is touched by a small set of threads.
+ *
+ * <p>The groups are not bounded pools with run queues. The referee tasks block while the recipients of an event wait
+ * for each other, so a bounded group could deadlock with all its threads waiting for recipients queued behind them.
+ * Instead a task never waits in a queue: it is handed to an idle thread of its group, else to an idle thread of
+ * another group (a stolen task), else to a new thread of its group. The idle threads expire after
+ * {@value #KEEP_ALIVE_SECONDS} seconds. So the stealing only reuses the idle threads when the games are not evenly
+ * spread, it never takes queued work from a busy group, and the number of threads still grows with the number of
+ * blocked tasks, like a cached thread pool split by game.
+ *
+ * <p>The threads, the busy threads, the live games, the run tasks and the stolen tasks of every group show the
+ * imbalance between the groups (see {@link gg.pistol.scissors.metrics.WorkerGroupMetrics}).
+ *
+ * @author Bogdan Pistol
+ */
+@ThreadSafe
+public class RefereeWorkerGroups {
+
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(RefereeWorkerGroups.class.getName());
+
+    static final long KEEP_ALIVE_SECONDS = 60L;
+
+    private final Group[] groups;
+
+    /**
+     * @param groupCount the number of groups
+     */
+    public RefereeWorkerGroups(int groupCount) {
+        if (groupCount <= 0) {
+            throw new IllegalArgumentException("The group count must be positive.");
+        }
+        groups = new Group[groupCount];
+        for (int i = 0; i < groupCount; i++) {
+            groups[i] = new Group(i);
+        }
+    }
+
+    /**
+     * Create the executor of the referee tasks of a game. The executor runs the tasks on the group of the game and
+     * shutting it down does not stop the threads of the group.
+     *
+     * @param gameId the identifier of the game
+     * @param cancellation the cancellation of the tasks of the game
+     * @return the executor of the game
+     */
+    // package private
+    ExecutorService newGameExecutor(long gameId, CancellationToken cancellation) {
+        return new GameExecutor(this, groupOf(gameId), cancellation);
+    }
+
+    /**
+     * @param gameId
+     * @return the group of the game
+     */
+    public int groupOf(long gameId) {
+        return (int) ((gameId & Long.MAX_VALUE) % groups.length);
+    }
+
+    /**
+     * Run a task on the given group, on an idle thread of another group or on a new thread of the given group.
+     */
+    // package private
+    void execute(int group, Runnable task) {
+        Group owner = groups[group];
+        if (owner.handoff.offer(task)) {
+            return;
+        }
+        for (int i = 1; i < groups.length; i++) {
+            Group thief = groups[(group + i) % groups.length];
+            if (thief.handoff.offer(task)) {
+                thief.stolen.incrementAndGet();
+                return;
+            }
+        }
+        owner.spawn(task);
+    }
+
+    void gameStarted(int group) {
+        groups[group].games.incrementAndGet();
+    }
+
+    void gameTerminated(int group) {
+        groups[group].games.decrementAndGet();
+    }
+
+    public int getGroupCount() {
+        return groups.length;
+    }
+
+    /**
+     * @param group
+     * @return the number of threads of the group
+     */
+    public int getThreadCount(int group) {
+        return groups[group].threads.get();
+    }
+
+    /**
+     * @param group
+     * @return the number of threads of the group that are running a task
+     */
+    public int getBusyCount(int group) {
+        return groups[group].busy.get();
+    }
+
+    /**
+     * @param group
+     * @return the number of games of the group that are not finished or stopped
+     */
+    public int getGameCount(int group) {
+        return groups[group].games.get();
+    }
+
+    /**
+     * @param group
+     * @return the number of tasks run by the threads of the group (including the stolen ones)
+     */
+    public long getTaskCount(int group) {
+        return groups[group].tasks.get();
+    }
+
+    /**
+     * @param group
+     * @return the number of tasks of other groups run by the threads of the group
+     */
+    public long getStolenCount(int group) {
+        return groups[group].stolen.get();
+    }
+
+    private static final class Group {
+        private final int index;
+        private final SynchronousQueue<Runnable> handoff; // the idle threads wait here for tasks
+        private final AtomicInteger threads;
+        private final AtomicInteger busy;
+        private final AtomicInteger games;
+        private final AtomicLong tasks;
+        private final AtomicLong stolen;
+        private final AtomicInteger threadSequence;
+
+        Group(int index) {
+            this.index = index;
+            handoff = new SynchronousQueue<Runnable>();
+            threads = new AtomicInteger();
+            busy = new AtomicInteger();
+            games = new AtomicInteger();
+            tasks = new AtomicLong();
+            stolen = new AtomicLong();
+            threadSequence = new AtomicInteger();
+        }
+
+        void spawn(Runnable firstTask) {
+            threads.incrementAndGet();
+            Thread thread = RefereeImpl.THREAD_FACTORY.newThread(new Worker(this, firstTask));
+            thread.setName("referee-" + index + "-" + threadSequence.incrementAndGet());
+            thread.setDaemon(true); // the idle threads do not keep the application running
+            thread.start();
+        }
+    }
+
+    private static final class Worker implements Runnable {
+        private final Group group;
+        private Runnable task;
+
+        Worker(Group group, Runnable firstTask) {
+            this.group = group;
+            task = firstTask;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (task != null) {
+                    group.busy.incrementAndGet();
+                    group.tasks.incrementAndGet();
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        LOG.log(Level.WARNING, "Referee task failed in the group {}: {}", group.index, e);
+                    } finally {
+                        group.busy.decrementAndGet();
+                    }
+                    task = null;
+                    try {
+                        task = group.handoff.poll(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        // a late interrupt of a stopped game, keep waiting for tasks
+                        task = group.handoff.poll();
+                    }
+                }
+            } finally {
+                group.threads.decrementAndGet();
+            }
+        }
+    }
+
+}
@@ -20,6 +20,7 @@ import gg.pistol.scissors.game.GameAlreadyStartedException;
 import gg.pistol.scissors.game.Gesture;
 import gg.pistol.scissors.game.Referee;
 import gg.pistol.scissors.game.RefereeImpl;
+import gg.pistol.scissors.game.RefereeMonitor;
 import gg.pistol.scissors.player.GameObserver;
 import gg.pistol.scissors.player.Player;
 import gg.pistol.scissors.player.RandomComputerPlayer;
@@ -29,7 +30,10 @@ import javax.annotation.Nullable;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Random;
 
 /**
@@ -40,6 +44,7 @@ import java.util.Random;
 public class GameDialog extends JDialog implements GameObserver {
 
     private final Random random = new Random();
+    private final List<RefereeMonitor> monitors;
 
     private JLabel player1Name;
     private JLabel player1Gesture;
@@ -58,7 +63,18 @@ public class GameDialog extends JDialog implements GameObserver {
     @Nullable private Player player2;
 
     public GameDialog() {
+        this(Collections.<RefereeMonitor>emptyList());
+    }
+
+    /**
+     * @param monitors the monitors of the referees of the games
+     */
+    public GameDialog(List<RefereeMonitor> monitors) {
         super((Window) null);
+        if (monitors == null) {
+            throw new NullPointerException("The monitors are null.");
+        }
+        this.monitors = new ArrayList<RefereeMonitor>(monitors);
         setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
         setLayout(new BorderLayout());
 
@@ -237,7 +253,8 @@ public class GameDialog extends JDialog implements GameObserver {
 
         player1Name.setText(player1.getName());
         player2Name.setText(player2.getName());
-        referee = new RefereeImpl(2, 1000L, 2000L, Arrays.<Player>asList(player1, player2), Arrays.<GameObserver>asList(this));
+        referee = new RefereeImpl(2, 1000L, 2000L, Arrays.<Player>asList(player1, player2), Arrays.<GameObserver>asList(this),
+                monitors);
 
         try {
             referee.startGame();
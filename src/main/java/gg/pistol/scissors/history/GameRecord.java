@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.history;
+
+import gg.pistol.scissors.game.GameResult;
+import gg.pistol.scissors.game.Gesture;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.util.Arrays;
+
+/**
+ * Immutable snapshot of a finished game: the participating players (by their {@link
+ * gg.pistol.scissors.player.PlayerDirectory} identifier), their gestures, results and throw timestamps.
+ *
+ * @author Bogdan Pistol
+ */
+@Immutable
+public final class GameRecord {
+
+    /**
+     * Throw timestamp used for the players that did not throw a gesture.
+     */
+    public static final long NO_THROW = -1L;
+
+    private final long gameId;
+    private final long finishTime; // millis since the epoch
+    private final int[] playerIds;
+    private final Gesture[] gestures;
+    private final GameResult[] results;
+    private final long[] throwTimes; // millis since the epoch
+
+    /**
+     * @param gameId the identifier of the game
+     * @param finishTime when the game finished in millis since the epoch
+     * @param playerIds the identifiers of the players
+     * @param gestures the gestures of the players (null for the players that did not throw)
+     * @param results the results of the players
+     * @param throwTimes when the players threw in millis since the epoch ({@link #NO_THROW} if they did not throw)
+     */
+    public GameRecord(long gameId, long finishTime, int[] playerIds, Gesture[] gestures, GameResult[] results,
+                      long[] throwTimes) {
+        if (playerIds == null || gestures == null || results == null || throwTimes == null) {
+            throw new NullPointerException("The playerIds or/and gestures or/and results or/and throwTimes are null.");
+        }
+        if (gestures.length != playerIds.length || results.length != playerIds.length ||
+                throwTimes.length != playerIds.length) {
+            throw new IllegalArgumentException("The arrays do not have the same length.");
+        }
+        for (GameResult result : results) {
+            if (result == null) {
+                throw new NullPointerException("A result is null.");
+            }
+        }
+        this.gameId = gameId;
+        this.finishTime = finishTime;
+        this.playerIds = playerIds.clone();
+        this.gestures = gestures.clone();
+        this.results = results.clone();
+        this.throwTimes = throwTimes.clone();
+    }
+
+    public long getGameId() {
+        return gameId;
+    }
+
+    /**
+     * @return when the game finished in millis since the epoch
+     */
+    public long getFinishTime() {
+        return finishTime;
+    }
+
+    public int getPlayerCount() {
+        return playerIds.length;
+    }
+
+    public int getPlayerId(int index) {
+        return playerIds[index];
+    }
+
+    /**
+     * @param index the index of the player in the record
+     * @return the gesture of the player or null in case the player did not throw
+     */
+    @Nullable
+    public Gesture getGesture(int index) {
+        return gestures[index];
+    }
+
+    public GameResult getResult(int index) {
+        return results[index];
+    }
+
+    /**
+     * @param index the index of the player in the record
+     * @return when the player threw in millis since the epoch or {@link #NO_THROW}
+     */
+    public long getThrowTime(int index) {
+        return throwTimes[index];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof GameRecord)) return false;
+
+        GameRecord that = (GameRecord) o;
+
+        if (gameId != that.gameId) return false;
+        if (finishTime != that.finishTime) return false;
+        if (!Arrays.equals(playerIds, that.playerIds)) return false;
+        if (!Arrays.equals(gestures, that.gestures)) return false;
+        if (!Arrays.equals(results, that.results)) return false;
+        if (!Arrays.equals(throwTimes, that.throwTimes)) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (gameId ^ (gameId >>> 32));
+        result = 31 * result + (int) (finishTime ^ (finishTime >>> 32));
+        result = 31 * result + Arrays.hashCode(playerIds);
+        result = 31 * result + Arrays.hashCode(gestures);
+        result = 31 * result + Arrays.hashCode(results);
+        result = 31 * result + Arrays.hashCode(throwTimes);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "GameRecord{" +
+                "gameId=" + gameId +
+                ", finishTime=" + finishTime +
+                ", playerIds=" + Arrays.toString(playerIds) +
+                ", gestures=" + Arrays.toString(gestures) +
+                ", results=" + Arrays.toString(results) +
+                ", throwTimes=" + Arrays.toString(throwTimes) +
+                '}';
+    }
+
+}
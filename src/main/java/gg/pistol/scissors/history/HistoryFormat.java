@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.history;
+
+import gg.pistol.scissors.game.GameResult;
+import gg.pistol.scissors.game.Gesture;
+import gg.pistol.scissors.player.PlayerDirectory;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The binary layout of the game history files.
+ *
+ * <p>The history is a directory of segment files named <code>history-NNNNNNNNNN.seg</code> and a
+ * <code>players.dat</code> file holding the names of the players in identifier order (as modified UTF-8 strings).
+ *
+ * <p>Every segment has a fixed size and starts with a header (magic, version, segment index) that has the same width
+ * as a record. After the header there are fixed-width records, one for every player of a game, with the records of
+ * a game being contiguous and never split across segments. The record layout (big endian) is:
+ * <pre>
+ * offset  size  field
+ *  0      8     game id
+ *  8      8     game finish time (millis since the epoch)
+ * 16      8     player throw time (millis since the epoch or -1)
+ * 24      4     player id
+ * 28      1     gesture ordinal (or -1 when the player did not throw)
+ * 29      1     result ordinal
+ * 30      1     flags (present, last record of the game)
+ * 31      1     reserved
+ * </pre>
+ * The unused tail of a segment is zero filled, so the first record without the present flag marks the end of data.
+ *
+ * @author Bogdan Pistol
+ */
+// package private
+final class HistoryFormat {
+
+    static final int MAGIC = 0x52505348; // "RPSH"
+    static final int VERSION = 1;
+
+    static final int RECORD_SIZE = 32;
+    static final int HEADER_SIZE = RECORD_SIZE;
+
+    static final int FLAGS_OFFSET = 30;
+    static final byte FLAG_PRESENT = 1;
+    static final byte FLAG_LAST = 2;
+
+    static final String PLAYERS_FILE = "players.dat";
+    private static final String SEGMENT_PREFIX = "history-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private static final Gesture[] GESTURES = Gesture.values();
+    private static final GameResult[] RESULTS = GameResult.values();
+
+    private HistoryFormat() {
+    }
+
+    static File segmentFile(File directory, long index) {
+        return new File(directory, String.format("%s%010d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * @return the segment files of the directory ordered by their index
+     */
+    static File[] listSegments(File directory) throws IOException {
+        File[] segments = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        if (segments == null) {
+            throw new IOException("Cannot list the directory " + directory);
+        }
+        Arrays.sort(segments); // the zero padded index keeps the lexicographic order equal to the numeric order
+        return segments;
+    }
+
+    static long segmentIndex(File segment) {
+        String name = segment.getName();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    static void writeHeader(ByteBuffer buffer, long segmentIndex) {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(8, segmentIndex);
+    }
+
+    static void checkHeader(ByteBuffer buffer, File segment) throws IOException {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("The file is not a history segment: " + segment);
+        }
+    }
+
+    /**
+     * Write the record of the player with the given index from the game record at the buffer position.
+     */
+    static void writeRecord(ByteBuffer buffer, int position, GameRecord record, int index) {
+        Gesture gesture = record.getGesture(index);
+        boolean last = index == record.getPlayerCount() - 1;
+
+        buffer.putLong(position, record.getGameId());
+        buffer.putLong(position + 8, record.getFinishTime());
+        buffer.putLong(position + 16, record.getThrowTime(index));
+        buffer.putInt(position + 24, record.getPlayerId(index));
+        buffer.put(position + 28, (byte) (gesture != null ? gesture.ordinal() : -1));
+        buffer.put(position + 29, (byte) record.getResult(index).ordinal());
+        buffer.put(position + FLAGS_OFFSET, (byte) (FLAG_PRESENT | (last ? FLAG_LAST : 0)));
+    }
+
+    static boolean isPresent(ByteBuffer buffer, int position) {
+        return (buffer.get(position + FLAGS_OFFSET) & FLAG_PRESENT) != 0;
+    }
+
+    static boolean isLast(ByteBuffer buffer, int position) {
+        return (buffer.get(position + FLAGS_OFFSET) & FLAG_LAST) != 0;
+    }
+
+    static long readGameId(ByteBuffer buffer, int position) {
+        return buffer.getLong(position);
+    }
+
+    static long readFinishTime(ByteBuffer buffer, int position) {
+        return buffer.getLong(position + 8);
+    }
+
+    static long readThrowTime(ByteBuffer buffer, int position) {
+        return buffer.getLong(position + 16);
+    }
+
+    static int readPlayerId(ByteBuffer buffer, int position) {
+        return buffer.getInt(position + 24);
+    }
+
+    @Nullable
+    static Gesture readGesture(ByteBuffer buffer, int position) {
+        byte ordinal = buffer.get(position + 28);
+        return ordinal >= 0 ? GESTURES[ordinal] : null;
+    }
+
+    static GameResult readResult(ByteBuffer buffer, int position) {
+        return RESULTS[buffer.get(position + 29)];
+    }
+
+    /**
+     * Load the player names into the directory. A partially written name at the end of the file (e.g. because
+     * the process crashed) is ignored.
+     *
+     * @return the length of the file content that was loaded
+     */
+    static long loadPlayers(RandomAccessFile playersFile, PlayerDirectory directory) throws IOException {
+        byte[] content = new byte[(int) playersFile.length()];
+        playersFile.seek(0);
+        playersFile.readFully(content);
+
+        ByteArrayInputStream bytes = new ByteArrayInputStream(content);
+        DataInputStream in = new DataInputStream(bytes);
+        long loaded = 0;
+        while (bytes.available() > 0) {
+            String name;
+            try {
+                name = in.readUTF();
+            } catch (EOFException e) {
+                break;
+            }
+            if (directory.getId(name) != directory.size() - 1) {
+                throw new IOException("Duplicate player name in the history: " + name);
+            }
+            loaded = content.length - bytes.available();
+        }
+        return loaded;
+    }
+
+}
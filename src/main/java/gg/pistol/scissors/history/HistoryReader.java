@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.history;
+
+import gg.pistol.scissors.game.GameResult;
+import gg.pistol.scissors.game.Gesture;
+import gg.pistol.scissors.player.PlayerDirectory;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Sequential reader of the game history written by {@link HistoryWriter}.
+ *
+ * <p>The games are returned in the order they were written. An incomplete game at the end of the history
+ * (e.g. because the writer crashed) is not returned.
+ *
+ * @author Bogdan Pistol
+ */
+@NotThreadSafe
+public class HistoryReader implements Closeable {
+
+    private final File[] segments;
+    private final PlayerDirectory playerDirectory;
+    private int segmentPosition; // the index of the current segment in the segments array
+    @Nullable private MappedByteBuffer segment;
+    private int position;
+
+    /**
+     * @param directory the directory of the history
+     * @throws IOException
+     */
+    public HistoryReader(File directory) throws IOException {
+        if (directory == null) {
+            throw new NullPointerException("The directory is null.");
+        }
+        segments = HistoryFormat.listSegments(directory);
+        playerDirectory = new PlayerDirectory();
+        File players = new File(directory, HistoryFormat.PLAYERS_FILE);
+        if (players.exists()) {
+            RandomAccessFile playersFile = new RandomAccessFile(players, "r");
+            try {
+                HistoryFormat.loadPlayers(playersFile, playerDirectory);
+            } finally {
+                playersFile.close();
+            }
+        }
+        segmentPosition = -1;
+    }
+
+    /**
+     * Read the next game.
+     *
+     * @return the next game or null in case there are no more games
+     * @throws IOException
+     */
+    @Nullable
+    public GameRecord next() throws IOException {
+        for (;;) {
+            if (segment == null || position + HistoryFormat.RECORD_SIZE > segment.capacity() ||
+                    !HistoryFormat.isPresent(segment, position)) {
+                if (!nextSegment()) {
+                    return null;
+                }
+                continue;
+            }
+            int end = position;
+            while (!HistoryFormat.isLast(segment, end)) {
+                end += HistoryFormat.RECORD_SIZE;
+                if (end + HistoryFormat.RECORD_SIZE > segment.capacity() || !HistoryFormat.isPresent(segment, end)) {
+                    // incomplete game: continue with the next segment
+                    position = segment.capacity();
+                    end = -1;
+                    break;
+                }
+            }
+            if (end < 0) {
+                continue;
+            }
+            GameRecord record = readGame(position, (end - position) / HistoryFormat.RECORD_SIZE + 1);
+            position = end + HistoryFormat.RECORD_SIZE;
+            return record;
+        }
+    }
+
+    private GameRecord readGame(int start, int playerCount) {
+        int[] playerIds = new int[playerCount];
+        Gesture[] gestures = new Gesture[playerCount];
+        GameResult[] results = new GameResult[playerCount];
+        long[] throwTimes = new long[playerCount];
+        int p = start;
+        for (int i = 0; i < playerCount; i++) {
+            playerIds[i] = HistoryFormat.readPlayerId(segment, p);
+            gestures[i] = HistoryFormat.readGesture(segment, p);
+            results[i] = HistoryFormat.readResult(segment, p);
+            throwTimes[i] = HistoryFormat.readThrowTime(segment, p);
+            p += HistoryFormat.RECORD_SIZE;
+        }
+        return new GameRecord(HistoryFormat.readGameId(segment, start), HistoryFormat.readFinishTime(segment, start),
+                playerIds, gestures, results, throwTimes);
+    }
+
+    private boolean nextSegment() throws IOException {
+        segment = null;
+        while (++segmentPosition < segments.length) {
+            File file = segments[segmentPosition];
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+                HistoryFormat.checkHeader(buffer, file);
+                if (buffer.capacity() >= HistoryFormat.HEADER_SIZE + HistoryFormat.RECORD_SIZE) {
+                    segment = buffer;
+                    position = HistoryFormat.HEADER_SIZE;
+                    return true;
+                }
+            } finally {
+                raf.close();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the player names of the history by their identifier
+     */
+    public PlayerDirectory getPlayerDirectory() {
+        return playerDirectory;
+    }
+
+    @Override
+    public void close() {
+        segment = null;
+        segmentPosition = segments.length;
+    }
+
+}
@@ -0,0 +1,399 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.history;
+
+import gg.pistol.scissors.game.Game;
+import gg.pistol.scissors.game.GameResult;
+import gg.pistol.scissors.game.Gesture;
+import gg.pistol.scissors.player.GameObserver;
+import gg.pistol.scissors.player.Player;
+import gg.pistol.scissors.player.PlayerDirectory;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Appends every finished game to a persistent binary history (see {@link HistoryFormat} for the layout).
+ *
+ * <p>The referee threads only take a snapshot of the finished game and enqueue it, they never wait for the disk.
+ * A background thread drains the queue in batches, writes the records into the current memory-mapped segment
+ * (rolling to a new segment when the current one is full) and forces each batch to the disk with a single sync
+ * (group commit). When the queue is full the games are dropped and counted instead of blocking the referee.
+ *
+ * <p>The games are recorded through the observers created by {@link #newGameObserver()}, one for every game. An
+ * observer keeps the throw timestamps of its own game only (taken when the gestures are announced to it), so the
+ * timestamps of a game that is stopped before finishing are discarded together with its observer.
+ *
+ * <p>Opening a directory that already contains a history continues it after the last complete game.
+ *
+ * @author Bogdan Pistol
+ */
+@ThreadSafe
+public class HistoryWriter implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(HistoryWriter.class.getName());
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    public static final int DEFAULT_QUEUE_CAPACITY = 64 * 1024;
+    private static final int MAX_BATCH_SIZE = 4096; // the maximum number of games in a group commit
+
+    /**
+     * Marker enqueued by {@link #close()} to stop the background writer.
+     */
+    private static final GameRecord END_OF_HISTORY = new GameRecord(-1L, -1L, new int[0], new Gesture[0],
+            new GameResult[0], new long[0]);
+
+    private final int segmentSize;
+    private final PlayerDirectory playerDirectory;
+    private final BlockingQueue<GameRecord> queue;
+    private final ExecutorService executor;
+    private final AtomicLong writtenGames;
+    private final AtomicLong droppedGames;
+    private final AtomicLong commits;
+    private volatile boolean closed;
+
+    // confined to the background writer after the constructor returns
+    private final File directory;
+    private final RandomAccessFile playersFile;
+    private int persistedPlayers;
+    private long segmentIndex;
+    private MappedByteBuffer segment;
+    private int position;
+
+    /**
+     * Open the history with the default segment size and queue capacity.
+     *
+     * @param directory the directory of the history (created if missing)
+     * @throws IOException
+     */
+    public HistoryWriter(File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param directory the directory of the history (created if missing)
+     * @param segmentSize the size in bytes of a segment file
+     * @param queueCapacity how many finished games can wait to be written before new games are dropped
+     * @throws IOException
+     */
+    public HistoryWriter(File directory, int segmentSize, int queueCapacity) throws IOException {
+        if (directory == null) {
+            throw new NullPointerException("The directory is null.");
+        }
+        if (segmentSize < HistoryFormat.HEADER_SIZE + HistoryFormat.RECORD_SIZE) {
+            throw new IllegalArgumentException("The segment size is too small.");
+        }
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("The queue capacity must be positive.");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create the directory " + directory);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize - segmentSize % HistoryFormat.RECORD_SIZE;
+        playerDirectory = new PlayerDirectory();
+        queue = new ArrayBlockingQueue<GameRecord>(queueCapacity);
+        writtenGames = new AtomicLong();
+        droppedGames = new AtomicLong();
+        commits = new AtomicLong();
+
+        playersFile = new RandomAccessFile(new File(directory, HistoryFormat.PLAYERS_FILE), "rw");
+        try {
+            long loaded = HistoryFormat.loadPlayers(playersFile, playerDirectory);
+            playersFile.setLength(loaded);
+            playersFile.seek(loaded);
+            persistedPlayers = playerDirectory.size();
+            openLastSegment();
+        } catch (IOException e) {
+            playersFile.close();
+            throw e;
+        }
+
+        executor = Executors.newSingleThreadExecutor();
+        executor.execute(new WriterTask());
+    }
+
+    /**
+     * Continue the last segment after its last complete game or create the first segment.
+     */
+    private void openLastSegment() throws IOException {
+        File[] segments = HistoryFormat.listSegments(directory);
+        if (segments.length == 0) {
+            createSegment(0L);
+            return;
+        }
+        File last = segments[segments.length - 1];
+        segmentIndex = HistoryFormat.segmentIndex(last);
+        segment = map(last, (int) last.length());
+        HistoryFormat.checkHeader(segment, last);
+
+        position = HistoryFormat.HEADER_SIZE;
+        int end = position;
+        while (end + HistoryFormat.RECORD_SIZE <= segment.capacity() && HistoryFormat.isPresent(segment, end)) {
+            boolean lastOfGame = HistoryFormat.isLast(segment, end);
+            end += HistoryFormat.RECORD_SIZE;
+            if (lastOfGame) {
+                position = end;
+            }
+        }
+        // discard the incomplete game that was being written when the previous writer stopped
+        for (int i = position; i < end; i++) {
+            segment.put(i, (byte) 0);
+        }
+        segment.force();
+    }
+
+    private void createSegment(long index) throws IOException {
+        segmentIndex = index;
+        segment = map(HistoryFormat.segmentFile(directory, index), segmentSize);
+        HistoryFormat.writeHeader(segment, index);
+        position = HistoryFormat.HEADER_SIZE;
+    }
+
+    private static MappedByteBuffer map(File file, int size) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(size);
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size); // stays valid after closing
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Create the observer that records a game in this history when the game finishes. Every game needs its own
+     * observer.
+     *
+     * @return the observer of a single game
+     */
+    public GameObserver newGameObserver() {
+        return new GameHistory();
+    }
+
+    /**
+     * Enqueue the snapshot of a finished game.
+     */
+    private void enqueue(Game game, Map<Player, Long> throwTimes) {
+        List<Player> players = game.getPlayers();
+        int count = players.size();
+        int[] playerIds = new int[count];
+        Gesture[] gestures = new Gesture[count];
+        GameResult[] results = new GameResult[count];
+        long[] times = new long[count];
+        for (int i = 0; i < count; i++) {
+            Player player = players.get(i);
+            Long throwTime = throwTimes.get(player);
+            playerIds[i] = playerDirectory.getId(player);
+            gestures[i] = game.getPlayerGesture(player);
+            results[i] = game.getPlayerResult(player);
+            times[i] = throwTime != null ? throwTime : GameRecord.NO_THROW;
+            if (results[i] == null) {
+                throw new IllegalStateException("The game is not finished.");
+            }
+        }
+        GameRecord record = new GameRecord(game.getId(), System.currentTimeMillis(), playerIds, gestures, results,
+                times);
+
+        if (closed || !queue.offer(record)) {
+            droppedGames.incrementAndGet();
+            if (LOG.isLoggable(Level.WARNING)) {
+                LOG.warning("Dropped the history of the game " + game.getId());
+            }
+        }
+    }
+
+    /**
+     * Write all the enqueued games and close the history files.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            // the writer could have already stopped because of an I/O error, in that case nobody drains the queue
+            while (!queue.offer(END_OF_HISTORY, 100L, TimeUnit.MILLISECONDS) && !executor.isTerminated()) {
+                // retry until the writer makes room
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        } finally {
+            playersFile.close();
+        }
+    }
+
+    /**
+     * @return the directory assigning the player identifiers stored in the history
+     */
+    public PlayerDirectory getPlayerDirectory() {
+        return playerDirectory;
+    }
+
+    /**
+     * @return the number of games written and committed to the disk
+     */
+    public long getWrittenGameCount() {
+        return writtenGames.get();
+    }
+
+    /**
+     * @return the number of games that were not written because the queue was full or the writer was closed
+     */
+    public long getDroppedGameCount() {
+        return droppedGames.get();
+    }
+
+    /**
+     * @return the number of group commits
+     */
+    public long getCommitCount() {
+        return commits.get();
+    }
+
+    /**
+     * @return true if the game was written, false if it was dropped because it does not fit in a segment
+     */
+    private boolean write(GameRecord record) throws IOException {
+        int size = record.getPlayerCount() * HistoryFormat.RECORD_SIZE;
+        if (size > segmentSize - HistoryFormat.HEADER_SIZE) {
+            droppedGames.incrementAndGet();
+            if (LOG.isLoggable(Level.WARNING)) {
+                LOG.warning("The game " + record.getGameId() + " does not fit in a history segment");
+            }
+            return false;
+        }
+        if (position + size > segment.capacity()) {
+            segment.force();
+            createSegment(segmentIndex + 1);
+        }
+        for (int i = 0; i < record.getPlayerCount(); i++) {
+            HistoryFormat.writeRecord(segment, position, record, i);
+            position += HistoryFormat.RECORD_SIZE;
+        }
+        return true;
+    }
+
+    /**
+     * Make the batch durable: the new player names first (the records refer to them) and then the records.
+     */
+    private void commit(int games) throws IOException {
+        int players = playerDirectory.size();
+        if (players > persistedPlayers) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            for (int id = persistedPlayers; id < players; id++) {
+                out.writeUTF(playerDirectory.getName(id));
+            }
+            out.flush();
+            playersFile.write(bytes.toByteArray());
+            playersFile.getChannel().force(false);
+            persistedPlayers = players;
+        }
+        segment.force();
+        writtenGames.addAndGet(games);
+        commits.incrementAndGet();
+    }
+
+    /**
+     * Observer of a single game keeping the throw timestamps of its players until the game finishes.
+     */
+    private class GameHistory implements GameObserver {
+        private final ConcurrentMap<Player, Long> throwTimes = new ConcurrentHashMap<Player, Long>();
+
+        @Override
+        public void countdown(int count) {
+        }
+
+        @Override
+        public void gestureThrown(Player player, Gesture gesture) {
+            if (player == null) {
+                throw new NullPointerException("The player is null.");
+            }
+            throwTimes.put(player, System.currentTimeMillis());
+        }
+
+        @Override
+        public void gameFinished(Game game) {
+            if (game == null) {
+                throw new NullPointerException("The game is null.");
+            }
+            enqueue(game, throwTimes);
+        }
+    }
+
+    /**
+     * Background task writing the enqueued games in batches.
+     */
+    private class WriterTask implements Runnable {
+        @Override
+        public void run() {
+            List<GameRecord> batch = new ArrayList<GameRecord>(MAX_BATCH_SIZE);
+            boolean end = false;
+            try {
+                while (!end) {
+                    batch.add(queue.take());
+                    queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+
+                    int games = 0;
+                    for (GameRecord record : batch) {
+                        if (record == END_OF_HISTORY) {
+                            end = true;
+                        } else if (write(record)) {
+                            games++;
+                        }
+                    }
+                    batch.clear();
+                    commit(games);
+                }
+            } catch (InterruptedException e) {
+                // quit task
+            } catch (IOException e) {
+                if (LOG.isLoggable(Level.SEVERE)) {
+                    LOG.log(Level.SEVERE, "Cannot write the game history in " + directory, e);
+                }
+                closed = true;
+                executor.shutdown();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.io;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Variable-length encoding of integers: 7 bits per byte, least significant group first, with the high bit set on
+ * all the bytes except the last one. Small values take less space (e.g. values below 128 take one byte).
+ *
+ * <p>The signed values that can be negative should be zigzag encoded first (see {@link #zigzag(long)}) so that
+ * small negative values are small too.
+ *
+ * @author Bogdan Pistol
+ */
+public final class Varints {
+
+    /**
+     * The maximum number of bytes of an encoded long.
+     */
+    public static final int MAX_LONG_SIZE = 10;
+
+    private Varints() {
+    }
+
+    public static void putInt(ByteBuffer buffer, int value) {
+        putLong(buffer, value & 0xFFFFFFFFL);
+    }
+
+    public static void putLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    public static int getInt(ByteBuffer buffer) {
+        long value = getLong(buffer);
+        if ((value >>> 32) != 0) {
+            throw new IllegalArgumentException("The value does not fit in an int.");
+        }
+        return (int) value;
+    }
+
+    public static long getLong(ByteBuffer buffer) {
+        long value = 0L;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (!buffer.hasRemaining()) {
+                throw new BufferUnderflowException();
+            }
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed variable-length value.");
+    }
+
+    /**
+     * @return the number of bytes of the encoded value
+     */
+    public static int size(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * Map the signed values to unsigned values: 0, -1, 1, -2, 2... become 0, 1, 2, 3, 4...
+     */
+    public static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    public static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+}
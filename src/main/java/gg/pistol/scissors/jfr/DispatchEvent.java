@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A referee delivered an event concurrently to its recipients.
+ *
+ * @author Bogdan Pistol
+ */
+@Name("gg.pistol.scissors.Dispatch")
+@Label("Event Dispatch")
+@Category("Scissors")
+@Description("A referee delivered an event concurrently to its recipients.")
+@StackTrace(false)
+// package private
+class DispatchEvent extends Event {
+
+    @Label("Game Id")
+    long gameId;
+
+    @Label("Recipients")
+    int recipients;
+
+    @Label("Barrier Wait")
+    @Description("The time from sending the event until the first recipient was invoked.")
+    @Timespan(Timespan.NANOSECONDS)
+    long barrierWait;
+
+    @Label("Skew")
+    @Description("The time between the first and the last recipient being invoked.")
+    @Timespan(Timespan.NANOSECONDS)
+    long skew;
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A game phase, from the state change that started it until the next one.
+ *
+ * @author Bogdan Pistol
+ */
+@Name("gg.pistol.scissors.GamePhase")
+@Label("Game Phase")
+@Category("Scissors")
+@Description("A game phase, from the state change that started it until the next one.")
+@StackTrace(false)
+// package private
+class GamePhaseEvent extends Event {
+
+    @Label("Game Id")
+    long gameId;
+
+    @Label("Phase")
+    String phase;
+
+}
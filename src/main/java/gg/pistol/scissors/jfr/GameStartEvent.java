@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A referee started a game.
+ *
+ * @author Bogdan Pistol
+ */
+@Name("gg.pistol.scissors.GameStart")
+@Label("Game Start")
+@Category("Scissors")
+@Description("A referee started a game.")
+@StackTrace(false)
+// package private
+class GameStartEvent extends Event {
+
+    @Label("Game Id")
+    long gameId;
+
+    @Label("Players")
+    int players;
+
+    @Label("Countdown Start")
+    int countdownStart;
+
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.jfr;
+
+import gg.pistol.scissors.game.Game;
+import gg.pistol.scissors.game.GameState;
+import gg.pistol.scissors.game.Gesture;
+import gg.pistol.scissors.game.RefereeListener;
+import gg.pistol.scissors.game.RefereeMonitorAdapter;
+import gg.pistol.scissors.player.Player;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Monitor that emits Java Flight Recorder events for the games: the start, the counting and throwing phases, every
+ * concurrent event delivery, every received gesture and the finish of the game. The events are emitted by the
+ * referee threads and carry the game identifier, so the activity of the threads can be correlated with the games.
+ *
+ * <p>When the events are not recorded the monitor only checks that they are disabled, nothing is kept for the games.
+ *
+ * <p>This class requires the <code>jdk.jfr</code> API, use {@link JfrSupport#createMonitor()} to create it only on
+ * the virtual machines that have it.
+ *
+ * @author Bogdan Pistol
+ */
+@ThreadSafe
+public class JfrMonitor extends RefereeMonitorAdapter {
+
+    // the events in progress by game identifier
+    private final ConcurrentMap<Long, GamePhaseEvent> phases;
+    private final ConcurrentMap<Long, GameFinishEvent> finishes;
+
+    public JfrMonitor() {
+        phases = new ConcurrentHashMap<Long, GamePhaseEvent>();
+        finishes = new ConcurrentHashMap<Long, GameFinishEvent>();
+    }
+
+    @Override
+    public void stateChanged(Game game, GameState state) {
+        switch (state) {
+            case COUNTING:
+                GameStartEvent start = new GameStartEvent();
+                if (start.shouldCommit()) {
+                    start.gameId = game.getId();
+                    start.players = game.getPlayers().size();
+                    start.countdownStart = game.getCountdownStart();
+                    start.commit();
+                }
+                beginPhase(game, state);
+                break;
+            case THROWING:
+                endPhase(game);
+                beginPhase(game, state);
+                break;
+            case FINISHED:
+                endPhase(game);
+                GameFinishEvent finish = new GameFinishEvent();
+                if (finish.isEnabled()) {
+                    finish.gameId = game.getId();
+                    finish.begin();
+                    finishes.put(game.getId(), finish);
+                }
+                break;
+            case STOPPED:
+                endPhase(game);
+                finishes.remove(game.getId());
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void beginPhase(Game game, GameState state) {
+        GamePhaseEvent phase = new GamePhaseEvent();
+        if (phase.isEnabled()) {
+            phase.gameId = game.getId();
+            phase.phase = state.name();
+            phase.begin();
+            phases.put(game.getId(), phase);
+        }
+    }
+
+    private void endPhase(Game game) {
+        GamePhaseEvent phase = phases.remove(game.getId());
+        if (phase != null) {
+            phase.end();
+            if (phase.shouldCommit()) {
+                phase.commit();
+            }
+        }
+    }
+
+    @Override
+    public void gestureReceived(Game game, Player player, Gesture gesture) {
+        GestureEvent event = new GestureEvent();
+        if (event.shouldCommit()) {
+            event.gameId = game.getId();
+            event.player = player.getName();
+            event.gesture = gesture.name();
+            event.commit();
+        }
+    }
+
+    @Override
+    public void eventDelivered(Game game, List<RefereeListener> recipients, long sendTime, long[] deliveryTimes) {
+        DispatchEvent event = new DispatchEvent();
+        if (event.shouldCommit()) {
+            long first = Long.MAX_VALUE;
+            long last = Long.MIN_VALUE;
+            for (long time : deliveryTimes) {
+                first = Math.min(first, time);
+                last = Math.max(last, time);
+            }
+            event.gameId = game.getId();
+            event.recipients = deliveryTimes.length;
+            event.barrierWait = first - sendTime;
+            event.skew = last - first;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void gameFinished(Game game) {
+        GameFinishEvent finish = finishes.remove(game.getId());
+        if (finish == null) {
+            return;
+        }
+        finish.end();
+        if (finish.shouldCommit()) {
+            List<Player> players = game.getPlayers();
+            finish.players = players.size();
+            for (Player player : players) {
+                if (game.getPlayerGesture(player) == null) {
+                    finish.timedOut++;
+                }
+            }
+            finish.commit();
+        }
+    }
+
+}
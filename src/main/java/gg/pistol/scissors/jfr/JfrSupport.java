@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.jfr;
+
+import gg.pistol.scissors.game.RefereeMonitor;
+
+import javax.annotation.Nullable;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Creates the Java Flight Recorder monitor only on the virtual machines with the <code>jdk.jfr</code> API (Java 11 or
+ * later and Java 8 update 262 or later). This class does not use the API itself, so it can be loaded on any virtual
+ * machine.
+ *
+ * @author Bogdan Pistol
+ */
+public final class JfrSupport {
+
+    private static final Logger LOG = Logger.getLogger(JfrSupport.class.getName());
+
+    private JfrSupport() {
+    }
+
+    /**
+     * @return true in case the virtual machine has the Flight Recorder API
+     */
+    public static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return a {@link JfrMonitor} or null in case the virtual machine does not have the Flight Recorder API
+     */
+    @Nullable
+    public static RefereeMonitor createMonitor() {
+        if (!isAvailable()) {
+            return null;
+        }
+        try {
+            // loaded by name so that the jdk.jfr classes are resolved only here
+            Class<?> monitor = Class.forName(JfrSupport.class.getPackage().getName() + ".JfrMonitor");
+            return (RefereeMonitor) monitor.getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Cannot create the Flight Recorder monitor", e);
+            return null;
+        } catch (LinkageError e) {
+            LOG.log(Level.WARNING, "Cannot create the Flight Recorder monitor", e);
+            return null;
+        }
+    }
+
+}
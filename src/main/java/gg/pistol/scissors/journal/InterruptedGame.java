@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.journal;
+
+import gg.pistol.scissors.game.GameState;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A game that was in progress when the process journaling it stopped. The game cannot be resumed from the middle
+ * (the players would see a different countdown), it should be scheduled again with the same players and settings.
+ *
+ * @author Bogdan Pistol
+ */
+@Immutable
+public final class InterruptedGame {
+
+    private final long gameId;
+    private final List<String> playerNames;
+    private final int countdownStart;
+    private final long timeBetweenCounts;
+    private final long throwTimeLimit;
+    private final GameState state;
+
+    // package private
+    InterruptedGame(long gameId, List<String> playerNames, int countdownStart, long timeBetweenCounts,
+                    long throwTimeLimit, GameState state) {
+        this.gameId = gameId;
+        this.playerNames = Collections.unmodifiableList(new ArrayList<String>(playerNames));
+        this.countdownStart = countdownStart;
+        this.timeBetweenCounts = timeBetweenCounts;
+        this.throwTimeLimit = throwTimeLimit;
+        this.state = state;
+    }
+
+    /**
+     * @return the identifier the game had in the stopped process
+     */
+    public long getGameId() {
+        return gameId;
+    }
+
+    /**
+     * @return the names of the players of the game, the returned list is unmodifiable
+     */
+    public List<String> getPlayerNames() {
+        return playerNames;
+    }
+
+    public int getCountdownStart() {
+        return countdownStart;
+    }
+
+    public long getTimeBetweenCounts() {
+        return timeBetweenCounts;
+    }
+
+    public long getThrowTimeLimit() {
+        return throwTimeLimit;
+    }
+
+    /**
+     * @return the last journaled state of the game
+     */
+    public GameState getState() {
+        return state;
+    }
+
+    @Override
+    public String toString() {
+        return "InterruptedGame{" +
+                "gameId=" + gameId +
+                ", playerNames=" + playerNames +
+                ", state=" + state +
+                '}';
+    }
+
+}
@@ -0,0 +1,489 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.journal;
+
+import gg.pistol.scissors.game.Game;
+import gg.pistol.scissors.game.GameResult;
+import gg.pistol.scissors.game.GameState;
+import gg.pistol.scissors.game.Gesture;
+import gg.pistol.scissors.game.RefereeListener;
+import gg.pistol.scissors.game.RefereeMonitor;
+import gg.pistol.scissors.player.GameObserver;
+import gg.pistol.scissors.player.Player;
+import gg.pistol.scissors.player.PlayerDirectory;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Referee monitor that journals the referee events (game creation, state changes, countdowns, thrown gestures and
+ * results) so that the standings and the games in progress can be recovered after the process stops unexpectedly.
+ *
+ * <p>The events are appended by a background thread to the current log file, every batch of events is forced to
+ * the disk with a single sync. Every event is framed by its length and its CRC32 so that a partially written event
+ * is detected. After every <code>snapshotInterval</code> events the state (see {@link JournalState}) is written to a
+ * snapshot file, a new log file is started and the older files are deleted. The recovery reads the last snapshot and
+ * replays only the log written after it, so it is bounded by the snapshot interval and not by the journal history.
+ *
+ * <p>Opening a directory recovers its journal: see {@link #getRecoveredStandings()} and
+ * {@link #getInterruptedGames()}. The games that were in progress are not resumed (they should be scheduled again),
+ * the journal forgets them.
+ *
+ * <p>Unlike the game history, the journal does not drop events: when the disk cannot keep up the referee threads wait
+ * for room in the queue.
+ *
+ * @author Bogdan Pistol
+ */
+@ThreadSafe
+public class Journal implements RefereeMonitor, Closeable {
+
+    private static final Logger LOG = Logger.getLogger(Journal.class.getName());
+
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 100000;
+    public static final int DEFAULT_QUEUE_CAPACITY = 64 * 1024;
+    private static final int MAX_BATCH_SIZE = 4096;
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final int FRAME_HEADER_SIZE = 8; // payload length and CRC32
+
+    private static final String LOG_PREFIX = "journal-";
+    private static final String LOG_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".dat";
+
+    /**
+     * Marker enqueued by {@link #close()} to stop the background writer.
+     */
+    private static final JournalEvent END_OF_JOURNAL = JournalEvent.countdown(-1L, -1);
+
+    private final File directory;
+    private final int snapshotInterval;
+    private final PlayerDirectory playerDirectory;
+    private final BlockingQueue<JournalEvent> queue;
+    private final ExecutorService executor;
+    private final AtomicLong droppedEvents;
+    private final Standings recoveredStandings;
+    private final List<InterruptedGame> interruptedGames;
+    private final long recoveredEvents;
+    private volatile boolean closed;
+
+    // confined to the background writer after the constructor returns
+    private final JournalState state;
+    private final ByteBuffer buffer;
+    private final CRC32 crc;
+    @Nullable private FileChannel log;
+    private int persistedPlayers;
+    private long eventsSinceSnapshot;
+
+    /**
+     * Open the journal with the default snapshot interval and queue capacity.
+     *
+     * @param directory the directory of the journal (created if missing)
+     * @throws IOException
+     */
+    public Journal(File directory) throws IOException {
+        this(directory, DEFAULT_SNAPSHOT_INTERVAL, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param directory the directory of the journal (created if missing)
+     * @param snapshotInterval after how many events to take a snapshot
+     * @param queueCapacity how many events can wait to be written before the referee threads wait
+     * @throws IOException
+     */
+    public Journal(File directory, int snapshotInterval, int queueCapacity) throws IOException {
+        if (directory == null) {
+            throw new NullPointerException("The directory is null.");
+        }
+        if (snapshotInterval <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("The snapshotInterval and the queueCapacity must be positive.");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create the directory " + directory);
+        }
+        this.directory = directory;
+        this.snapshotInterval = snapshotInterval;
+        queue = new ArrayBlockingQueue<JournalEvent>(queueCapacity);
+        droppedEvents = new AtomicLong();
+        buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        crc = new CRC32();
+
+        playerDirectory = new PlayerDirectory();
+        state = loadSnapshot();
+        recoveredEvents = replayLogs();
+        recoveredStandings = state.getStandings();
+        interruptedGames = Collections.unmodifiableList(state.removeInFlightGames());
+        persistedPlayers = playerDirectory.size();
+        snapshot(); // the recovered state becomes the new starting point
+
+        executor = Executors.newSingleThreadExecutor();
+        executor.execute(new WriterTask());
+    }
+
+    private JournalState loadSnapshot() throws IOException {
+        File[] snapshots = listFiles(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        for (int i = snapshots.length - 1; i >= 0; i--) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshots[i])));
+            try {
+                return JournalState.readSnapshot(in, playerDirectory);
+            } catch (IOException e) {
+                if (playerDirectory.size() > 0) { // the directory cannot be reset, give up
+                    throw e;
+                }
+                if (LOG.isLoggable(Level.WARNING)) {
+                    LOG.log(Level.WARNING, "Ignoring the unreadable journal snapshot " + snapshots[i], e);
+                }
+            } finally {
+                in.close();
+            }
+        }
+        return new JournalState(playerDirectory);
+    }
+
+    /**
+     * Apply the events of the logs written after the snapshot, stopping at the first partially written event.
+     *
+     * @return the number of applied events
+     */
+    private long replayLogs() throws IOException {
+        long replayed = 0;
+        for (File file : listFiles(LOG_PREFIX, LOG_SUFFIX)) {
+            if (sequence(file, LOG_PREFIX, LOG_SUFFIX) != state.getSequence()) {
+                continue; // covered by the snapshot or not following the replayed events
+            }
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            ByteBuffer content;
+            try {
+                byte[] bytes = new byte[(int) raf.length()];
+                raf.readFully(bytes);
+                content = ByteBuffer.wrap(bytes);
+            } finally {
+                raf.close();
+            }
+            while (content.remaining() >= FRAME_HEADER_SIZE) {
+                int length = content.getInt();
+                int checksum = content.getInt();
+                if (length <= 0 || length > content.remaining()) {
+                    break;
+                }
+                crc.reset();
+                crc.update(content.array(), content.position(), length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                ByteBuffer payload = content.slice();
+                payload.limit(length);
+                content.position(content.position() + length);
+                state.apply(JournalEvent.decode(payload));
+                replayed++;
+            }
+        }
+        return replayed;
+    }
+
+    private File[] listFiles(final String prefix, final String suffix) throws IOException {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(prefix) && name.endsWith(suffix);
+            }
+        });
+        if (files == null) {
+            throw new IOException("Cannot list the directory " + directory);
+        }
+        Arrays.sort(files); // the zero padded sequence keeps the lexicographic order equal to the numeric order
+        return files;
+    }
+
+    private static long sequence(File file, String prefix, String suffix) {
+        String name = file.getName();
+        return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+    }
+
+    private File file(String prefix, long sequence, String suffix) {
+        return new File(directory, String.format("%s%020d%s", prefix, sequence, suffix));
+    }
+
+    /**
+     * Write the snapshot of the current state, start a new log and delete the older files.
+     */
+    private void snapshot() throws IOException {
+        long sequence = state.getSequence();
+        File snapshot = file(SNAPSHOT_PREFIX, sequence, SNAPSHOT_SUFFIX);
+        File temporary = new File(directory, snapshot.getName() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temporary);
+        try {
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+            state.writeSnapshot(data);
+            data.flush();
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!temporary.renameTo(snapshot)) {
+            throw new IOException("Cannot rename the snapshot " + temporary);
+        }
+
+        if (log != null) {
+            log.close();
+        }
+        log = new FileOutputStream(file(LOG_PREFIX, sequence, LOG_SUFFIX)).getChannel();
+        eventsSinceSnapshot = 0;
+
+        List<File> obsolete = new ArrayList<File>();
+        obsolete.addAll(Arrays.asList(listFiles(LOG_PREFIX, LOG_SUFFIX)));
+        obsolete.addAll(Arrays.asList(listFiles(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)));
+        for (File file : obsolete) {
+            if (file.getName().startsWith(LOG_PREFIX) ? sequence(file, LOG_PREFIX, LOG_SUFFIX) != sequence
+                    : sequence(file, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX) != sequence) {
+                if (!file.delete() && LOG.isLoggable(Level.WARNING)) {
+                    LOG.warning("Cannot delete the obsolete journal file " + file);
+                }
+            }
+        }
+    }
+
+    private void enqueue(JournalEvent event) {
+        if (closed) {
+            droppedEvents.incrementAndGet();
+            return;
+        }
+        try {
+            queue.put(event);
+        } catch (InterruptedException e) { // the game is being stopped
+            droppedEvents.incrementAndGet();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int[] getPlayerIds(Game game) {
+        List<Player> players = game.getPlayers();
+        int[] ids = new int[players.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = playerDirectory.getId(players.get(i));
+        }
+        return ids;
+    }
+
+    @Override
+    public void gameCreated(Game game) {
+        enqueue(JournalEvent.gameCreated(game.getId(), game.getCountdownStart(), game.getTimeBetweenCounts(),
+                game.getThrowTimeLimit(), getPlayerIds(game)));
+    }
+
+    @Override
+    public void gameAlreadyStarted(Game game) {
+        // the rejected start does not change the game
+    }
+
+    @Override
+    public void stateChanged(Game game, GameState state) {
+        enqueue(JournalEvent.stateChanged(game.getId(), state));
+    }
+
+    @Override
+    public void countdownSent(Game game, int count) {
+        enqueue(JournalEvent.countdown(game.getId(), count));
+    }
+
+    @Override
+    public void gestureReceived(Game game, Player player, Gesture gesture) {
+        enqueue(JournalEvent.gestureThrown(game.getId(), playerDirectory.getId(player), gesture));
+    }
+
+    @Override
+    public void eventDelivered(Game game, List<RefereeListener> recipients, long sendTime, long[] deliveryTimes) {
+        // the delivery does not change the game
+    }
+
+    @Override
+    public void broadcastDelivered(Game game, int shard, List<GameObserver> observers, long publishTime,
+                                   long[] deliveryTimes) {
+        // the delivery does not change the game
+    }
+
+    @Override
+    public void gameFinished(Game game) {
+        List<Player> players = game.getPlayers();
+        GameResult[] results = new GameResult[players.size()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = game.getPlayerResult(players.get(i));
+            if (results[i] == null) {
+                throw new IllegalStateException("The game is not finished.");
+            }
+        }
+        enqueue(JournalEvent.gameFinished(game.getId(), getPlayerIds(game), results));
+    }
+
+    /**
+     * Write all the enqueued events and close the journal.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            // the writer could have already stopped because of an I/O error, in that case nobody drains the queue
+            while (!queue.offer(END_OF_JOURNAL, 100L, TimeUnit.MILLISECONDS) && !executor.isTerminated()) {
+                // retry until the writer makes room
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the directory assigning the player identifiers of the journal, including the recovered players
+     */
+    public PlayerDirectory getPlayerDirectory() {
+        return playerDirectory;
+    }
+
+    /**
+     * @return the standings recovered when the journal was opened
+     */
+    public Standings getRecoveredStandings() {
+        return recoveredStandings;
+    }
+
+    /**
+     * @return the games that were in progress when the previous process stopped, the list is unmodifiable
+     */
+    public List<InterruptedGame> getInterruptedGames() {
+        return interruptedGames;
+    }
+
+    /**
+     * @return the number of log events replayed after the snapshot when the journal was opened
+     */
+    public long getRecoveredEventCount() {
+        return recoveredEvents;
+    }
+
+    /**
+     * @return the number of events that were not journaled because the journal was closed or the referee thread
+     *         was interrupted
+     */
+    public long getDroppedEventCount() {
+        return droppedEvents.get();
+    }
+
+    private void append(JournalEvent event) throws IOException {
+        if (buffer.remaining() < FRAME_HEADER_SIZE + event.maxEncodedSize()) {
+            flush();
+        }
+        int start = buffer.position();
+        buffer.position(start + FRAME_HEADER_SIZE);
+        event.encode(buffer);
+        int length = buffer.position() - start - FRAME_HEADER_SIZE;
+        crc.reset();
+        crc.update(buffer.array(), start + FRAME_HEADER_SIZE, length);
+        buffer.putInt(start, length);
+        buffer.putInt(start + 4, (int) crc.getValue());
+
+        state.apply(event);
+        eventsSinceSnapshot++;
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            log.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Background task writing the enqueued events in batches.
+     */
+    private class WriterTask implements Runnable {
+        @Override
+        public void run() {
+            List<JournalEvent> batch = new ArrayList<JournalEvent>(MAX_BATCH_SIZE);
+            boolean end = false;
+            try {
+                while (!end) {
+                    batch.add(queue.take());
+                    queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+
+                    for (JournalEvent event : batch) {
+                        if (event == END_OF_JOURNAL) {
+                            end = true;
+                            continue;
+                        }
+                        // the players are journaled before the first event referring to them
+                        while (persistedPlayers < playerDirectory.size()) {
+                            append(JournalEvent.playerAdded(persistedPlayers,
+                                    playerDirectory.getName(persistedPlayers)));
+                            persistedPlayers++;
+                        }
+                        append(event);
+                    }
+                    batch.clear();
+                    flush();
+                    log.force(false);
+
+                    if (eventsSinceSnapshot >= snapshotInterval) {
+                        snapshot();
+                    }
+                }
+                log.close();
+            } catch (InterruptedException e) {
+                // quit task
+            } catch (IOException e) {
+                if (LOG.isLoggable(Level.SEVERE)) {
+                    LOG.log(Level.SEVERE, "Cannot write the journal in " + directory, e);
+                }
+                closed = true;
+                queue.clear(); // release the referee threads waiting for room
+                executor.shutdown();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.journal;
+
+import gg.pistol.scissors.game.GameResult;
+import gg.pistol.scissors.game.GameState;
+import gg.pistol.scissors.game.Gesture;
+import gg.pistol.scissors.io.Varints;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * An event of the journal. The events are encoded compactly: a type byte followed by the variable-length encoded
+ * fields of the type (see {@link Varints}).
+ *
+ * @author Bogdan Pistol
+ */
+// package private
+@Immutable
+final class JournalEvent {
+
+    static final byte PLAYER_ADDED = 1;
+    static final byte GAME_CREATED = 2;
+    static final byte STATE_CHANGED = 3;
+    static final byte COUNTDOWN = 4;
+    static final byte GESTURE_THROWN = 5;
+    static final byte GAME_FINISHED = 6;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int[] NO_PLAYERS = new int[0];
+    private static final byte[] NO_CODES = new byte[0];
+
+    private final byte type;
+    private final long gameId;
+    private final int value; // the player id, the countdown start, the count, the state or the gesture
+    private final long timeBetweenCounts;
+    private final long throwTimeLimit;
+    private final int[] playerIds;
+    private final byte[] codes; // the gesture or the results of the players
+    @Nullable private final String name;
+
+    private JournalEvent(byte type, long gameId, int value, long timeBetweenCounts, long throwTimeLimit,
+                         int[] playerIds, byte[] codes, @Nullable String name) {
+        this.type = type;
+        this.gameId = gameId;
+        this.value = value;
+        this.timeBetweenCounts = timeBetweenCounts;
+        this.throwTimeLimit = throwTimeLimit;
+        this.playerIds = playerIds;
+        this.codes = codes;
+        this.name = name;
+    }
+
+    static JournalEvent playerAdded(int playerId, String name) {
+        return new JournalEvent(PLAYER_ADDED, 0L, playerId, 0L, 0L, NO_PLAYERS, NO_CODES, name);
+    }
+
+    static JournalEvent gameCreated(long gameId, int countdownStart, long timeBetweenCounts, long throwTimeLimit,
+                                    int[] playerIds) {
+        return new JournalEvent(GAME_CREATED, gameId, countdownStart, timeBetweenCounts, throwTimeLimit,
+                playerIds.clone(), NO_CODES, null);
+    }
+
+    static JournalEvent stateChanged(long gameId, GameState state) {
+        return new JournalEvent(STATE_CHANGED, gameId, state.ordinal(), 0L, 0L, NO_PLAYERS, NO_CODES, null);
+    }
+
+    static JournalEvent countdown(long gameId, int count) {
+        return new JournalEvent(COUNTDOWN, gameId, count, 0L, 0L, NO_PLAYERS, NO_CODES, null);
+    }
+
+    static JournalEvent gestureThrown(long gameId, int playerId, Gesture gesture) {
+        return new JournalEvent(GESTURE_THROWN, gameId, playerId, 0L, 0L, NO_PLAYERS,
+                new byte[] {(byte) gesture.ordinal()}, null);
+    }
+
+    static JournalEvent gameFinished(long gameId, int[] playerIds, GameResult[] results) {
+        byte[] codes = new byte[results.length];
+        for (int i = 0; i < results.length; i++) {
+            codes[i] = (byte) results[i].ordinal();
+        }
+        return new JournalEvent(GAME_FINISHED, gameId, 0, 0L, 0L, playerIds.clone(), codes, null);
+    }
+
+    byte getType() {
+        return type;
+    }
+
+    long getGameId() {
+        return gameId;
+    }
+
+    int getPlayerId() {
+        return value;
+    }
+
+    int getCountdownStart() {
+        return value;
+    }
+
+    int getCount() {
+        return value;
+    }
+
+    GameState getState() {
+        return GameState.values()[value];
+    }
+
+    Gesture getGesture() {
+        return Gesture.values()[codes[0]];
+    }
+
+    long getTimeBetweenCounts() {
+        return timeBetweenCounts;
+    }
+
+    long getThrowTimeLimit() {
+        return throwTimeLimit;
+    }
+
+    int getPlayerCount() {
+        return playerIds.length;
+    }
+
+    int getPlayerId(int index) {
+        return playerIds[index];
+    }
+
+    GameResult getResult(int index) {
+        return GameResult.values()[codes[index]];
+    }
+
+    @Nullable
+    String getName() {
+        return name;
+    }
+
+    /**
+     * @return an upper bound of the encoded size
+     */
+    int maxEncodedSize() {
+        int size = 1 + 4 * Varints.MAX_LONG_SIZE + playerIds.length * 5 + codes.length;
+        if (name != null) {
+            size += Varints.MAX_LONG_SIZE + name.length() * 3;
+        }
+        return size;
+    }
+
+    void encode(ByteBuffer buffer) {
+        buffer.put(type);
+        switch (type) {
+            case PLAYER_ADDED:
+                byte[] bytes = name.getBytes(UTF_8);
+                Varints.putInt(buffer, value);
+                Varints.putInt(buffer, bytes.length);
+                buffer.put(bytes);
+                break;
+            case GAME_CREATED:
+                Varints.putLong(buffer, gameId);
+                Varints.putInt(buffer, value);
+                Varints.putLong(buffer, timeBetweenCounts);
+                Varints.putLong(buffer, throwTimeLimit);
+                putPlayerIds(buffer);
+                break;
+            case STATE_CHANGED:
+            case COUNTDOWN:
+                Varints.putLong(buffer, gameId);
+                Varints.putInt(buffer, value);
+                break;
+            case GESTURE_THROWN:
+                Varints.putLong(buffer, gameId);
+                Varints.putInt(buffer, value);
+                buffer.put(codes[0]);
+                break;
+            case GAME_FINISHED:
+                Varints.putLong(buffer, gameId);
+                putPlayerIds(buffer);
+                buffer.put(codes);
+                break;
+            default:
+                throw new IllegalStateException("Unknown event type " + type);
+        }
+    }
+
+    private void putPlayerIds(ByteBuffer buffer) {
+        Varints.putInt(buffer, playerIds.length);
+        for (int id : playerIds) {
+            Varints.putInt(buffer, id);
+        }
+    }
+
+    static JournalEvent decode(ByteBuffer buffer) throws IOException {
+        try {
+            byte type = buffer.get();
+            switch (type) {
+                case PLAYER_ADDED:
+                    int playerId = Varints.getInt(buffer);
+                    byte[] bytes = new byte[Varints.getInt(buffer)];
+                    buffer.get(bytes);
+                    return playerAdded(playerId, new String(bytes, UTF_8));
+                case GAME_CREATED:
+                    long gameId = Varints.getLong(buffer);
+                    int countdownStart = Varints.getInt(buffer);
+                    long timeBetweenCounts = Varints.getLong(buffer);
+                    long throwTimeLimit = Varints.getLong(buffer);
+                    return new JournalEvent(GAME_CREATED, gameId, countdownStart, timeBetweenCounts, throwTimeLimit,
+                            getPlayerIds(buffer), NO_CODES, null);
+                case STATE_CHANGED:
+                case COUNTDOWN:
+                    return new JournalEvent(type, Varints.getLong(buffer), Varints.getInt(buffer), 0L, 0L, NO_PLAYERS,
+                            NO_CODES, null);
+                case GESTURE_THROWN:
+                    return new JournalEvent(type, Varints.getLong(buffer), Varints.getInt(buffer), 0L, 0L, NO_PLAYERS,
+                            new byte[] {buffer.get()}, null);
+                case GAME_FINISHED:
+                    gameId = Varints.getLong(buffer);
+                    int[] playerIds = getPlayerIds(buffer);
+                    byte[] codes = new byte[playerIds.length];
+                    buffer.get(codes);
+                    return new JournalEvent(type, gameId, 0, 0L, 0L, playerIds, codes, null);
+                default:
+                    throw new IOException("Unknown journal event type " + type);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated journal event.");
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed journal event.");
+        }
+    }
+
+    private static int[] getPlayerIds(ByteBuffer buffer) {
+        int[] playerIds = new int[Varints.getInt(buffer)];
+        for (int i = 0; i < playerIds.length; i++) {
+            playerIds[i] = Varints.getInt(buffer);
+        }
+        return playerIds;
+    }
+
+}
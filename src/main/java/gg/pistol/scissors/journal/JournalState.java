@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.journal;
+
+import gg.pistol.scissors.game.GameResult;
+import gg.pistol.scissors.game.GameState;
+import gg.pistol.scissors.player.PlayerDirectory;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The state rebuilt from the journal events: the standings of the players and the games in progress.
+ *
+ * <p>A snapshot of the state, together with the number of events it covers, is enough to recover without the events
+ * that were applied before the snapshot.
+ *
+ * @author Bogdan Pistol
+ */
+// package private
+@NotThreadSafe
+final class JournalState {
+
+    private static final int SNAPSHOT_MAGIC = 0x52505353; // "RPSS"
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private final PlayerDirectory playerDirectory;
+    private final Map<Long, GameEntry> inFlight;
+    private long[] wins;
+    private long[] losses;
+    private long[] ties;
+    private long sequence; // the number of events applied since the journal was created
+
+    JournalState(PlayerDirectory playerDirectory) {
+        this.playerDirectory = playerDirectory;
+        inFlight = new LinkedHashMap<Long, GameEntry>();
+        wins = new long[16];
+        losses = new long[16];
+        ties = new long[16];
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    void apply(JournalEvent event) throws IOException {
+        switch (event.getType()) {
+            case JournalEvent.PLAYER_ADDED:
+                if (playerDirectory.getId(event.getName()) != event.getPlayerId()) {
+                    throw new IOException("The player " + event.getName() + " has an inconsistent identifier.");
+                }
+                break;
+            case JournalEvent.GAME_CREATED:
+                int[] playerIds = new int[event.getPlayerCount()];
+                for (int i = 0; i < playerIds.length; i++) {
+                    playerIds[i] = event.getPlayerId(i);
+                }
+                inFlight.put(event.getGameId(), new GameEntry(event.getGameId(), playerIds, event.getCountdownStart(),
+                        event.getTimeBetweenCounts(), event.getThrowTimeLimit()));
+                break;
+            case JournalEvent.STATE_CHANGED:
+                GameEntry entry = inFlight.get(event.getGameId());
+                if (entry != null) {
+                    if (event.getState() == GameState.STOPPED) {
+                        inFlight.remove(event.getGameId());
+                    } else {
+                        entry.state = event.getState();
+                    }
+                }
+                break;
+            case JournalEvent.GAME_FINISHED:
+                inFlight.remove(event.getGameId());
+                for (int i = 0; i < event.getPlayerCount(); i++) {
+                    addResult(event.getPlayerId(i), event.getResult(i));
+                }
+                break;
+            default:
+                // the countdown and the thrown gestures do not change the recoverable state
+        }
+        sequence++;
+    }
+
+    private void addResult(int playerId, GameResult result) {
+        if (playerId >= wins.length) {
+            int capacity = Math.max(wins.length * 2, playerId + 1);
+            wins = Arrays.copyOf(wins, capacity);
+            losses = Arrays.copyOf(losses, capacity);
+            ties = Arrays.copyOf(ties, capacity);
+        }
+        switch (result) {
+            case WIN:
+                wins[playerId]++;
+                break;
+            case LOSS:
+                losses[playerId]++;
+                break;
+            default:
+                ties[playerId]++;
+        }
+    }
+
+    Standings getStandings() {
+        int players = playerDirectory.size();
+        return new Standings(Arrays.copyOf(wins, players), Arrays.copyOf(losses, players),
+                Arrays.copyOf(ties, players));
+    }
+
+    /**
+     * Forget the games in progress and return them.
+     */
+    List<InterruptedGame> removeInFlightGames() {
+        List<InterruptedGame> ret = new ArrayList<InterruptedGame>();
+        for (Iterator<GameEntry> it = inFlight.values().iterator(); it.hasNext(); ) {
+            GameEntry entry = it.next();
+            List<String> names = new ArrayList<String>();
+            for (int id : entry.playerIds) {
+                names.add(playerDirectory.getName(id));
+            }
+            ret.add(new InterruptedGame(entry.gameId, names, entry.countdownStart, entry.timeBetweenCounts,
+                    entry.throwTimeLimit, entry.state));
+            it.remove();
+        }
+        return ret;
+    }
+
+    void writeSnapshot(DataOutputStream out) throws IOException {
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeInt(SNAPSHOT_VERSION);
+        out.writeLong(sequence);
+
+        int players = playerDirectory.size();
+        out.writeInt(players);
+        for (int id = 0; id < players; id++) {
+            out.writeUTF(playerDirectory.getName(id));
+            out.writeLong(id < wins.length ? wins[id] : 0L);
+            out.writeLong(id < losses.length ? losses[id] : 0L);
+            out.writeLong(id < ties.length ? ties[id] : 0L);
+        }
+
+        out.writeInt(inFlight.size());
+        for (GameEntry entry : inFlight.values()) {
+            out.writeLong(entry.gameId);
+            out.writeInt(entry.countdownStart);
+            out.writeLong(entry.timeBetweenCounts);
+            out.writeLong(entry.throwTimeLimit);
+            out.writeByte(entry.state.ordinal());
+            out.writeInt(entry.playerIds.length);
+            for (int id : entry.playerIds) {
+                out.writeInt(id);
+            }
+        }
+    }
+
+    /**
+     * @param in the snapshot
+     * @param playerDirectory an empty directory that will receive the players of the snapshot
+     */
+    static JournalState readSnapshot(DataInputStream in, PlayerDirectory playerDirectory) throws IOException {
+        if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+            throw new IOException("Not a journal snapshot.");
+        }
+        JournalState state = new JournalState(playerDirectory);
+        state.sequence = in.readLong();
+
+        int players = in.readInt();
+        for (int id = 0; id < players; id++) {
+            if (playerDirectory.getId(in.readUTF()) != id) {
+                throw new IOException("Duplicate player in the journal snapshot.");
+            }
+            state.addResults(id, in.readLong(), in.readLong(), in.readLong());
+        }
+
+        int games = in.readInt();
+        for (int i = 0; i < games; i++) {
+            long gameId = in.readLong();
+            int countdownStart = in.readInt();
+            long timeBetweenCounts = in.readLong();
+            long throwTimeLimit = in.readLong();
+            GameState gameState = GameState.values()[in.readByte()];
+            int[] playerIds = new int[in.readInt()];
+            for (int j = 0; j < playerIds.length; j++) {
+                playerIds[j] = in.readInt();
+            }
+            GameEntry entry = new GameEntry(gameId, playerIds, countdownStart, timeBetweenCounts, throwTimeLimit);
+            entry.state = gameState;
+            state.inFlight.put(gameId, entry);
+        }
+        return state;
+    }
+
+    private void addResults(int playerId, long playerWins, long playerLosses, long playerTies) {
+        addResult(playerId, GameResult.TIE); // makes room for the player
+        wins[playerId] = playerWins;
+        losses[playerId] = playerLosses;
+        ties[playerId] = playerTies;
+    }
+
+    /**
+     * A game in progress.
+     */
+    private static class GameEntry {
+        private final long gameId;
+        private final int[] playerIds;
+        private final int countdownStart;
+        private final long timeBetweenCounts;
+        private final long throwTimeLimit;
+        private GameState state;
+
+        GameEntry(long gameId, int[] playerIds, int countdownStart, long timeBetweenCounts, long throwTimeLimit) {
+            this.gameId = gameId;
+            this.playerIds = playerIds;
+            this.countdownStart = countdownStart;
+            this.timeBetweenCounts = timeBetweenCounts;
+            this.throwTimeLimit = throwTimeLimit;
+            state = GameState.NOT_STARTED;
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.journal;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * The results of the players over all the finished games of the journal, by player identifier.
+ *
+ * @author Bogdan Pistol
+ */
+@Immutable
+public final class Standings {
+
+    private final long[] wins;
+    private final long[] losses;
+    private final long[] ties;
+
+    // package private
+    Standings(long[] wins, long[] losses, long[] ties) {
+        this.wins = wins.clone();
+        this.losses = losses.clone();
+        this.ties = ties.clone();
+    }
+
+    /**
+     * @return the number of players, the player identifiers are between 0 and this value (exclusive)
+     */
+    public int getPlayerCount() {
+        return wins.length;
+    }
+
+    public long getWins(int playerId) {
+        return playerId < wins.length ? wins[playerId] : 0L;
+    }
+
+    public long getLosses(int playerId) {
+        return playerId < losses.length ? losses[playerId] : 0L;
+    }
+
+    public long getTies(int playerId) {
+        return playerId < ties.length ? ties[playerId] : 0L;
+    }
+
+}
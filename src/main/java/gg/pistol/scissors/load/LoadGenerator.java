@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.load;
+
+import gg.pistol.scissors.game.Game;
+import gg.pistol.scissors.game.GameAlreadyStartedException;
+import gg.pistol.scissors.game.GameState;
+import gg.pistol.scissors.game.Gesture;
+import gg.pistol.scissors.game.RefereeImpl;
+import gg.pistol.scissors.game.RefereeWorkerGroups;
+import gg.pistol.scissors.game.RefereeMonitor;
+import gg.pistol.scissors.game.RefereeMonitorAdapter;
+import gg.pistol.scissors.metrics.Histogram;
+import gg.pistol.scissors.player.GameObserver;
+import gg.pistol.scissors.player.Player;
+import gg.pistol.scissors.player.RandomComputerPlayer;
+import gg.pistol.scissors.player.ScriptedPlayer;
+import gg.pistol.scissors.player.SmartComputerPlayer;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Headless load generator that plays games concurrently with a mix of computer and scripted human players, for
+ * capacity planning.
+ *
+ * <p>Every worker thread plays one game after another until the game count or the duration is reached. The workers
+ * start spread over the ramp up time, so the concurrency grows linearly to its target. The throughput, the game
+ * latency percentiles (from the start of the game until the results were delivered) and the thread counts are
+ * printed periodically and at the end.
+ *
+ * <p>The generator does not use AWT or Swing, so it runs on machines without a display.
+ *
+ * @author Bogdan Pistol
+ */
+@ThreadSafe
+public class LoadGenerator {
+
+    private static final long GAME_TIMEOUT_SLACK = 5000L; // millis to wait for a game beyond its expected length
+    private static final List<Gesture> SCRIPT = Collections.unmodifiableList(Arrays.asList(
+            Gesture.ROCK, Gesture.PAPER, Gesture.SCISSORS, Gesture.ROCK, Gesture.ROCK, Gesture.PAPER));
+
+    private final LoadOptions options;
+    private final PrintStream out;
+    private final List<RefereeMonitor> monitors;
+    @Nullable private final RefereeWorkerGroups workerGroups;
+    private final ThreadMXBean threads;
+
+    private final AtomicLong claimedGames;
+    private final LongAdder finishedGames;
+    private final LongAdder stoppedGames;
+    private final LongAdder activeGames;
+    private final Histogram latency; // nanos
+    private final AtomicReference<Histogram> intervalLatency; // nanos, replaced by every report
+    private volatile long deadline; // System.nanoTime(), used when the duration is set
+    private volatile boolean stopped;
+
+    /**
+     * @param options
+     * @param out where to print the reports
+     * @param monitors the monitors of all the referees
+     */
+    public LoadGenerator(LoadOptions options, PrintStream out, List<RefereeMonitor> monitors) {
+        this(options, out, monitors, null);
+    }
+
+    /**
+     * @param options
+     * @param out where to print the reports
+     * @param monitors the monitors of all the referees
+     * @param workerGroups the threads shared by the referees or null for new threads for every game
+     */
+    public LoadGenerator(LoadOptions options, PrintStream out, List<RefereeMonitor> monitors,
+                         @Nullable RefereeWorkerGroups workerGroups) {
+        if (options == null || out == null || monitors == null) {
+            throw new NullPointerException("The options or/and the out or/and the monitors are null.");
+        }
+        this.options = options;
+        this.out = out;
+        this.monitors = new ArrayList<RefereeMonitor>(monitors);
+        this.workerGroups = workerGroups;
+        threads = ManagementFactory.getThreadMXBean();
+        claimedGames = new AtomicLong();
+        finishedGames = new LongAdder();
+        stoppedGames = new LongAdder();
+        activeGames = new LongAdder();
+        latency = new Histogram();
+        intervalLatency = new AtomicReference<Histogram>(new Histogram());
+    }
+
+    /**
+     * Play the games and report until the game count or the duration is reached.
+     *
+     * @throws InterruptedException
+     */
+    public void run() throws InterruptedException {
+        long start = System.nanoTime();
+        deadline = start + TimeUnit.MILLISECONDS.toNanos(options.getDuration());
+        out.println(String.format(Locale.ROOT, "Playing with %d concurrent games (%d random, %d smart and %d " +
+                "scripted players per game)", options.getConcurrency(), options.getRandomPlayers(),
+                options.getSmartPlayers(), options.getScriptedPlayers()));
+
+        CountDownLatch workersDone = new CountDownLatch(options.getConcurrency());
+        List<Thread> workers = new ArrayList<Thread>();
+        for (int i = 0; i < options.getConcurrency(); i++) {
+            long delay = options.getRampUp() * i / options.getConcurrency();
+            Thread worker = new Thread(new Worker(i, delay, workersDone), "load-worker-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+
+        long lastFinished = 0;
+        long lastReport = start;
+        try {
+            while (!workersDone.await(options.getReportInterval(), TimeUnit.MILLISECONDS)) {
+                long now = System.nanoTime();
+                lastFinished = report(start, now, lastReport, lastFinished, intervalLatency.getAndSet(new Histogram()));
+                lastReport = now;
+            }
+        } finally {
+            stopped = true; // stops the workers in case this thread was interrupted
+            for (Thread worker : workers) {
+                worker.interrupt();
+            }
+        }
+        out.println("Total:");
+        report(start, System.nanoTime(), start, 0L, latency);
+    }
+
+    private long report(long start, long now, long intervalStart, long lastFinished, Histogram histogram) {
+        long finished = finishedGames.sum();
+        double seconds = Math.max(1L, now - intervalStart) / (double) TimeUnit.SECONDS.toNanos(1L);
+        out.println(String.format(Locale.ROOT, "[%7.1fs] games %d (%.1f/s) stopped %d active %d | latency ms " +
+                "p50 %.1f p90 %.1f p99 %.1f max %.1f | referee threads %d jvm threads %d",
+                (now - start) / (double) TimeUnit.SECONDS.toNanos(1L), finished, (finished - lastFinished) / seconds,
+                stoppedGames.sum(), activeGames.sum(), toMillis(histogram.getValueAtPercentile(50.0)),
+                toMillis(histogram.getValueAtPercentile(90.0)), toMillis(histogram.getValueAtPercentile(99.0)),
+                toMillis(histogram.getMax()), RefereeImpl.getThreadCount(), threads.getThreadCount()));
+        return finished;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1L);
+    }
+
+    /**
+     * @return the number of games that finished
+     */
+    public long getFinishedGames() {
+        return finishedGames.sum();
+    }
+
+    /**
+     * @return the number of games that were stopped because they did not finish in time
+     */
+    public long getStoppedGames() {
+        return stoppedGames.sum();
+    }
+
+    /**
+     * @return the latency of all the finished games in nanoseconds
+     */
+    public Histogram getLatency() {
+        return latency;
+    }
+
+    private boolean claimGame() {
+        if (stopped || (options.getDuration() > 0 && System.nanoTime() - deadline >= 0)) {
+            return false;
+        }
+        return options.getGameCount() == 0 || claimedGames.incrementAndGet() <= options.getGameCount();
+    }
+
+    private List<Player> createPlayers(int worker) {
+        List<Player> players = new ArrayList<Player>();
+        for (int i = 0; i < options.getRandomPlayers(); i++) {
+            players.add(new RandomComputerPlayer("random-" + worker + "-" + i));
+        }
+        for (int i = 0; i < options.getSmartPlayers(); i++) {
+            players.add(new SmartComputerPlayer("smart-" + worker + "-" + i));
+        }
+        for (int i = 0; i < options.getScriptedPlayers(); i++) {
+            players.add(new ScriptedPlayer("scripted-" + worker + "-" + i, SCRIPT, options.getThinkTime()));
+        }
+        return players;
+    }
+
+    private void playGame(int worker) throws InterruptedException {
+        GameCompletion completion = new GameCompletion();
+        List<RefereeMonitor> gameMonitors = new ArrayList<RefereeMonitor>(monitors);
+        gameMonitors.add(completion);
+        long timeout = options.getCountdownStart() * options.getTimeBetweenCounts() + options.getThrowTimeLimit() +
+                GAME_TIMEOUT_SLACK;
+
+        long start = System.nanoTime();
+        RefereeImpl referee = new RefereeImpl(options.getCountdownStart(), options.getTimeBetweenCounts(),
+                options.getThrowTimeLimit(), createPlayers(worker), Collections.<GameObserver>emptyList(),
+                gameMonitors, workerGroups);
+        activeGames.increment();
+        try {
+            referee.startGame();
+            if (completion.finished.await(timeout, TimeUnit.MILLISECONDS)) {
+                long elapsed = System.nanoTime() - start;
+                latency.record(elapsed);
+                intervalLatency.get().record(elapsed);
+                finishedGames.increment();
+            } else {
+                stoppedGames.increment();
+                referee.stopGame();
+            }
+        } catch (GameAlreadyStartedException e) {
+            throw new IllegalStateException("A new game cannot be already started.", e);
+        } finally {
+            activeGames.add(-1L);
+        }
+    }
+
+    private class Worker implements Runnable {
+        private final int index;
+        private final long delay; // millis
+        private final CountDownLatch done;
+
+        Worker(int index, long delay, CountDownLatch done) {
+            this.index = index;
+            this.delay = delay;
+            this.done = done;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Thread.sleep(delay);
+                while (claimGame()) {
+                    playGame(index);
+                }
+            } catch (InterruptedException e) {
+                // the load generation was stopped
+            } finally {
+                done.countDown();
+            }
+        }
+    }
+
+    /**
+     * Monitor of a single game that is released when the game finished or was stopped.
+     */
+    private static class GameCompletion extends RefereeMonitorAdapter {
+        private final CountDownLatch finished = new CountDownLatch(1);
+
+        @Override
+        public void stateChanged(Game game, GameState state) {
+            if (state == GameState.STOPPED) {
+                finished.countDown();
+            }
+        }
+
+        @Override
+        public void gameFinished(Game game) {
+            finished.countDown();
+        }
+    }
+
+}
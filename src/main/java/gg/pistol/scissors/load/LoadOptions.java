@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.load;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * The options of the {@link LoadGenerator}, parsed from the command line.
+ *
+ * @author Bogdan Pistol
+ */
+@Immutable
+public final class LoadOptions {
+
+    public static final String USAGE =
+            "Usage: load [options]\n" +
+            "  --concurrency N        the number of concurrent games (default 16)\n" +
+            "  --games N              stop after N games (default unlimited)\n" +
+            "  --duration SECONDS     stop after the duration (default 60 when --games is not set)\n" +
+            "  --ramp-up SECONDS      the time to reach the full concurrency (default 0)\n" +
+            "  --report SECONDS       the reporting interval (default 5)\n" +
+            "  --random N             random computer players per game (default 2)\n" +
+            "  --smart N              smart computer players per game (default 0)\n" +
+            "  --scripted N           scripted human players per game (default 0)\n" +
+            "  --think-time MILLIS    the think time of the scripted players (default 300)\n" +
+            "  --countdown N          from where the referee counts down (default 0)\n" +
+            "  --count-interval MILLIS  the time between counts (default 0)\n" +
+            "  --throw-limit MILLIS   the throw time limit (default 2000)";
+
+    private static final int DEFAULT_CONCURRENCY = 16;
+    private static final long DEFAULT_DURATION = 60000L;
+    private static final long DEFAULT_REPORT_INTERVAL = 5000L;
+    private static final int DEFAULT_RANDOM_PLAYERS = 2;
+    private static final long DEFAULT_THINK_TIME = 300L;
+    private static final long DEFAULT_THROW_TIME_LIMIT = 2000L;
+    private static final long MILLIS_PER_SECOND = 1000L;
+
+    private final int concurrency;
+    private final long gameCount; // 0 for unlimited
+    private final long duration; // millis, 0 for unlimited
+    private final long rampUp; // millis
+    private final long reportInterval; // millis
+    private final int randomPlayers;
+    private final int smartPlayers;
+    private final int scriptedPlayers;
+    private final long thinkTime; // millis
+    private final int countdownStart;
+    private final long timeBetweenCounts; // millis
+    private final long throwTimeLimit; // millis
+
+    /**
+     * @param concurrency the number of concurrent games
+     * @param gameCount how many games to play, 0 for unlimited
+     * @param duration how long to play in millis, 0 for unlimited
+     * @param rampUp the time to reach the full concurrency in millis
+     * @param reportInterval the reporting interval in millis
+     * @param randomPlayers the number of random computer players of every game
+     * @param smartPlayers the number of smart computer players of every game
+     * @param scriptedPlayers the number of scripted human players of every game
+     * @param thinkTime the think time of the scripted players in millis
+     * @param countdownStart from where to start the countdown
+     * @param timeBetweenCounts how much time to wait between counts in millis
+     * @param throwTimeLimit how much time to wait for every player to throw the gesture in millis
+     */
+    public LoadOptions(int concurrency, long gameCount, long duration, long rampUp, long reportInterval,
+                       int randomPlayers, int smartPlayers, int scriptedPlayers, long thinkTime, int countdownStart,
+                       long timeBetweenCounts, long throwTimeLimit) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("The concurrency must be positive.");
+        }
+        if (gameCount < 0 || duration < 0 || rampUp < 0 || thinkTime < 0 || countdownStart < 0 ||
+                timeBetweenCounts < 0 || throwTimeLimit < 0) {
+            throw new IllegalArgumentException("The counts and the times cannot be negative.");
+        }
+        if (gameCount == 0 && duration == 0) {
+            throw new IllegalArgumentException("The game count or/and the duration must be set.");
+        }
+        if (reportInterval <= 0) {
+            throw new IllegalArgumentException("The report interval must be positive.");
+        }
+        if (randomPlayers < 0 || smartPlayers < 0 || scriptedPlayers < 0 ||
+                randomPlayers + smartPlayers + scriptedPlayers < 2) {
+            throw new IllegalArgumentException("A game needs at least 2 players.");
+        }
+        this.concurrency = concurrency;
+        this.gameCount = gameCount;
+        this.duration = duration;
+        this.rampUp = rampUp;
+        this.reportInterval = reportInterval;
+        this.randomPlayers = randomPlayers;
+        this.smartPlayers = smartPlayers;
+        this.scriptedPlayers = scriptedPlayers;
+        this.thinkTime = thinkTime;
+        this.countdownStart = countdownStart;
+        this.timeBetweenCounts = timeBetweenCounts;
+        this.throwTimeLimit = throwTimeLimit;
+    }
+
+    /**
+     * Parse the options from the command line arguments (see {@link #USAGE}).
+     *
+     * @param args
+     * @return the options
+     * @throws IllegalArgumentException in case the arguments are not valid
+     */
+    public static LoadOptions parse(String[] args) {
+        if (args == null) {
+            throw new NullPointerException("The args are null.");
+        }
+        int concurrency = DEFAULT_CONCURRENCY;
+        long gameCount = 0;
+        long duration = -1;
+        long rampUp = 0;
+        long reportInterval = DEFAULT_REPORT_INTERVAL;
+        int randomPlayers = DEFAULT_RANDOM_PLAYERS;
+        int smartPlayers = 0;
+        int scriptedPlayers = 0;
+        long thinkTime = DEFAULT_THINK_TIME;
+        int countdownStart = 0;
+        long timeBetweenCounts = 0;
+        long throwTimeLimit = DEFAULT_THROW_TIME_LIMIT;
+
+        for (int i = 0; i < args.length; i += 2) {
+            String option = args[i];
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing the value of the option " + option);
+            }
+            long value = parseValue(option, args[i + 1]);
+            if ("--concurrency".equals(option)) {
+                concurrency = toInt(option, value);
+            } else if ("--games".equals(option)) {
+                gameCount = value;
+            } else if ("--duration".equals(option)) {
+                duration = value * MILLIS_PER_SECOND;
+            } else if ("--ramp-up".equals(option)) {
+                rampUp = value * MILLIS_PER_SECOND;
+            } else if ("--report".equals(option)) {
+                reportInterval = value * MILLIS_PER_SECOND;
+            } else if ("--random".equals(option)) {
+                randomPlayers = toInt(option, value);
+            } else if ("--smart".equals(option)) {
+                smartPlayers = toInt(option, value);
+            } else if ("--scripted".equals(option)) {
+                scriptedPlayers = toInt(option, value);
+            } else if ("--think-time".equals(option)) {
+                thinkTime = value;
+            } else if ("--countdown".equals(option)) {
+                countdownStart = toInt(option, value);
+            } else if ("--count-interval".equals(option)) {
+                timeBetweenCounts = value;
+            } else if ("--throw-limit".equals(option)) {
+                throwTimeLimit = value;
+            } else {
+                throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+        if (duration < 0) {
+            duration = gameCount == 0 ? DEFAULT_DURATION : 0;
+        }
+        return new LoadOptions(concurrency, gameCount, duration, rampUp, reportInterval, randomPlayers, smartPlayers,
+                scriptedPlayers, thinkTime, countdownStart, timeBetweenCounts, throwTimeLimit);
+    }
+
+    private static long parseValue(String option, String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("The value of the option " + option + " is not a number: " + value);
+        }
+    }
+
+    private static int toInt(String option, long value) {
+        if (value > Integer.MAX_VALUE || value < Integer.MIN_VALUE) {
+            throw new IllegalArgumentException("The value of the option " + option + " is too large: " + value);
+        }
+        return (int) value;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * @return how many games to play, 0 for unlimited
+     */
+    public long getGameCount() {
+        return gameCount;
+    }
+
+    /**
+     * @return how long to play in millis, 0 for unlimited
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return the time to reach the full concurrency in millis
+     */
+    public long getRampUp() {
+        return rampUp;
+    }
+
+    /**
+     * @return the reporting interval in millis
+     */
+    public long getReportInterval() {
+        return reportInterval;
+    }
+
+    public int getRandomPlayers() {
+        return randomPlayers;
+    }
+
+    public int getSmartPlayers() {
+        return smartPlayers;
+    }
+
+    public int getScriptedPlayers() {
+        return scriptedPlayers;
+    }
+
+    /**
+     * @return the think time of the scripted players in millis
+     */
+    public long getThinkTime() {
+        return thinkTime;
+    }
+
+    public int getCountdownStart() {
+        return countdownStart;
+    }
+
+    /**
+     * @return the time between counts in millis
+     */
+    public long getTimeBetweenCounts() {
+        return timeBetweenCounts;
+    }
+
+    /**
+     * @return the throw time limit in millis
+     */
+    public long getThrowTimeLimit() {
+        return throwTimeLimit;
+    }
+
+}
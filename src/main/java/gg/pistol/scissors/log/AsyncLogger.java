@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.log;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Logger with parameterised messages (every <code>{}</code> of the pattern is replaced by the next argument) that
+ * are formatted and written asynchronously by an {@link EventLog}. The number arguments are not boxed and nothing is
+ * allocated when the level is not loggable.
+ *
+ * @author Bogdan Pistol
+ */
+@ThreadSafe
+public final class AsyncLogger {
+
+    private static final int NO_NUMBERS = 0;
+    private static final int FIRST_NUMBER = 1;
+    private static final int SECOND_NUMBER = 2;
+
+    private final Logger logger; // keeps the logger configuration from being garbage collected
+    private final EventLog eventLog;
+
+    /**
+     * @param logger where to write the messages
+     * @param eventLog how to write the messages
+     */
+    public AsyncLogger(Logger logger, EventLog eventLog) {
+        if (logger == null || eventLog == null) {
+            throw new NullPointerException("The logger or/and the eventLog are null.");
+        }
+        this.logger = logger;
+        this.eventLog = eventLog;
+    }
+
+    /**
+     * @param name the name of the {@link java.util.logging} logger
+     * @return a logger writing through the default event log
+     */
+    public static AsyncLogger getLogger(String name) {
+        return new AsyncLogger(Logger.getLogger(name), EventLog.getDefault());
+    }
+
+    public boolean isLoggable(Level level) {
+        return logger.isLoggable(level);
+    }
+
+    public void log(Level level, String pattern) {
+        if (logger.isLoggable(level)) {
+            eventLog.publish(logger, level, pattern, 0, NO_NUMBERS, null, 0L, null, 0L);
+        }
+    }
+
+    public void log(Level level, String pattern, long arg) {
+        if (logger.isLoggable(level)) {
+            eventLog.publish(logger, level, pattern, 1, FIRST_NUMBER, null, arg, null, 0L);
+        }
+    }
+
+    public void log(Level level, String pattern, Object arg) {
+        if (logger.isLoggable(level)) {
+            eventLog.publish(logger, level, pattern, 1, NO_NUMBERS, arg, 0L, null, 0L);
+        }
+    }
+
+    public void log(Level level, String pattern, long arg1, Object arg2) {
+        if (logger.isLoggable(level)) {
+            eventLog.publish(logger, level, pattern, 2, FIRST_NUMBER, null, arg1, arg2, 0L);
+        }
+    }
+
+    public void log(Level level, String pattern, Object arg1, long arg2) {
+        if (logger.isLoggable(level)) {
+            eventLog.publish(logger, level, pattern, 2, SECOND_NUMBER, arg1, 0L, null, arg2);
+        }
+    }
+
+    public void log(Level level, String pattern, Object arg1, Object arg2) {
+        if (logger.isLoggable(level)) {
+            eventLog.publish(logger, level, pattern, 2, NO_NUMBERS, arg1, 0L, arg2, 0L);
+        }
+    }
+
+    public void info(String pattern) {
+        log(Level.INFO, pattern);
+    }
+
+    public void info(String pattern, long arg) {
+        log(Level.INFO, pattern, arg);
+    }
+
+    public void info(String pattern, Object arg) {
+        log(Level.INFO, pattern, arg);
+    }
+
+    public void info(String pattern, long arg1, Object arg2) {
+        log(Level.INFO, pattern, arg1, arg2);
+    }
+
+    public void info(String pattern, Object arg1, long arg2) {
+        log(Level.INFO, pattern, arg1, arg2);
+    }
+
+    public void info(String pattern, Object arg1, Object arg2) {
+        log(Level.INFO, pattern, arg1, arg2);
+    }
+
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.log;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Asynchronous log of parameterised messages, formatted and written to the {@link java.util.logging} loggers by a
+ * background thread.
+ *
+ * <p>The messages are published in a preallocated ring buffer of slots holding the message pattern and its
+ * arguments (references and primitive numbers), so logging a message does not allocate and does not format
+ * anything on the calling thread. A producer claims a slot with a compare and set on the claimed sequence and
+ * publishes it by writing the sequence of the slot. When the ring is full the message is dropped and counted rather
+ * than blocking the caller.
+ *
+ * <p>The arguments are formatted (with {@link String#valueOf(Object)}) after the message was logged, so they should
+ * be immutable values and not objects whose state changes. The records carry the time when the message was logged,
+ * but their thread id is the one of the background thread.
+ *
+ * <p>The background thread parks without a timeout when the ring is empty and the producer that publishes the next
+ * message wakes it up, so an idle log does not wake up the processor.
+ *
+ * @author Bogdan Pistol
+ */
+@ThreadSafe
+public class EventLog implements Closeable {
+
+    public static final int DEFAULT_CAPACITY = 8192;
+    private static final long FLUSH_PARK = TimeUnit.MICROSECONDS.toNanos(200L);
+    private static final long CLOSE_TIMEOUT = 5000L; // millis
+    private static final String PLACEHOLDER = "{}";
+
+    private final Slot[] ring;
+    private final int mask;
+    private final AtomicLong claimed; // the next sequence to claim
+    private final AtomicLong consumed; // the next sequence to consume
+    private final LongAdder dropped;
+    private final Thread consumer;
+    private volatile boolean consumerParked; // the consumer found the ring empty and waits for a producer
+    private volatile boolean closed;
+
+    /**
+     * @param capacity the number of slots of the ring, a power of 2
+     */
+    public EventLog(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("The capacity must be a power of 2.");
+        }
+        ring = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new Slot();
+        }
+        mask = capacity - 1;
+        claimed = new AtomicLong();
+        consumed = new AtomicLong();
+        dropped = new LongAdder();
+        consumer = new Thread(new Consumer(), "event-log");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    /**
+     * @return the event log shared by the {@link AsyncLogger}s, it is drained when the virtual machine shuts down
+     */
+    public static EventLog getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    private static class DefaultHolder {
+        static final EventLog INSTANCE = new EventLog(DEFAULT_CAPACITY);
+
+        static {
+            Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    INSTANCE.close();
+                }
+            }, "event-log-shutdown"));
+        }
+    }
+
+    /**
+     * Publish a message with up to two arguments, each argument being a reference or a number.
+     *
+     * @param numbers the bit i is set when the argument i is the number (the reference is ignored)
+     */
+    // package private
+    void publish(Logger logger, Level level, String pattern, int argCount, int numbers,
+                 @Nullable Object reference0, long number0, @Nullable Object reference1, long number1) {
+        if (closed) {
+            dropped.increment();
+            return;
+        }
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed.get() >= ring.length) {
+                dropped.increment();
+                return;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        Slot slot = ring[(int) sequence & mask];
+        slot.logger = logger;
+        slot.level = level;
+        slot.pattern = pattern;
+        slot.millis = System.currentTimeMillis();
+        slot.argCount = argCount;
+        slot.numbers = numbers;
+        slot.reference0 = reference0;
+        slot.number0 = number0;
+        slot.reference1 = reference1;
+        slot.number1 = number1;
+        slot.sequence = sequence; // publish
+        if (consumerParked) { // read after the publication, the consumer reads the slot after announcing the park
+            consumerParked = false;
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * @return the number of messages dropped because the ring was full or the log was closed
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Wait until the messages published so far are written.
+     *
+     * @throws InterruptedException
+     */
+    public void flush() throws InterruptedException {
+        long target = claimed.get();
+        while (consumed.get() < target && consumer.isAlive()) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            LockSupport.parkNanos(FLUSH_PARK);
+        }
+    }
+
+    /**
+     * Write the published messages and stop the background thread, the messages logged afterwards are dropped.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join(CLOSE_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String format(Slot slot) {
+        StringBuilder message = new StringBuilder(slot.pattern.length() + 32);
+        int start = 0;
+        for (int i = 0; i < slot.argCount; i++) {
+            int placeholder = slot.pattern.indexOf(PLACEHOLDER, start);
+            if (placeholder < 0) {
+                break;
+            }
+            message.append(slot.pattern, start, placeholder);
+            if ((slot.numbers & (1 << i)) != 0) {
+                message.append(i == 0 ? slot.number0 : slot.number1);
+            } else {
+                message.append(i == 0 ? slot.reference0 : slot.reference1);
+            }
+            start = placeholder + PLACEHOLDER.length();
+        }
+        message.append(slot.pattern, start, slot.pattern.length());
+        return message.toString();
+    }
+
+    /**
+     * A message of the ring, written by the producer that claimed it and read by the consumer after it was published.
+     */
+    private static class Slot {
+        private volatile long sequence = -1L; // the sequence of the published message
+        private Logger logger;
+        private Level level;
+        private String pattern;
+        private long millis;
+        private int argCount;
+        private int numbers;
+        private Object reference0;
+        private long number0;
+        private Object reference1;
+        private long number1;
+    }
+
+    private class Consumer implements Runnable {
+        @Override
+        public void run() {
+            for (;;) {
+                long sequence = consumed.get();
+                Slot slot = ring[(int) sequence & mask];
+                if (slot.sequence != sequence) {
+                    if (closed && claimed.get() == sequence) {
+                        return;
+                    }
+                    consumerParked = true;
+                    if (slot.sequence != sequence && !closed) { // checked again, a producer may have missed the flag
+                        LockSupport.park(this);
+                    }
+                    consumerParked = false;
+                    continue;
+                }
+
+                Logger logger = slot.logger;
+                LogRecord record = new LogRecord(slot.level, format(slot));
+                record.setLoggerName(logger.getName());
+                record.setSourceClassName(logger.getName()); // the caller is not on the stack of this thread
+                record.setSourceMethodName(null);
+                record.setInstant(Instant.ofEpochMilli(slot.millis));
+
+                // release the slot before writing, the writing can be slow
+                slot.logger = null;
+                slot.reference0 = null;
+                slot.reference1 = null;
+                consumed.set(sequence + 1);
+
+                try {
+                    logger.log(record);
+                } catch (RuntimeException e) {
+                    // a failing handler should not stop the log
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,492 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.match;
+
+import gg.pistol.scissors.game.Game;
+import gg.pistol.scissors.game.GameState;
+import gg.pistol.scissors.game.Referee;
+import gg.pistol.scissors.game.RefereeMonitorAdapter;
+import gg.pistol.scissors.log.AsyncLogger;
+import gg.pistol.scissors.metrics.Gauge;
+import gg.pistol.scissors.metrics.Histogram;
+import gg.pistol.scissors.metrics.MetricsRegistry;
+import gg.pistol.scissors.player.Player;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+
+/**
+ * Starter that limits the number of running games, so a spike of games degrades gracefully instead of starting a
+ * thread explosion.
+ *
+ * <p>A game is started right away while the running games are below the limit. Otherwise the {@link AdmissionPolicy}
+ * decides: the game is rejected or it waits in the bounded pending queue of its {@link GamePriority} lane until a
+ * running game finishes. The pending games of a higher priority lane always start first, and when the pending queue
+ * is full a game with a higher priority takes the place of the most recent pending game of a lower priority (which
+ * is rejected). The rejected games are passed to the {@link RejectedGameHandler}.
+ *
+ * <p>The metrics are the <code>admission.running</code> and <code>admission.pending</code> gauges, the
+ * <code>admission.started</code> and <code>admission.degraded</code> counters, the <code>admission.queued.LANE</code>
+ * and <code>admission.rejected.LANE</code> counters of every lane and the <code>admission.queueTime</code> histogram
+ * (nanoseconds in the pending queue).
+ *
+ * <p>Before the host is restarted the controller can be drained (see {@link #drain}): it stops admitting games and
+ * waits for the running games to finish, up to a deadline, with a single wait for all the games.
+ *
+ * @author Bogdan Pistol
+ */
+@ThreadSafe
+public class AdmissionController implements GameStarter {
+
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(AdmissionController.class.getName());
+    private static final GamePriority[] PRIORITIES = GamePriority.values();
+
+    /**
+     * How long the drain waits for the games it stopped to end, in millis.
+     */
+    private static final long STOP_WAIT = 500L;
+
+    /**
+     * The outcome of the admission of a game.
+     */
+    public enum Admission {
+        STARTED, DEGRADED, QUEUED, REJECTED
+    }
+
+    private final AdmissionPolicy policy;
+    private final int maxRunningGames;
+    private final int maxPendingGames;
+    private final RefereeStarter starter;
+    private final RefereeStarter degradedStarter;
+    @Nullable private final RejectedGameHandler rejectedHandler;
+
+    private final Lock lock;
+    @GuardedBy("lock") private final List<ArrayDeque<PendingGame>> lanes; // by priority ordinal
+    private final Condition idle; // signalled when there are no running games while draining
+    @GuardedBy("lock") private final Set<GameCompletion> live; // the running games
+    @GuardedBy("lock") private int running;
+    @GuardedBy("lock") private int pending;
+    @GuardedBy("lock") private boolean draining;
+
+    private final LongAdder started;
+    private final LongAdder degraded;
+    private final LongAdder[] queued; // by priority ordinal
+    private final LongAdder[] rejected; // by priority ordinal
+    private final Histogram queueTime; // nanos
+
+    /**
+     * @param policy what to do with the games over the limit
+     * @param maxRunningGames the limit of the running games
+     * @param maxPendingGames the capacity of the pending queue (shared by all the lanes)
+     * @param starter the starter of the games
+     * @param degradedStarter the starter of the degraded games (with the {@link AdmissionPolicy#DEGRADE} policy) or
+     *                        null to start them normally
+     * @param rejectedHandler the handler of the rejected games or null
+     * @param registry where to create the metrics
+     */
+    public AdmissionController(AdmissionPolicy policy, int maxRunningGames, int maxPendingGames,
+                               RefereeStarter starter, @Nullable RefereeStarter degradedStarter,
+                               @Nullable RejectedGameHandler rejectedHandler, MetricsRegistry registry) {
+        if (policy == null || starter == null || registry == null) {
+            throw new NullPointerException("The policy or/and the starter or/and the registry are null.");
+        }
+        if (maxRunningGames <= 0 || maxPendingGames < 0) {
+            throw new IllegalArgumentException("The running games limit must be positive and the pending games " +
+                    "capacity cannot be negative.");
+        }
+        this.policy = policy;
+        this.maxRunningGames = maxRunningGames;
+        this.maxPendingGames = policy == AdmissionPolicy.REJECT ? 0 : maxPendingGames;
+        this.starter = starter;
+        this.degradedStarter = degradedStarter != null ? degradedStarter : starter;
+        this.rejectedHandler = rejectedHandler;
+        lock = new ReentrantLock();
+        idle = lock.newCondition();
+        live = new HashSet<GameCompletion>();
+        lanes = new ArrayList<ArrayDeque<PendingGame>>(PRIORITIES.length);
+        queued = new LongAdder[PRIORITIES.length];
+        rejected = new LongAdder[PRIORITIES.length];
+        for (GamePriority priority : PRIORITIES) {
+            String lane = priority.name().toLowerCase(Locale.ROOT);
+            lanes.add(new ArrayDeque<PendingGame>());
+            queued[priority.ordinal()] = registry.counter("admission.queued." + lane);
+            rejected[priority.ordinal()] = registry.counter("admission.rejected." + lane);
+        }
+        started = registry.counter("admission.started");
+        degraded = registry.counter("admission.degraded");
+        queueTime = registry.histogram("admission.queueTime");
+        registry.gauge("admission.running", new Gauge() {
+            @Override
+            public long getValue() {
+                return getRunningCount();
+            }
+        });
+        registry.gauge("admission.pending", new Gauge() {
+            @Override
+            public long getValue() {
+                return getPendingCount();
+            }
+        });
+    }
+
+    /**
+     * Admit a casual game.
+     *
+     * @param players the players of the game
+     */
+    @Override
+    public void startGame(List<Player> players) {
+        admit(players, GamePriority.CASUAL);
+    }
+
+    /**
+     * Admit a game: start it, queue it or reject it.
+     *
+     * @param players the players of the game
+     * @param priority the lane of the game
+     * @return what happened to the game
+     */
+    public Admission admit(List<Player> players, GamePriority priority) {
+        if (players == null || priority == null) {
+            throw new NullPointerException("The players or/and the priority are null.");
+        }
+        PendingGame game = new PendingGame(players, priority);
+        PendingGame shed = null;
+        Admission admission;
+        lock.lock();
+        try {
+            if (draining) {
+                admission = Admission.REJECTED;
+            } else if (running < maxRunningGames) {
+                running++;
+                admission = Admission.STARTED;
+            } else if (pending < maxPendingGames) {
+                lanes.get(priority.ordinal()).addLast(game);
+                pending++;
+                admission = Admission.QUEUED;
+            } else {
+                shed = pollLowerPriority(priority);
+                if (shed != null) {
+                    lanes.get(priority.ordinal()).addLast(game);
+                    admission = Admission.QUEUED;
+                } else {
+                    admission = Admission.REJECTED;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (shed != null) {
+            reject(shed);
+        }
+        switch (admission) {
+            case STARTED:
+                start(game);
+                break;
+            case QUEUED:
+                queued[priority.ordinal()].increment();
+                break;
+            default:
+                reject(game);
+                break;
+        }
+        return admission;
+    }
+
+    /**
+     * @return the most recent pending game with a lower priority or null
+     */
+    @GuardedBy("lock")
+    @Nullable
+    private PendingGame pollLowerPriority(GamePriority priority) {
+        for (int i = PRIORITIES.length - 1; i > priority.ordinal(); i--) {
+            PendingGame game = lanes.get(i).pollLast();
+            if (game != null) {
+                return game;
+            }
+        }
+        return null;
+    }
+
+    private void reject(PendingGame game) {
+        rejected[game.priority.ordinal()].increment();
+        if (rejectedHandler != null) {
+            rejectedHandler.gameRejected(game.players, game.priority);
+        }
+    }
+
+    /**
+     * Start a game. When the start fails its place goes to the next pending game, which is started by the same loop
+     * (not through the completion of the failed game), so a run of failing starts does not grow the stack.
+     */
+    private void start(PendingGame game) {
+        PendingGame next = game;
+        while (next != null) {
+            if (next.degrade) {
+                degraded.increment();
+            } else {
+                started.increment();
+            }
+            GameCompletion completion = new GameCompletion();
+            lock.lock();
+            try {
+                live.add(completion);
+            } finally {
+                lock.unlock();
+            }
+            try {
+                completion.setReferee((next.degrade ? degradedStarter : starter).startGame(next.players, completion));
+                return;
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Cannot start the game of {}: {}", next.players, e);
+                next = completion.markDone() ? takeNext(completion) : null;
+            }
+        }
+    }
+
+    /**
+     * A running game finished: start the next pending game in its place.
+     */
+    private void finished(GameCompletion completion) {
+        PendingGame next = takeNext(completion);
+        if (next != null) {
+            start(next);
+        }
+    }
+
+    /**
+     * Free the place of a game that ended: the next pending game takes it or the running games decrease.
+     *
+     * @param completion the completion of the game that ended
+     * @return the pending game that takes the place or null
+     */
+    @Nullable
+    private PendingGame takeNext(GameCompletion completion) {
+        PendingGame next = null;
+        lock.lock();
+        try {
+            live.remove(completion);
+            for (ArrayDeque<PendingGame> lane : lanes) {
+                next = lane.pollFirst();
+                if (next != null) {
+                    next.degrade = policy == AdmissionPolicy.DEGRADE && maxPendingGames > 0 &&
+                            2 * pending >= maxPendingGames;
+                    pending--;
+                    break;
+                }
+            }
+            if (next == null) {
+                running--;
+                if (running == 0) {
+                    idle.signalAll();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (next != null) {
+            queueTime.record(System.nanoTime() - next.queueTime);
+        }
+        return next;
+    }
+
+    /**
+     * Drain the controller before the host is stopped: reject the pending games and the new ones, wait for the
+     * running games to finish until the timeout, stop the games still running after the timeout and close the sinks
+     * that persist the games (e.g. the history and the journal), so they are flushed after the last game.
+     *
+     * @param timeout how long to wait for the running games in millis
+     * @param sinks the sinks to close after the games ended
+     * @return the report of the drain
+     * @throws InterruptedException
+     */
+    public DrainReport drain(long timeout, List<? extends Closeable> sinks) throws InterruptedException {
+        if (sinks == null) {
+            throw new NullPointerException("The sinks are null.");
+        }
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeout);
+        List<PendingGame> rejectedGames = new ArrayList<PendingGame>();
+        List<GameCompletion> stragglers;
+        int inFlight;
+        lock.lock();
+        try {
+            if (draining) {
+                throw new IllegalStateException("The admission controller is already drained.");
+            }
+            draining = true;
+            for (ArrayDeque<PendingGame> lane : lanes) {
+                rejectedGames.addAll(lane);
+                lane.clear();
+            }
+            pending = 0;
+            inFlight = running;
+        } finally {
+            lock.unlock();
+        }
+        for (PendingGame game : rejectedGames) {
+            reject(game);
+        }
+
+        lock.lock();
+        try {
+            awaitIdle(deadline - System.nanoTime());
+            stragglers = new ArrayList<GameCompletion>(live);
+        } finally {
+            lock.unlock();
+        }
+        if (!stragglers.isEmpty()) {
+            for (GameCompletion straggler : stragglers) {
+                straggler.stop();
+            }
+            // the stopped games end when their referee tasks are interrupted, the sinks are closed after them
+            lock.lock();
+            try {
+                awaitIdle(TimeUnit.MILLISECONDS.toNanos(STOP_WAIT));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int sinkFailures = 0;
+        for (Closeable sink : sinks) {
+            try {
+                sink.close();
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Cannot close the sink {}: {}", sink, e);
+                sinkFailures++;
+            }
+        }
+        return new DrainReport(inFlight, stragglers.size(), rejectedGames.size(), sinkFailures,
+                System.nanoTime() - start);
+    }
+
+    /**
+     * Wait until there are no running games or the timeout elapsed.
+     *
+     * @param timeout in nanos
+     */
+    @GuardedBy("lock")
+    private void awaitIdle(long timeout) throws InterruptedException {
+        for (long remaining = timeout; running > 0 && remaining > 0; ) {
+            remaining = idle.awaitNanos(remaining);
+        }
+    }
+
+    /**
+     * @return the number of running games
+     */
+    public int getRunningCount() {
+        lock.lock();
+        try {
+            return running;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of games in the pending queue
+     */
+    public int getPendingCount() {
+        lock.lock();
+        try {
+            return pending;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static class PendingGame {
+        private final List<Player> players;
+        private final GamePriority priority;
+        private final long queueTime; // System.nanoTime()
+        private boolean degrade; // decided when the game leaves the pending queue
+
+        PendingGame(List<Player> players, GamePriority priority) {
+            this.players = players;
+            this.priority = priority;
+            queueTime = System.nanoTime();
+        }
+    }
+
+    /**
+     * Frees the place of the game when its results were delivered or when it was stopped.
+     */
+    private class GameCompletion extends RefereeMonitorAdapter {
+        private final AtomicBoolean done = new AtomicBoolean();
+        @Nullable private volatile Referee referee; // null until the starter returns
+        private volatile boolean stopRequested;
+
+        void setReferee(@Nullable Referee referee) {
+            this.referee = referee;
+            if (stopRequested && referee != null) { // the drain missed the referee while the game was starting
+                referee.stopGame();
+            }
+        }
+
+        void stop() {
+            stopRequested = true;
+            Referee r = referee;
+            if (r != null) {
+                r.stopGame();
+            }
+        }
+
+        @Override
+        public void stateChanged(Game game, GameState state) {
+            if (state == GameState.STOPPED) {
+                complete();
+            }
+        }
+
+        @Override
+        public void gameFinished(Game game) {
+            complete();
+        }
+
+        /**
+         * @return true for the first call, which frees the place of the game
+         */
+        boolean markDone() {
+            return done.compareAndSet(false, true);
+        }
+
+        private void complete() {
+            if (markDone()) {
+                finished(this);
+            }
+        }
+    }
+
+}
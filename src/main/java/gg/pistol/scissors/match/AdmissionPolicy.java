@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.match;
+
+/**
+ * What the {@link AdmissionController} does with a game when the running games reached the limit.
+ *
+ * @author Bogdan Pistol
+ */
+public enum AdmissionPolicy {
+    /**
+     * The game is rejected.
+     */
+    REJECT,
+
+    /**
+     * The game waits in the pending queue, it is rejected when the queue is full.
+     */
+    QUEUE,
+
+    /**
+     * The game waits in the pending queue like with {@link #QUEUE}, but the games admitted while the queue is at least
+     * half full are started degraded (e.g. without countdown and observers) so they finish sooner.
+     */
+    DEGRADE
+}
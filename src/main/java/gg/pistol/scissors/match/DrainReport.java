@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.match;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What happened while the {@link AdmissionController} was drained.
+ *
+ * @author Bogdan Pistol
+ */
+@Immutable
+public final class DrainReport {
+
+    private final int inFlightGames;
+    private final int stoppedGames;
+    private final int rejectedGames;
+    private final int abandonedPlayers;
+    private final int sinkFailures;
+    private final long duration; // nanos
+
+    /**
+     * @param inFlightGames the games running when the drain started
+     * @param stoppedGames the games stopped because they did not finish before the deadline
+     * @param rejectedGames the pending games that were rejected
+     * @param sinkFailures the sinks that could not be closed
+     * @param duration how long the drain took in nanoseconds
+     */
+    public DrainReport(int inFlightGames, int stoppedGames, int rejectedGames, int sinkFailures, long duration) {
+        this(inFlightGames, stoppedGames, rejectedGames, 0, sinkFailures, duration);
+    }
+
+    /**
+     * @param inFlightGames the games running when the drain started
+     * @param stoppedGames the games stopped because they did not finish before the deadline
+     * @param rejectedGames the pending games that were rejected
+     * @param abandonedPlayers the players that were still waiting for a match
+     * @param sinkFailures the sinks that could not be closed
+     * @param duration how long the drain took in nanoseconds
+     */
+    public DrainReport(int inFlightGames, int stoppedGames, int rejectedGames, int abandonedPlayers,
+                       int sinkFailures, long duration) {
+        this.inFlightGames = inFlightGames;
+        this.stoppedGames = stoppedGames;
+        this.rejectedGames = rejectedGames;
+        this.abandonedPlayers = abandonedPlayers;
+        this.sinkFailures = sinkFailures;
+        this.duration = duration;
+    }
+
+    /**
+     * @param abandonedPlayers the players that were still waiting for a match
+     * @return the same report with the given players waiting for a match
+     */
+    public DrainReport withAbandonedPlayers(int abandonedPlayers) {
+        return new DrainReport(inFlightGames, stoppedGames, rejectedGames, abandonedPlayers, sinkFailures,
+                duration);
+    }
+
+    /**
+     * @return the games running when the drain started
+     */
+    public int getInFlightGames() {
+        return inFlightGames;
+    }
+
+    /**
+     * @return the games that did not finish before the deadline and were stopped
+     */
+    public int getStoppedGames() {
+        return stoppedGames;
+    }
+
+    /**
+     * @return the pending games that were rejected
+     */
+    public int getRejectedGames() {
+        return rejectedGames;
+    }
+
+    /**
+     * @return the players that were still waiting for a match (they were not matched into a game)
+     */
+    public int getAbandonedPlayers() {
+        return abandonedPlayers;
+    }
+
+    /**
+     * @return the sinks that could not be closed
+     */
+    public int getSinkFailures() {
+        return sinkFailures;
+    }
+
+    /**
+     * @return how long the drain took in nanoseconds
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "Drained in %d ms: %d in-flight games, %d stopped, %d pending rejected, " +
+                "%d waiting players, %d sink failures", TimeUnit.NANOSECONDS.toMillis(duration), inFlightGames,
+                stoppedGames, rejectedGames, abandonedPlayers, sinkFailures);
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.match;
+
+import gg.pistol.scissors.player.Player;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * The place of a player in the queue of the {@link Matchmaker}, used to leave the queue with
+ * {@link Matchmaker#cancel}.
+ *
+ * @author Bogdan Pistol
+ */
+@ThreadSafe
+public final class MatchTicket {
+
+    static final int WAITING = 0;
+    static final int MATCHED = 1;
+    static final int CANCELLED = 2;
+    static final int CLAIMED = 3; // tentatively taken by the matcher thread for a game
+
+    private static final AtomicIntegerFieldUpdater<MatchTicket> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(MatchTicket.class, "state");
+
+    private final Player player;
+    private final int bucket;
+    private final long enqueueTime; // System.nanoTime()
+    private volatile int state; // updated through STATE, saves an object per queued player
+
+    // package private
+    MatchTicket(Player player, int bucket, long enqueueTime) {
+        this.player = player;
+        this.bucket = bucket;
+        this.enqueueTime = enqueueTime;
+    }
+
+    public Player getPlayer() {
+        return player;
+    }
+
+    /**
+     * @return the rating bucket of the player (0 when the games are not formed by rating)
+     */
+    public int getBucket() {
+        return bucket;
+    }
+
+    /**
+     * @return when the player was queued ({@link System#nanoTime()})
+     */
+    public long getEnqueueTime() {
+        return enqueueTime;
+    }
+
+    /**
+     * @return true if the player was matched into a game
+     */
+    public boolean isMatched() {
+        return state == MATCHED;
+    }
+
+    /**
+     * Cancel the ticket, waiting for the matcher thread to decide a tentative claim (it takes only a few steps), so the
+     * result is accurate.
+     *
+     * @return false if the player was already matched into a game (or the ticket was already cancelled)
+     */
+    boolean cancel() {
+        for (;;) {
+            int current = state;
+            if (current == WAITING) {
+                if (STATE.compareAndSet(this, WAITING, CANCELLED)) {
+                    return true;
+                }
+            } else if (current == CLAIMED) {
+                Thread.yield();
+            } else {
+                return false;
+            }
+        }
+    }
+
+    boolean isCancelled() {
+        return state == CANCELLED;
+    }
+
+    /**
+     * Claim the ticket for a game, the claim is either confirmed with {@link #match()} or undone with
+     * {@link #unclaim()} by the matcher thread.
+     *
+     * @return false if the ticket was cancelled
+     */
+    boolean claim() {
+        return STATE.compareAndSet(this, WAITING, CLAIMED);
+    }
+
+    void unclaim() {
+        state = WAITING;
+    }
+
+    void match() {
+        state = MATCHED;
+    }
+
+}
@@ -0,0 +1,384 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.match;
+
+import gg.pistol.scissors.log.AsyncLogger;
+import gg.pistol.scissors.metrics.Gauge;
+import gg.pistol.scissors.metrics.Histogram;
+import gg.pistol.scissors.metrics.MetricsRegistry;
+import gg.pistol.scissors.player.Player;
+import gg.pistol.scissors.stats.Leaderboard;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+
+/**
+ * Matchmaker that forms games of a fixed size from a continuous stream of waiting players, optionally grouping the
+ * players by rating.
+ *
+ * <p>The matchmaker is split in shards, each one with a lock-free queue of incoming tickets and a matcher thread that
+ * is the only consumer of the queue. The rating buckets are spread over the shards and queuing a player is a
+ * lock-free offer to the shard of its bucket, so the players of different buckets do not contend on a single queue
+ * (when the games are not formed by rating all the players are in the same bucket, otherwise players waiting in
+ * different shards could never meet). The matcher thread keeps the waiting players of its buckets in plain deques and
+ * starts a game as soon as a bucket has enough players, in the order they were queued. The matcher threads park when
+ * they have nothing to do and are woken up by the producers.
+ *
+ * <p>The players are claimed for a game before it is formed, a concurrent {@link #cancel} waits until the claim is
+ * confirmed or undone, so it fails only for the players that are in a game. The players still waiting when the
+ * matchmaker is closed are returned by {@link #close()}.
+ *
+ * <p>The time to match (from queuing until the game is formed) is recorded in the <code>matchmaker.timeToMatch</code>
+ * histogram (nanoseconds), together with the <code>matchmaker.queued</code>, <code>matchmaker.cancelled</code> and
+ * <code>matchmaker.games</code> counters and the <code>matchmaker.waiting</code> gauge (the metrics of a matchmaker
+ * with another name, e.g. of a separate queue, start with its name instead).
+ *
+ * @author Bogdan Pistol
+ */
+@ThreadSafe
+public class Matchmaker {
+
+    /**
+     * The name of the matchmaker when none is given, the prefix of its metrics.
+     */
+    public static final String DEFAULT_NAME = "matchmaker";
+
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(Matchmaker.class.getName());
+
+    private final int playersPerGame;
+    @Nullable private final Leaderboard leaderboard;
+    private final double bucketWidth;
+    private final GameStarter starter;
+    private final Shard[] shards;
+
+    private final Histogram timeToMatch; // nanos
+    private final LongAdder queued;
+    private final LongAdder cancelled;
+    private final LongAdder games;
+    private final LongAdder waiting;
+    private volatile boolean closed;
+
+    /**
+     * Matchmaker that does not take the ratings into account (with a single shard).
+     *
+     * @param playersPerGame the number of players of every game
+     * @param starter the starter of the formed games
+     * @param registry where to create the metrics
+     */
+    public Matchmaker(int playersPerGame, GameStarter starter, MetricsRegistry registry) {
+        this(playersPerGame, 1, null, 0.0, starter, registry);
+    }
+
+    /**
+     * @param playersPerGame the number of players of every game
+     * @param shardCount the number of shards (matcher threads)
+     * @param leaderboard the ratings of the players or null to not form the games by rating
+     * @param bucketWidth the rating range of the players of a game (ignored without a leaderboard)
+     * @param starter the starter of the formed games
+     * @param registry where to create the metrics
+     */
+    public Matchmaker(int playersPerGame, int shardCount, @Nullable Leaderboard leaderboard, double bucketWidth,
+                      GameStarter starter, MetricsRegistry registry) {
+        this(playersPerGame, shardCount, leaderboard, bucketWidth, starter, registry, DEFAULT_NAME);
+    }
+
+    /**
+     * @param playersPerGame the number of players of every game
+     * @param shardCount the number of shards (matcher threads)
+     * @param leaderboard the ratings of the players or null to not form the games by rating
+     * @param bucketWidth the rating range of the players of a game (ignored without a leaderboard)
+     * @param starter the starter of the formed games
+     * @param registry where to create the metrics
+     * @param name the prefix of the metrics and of the thread names
+     */
+    public Matchmaker(int playersPerGame, int shardCount, @Nullable Leaderboard leaderboard, double bucketWidth,
+                      GameStarter starter, MetricsRegistry registry, String name) {
+        if (starter == null || registry == null || name == null) {
+            throw new NullPointerException("The starter or/and the registry or/and the name are null.");
+        }
+        if (playersPerGame < 2) {
+            throw new IllegalArgumentException("A game needs at least 2 players.");
+        }
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("The shard count must be positive.");
+        }
+        if (leaderboard != null && !(bucketWidth > 0.0)) {
+            throw new IllegalArgumentException("The bucket width must be positive.");
+        }
+        this.playersPerGame = playersPerGame;
+        this.leaderboard = leaderboard;
+        this.bucketWidth = bucketWidth;
+        this.starter = starter;
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(name + "-" + i);
+        }
+        timeToMatch = registry.histogram(name + ".timeToMatch");
+        queued = registry.counter(name + ".queued");
+        cancelled = registry.counter(name + ".cancelled");
+        games = registry.counter(name + ".games");
+        waiting = new LongAdder();
+        registry.gauge(name + ".waiting", new Gauge() {
+            @Override
+            public long getValue() {
+                return waiting.sum();
+            }
+        });
+    }
+
+    /**
+     * Start the matcher threads.
+     */
+    public void start() {
+        for (Shard shard : shards) {
+            shard.thread.start();
+        }
+    }
+
+    /**
+     * Stop the matcher threads, the waiting players are not matched anymore and their tickets are cancelled.
+     *
+     * @return the tickets of the players that were still waiting (empty if already closed)
+     */
+    public synchronized List<MatchTicket> close() {
+        closed = true;
+        for (Shard shard : shards) {
+            LockSupport.unpark(shard.thread);
+        }
+        List<MatchTicket> abandoned = new ArrayList<MatchTicket>();
+        boolean interrupted = false;
+        for (Shard shard : shards) {
+            for (;;) {
+                try {
+                    shard.thread.join(); // the matcher thread only forms the game at hand
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            shard.abandon(abandoned);
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return abandoned;
+    }
+
+    /**
+     * Queue a player for a game.
+     *
+     * @param player
+     * @return the ticket of the player, that can be used to leave the queue
+     */
+    public MatchTicket enqueue(Player player) {
+        if (player == null) {
+            throw new NullPointerException("The player is null.");
+        }
+        if (closed) {
+            throw new IllegalStateException("The matchmaker is closed.");
+        }
+        int bucket = leaderboard != null ? (int) Math.floor(leaderboard.getRating(player) / bucketWidth) : 0;
+        MatchTicket ticket = new MatchTicket(player, bucket, System.nanoTime());
+        queued.increment();
+        waiting.increment();
+        shards[(bucket & Integer.MAX_VALUE) % shards.length].offer(ticket);
+        if (closed && ticket.cancel()) {
+            // closed concurrently and the ticket may have missed the last drain of the queue
+            waiting.add(-1L);
+            throw new IllegalStateException("The matchmaker is closed.");
+        }
+        return ticket;
+    }
+
+    /**
+     * Remove the player from the queue.
+     *
+     * @param ticket the ticket returned when the player was queued
+     * @return false if the player was already matched into a game
+     */
+    public boolean cancel(MatchTicket ticket) {
+        if (ticket == null) {
+            throw new NullPointerException("The ticket is null.");
+        }
+        if (!ticket.cancel()) {
+            return false;
+        }
+        cancelled.increment();
+        waiting.add(-1L);
+        return true;
+    }
+
+    /**
+     * @return the time from queuing until the game was formed in nanoseconds
+     */
+    public Histogram getTimeToMatch() {
+        return timeToMatch;
+    }
+
+    /**
+     * @return the number of games formed
+     */
+    public long getGameCount() {
+        return games.sum();
+    }
+
+    /**
+     * @return the number of players waiting for a game
+     */
+    public long getWaitingCount() {
+        return waiting.sum();
+    }
+
+    /**
+     * A shard with its incoming queue and its matcher thread.
+     */
+    private class Shard implements Runnable {
+        private final Queue<MatchTicket> incoming;
+        private final Thread thread;
+        private volatile boolean parked;
+
+        // used only by the matcher thread
+        @GuardedBy("thread") private final Map<Integer, ArrayDeque<MatchTicket>> buckets;
+
+        Shard(String name) {
+            incoming = new ConcurrentLinkedQueue<MatchTicket>();
+            buckets = new HashMap<Integer, ArrayDeque<MatchTicket>>();
+            thread = new Thread(this, name);
+            thread.setDaemon(true);
+        }
+
+        void offer(MatchTicket ticket) {
+            incoming.offer(ticket);
+            if (parked) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        @Override
+        public void run() {
+            while (!closed) {
+                MatchTicket ticket = incoming.poll();
+                if (ticket != null) {
+                    add(ticket);
+                    continue;
+                }
+                parked = true;
+                if (incoming.isEmpty() && !closed) { // checked after publishing the parked flag
+                    LockSupport.park(this);
+                }
+                parked = false;
+            }
+        }
+
+        private void add(MatchTicket ticket) {
+            if (ticket.isCancelled()) {
+                return;
+            }
+            ArrayDeque<MatchTicket> bucket = buckets.get(ticket.getBucket());
+            if (bucket == null) {
+                bucket = new ArrayDeque<MatchTicket>();
+                buckets.put(ticket.getBucket(), bucket);
+            }
+            bucket.addLast(ticket);
+            while (bucket.size() >= playersPerGame) {
+                removeCancelled(bucket);
+                if (bucket.size() < playersPerGame) {
+                    break;
+                }
+                formGame(bucket);
+            }
+        }
+
+        /**
+         * Cancel the tickets still waiting after the matcher thread stopped.
+         */
+        void abandon(List<MatchTicket> abandoned) {
+            for (ArrayDeque<MatchTicket> bucket : buckets.values()) {
+                for (MatchTicket ticket : bucket) {
+                    abandon(ticket, abandoned);
+                }
+            }
+            buckets.clear();
+            for (MatchTicket ticket = incoming.poll(); ticket != null; ticket = incoming.poll()) {
+                abandon(ticket, abandoned);
+            }
+        }
+
+        private void abandon(MatchTicket ticket, List<MatchTicket> abandoned) {
+            if (ticket.cancel()) {
+                waiting.add(-1L);
+                abandoned.add(ticket);
+            }
+        }
+
+        private void removeCancelled(ArrayDeque<MatchTicket> bucket) {
+            for (Iterator<MatchTicket> it = bucket.iterator(); it.hasNext(); ) {
+                if (it.next().isCancelled()) {
+                    it.remove();
+                }
+            }
+        }
+
+        /**
+         * Form a game with the first players of the bucket, unless one of them cancelled in the meantime (the caller
+         * retries with the remaining players).
+         */
+        private void formGame(ArrayDeque<MatchTicket> bucket) {
+            List<MatchTicket> tickets = new ArrayList<MatchTicket>(playersPerGame);
+            for (Iterator<MatchTicket> it = bucket.iterator(); tickets.size() < playersPerGame; ) {
+                MatchTicket ticket = it.next();
+                if (!ticket.claim()) {
+                    // cancelled after the bucket was cleaned: undo the claims
+                    for (MatchTicket claimed : tickets) {
+                        claimed.unclaim();
+                    }
+                    it.remove();
+                    return;
+                }
+                tickets.add(ticket);
+            }
+
+            long now = System.nanoTime();
+            List<Player> players = new ArrayList<Player>(playersPerGame);
+            for (MatchTicket ticket : tickets) {
+                ticket.match();
+                bucket.pollFirst();
+                players.add(ticket.getPlayer());
+                timeToMatch.record(now - ticket.getEnqueueTime());
+            }
+            waiting.add(-playersPerGame);
+            games.increment();
+            try {
+                starter.startGame(players);
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Cannot start the game of {}: {}", players, e);
+            }
+        }
+    }
+
+}
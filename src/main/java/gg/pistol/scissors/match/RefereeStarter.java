@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.match;
+
+import gg.pistol.scissors.game.GameAlreadyStartedException;
+import gg.pistol.scissors.game.Referee;
+import gg.pistol.scissors.game.RefereeImpl;
+import gg.pistol.scissors.game.RefereeMonitor;
+import gg.pistol.scissors.game.RefereeWorkerGroups;
+import gg.pistol.scissors.player.GameObserver;
+import gg.pistol.scissors.player.Player;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Starter that referees every game with a new {@link RefereeImpl}.
+ *
+ * @author Bogdan Pistol
+ */
+@ThreadSafe
+public class RefereeStarter implements GameStarter {
+
+    private final int countdownStart;
+    private final long timeBetweenCounts;
+    private final long throwTimeLimit;
+    private final List<GameObserver> observers;
+    private final List<RefereeMonitor> monitors;
+    @Nullable private final RefereeWorkerGroups workerGroups;
+
+    /**
+     * @param countdownStart from where to start the countdown
+     * @param timeBetweenCounts how much time to wait between counts in millis
+     * @param throwTimeLimit how much time to wait for every player to throw the gesture in millis
+     * @param observers the observers of every game, read when a game starts (it can be a concurrent list that
+     *                  changes over time)
+     * @param monitors the monitors of the referees
+     */
+    public RefereeStarter(int countdownStart, long timeBetweenCounts, long throwTimeLimit,
+                          List<GameObserver> observers, List<RefereeMonitor> monitors) {
+        this(countdownStart, timeBetweenCounts, throwTimeLimit, observers, monitors, null);
+    }
+
+    /**
+     * @param countdownStart from where to start the countdown
+     * @param timeBetweenCounts how much time to wait between counts in millis
+     * @param throwTimeLimit how much time to wait for every player to throw the gesture in millis
+     * @param observers the observers of every game, read when a game starts (it can be a concurrent list that
+     *                  changes over time)
+     * @param monitors the monitors of the referees
+     * @param workerGroups the threads shared by the referees or null for new threads for every game
+     */
+    public RefereeStarter(int countdownStart, long timeBetweenCounts, long throwTimeLimit,
+                          List<GameObserver> observers, List<RefereeMonitor> monitors,
+                          @Nullable RefereeWorkerGroups workerGroups) {
+        if (observers == null || monitors == null) {
+            throw new NullPointerException("The observers or/and the monitors are null.");
+        }
+        this.countdownStart = countdownStart;
+        this.timeBetweenCounts = timeBetweenCounts;
+        this.throwTimeLimit = throwTimeLimit;
+        this.observers = observers;
+        this.monitors = new ArrayList<RefereeMonitor>(monitors);
+        this.workerGroups = workerGroups;
+    }
+
+    @Override
+    public void startGame(List<Player> players) {
+        startGame(players, null);
+    }
+
+    /**
+     * Start a game with an additional monitor (e.g. to be notified when the game finishes).
+     *
+     * @param players the players of the game
+     * @param gameMonitor the monitor of this game only or null
+     * @return the referee of the game
+     */
+    public Referee startGame(List<Player> players, @Nullable RefereeMonitor gameMonitor) {
+        List<RefereeMonitor> gameMonitors = monitors;
+        if (gameMonitor != null) {
+            gameMonitors = new ArrayList<RefereeMonitor>(monitors.size() + 1);
+            gameMonitors.addAll(monitors);
+            gameMonitors.add(gameMonitor);
+        }
+        RefereeImpl referee = new RefereeImpl(countdownStart, timeBetweenCounts, throwTimeLimit, players,
+                new ArrayList<GameObserver>(observers), gameMonitors, workerGroups);
+        try {
+            referee.startGame();
+        } catch (GameAlreadyStartedException e) {
+            throw new IllegalStateException("A new game cannot be already started.", e);
+        }
+        return referee;
+    }
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.match;
+
+import gg.pistol.scissors.player.Player;
+
+import java.util.List;
+
+/**
+ * Handler of the games that were not started by the {@link AdmissionController} (e.g. to tell the players to retry
+ * later).
+ *
+ * @author Bogdan Pistol
+ */
+public interface RejectedGameHandler {
+
+    /**
+     * The game was rejected or removed from the pending queue to make room for a game with higher priority. The
+     * handler is called by the thread that submitted the game.
+     *
+     * @param players the players of the game
+     * @param priority the priority of the game
+     */
+    void gameRejected(List<Player> players, GamePriority priority);
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.metrics;
+
+import gg.pistol.scissors.game.Game;
+import gg.pistol.scissors.game.GameState;
+import gg.pistol.scissors.game.Gesture;
+import gg.pistol.scissors.game.RefereeImpl;
+import gg.pistol.scissors.game.RefereeMonitorAdapter;
+import gg.pistol.scissors.player.Player;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monitor that records the metrics of the game engine in a {@link MetricsRegistry}:
+ * <ul>
+ * <li>counters: <code>games.started</code>, <code>games.finished</code>, <code>games.stopped</code> (stopped before
+ * finishing), <code>games.alreadyStarted</code> (rejected starts) and <code>gestures.timedOut</code> (the players
+ * without a gesture when the game finished)</li>
+ * <li>gauges: <code>games.live</code>, <code>referee.threads</code> and <code>referee.queuedEvents</code></li>
+ * <li>histograms in nanoseconds: <code>gestures.throwLatency</code> (from the start of the throwing phase until a
+ * gesture is received), <code>phases.counting</code>, <code>phases.throwing</code> and <code>phases.finishing</code>
+ * (until the results are announced)</li>
+ * </ul>
+ *
+ * @author Bogdan Pistol
+ */
+@ThreadSafe
+public class EngineMetrics extends RefereeMonitorAdapter {
+
+    private final ConcurrentMap<Long, PhaseTimes> liveGames;
+
+    private final LongAdder started;
+    private final LongAdder finished;
+    private final LongAdder stopped;
+    private final LongAdder alreadyStarted;
+    private final LongAdder timedOut;
+    private final Histogram throwLatency;
+    private final Histogram counting;
+    private final Histogram throwing;
+    private final Histogram finishing;
+
+    /**
+     * @param registry where to create the metrics
+     */
+    public EngineMetrics(MetricsRegistry registry) {
+        if (registry == null) {
+            throw new NullPointerException("The registry is null.");
+        }
+        liveGames = new ConcurrentHashMap<Long, PhaseTimes>();
+        started = registry.counter("games.started");
+        finished = registry.counter("games.finished");
+        stopped = registry.counter("games.stopped");
+        alreadyStarted = registry.counter("games.alreadyStarted");
+        timedOut = registry.counter("gestures.timedOut");
+        throwLatency = registry.histogram("gestures.throwLatency");
+        counting = registry.histogram("phases.counting");
+        throwing = registry.histogram("phases.throwing");
+        finishing = registry.histogram("phases.finishing");
+        registry.gauge("games.live", new Gauge() {
+            @Override
+            public long getValue() {
+                return liveGames.size();
+            }
+        });
+        registry.gauge("referee.threads", new Gauge() {
+            @Override
+            public long getValue() {
+                return RefereeImpl.getThreadCount();
+            }
+        });
+        registry.gauge("referee.queuedEvents", new Gauge() {
+            @Override
+            public long getValue() {
+                return RefereeImpl.getQueuedEventCount();
+            }
+        });
+    }
+
+    @Override
+    public void gameAlreadyStarted(Game game) {
+        alreadyStarted.increment();
+    }
+
+    @Override
+    public void stateChanged(Game game, GameState state) {
+        long now = System.nanoTime();
+        switch (state) {
+            case COUNTING:
+                liveGames.put(game.getId(), new PhaseTimes(now));
+                started.increment();
+                break;
+            case THROWING:
+                PhaseTimes times = liveGames.get(game.getId());
+                if (times != null) {
+                    times.throwing = now;
+                    counting.record(now - times.counting);
+                }
+                break;
+            case FINISHED:
+                times = liveGames.get(game.getId());
+                if (times != null) {
+                    times.finishing = now;
+                    throwing.record(now - times.throwing);
+                }
+                break;
+            case STOPPED:
+                if (liveGames.remove(game.getId()) != null) {
+                    stopped.increment();
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void gestureReceived(Game game, Player player, Gesture gesture) {
+        PhaseTimes times = liveGames.get(game.getId());
+        if (times != null && times.throwing != 0L) {
+            throwLatency.record(System.nanoTime() - times.throwing);
+        }
+    }
+
+    @Override
+    public void gameFinished(Game game) {
+        PhaseTimes times = liveGames.remove(game.getId());
+        if (times == null) {
+            return;
+        }
+        finishing.record(System.nanoTime() - times.finishing);
+        finished.increment();
+        for (Player player : game.getPlayers()) {
+            if (game.getPlayerGesture(player) == null) {
+                timedOut.increment();
+            }
+        }
+    }
+
+    /**
+     * When a live game entered its phases (System.nanoTime), written by the referee thread of the game.
+     */
+    private static class PhaseTimes {
+        private final long counting;
+        private volatile long throwing;
+        private volatile long finishing;
+
+        PhaseTimes(long counting) {
+            this.counting = counting;
+        }
+    }
+
+}
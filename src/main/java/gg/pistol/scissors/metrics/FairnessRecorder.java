@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.metrics;
+
+import gg.pistol.scissors.game.Game;
+import gg.pistol.scissors.game.GameState;
+import gg.pistol.scissors.game.RefereeListener;
+import gg.pistol.scissors.game.RefereeMonitorAdapter;
+import gg.pistol.scissors.player.GameObserver;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Monitor that measures how fair the referees deliver the events to the players and observers.
+ *
+ * <p>For every event delivered concurrently to a group of recipients the skew (the time between the first and the
+ * last recipient being invoked) and the lag of every recipient (the time since the first recipient was invoked) are
+ * recorded in histograms, per game and aggregated over all the games. The fairness of the running games and of a
+ * bounded number of recently ended games is kept.
+ *
+ * <p>For the large audiences broadcast in shards the skew of every shard delivery and the broadcast latency (the time
+ * from the publishing until the last observer of the shard was invoked) are recorded over all the games.
+ *
+ * @author Bogdan Pistol
+ */
+@ThreadSafe
+public class FairnessRecorder extends RefereeMonitorAdapter {
+
+    public static final int DEFAULT_RECENT_GAMES = 100;
+
+    private final int recentGameLimit;
+    private final ConcurrentMap<Long, GameFairness> runningGames;
+    @GuardedBy("lock") private final Map<Long, GameFairness> recentGames; // in the order the games ended
+    private final Lock lock;
+    private final Histogram skew;
+    private final Histogram lag;
+    private final Histogram broadcastSkew;
+    private final Histogram broadcastLatency;
+
+    public FairnessRecorder() {
+        this(DEFAULT_RECENT_GAMES);
+    }
+
+    /**
+     * @param recentGameLimit how many ended games to keep the fairness of
+     */
+    public FairnessRecorder(int recentGameLimit) {
+        if (recentGameLimit < 0) {
+            throw new IllegalArgumentException("The recentGameLimit is negative.");
+        }
+        this.recentGameLimit = recentGameLimit;
+        runningGames = new ConcurrentHashMap<Long, GameFairness>();
+        recentGames = new LinkedHashMap<Long, GameFairness>();
+        lock = new ReentrantLock();
+        skew = new Histogram();
+        lag = new Histogram();
+        broadcastSkew = new Histogram();
+        broadcastLatency = new Histogram();
+    }
+
+    @Override
+    public void gameCreated(Game game) {
+    }
+
+    @Override
+    public void stateChanged(Game game, GameState state) {
+        if (state == GameState.COUNTING) {
+            // tracked from the start only, a referee that is dropped before starting would never end the game
+            runningGames.put(game.getId(), new GameFairness(game.getId()));
+        } else if (state == GameState.STOPPED) {
+            endGame(game);
+        }
+    }
+
+    @Override
+    public void eventDelivered(Game game, List<RefereeListener> recipients, long sendTime, long[] deliveryTimes) {
+        GameFairness fairness = runningGames.get(game.getId());
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        for (long time : deliveryTimes) {
+            first = Math.min(first, time);
+            last = Math.max(last, time);
+        }
+        skew.record(last - first);
+        if (fairness != null) {
+            fairness.recordSkew(last - first);
+        }
+        for (int i = 0; i < deliveryTimes.length; i++) {
+            lag.record(deliveryTimes[i] - first);
+            if (fairness != null) {
+                fairness.recordLag(recipients.get(i), deliveryTimes[i] - first);
+            }
+        }
+    }
+
+    @Override
+    public void broadcastDelivered(Game game, int shard, List<GameObserver> observers, long publishTime,
+                                   long[] deliveryTimes) {
+        if (deliveryTimes.length == 0) {
+            return;
+        }
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        for (long time : deliveryTimes) {
+            first = Math.min(first, time);
+            last = Math.max(last, time);
+        }
+        broadcastSkew.record(last - first);
+        broadcastLatency.record(last - publishTime);
+    }
+
+    @Override
+    public void gameFinished(Game game) {
+        endGame(game);
+    }
+
+    private void endGame(Game game) {
+        GameFairness fairness = runningGames.remove(game.getId());
+        if (fairness == null || recentGameLimit == 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            recentGames.put(game.getId(), fairness);
+            if (recentGames.size() > recentGameLimit) {
+                recentGames.remove(recentGames.keySet().iterator().next());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param gameId
+     * @return the fairness of a running or recently ended game or null in case the game is not known
+     */
+    @Nullable
+    public GameFairness getGameFairness(long gameId) {
+        GameFairness fairness = runningGames.get(gameId);
+        if (fairness != null) {
+            return fairness;
+        }
+        lock.lock();
+        try {
+            return recentGames.get(gameId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the skew of the events of all the games in nanoseconds
+     */
+    public Histogram getSkew() {
+        return skew;
+    }
+
+    /**
+     * @return the lag of the recipients of all the games in nanoseconds
+     */
+    public Histogram getLag() {
+        return lag;
+    }
+
+    /**
+     * @return the skew of the shard deliveries of the large audiences in nanoseconds
+     */
+    public Histogram getBroadcastSkew() {
+        return broadcastSkew;
+    }
+
+    /**
+     * @return the time from publishing an event to a large audience until the last observer of a shard was invoked,
+     *         in nanoseconds
+     */
+    public Histogram getBroadcastLatency() {
+        return broadcastLatency;
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.metrics;
+
+import gg.pistol.scissors.game.RefereeListener;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The fairness of the event delivery of a game: the skew of every event (the time between the first and the last
+ * recipient being invoked) and the lag of every recipient (the time between the first recipient and that
+ * recipient being invoked), in nanoseconds.
+ *
+ * @author Bogdan Pistol
+ */
+@ThreadSafe
+public class GameFairness {
+
+    private static final int COUNT = 0;
+    private static final int TOTAL = 1;
+    private static final int MAX = 2;
+
+    private final long gameId;
+    private final Histogram skew;
+    private final Histogram lag;
+    private final ConcurrentMap<RefereeListener, AtomicLongArray> recipientLags; // count, total and max lag
+
+    // package private
+    GameFairness(long gameId) {
+        this.gameId = gameId;
+        skew = new Histogram();
+        lag = new Histogram();
+        recipientLags = new ConcurrentHashMap<RefereeListener, AtomicLongArray>();
+    }
+
+    // package private
+    void recordSkew(long nanos) {
+        skew.record(nanos);
+    }
+
+    // package private
+    void recordLag(RefereeListener recipient, long nanos) {
+        lag.record(nanos);
+        AtomicLongArray stats = recipientLags.get(recipient);
+        if (stats == null) {
+            AtomicLongArray newStats = new AtomicLongArray(3);
+            stats = recipientLags.putIfAbsent(recipient, newStats);
+            if (stats == null) {
+                stats = newStats;
+            }
+        }
+        stats.incrementAndGet(COUNT);
+        stats.addAndGet(TOTAL, nanos);
+        for (long max = stats.get(MAX); nanos > max; max = stats.get(MAX)) {
+            if (stats.compareAndSet(MAX, max, nanos)) {
+                break;
+            }
+        }
+    }
+
+    public long getGameId() {
+        return gameId;
+    }
+
+    /**
+     * @return the skew of the events in nanoseconds
+     */
+    public Histogram getSkew() {
+        return skew;
+    }
+
+    /**
+     * @return the lag of the recipients in nanoseconds, for all the recipients
+     */
+    public Histogram getLag() {
+        return lag;
+    }
+
+    /**
+     * @return the recipients that received events
+     */
+    public List<RefereeListener> getRecipients() {
+        return new ArrayList<RefereeListener>(recipientLags.keySet());
+    }
+
+    /**
+     * @param recipient
+     * @return the highest lag of the recipient in nanoseconds or 0 in case the recipient did not receive events
+     */
+    public long getMaxLag(RefereeListener recipient) {
+        AtomicLongArray stats = getRecipientLag(recipient);
+        return stats != null ? stats.get(MAX) : 0L;
+    }
+
+    /**
+     * @param recipient
+     * @return the average lag of the recipient in nanoseconds or 0 in case the recipient did not receive events
+     */
+    public double getMeanLag(RefereeListener recipient) {
+        AtomicLongArray stats = getRecipientLag(recipient);
+        return stats != null && stats.get(COUNT) > 0 ? (double) stats.get(TOTAL) / stats.get(COUNT) : 0.0;
+    }
+
+    private AtomicLongArray getRecipientLag(RefereeListener recipient) {
+        if (recipient == null) {
+            throw new NullPointerException("The recipient is null.");
+        }
+        return recipientLags.get(recipient);
+    }
+
+    @Override
+    public String toString() {
+        return "GameFairness{" +
+                "gameId=" + gameId +
+                ", skew=" + skew +
+                ", lag=" + lag +
+                '}';
+    }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.metrics;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of non-negative values (e.g. durations in nanoseconds) with log-linear buckets: every power of two
+ * range is split in {@value #SUB_BUCKETS} equal buckets, so the values are recorded with a relative error below
+ * 1/{@value #SUB_BUCKETS} in a fixed number of buckets no matter how large the values are.
+ *
+ * <p>Recording a value is lock free and cheap: two additions (the bucket and the total) and a compare and set only
+ * when the maximum grows. The total is a {@link LongAdder} because every recorded value updates it, so the threads
+ * recording concurrently would otherwise contend on it. The statistics are read without stopping the writers, so
+ * they do not form an atomic snapshot while values are recorded concurrently.
+ *
+ * @author Bogdan Pistol
+ */
+@ThreadSafe
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets;
+    private final LongAdder total;
+    private final AtomicLong max;
+
+    public Histogram() {
+        buckets = new AtomicLongArray(BUCKETS);
+        total = new LongAdder();
+        max = new AtomicLong();
+    }
+
+    // package private
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return the highest value of the bucket
+     */
+    // package private
+    static long bucketMax(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long low = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return low + (1L << shift) - 1;
+    }
+
+    /**
+     * Record a value, the negative values are recorded as zero.
+     *
+     * @param value
+     */
+    public void record(long value) {
+        long v = Math.max(value, 0L);
+        buckets.incrementAndGet(bucket(v));
+        total.add(v);
+        updateMax(v);
+    }
+
+    private void updateMax(long value) {
+        for (long current = max.get(); value > current; current = max.get()) {
+            if (max.compareAndSet(current, value)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Add all the values recorded by another histogram to this histogram.
+     *
+     * @param other
+     */
+    public void add(Histogram other) {
+        if (other == null) {
+            throw new NullPointerException("The other histogram is null.");
+        }
+        for (int i = 0; i < BUCKETS; i++) {
+            long n = other.buckets.get(i);
+            if (n > 0) {
+                buckets.addAndGet(i, n);
+            }
+        }
+        total.add(other.total.sum());
+        updateMax(other.max.get());
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += buckets.get(i);
+        }
+        return count;
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return the average of the recorded values or 0 in case there are no values
+     */
+    public double getMean() {
+        long n = getCount();
+        return n > 0 ? (double) total.sum() / n : 0.0;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the value below which the given percentile of the recorded values fall (rounded up to the highest value
+     *         of its bucket) or 0 in case there are no values
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0.0 || percentile > 100.0) {
+            throw new IllegalArgumentException("The percentile must be between 0 and 100.");
+        }
+        long n = getCount();
+        if (n == 0) {
+            return 0L;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(bucketMax(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    @Override
+    public String toString() {
+        return "Histogram{" +
+                "count=" + getCount() +
+                ", mean=" + getMean() +
+                ", p50=" + getValueAtPercentile(50.0) +
+                ", p99=" + getValueAtPercentile(99.0) +
+                ", max=" + getMax() +
+                '}';
+    }
+
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.metrics;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Registry of named metrics (counters, gauges and histograms) that can be exposed as JMX MBeans.
+ *
+ * <p>The metrics are looked up by name once (e.g. when a component is created) and then updated directly, so the
+ * registry is not involved in recording: incrementing a counter is an addition on a {@link LongAdder}, which spreads
+ * the concurrent updates over its cells, and recording a histogram value is two additions.
+ *
+ * <p>The MBeans are named <code>&lt;domain&gt;:type=&lt;Counter|Gauge|Histogram&gt;,name=&lt;metric name&gt;</code>.
+ * The metrics created after {@link #registerMBeans} are registered as they are created.
+ *
+ * @author Bogdan Pistol
+ */
+@ThreadSafe
+public class MetricsRegistry {
+
+    private static final Logger LOG = Logger.getLogger(MetricsRegistry.class.getName());
+
+    public static final String DEFAULT_DOMAIN = "gg.pistol.scissors";
+
+    private final String domain;
+    private final ConcurrentMap<String, Object> metrics; // LongAdder, Gauge or Histogram by name
+    @GuardedBy("lock") @Nullable private MBeanServer server;
+    @GuardedBy("lock") private final List<ObjectName> registered;
+    private final Lock lock;
+
+    public MetricsRegistry() {
+        this(DEFAULT_DOMAIN);
+    }
+
+    /**
+     * @param domain the JMX domain of the MBeans
+     */
+    public MetricsRegistry(String domain) {
+        if (domain == null) {
+            throw new NullPointerException("The domain is null.");
+        }
+        this.domain = domain;
+        metrics = new ConcurrentHashMap<String, Object>();
+        registered = new ArrayList<ObjectName>();
+        lock = new ReentrantLock();
+    }
+
+    /**
+     * Return the counter with the given name, creating it if there is no metric with this name.
+     *
+     * @param name
+     * @return the counter
+     * @throws IllegalArgumentException in case there is another kind of metric with the same name
+     */
+    public LongAdder counter(String name) {
+        return getOrCreate(name, LongAdder.class, null);
+    }
+
+    /**
+     * Return the histogram with the given name, creating it if there is no metric with this name.
+     *
+     * @param name
+     * @return the histogram
+     * @throws IllegalArgumentException in case there is another kind of metric with the same name
+     */
+    public Histogram histogram(String name) {
+        return getOrCreate(name, Histogram.class, null);
+    }
+
+    /**
+     * Register a gauge.
+     *
+     * @param name
+     * @param gauge
+     * @throws IllegalArgumentException in case there is another metric with the same name
+     */
+    public void gauge(String name, Gauge gauge) {
+        if (gauge == null) {
+            throw new NullPointerException("The gauge is null.");
+        }
+        if (getOrCreate(name, Gauge.class, gauge) != gauge) {
+            throw new IllegalArgumentException("There is another gauge named " + name);
+        }
+    }
+
+    private <T> T getOrCreate(String name, Class<T> type, @Nullable T instance) {
+        if (name == null) {
+            throw new NullPointerException("The name is null.");
+        }
+        Object metric = metrics.get(name);
+        if (metric == null) {
+            Object newMetric = instance;
+            if (newMetric == null) {
+                newMetric = type == LongAdder.class ? new LongAdder() : new Histogram();
+            }
+            metric = metrics.putIfAbsent(name, newMetric);
+            if (metric == null) {
+                metric = newMetric;
+                lock.lock();
+                try {
+                    if (server != null) {
+                        register(name, metric);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException("There is another kind of metric named " + name);
+        }
+        return type.cast(metric);
+    }
+
+    /**
+     * @param name
+     * @return the metric with the given name or null in case there is no such metric
+     */
+    @Nullable
+    public Object getMetric(String name) {
+        if (name == null) {
+            throw new NullPointerException("The name is null.");
+        }
+        return metrics.get(name);
+    }
+
+    /**
+     * Write the current values of all the metrics, a line per metric in the order of the names: the count of the
+     * counters, the value of the gauges and the count, the mean, the percentiles and the maximum of the histograms.
+     *
+     * @param out where to write the metrics (not closed)
+     * @throws IOException
+     */
+    public void writeSnapshot(Writer out) throws IOException {
+        if (out == null) {
+            throw new NullPointerException("The writer is null.");
+        }
+        for (Map.Entry<String, Object> entry : new TreeMap<String, Object>(metrics).entrySet()) {
+            Object metric = entry.getValue();
+            String line;
+            if (metric instanceof LongAdder) {
+                line = String.format(Locale.ROOT, "%s count=%d", entry.getKey(), ((LongAdder) metric).sum());
+            } else if (metric instanceof Gauge) {
+                line = String.format(Locale.ROOT, "%s value=%d", entry.getKey(), ((Gauge) metric).getValue());
+            } else {
+                Histogram histogram = (Histogram) metric;
+                line = String.format(Locale.ROOT, "%s count=%d mean=%.1f p50=%d p99=%d p999=%d max=%d",
+                        entry.getKey(), histogram.getCount(), histogram.getMean(),
+                        histogram.getValueAtPercentile(50.0), histogram.getValueAtPercentile(99.0),
+                        histogram.getValueAtPercentile(99.9), histogram.getMax());
+            }
+            out.write(line);
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    /**
+     * Register the MBeans of all the metrics, the metrics created later are also registered.
+     *
+     * @param server
+     * @throws JMException
+     */
+    public void registerMBeans(MBeanServer server) throws JMException {
+        if (server == null) {
+            throw new NullPointerException("The server is null.");
+        }
+        lock.lock();
+        try {
+            if (this.server != null) {
+                throw new IllegalStateException("The MBeans are already registered.");
+            }
+            this.server = server;
+            for (Map.Entry<String, Object> metric : metrics.entrySet()) {
+                register(metric.getKey(), metric.getValue());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @GuardedBy("lock")
+    private void register(String name, Object metric) {
+        String type;
+        Object mbean;
+        if (metric instanceof LongAdder) {
+            type = "Counter";
+            mbean = new CounterView((LongAdder) metric);
+        } else if (metric instanceof Gauge) {
+            type = "Gauge";
+            mbean = new GaugeView((Gauge) metric);
+        } else {
+            type = "Histogram";
+            mbean = new HistogramView((Histogram) metric);
+        }
+        try {
+            ObjectName objectName = new ObjectName(domain + ":type=" + type + ",name=" + name);
+            server.registerMBean(mbean, objectName);
+            registered.add(objectName);
+        } catch (JMException e) {
+            LOG.log(Level.WARNING, "Cannot register the MBean of the metric " + name, e);
+        }
+    }
+
+    /**
+     * Unregister the MBeans of all the metrics.
+     */
+    public void unregisterMBeans() {
+        lock.lock();
+        try {
+            if (server == null) {
+                return;
+            }
+            for (ObjectName objectName : registered) {
+                try {
+                    server.unregisterMBean(objectName);
+                } catch (JMException e) {
+                    LOG.log(Level.WARNING, "Cannot unregister the MBean " + objectName, e);
+                }
+            }
+            registered.clear();
+            server = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static class CounterView implements CounterMXBean {
+        private final LongAdder counter;
+
+        CounterView(LongAdder counter) {
+            this.counter = counter;
+        }
+
+        @Override
+        public long getCount() {
+            return counter.sum();
+        }
+    }
+
+    private static class GaugeView implements GaugeMXBean {
+        private final Gauge gauge;
+
+        GaugeView(Gauge gauge) {
+            this.gauge = gauge;
+        }
+
+        @Override
+        public long getValue() {
+            return gauge.getValue();
+        }
+    }
+
+    private static class HistogramView implements HistogramMXBean {
+        private final Histogram histogram;
+
+        HistogramView(Histogram histogram) {
+            this.histogram = histogram;
+        }
+
+        @Override
+        public long getCount() {
+            return histogram.getCount();
+        }
+
+        @Override
+        public double getMean() {
+            return histogram.getMean();
+        }
+
+        @Override
+        public long getMax() {
+            return histogram.getMax();
+        }
+
+        @Override
+        public long get50thPercentile() {
+            return histogram.getValueAtPercentile(50.0);
+        }
+
+        @Override
+        public long get90thPercentile() {
+            return histogram.getValueAtPercentile(90.0);
+        }
+
+        @Override
+        public long get99thPercentile() {
+            return histogram.getValueAtPercentile(99.0);
+        }
+
+        @Override
+        public long get999thPercentile() {
+            return histogram.getValueAtPercentile(99.9);
+        }
+    }
+
+}
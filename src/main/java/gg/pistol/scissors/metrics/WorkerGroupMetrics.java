@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.metrics;
+
+import gg.pistol.scissors.game.RefereeWorkerGroups;
+
+/**
+ * Gauges of the {@link RefereeWorkerGroups}, for every group N: <code>referee.groupN.threads</code>,
+ * <code>referee.groupN.busy</code>, <code>referee.groupN.utilization</code> (the busy threads in percents),
+ * <code>referee.groupN.games</code>, <code>referee.groupN.tasks</code> and <code>referee.groupN.stolen</code>
+ * (the tasks of the other groups run by the group).
+ *
+ * @author Bogdan Pistol
+ */
+public final class WorkerGroupMetrics {
+
+    private static final long PERCENT = 100L;
+
+    private WorkerGroupMetrics() {
+    }
+
+    /**
+     * Register the gauges of the groups.
+     *
+     * @param registry where to register the gauges
+     * @param groups
+     */
+    public static void register(MetricsRegistry registry, final RefereeWorkerGroups groups) {
+        if (registry == null || groups == null) {
+            throw new NullPointerException("The registry or/and the groups are null.");
+        }
+        for (int i = 0; i < groups.getGroupCount(); i++) {
+            final int group = i;
+            String prefix = "referee.group" + i + ".";
+            registry.gauge(prefix + "threads", new Gauge() {
+                @Override
+                public long getValue() {
+                    return groups.getThreadCount(group);
+                }
+            });
+            registry.gauge(prefix + "busy", new Gauge() {
+                @Override
+                public long getValue() {
+                    return groups.getBusyCount(group);
+                }
+            });
+            registry.gauge(prefix + "utilization", new Gauge() {
+                @Override
+                public long getValue() {
+                    int threads = groups.getThreadCount(group);
+                    return threads > 0 ? groups.getBusyCount(group) * PERCENT / threads : 0L;
+                }
+            });
+            registry.gauge(prefix + "games", new Gauge() {
+                @Override
+                public long getValue() {
+                    return groups.getGameCount(group);
+                }
+            });
+            registry.gauge(prefix + "tasks", new Gauge() {
+                @Override
+                public long getValue() {
+                    return groups.getTaskCount(group);
+                }
+            });
+            registry.gauge(prefix + "stolen", new Gauge() {
+                @Override
+                public long getValue() {
+                    return groups.getStolenCount(group);
+                }
+            });
+        }
+    }
+
+}
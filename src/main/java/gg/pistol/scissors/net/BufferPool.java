@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.net;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of fixed-size direct buffers sliced from one preallocated slab.
+ *
+ * <p>The buffers are identified by their index, so taking and returning a buffer does not allocate. The free buffers
+ * form a lock-free stack linked by their indexes, with a version in the high half of the head against the ABA problem
+ * (a buffer taken and returned between the read and the update of the head by another thread).
+ *
+ * @author Bogdan Pistol
+ */
+// package private
+@ThreadSafe
+class BufferPool {
+
+    static final int NONE = -1;
+
+    private final ByteBuffer[] buffers;
+    private final AtomicIntegerArray next; // the next free buffer of every free buffer
+    private final AtomicLong head; // version << 32 | the index of the first free buffer (or NONE)
+
+    /**
+     * @param bufferSize the size of every buffer
+     * @param bufferCount the number of buffers
+     */
+    BufferPool(int bufferSize, int bufferCount) {
+        if (bufferSize <= 0 || bufferCount <= 0) {
+            throw new IllegalArgumentException("The buffer size and count must be positive.");
+        }
+        if ((long) bufferSize * bufferCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The pool is too large.");
+        }
+        ByteBuffer slab = ByteBuffer.allocateDirect(bufferSize * bufferCount);
+        buffers = new ByteBuffer[bufferCount];
+        next = new AtomicIntegerArray(bufferCount);
+        for (int i = 0; i < bufferCount; i++) {
+            slab.limit((i + 1) * bufferSize).position(i * bufferSize);
+            buffers[i] = slab.slice();
+            next.set(i, i + 1 < bufferCount ? i + 1 : NONE);
+        }
+        head = new AtomicLong(0L); // version 0, the first buffer
+    }
+
+    /**
+     * Take a free buffer.
+     *
+     * @return the index of the buffer or {@link #NONE} if the pool is empty
+     */
+    int acquire() {
+        for (;;) {
+            long current = head.get();
+            int index = (int) current;
+            if (index == NONE) {
+                return NONE;
+            }
+            if (head.compareAndSet(current, version(current) | (next.get(index) & 0xFFFFFFFFL))) {
+                return index;
+            }
+        }
+    }
+
+    /**
+     * Return the buffer to the pool, it should not be used anymore.
+     *
+     * @param index the index of the buffer
+     */
+    void release(int index) {
+        buffers[index].clear();
+        for (;;) {
+            long current = head.get();
+            next.set(index, (int) current);
+            if (head.compareAndSet(current, version(current) | index)) {
+                return;
+            }
+        }
+    }
+
+    private static long version(long head) {
+        return ((head >>> 32) + 1) << 32;
+    }
+
+    /**
+     * @param index the index of a taken buffer
+     * @return the buffer (cleared when it was taken)
+     */
+    ByteBuffer get(int index) {
+        return buffers[index];
+    }
+
+    int getBufferSize() {
+        return buffers[0].capacity();
+    }
+
+    /**
+     * @return the number of free buffers (for monitoring, it is not atomic)
+     */
+    int getFreeCount() {
+        int count = 0;
+        for (int index = (int) head.get(); index != NONE && count < buffers.length; index = next.get(index)) {
+            count++;
+        }
+        return count;
+    }
+
+}
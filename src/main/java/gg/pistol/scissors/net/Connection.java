@@ -0,0 +1,447 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.net;
+
+import gg.pistol.scissors.game.GameResult;
+import gg.pistol.scissors.game.Gesture;
+import gg.pistol.scissors.log.AsyncLogger;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A client connection of the {@link GameServer}, served by one {@link SelectorLoop}.
+ *
+ * <p>The connection is read only by its selector thread, directly in a pooled direct buffer. The frames can be sent
+ * from any thread (e.g. the referee threads): they are encoded in pooled direct buffers, queued in a preallocated
+ * ring and written by the selector thread with gathering writes, so the sending thread never blocks on the network
+ * and no memory is allocated per frame. The game outcomes are not copied: the ring holds a view of the outcome shared
+ * by all the recipients. A client that does not read its frames fast enough is disconnected instead of buffering
+ * without limit.
+ *
+ * @author Bogdan Pistol
+ */
+// package private
+@ThreadSafe
+class Connection {
+
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(Connection.class.getName());
+
+    static final int MAX_PENDING_FRAMES = 256;
+
+    /**
+     * Handler of the frames received by the connections.
+     */
+    interface Handler {
+
+        /**
+         * Called by the selector thread for every frame received, the frame starts at the buffer position and the
+         * buffer should not be modified.
+         */
+        void frameReceived(Connection connection, ByteBuffer frame);
+
+        /**
+         * Called once when the connection is closed, never while the connection holds its lock.
+         */
+        void connectionClosed(Connection connection);
+    }
+
+    private final SocketChannel channel;
+    private final SelectorLoop loop;
+    private final Handler handler;
+    private final BufferPool framePool;
+    private final BufferPool readPool;
+    private final AtomicBoolean flushRequested;
+    private final AtomicBoolean closed;
+    private final AtomicBoolean closeHandled;
+    @Nullable volatile Connection nextFlush; // the next connection of the flush requests of the loop
+
+    // the frames waiting to be written, in a ring
+    private final Lock lock;
+    @GuardedBy("lock") private final ByteBuffer[] pending;
+    @GuardedBy("lock") private final int[] pendingFrames; // the frame pool indexes, NONE for the shared outcomes
+    @GuardedBy("lock") private int head;
+    @GuardedBy("lock") private int count;
+    @GuardedBy("lock") private int frameIndex; // the frame being encoded
+
+    // used only by the selector thread
+    private final ByteBuffer readBuffer;
+    private int readFrame; // the read pool index, NONE when the buffer is not pooled
+    @Nullable private SelectionKey key;
+
+    // the session of the client, set by the selector thread
+    @Nullable private volatile RemotePlayer player;
+    @Nullable private volatile RemoteObserver observer;
+
+    Connection(SocketChannel channel, SelectorLoop loop, Handler handler, BufferPool framePool, BufferPool readPool) {
+        this.channel = channel;
+        this.loop = loop;
+        this.handler = handler;
+        this.framePool = framePool;
+        this.readPool = readPool;
+        flushRequested = new AtomicBoolean();
+        closed = new AtomicBoolean();
+        closeHandled = new AtomicBoolean();
+        lock = new ReentrantLock();
+        pending = new ByteBuffer[MAX_PENDING_FRAMES];
+        pendingFrames = new int[MAX_PENDING_FRAMES];
+        readFrame = readPool.acquire();
+        readBuffer = readFrame != BufferPool.NONE ? readPool.get(readFrame) :
+                ByteBuffer.allocateDirect(readPool.getBufferSize());
+    }
+
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    @Nullable
+    RemotePlayer getPlayer() {
+        return player;
+    }
+
+    void setPlayer(RemotePlayer player) {
+        this.player = player;
+    }
+
+    @Nullable
+    RemoteObserver getObserver() {
+        return observer;
+    }
+
+    void setObserver(RemoteObserver observer) {
+        this.observer = observer;
+    }
+
+    boolean isClosed() {
+        return closed.get();
+    }
+
+    void sendWelcome(int playerId) {
+        lock.lock();
+        try {
+            ByteBuffer frame = beginFrame();
+            if (frame != null) {
+                WireProtocol.encodeWelcome(frame, playerId);
+                endFrame(frame);
+            }
+        } finally {
+            lock.unlock();
+        }
+        sent();
+    }
+
+    void sendCountdown(long gameId, int count) {
+        lock.lock();
+        try {
+            ByteBuffer frame = beginFrame();
+            if (frame != null) {
+                WireProtocol.encodeCountdown(frame, gameId, count);
+                endFrame(frame);
+            }
+        } finally {
+            lock.unlock();
+        }
+        sent();
+    }
+
+    void sendRequest(long gameId) {
+        lock.lock();
+        try {
+            ByteBuffer frame = beginFrame();
+            if (frame != null) {
+                WireProtocol.encodeRequest(frame, gameId);
+                endFrame(frame);
+            }
+        } finally {
+            lock.unlock();
+        }
+        sent();
+    }
+
+    void sendGesture(long gameId, int playerId, Gesture gesture) {
+        lock.lock();
+        try {
+            ByteBuffer frame = beginFrame();
+            if (frame != null) {
+                WireProtocol.encodeGesture(frame, gameId, playerId, gesture);
+                endFrame(frame);
+            }
+        } finally {
+            lock.unlock();
+        }
+        sent();
+    }
+
+    /**
+     * Send a RESULT frame (or a FINISHED frame when the result is null) followed by the shared game outcome.
+     */
+    void sendOutcome(long gameId, @Nullable GameResult result, int playerCount, ByteBuffer outcome) {
+        lock.lock();
+        try {
+            if (count + 2 > MAX_PENDING_FRAMES) {
+                disconnectSlowClient();
+            } else {
+                ByteBuffer frame = beginFrame();
+                if (frame != null) {
+                    WireProtocol.encodeOutcomeHeader(frame, gameId, result, playerCount);
+                    endFrame(frame);
+                    enqueue(outcome.duplicate(), BufferPool.NONE); // a view, the outcome bytes are not copied
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        sent();
+    }
+
+    void sendError(byte code) {
+        lock.lock();
+        try {
+            ByteBuffer frame = beginFrame();
+            if (frame != null) {
+                WireProtocol.encodeError(frame, code);
+                endFrame(frame);
+            }
+        } finally {
+            lock.unlock();
+        }
+        sent();
+    }
+
+    /**
+     * Take a frame buffer to encode a frame into.
+     *
+     * @return the buffer or null if the connection is closed or was disconnected for being too slow
+     */
+    @GuardedBy("lock")
+    @Nullable
+    private ByteBuffer beginFrame() {
+        if (closed.get()) {
+            return null;
+        }
+        if (count == MAX_PENDING_FRAMES) {
+            disconnectSlowClient();
+            return null;
+        }
+        frameIndex = framePool.acquire();
+        // the pool is sized for the usual load, a new buffer is allocated when it is exhausted
+        return frameIndex != BufferPool.NONE ? framePool.get(frameIndex) :
+                ByteBuffer.allocate(WireProtocol.MAX_FIXED_FRAME_SIZE);
+    }
+
+    @GuardedBy("lock")
+    private void endFrame(ByteBuffer frame) {
+        frame.flip();
+        enqueue(frame, frameIndex);
+    }
+
+    @GuardedBy("lock")
+    private void enqueue(ByteBuffer buffer, int frameIndex) {
+        int tail = (head + count) % MAX_PENDING_FRAMES;
+        pending[tail] = buffer;
+        pendingFrames[tail] = frameIndex;
+        count++;
+    }
+
+    /**
+     * Called with the lock held, the handler is notified by {@link #sent()} after the lock is released.
+     */
+    private void disconnectSlowClient() {
+        LOG.info("Disconnecting the slow client {}", this);
+        closeChannel();
+    }
+
+    /**
+     * Flush the frame just queued or, if the connection was closed while sending it, notify the handler.
+     */
+    private void sent() {
+        requestFlush(); // the selector thread writes the frames or returns the buffers of a closed connection
+        if (closed.get()) {
+            notifyClosed();
+        }
+    }
+
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            loop.requestFlush(this);
+        }
+    }
+
+    /**
+     * Read the available bytes and handle the complete frames. Called by the selector thread.
+     */
+    void read() {
+        if (closed.get()) {
+            return;
+        }
+        try {
+            if (channel.read(readBuffer) < 0) {
+                close();
+                return;
+            }
+        } catch (IOException e) {
+            close();
+            return;
+        }
+        readBuffer.flip();
+        while (readBuffer.hasRemaining() && !closed.get()) {
+            int size = WireProtocol.clientFrameSize(readBuffer);
+            if (size < 0) {
+                sendError(WireProtocol.ERROR_UNKNOWN_FRAME); // the stream cannot be resynchronized
+                flush(); // best effort before closing
+                close();
+            } else if (size == 0 || size > readBuffer.remaining()) {
+                break; // wait for the rest of the frame
+            } else {
+                int position = readBuffer.position();
+                handler.frameReceived(this, readBuffer);
+                readBuffer.position(position + size);
+            }
+        }
+        readBuffer.compact();
+    }
+
+    /**
+     * Write the queued frames until the socket buffer is full. Called by the selector thread.
+     */
+    void flush() {
+        flushRequested.set(false); // the frames queued from now on request a new flush
+        if (closed.get()) {
+            releaseBuffers();
+            return;
+        }
+        lock.lock();
+        try {
+            while (count > 0) {
+                int length = Math.min(count, MAX_PENDING_FRAMES - head); // the contiguous part of the ring
+                channel.write(pending, head, length);
+                if (releaseWritten() < length) {
+                    // the socket buffer is full, continue when the socket is writable
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        } catch (IOException e) {
+            closeChannel();
+        } finally {
+            lock.unlock();
+        }
+        if (closed.get()) {
+            // failed to write, the handler is notified without the lock
+            requestFlush();
+            notifyClosed();
+        }
+    }
+
+    /**
+     * Remove the written frames from the ring and return their buffers to the pool.
+     *
+     * @return the number of frames removed
+     */
+    @GuardedBy("lock")
+    private int releaseWritten() {
+        int released = 0;
+        while (count > 0 && !pending[head].hasRemaining()) {
+            removeHead();
+            released++;
+        }
+        return released;
+    }
+
+    @GuardedBy("lock")
+    private void removeHead() {
+        if (pendingFrames[head] != BufferPool.NONE) {
+            framePool.release(pendingFrames[head]);
+        }
+        pending[head] = null;
+        head = (head + 1) % MAX_PENDING_FRAMES;
+        count--;
+    }
+
+    /**
+     * Return the buffers of the closed connection to the pools. Called by the selector thread.
+     */
+    private void releaseBuffers() {
+        lock.lock();
+        try {
+            while (count > 0) {
+                removeHead();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (readFrame != BufferPool.NONE) {
+            readPool.release(readFrame);
+            readFrame = BufferPool.NONE;
+        }
+    }
+
+    /**
+     * Close the connection, from any thread. The buffers are returned to the pools by the selector thread.
+     */
+    void close() {
+        if (closeChannel()) {
+            requestFlush(); // the selector thread returns the buffers
+            notifyClosed();
+        }
+    }
+
+    /**
+     * @return false if the connection was already closed
+     */
+    private boolean closeChannel() {
+        if (!closed.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            channel.close(); // also cancels the selection key
+        } catch (IOException e) {
+            // closing anyway
+        }
+        return true;
+    }
+
+    /**
+     * Notify the handler once, whichever thread saw the connection closed first.
+     */
+    private void notifyClosed() {
+        if (closeHandled.compareAndSet(false, true)) {
+            handler.connectionClosed(this);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Connection{" +
+                "channel=" + channel +
+                ", player=" + player +
+                '}';
+    }
+
+}
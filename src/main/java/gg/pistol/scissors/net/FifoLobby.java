@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.net;
+
+import gg.pistol.scissors.game.RefereeMonitor;
+import gg.pistol.scissors.match.GameStarter;
+import gg.pistol.scissors.match.RefereeStarter;
+import gg.pistol.scissors.player.GameObserver;
+import gg.pistol.scissors.player.Player;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lobby that starts a game with the players in the order they became ready, as soon as there are enough of them.
+ *
+ * <p>The observers watch all the games that start after they joined. The priority of the players is ignored.
+ *
+ * @author Bogdan Pistol
+ */
+@ThreadSafe
+public class FifoLobby implements Lobby {
+
+    private final int playersPerGame;
+    private final List<GameObserver> observers;
+    private final GameStarter starter;
+    @GuardedBy("lock") private final Set<RemotePlayer> waiting;
+    private final Lock lock;
+
+    /**
+     * @param playersPerGame the number of players of every game
+     * @param countdownStart from where to start the countdown
+     * @param timeBetweenCounts how much time to wait between counts in millis
+     * @param throwTimeLimit how much time to wait for every player to throw the gesture in millis
+     * @param monitors the monitors of the referees
+     */
+    public FifoLobby(int playersPerGame, int countdownStart, long timeBetweenCounts, long throwTimeLimit,
+                     List<RefereeMonitor> monitors) {
+        if (monitors == null) {
+            throw new NullPointerException("The monitors are null.");
+        }
+        if (playersPerGame < 2) {
+            throw new IllegalArgumentException("A game needs at least 2 players.");
+        }
+        this.playersPerGame = playersPerGame;
+        observers = new CopyOnWriteArrayList<GameObserver>();
+        starter = new RefereeStarter(countdownStart, timeBetweenCounts, throwTimeLimit, observers, monitors);
+        waiting = new LinkedHashSet<RemotePlayer>();
+        lock = new ReentrantLock();
+    }
+
+    @Override
+    public void playerReady(RemotePlayer player) {
+        if (player == null) {
+            throw new NullPointerException("The player is null.");
+        }
+        List<Player> players = null;
+        lock.lock();
+        try {
+            waiting.add(player);
+            if (waiting.size() >= playersPerGame) {
+                players = new ArrayList<Player>(playersPerGame);
+                Iterator<RemotePlayer> it = waiting.iterator();
+                while (players.size() < playersPerGame) {
+                    players.add(it.next());
+                    it.remove();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (players != null) {
+            starter.startGame(players);
+        }
+    }
+
+    @Override
+    public void playerLeft(RemotePlayer player) {
+        lock.lock();
+        try {
+            waiting.remove(player);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void observerJoined(GameObserver observer) {
+        if (observer == null) {
+            throw new NullPointerException("The observer is null.");
+        }
+        observers.add(observer);
+    }
+
+    @Override
+    public void observerLeft(GameObserver observer) {
+        observers.remove(observer);
+    }
+
+    /**
+     * @return the number of players waiting for a game
+     */
+    public int getWaitingCount() {
+        lock.lock();
+        try {
+            return waiting.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
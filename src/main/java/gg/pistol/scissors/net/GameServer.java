@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.net;
+
+import gg.pistol.scissors.game.Gesture;
+import gg.pistol.scissors.log.AsyncLogger;
+import gg.pistol.scissors.match.GamePriority;
+import gg.pistol.scissors.player.PlayerDirectory;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking game server for remote players and observers (see {@link WireProtocol} for the frames).
+ *
+ * <p>The connections are multiplexed over a few selector threads (the first one also accepts the new connections),
+ * so thousands of clients do not need thousands of threads. Every connection is adapted to a {@link RemotePlayer} or
+ * to a game observer and handed to the {@link Lobby}, that starts the games. The gestures thrown by the clients
+ * complete the pending gesture requests of the referee directly from the selector threads.
+ *
+ * <p>The frames are read and written in direct buffers taken from pools preallocated by the server, so the network
+ * path does not allocate per frame.
+ *
+ * @author Bogdan Pistol
+ */
+@ThreadSafe
+public class GameServer {
+
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(GameServer.class.getName());
+
+    private static final int READ_BUFFER_SIZE = 512; // holds a few frames of a client
+    private static final int READ_BUFFERS = 4096; // the connections beyond it allocate their read buffer
+    private static final int FRAME_BUFFERS = 65536; // the frames beyond it are allocated
+
+    private final InetSocketAddress address;
+    private final Lobby lobby;
+    private final SelectorLoop[] loops;
+    private final Thread[] threads;
+    private final ConcurrentMap<String, Connection> players; // by player name
+    private final PlayerDirectory directory;
+    private final OutcomeCache outcomes;
+    private final BufferPool framePool;
+    private final BufferPool readPool;
+    private final AtomicInteger nextLoop;
+    private final Connection.Handler handler;
+    @GuardedBy("this") @Nullable private ServerSocketChannel serverChannel;
+
+    /**
+     * @param address the address to listen on (the port 0 picks a free port)
+     * @param selectorThreads the number of selector threads
+     * @param lobby the lobby of the players
+     * @throws IOException
+     */
+    public GameServer(InetSocketAddress address, int selectorThreads, Lobby lobby) throws IOException {
+        if (address == null || lobby == null) {
+            throw new NullPointerException("The address or/and the lobby are null.");
+        }
+        if (selectorThreads <= 0) {
+            throw new IllegalArgumentException("The number of selector threads must be positive.");
+        }
+        this.address = address;
+        this.lobby = lobby;
+        loops = new SelectorLoop[selectorThreads];
+        threads = new Thread[selectorThreads];
+        for (int i = 0; i < selectorThreads; i++) {
+            loops[i] = new SelectorLoop();
+            threads[i] = new Thread(loops[i], "game-server-" + i);
+        }
+        players = new ConcurrentHashMap<String, Connection>();
+        directory = new PlayerDirectory();
+        outcomes = new OutcomeCache(directory);
+        framePool = new BufferPool(WireProtocol.MAX_FIXED_FRAME_SIZE, FRAME_BUFFERS);
+        readPool = new BufferPool(READ_BUFFER_SIZE, READ_BUFFERS);
+        nextLoop = new AtomicInteger();
+        handler = new MessageHandler();
+    }
+
+    /**
+     * Listen for connections and start the selector threads.
+     *
+     * @throws IOException
+     */
+    public synchronized void start() throws IOException {
+        if (serverChannel != null) {
+            throw new IllegalStateException("The server is already started.");
+        }
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.socket().setReuseAddress(true);
+        serverChannel.socket().bind(address);
+        loops[0].registerAcceptor(serverChannel, new SelectorLoop.Acceptor() {
+            @Override
+            public void accept(ServerSocketChannel channel) throws IOException {
+                acceptConnections(channel);
+            }
+        });
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        LOG.info("The game server is listening on {}", serverChannel.socket().getLocalSocketAddress());
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public synchronized int getLocalPort() {
+        if (serverChannel == null) {
+            throw new IllegalStateException("The server is not started.");
+        }
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * @return the number of client connections
+     */
+    public int getConnectionCount() {
+        int count = 0;
+        for (SelectorLoop loop : loops) {
+            count += loop.getConnectionCount();
+        }
+        return count - 1; // the server channel
+    }
+
+    /**
+     * Close the server and all the client connections.
+     */
+    public synchronized void close() {
+        for (SelectorLoop loop : loops) {
+            loop.close();
+        }
+        if (serverChannel != null) {
+            try {
+                serverChannel.close();
+            } catch (IOException e) {
+                // closing anyway
+            }
+        }
+    }
+
+    /**
+     * Wait until the server is closed.
+     *
+     * @throws InterruptedException
+     */
+    public void awaitTermination() throws InterruptedException {
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private void acceptConnections(ServerSocketChannel channel) throws IOException {
+        for (SocketChannel client = channel.accept(); client != null; client = channel.accept()) {
+            client.configureBlocking(false);
+            client.socket().setTcpNoDelay(true); // the messages are small and latency sensitive
+            SelectorLoop loop = loops[(nextLoop.getAndIncrement() & Integer.MAX_VALUE) % loops.length];
+            loop.register(new Connection(client, loop, handler, framePool, readPool));
+        }
+    }
+
+    /**
+     * The handler of the client frames, called by the selector threads.
+     */
+    private class MessageHandler implements Connection.Handler {
+
+        @Override
+        public void frameReceived(Connection connection, ByteBuffer frame) {
+            int position = frame.position();
+            switch (frame.get(position)) {
+                case WireProtocol.THROW:
+                    throwGesture(connection, WireProtocol.getGameId(frame, position),
+                            WireProtocol.getThrownGesture(frame, position));
+                    break;
+                case WireProtocol.PLAY:
+                    play(connection);
+                    break;
+                case WireProtocol.JOIN:
+                    join(connection, WireProtocol.getName(frame, position), GamePriority.CASUAL);
+                    break;
+                case WireProtocol.JOIN_RANKED:
+                    join(connection, WireProtocol.getName(frame, position), GamePriority.RANKED);
+                    break;
+                case WireProtocol.WATCH:
+                    watch(connection);
+                    break;
+                default:
+                    connection.sendError(WireProtocol.ERROR_UNKNOWN_FRAME);
+            }
+        }
+
+        private void join(Connection connection, String name, GamePriority priority) {
+            if (connection.getPlayer() != null || connection.getObserver() != null) {
+                connection.sendError(WireProtocol.ERROR_ALREADY_JOINED);
+                return;
+            }
+            if (!WireProtocol.isValidName(name)) {
+                connection.sendError(WireProtocol.ERROR_INVALID_NAME);
+                return;
+            }
+            if (players.putIfAbsent(name, connection) != null) {
+                connection.sendError(WireProtocol.ERROR_NAME_TAKEN);
+                return;
+            }
+            RemotePlayer player = new RemotePlayer(name, directory.getId(name), priority, connection, outcomes);
+            connection.setPlayer(player);
+            connection.sendWelcome(player.getId());
+            if (connection.isClosed()) {
+                // disconnected before the player was set and the connection handler did not see it
+                connectionClosed(connection);
+                return;
+            }
+            play(connection);
+        }
+
+        private void play(Connection connection) {
+            RemotePlayer player = connection.getPlayer();
+            if (player == null) {
+                connection.sendError(WireProtocol.ERROR_NOT_JOINED);
+            } else if (!player.startPlaying()) {
+                connection.sendError(WireProtocol.ERROR_ALREADY_PLAYING);
+            } else {
+                lobby.playerReady(player);
+            }
+        }
+
+        private void watch(Connection connection) {
+            if (connection.getPlayer() != null || connection.getObserver() != null) {
+                connection.sendError(WireProtocol.ERROR_ALREADY_JOINED);
+                return;
+            }
+            RemoteObserver observer = new RemoteObserver(connection, directory, outcomes);
+            connection.setObserver(observer);
+            lobby.observerJoined(observer);
+        }
+
+        private void throwGesture(Connection connection, long gameId, @Nullable Gesture gesture) {
+            RemotePlayer player = connection.getPlayer();
+            if (player == null) {
+                connection.sendError(WireProtocol.ERROR_NOT_JOINED);
+            } else if (gesture == null) {
+                connection.sendError(WireProtocol.ERROR_UNKNOWN_GESTURE);
+            } else {
+                player.gestureReceived(gameId, gesture);
+            }
+        }
+
+        @Override
+        public void connectionClosed(Connection connection) {
+            RemotePlayer player = connection.getPlayer();
+            // the join can call it again for a connection closed while joining, only the first call releases the name
+            if (player != null && players.remove(player.getName(), connection)) {
+                player.disconnected();
+                lobby.playerLeft(player);
+            }
+            RemoteObserver observer = connection.getObserver();
+            if (observer != null) {
+                lobby.observerLeft(observer);
+            }
+        }
+    }
+
+}
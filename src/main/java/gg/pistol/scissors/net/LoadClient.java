@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.net;
+
+import gg.pistol.scissors.game.Gesture;
+import gg.pistol.scissors.metrics.Histogram;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test client of the {@link GameServer}: it opens many connections from a single selector thread and plays
+ * random gestures as fast as the server allows.
+ *
+ * <p>Every connection joins as a player, throws a random gesture when asked and asks for a new game when the result
+ * arrives. The game latency is measured from asking for a game until its result arrived. The frames are encoded and
+ * decoded in place in a pair of direct buffers per connection.
+ *
+ * @author Bogdan Pistol
+ */
+@NotThreadSafe
+public class LoadClient {
+
+    private static final Gesture[] GESTURES = Gesture.values();
+    private static final int BUFFER_SIZE = 1024;
+    private static final long SELECT_TIMEOUT = 100L; // millis
+
+    private final InetSocketAddress address;
+    private final int connectionCount;
+    private final long duration; // millis
+    private final PrintStream out;
+    private final Random random;
+    private final Histogram latency; // nanos
+    private long finishedGames;
+    private long errors;
+    private long busy;
+
+    /**
+     * @param address the address of the server
+     * @param connectionCount the number of connections (players) to open
+     * @param duration how long to play in millis
+     * @param out where to print the report
+     */
+    public LoadClient(InetSocketAddress address, int connectionCount, long duration, PrintStream out) {
+        if (address == null || out == null) {
+            throw new NullPointerException("The address or/and the out are null.");
+        }
+        if (connectionCount <= 0 || duration <= 0) {
+            throw new IllegalArgumentException("The connection count and the duration must be positive.");
+        }
+        this.address = address;
+        this.connectionCount = connectionCount;
+        this.duration = duration;
+        this.out = out;
+        random = new Random();
+        latency = new Histogram();
+    }
+
+    /**
+     * Play until the duration is reached and print the report.
+     *
+     * @throws IOException
+     */
+    public void run() throws IOException {
+        Selector selector = Selector.open();
+        List<Client> clients = new ArrayList<Client>();
+        long start = System.nanoTime();
+        try {
+            String prefix = "load-" + Long.toHexString(start & 0xffffffL) + "-";
+            for (int i = 0; i < connectionCount; i++) {
+                SocketChannel channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                Client client = new Client(channel, prefix + i);
+                clients.add(client);
+                if (channel.connect(address)) {
+                    client.connected(channel.register(selector, SelectionKey.OP_READ, client));
+                } else {
+                    channel.register(selector, SelectionKey.OP_CONNECT, client);
+                }
+            }
+
+            long deadline = start + TimeUnit.MILLISECONDS.toNanos(duration);
+            while (System.nanoTime() - deadline < 0) {
+                selector.select(SELECT_TIMEOUT);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handle(key);
+                }
+            }
+        } finally {
+            for (Client client : clients) {
+                client.close();
+            }
+            selector.close();
+        }
+
+        double seconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1L);
+        out.println(String.format(Locale.ROOT, "%d connections: games %d (%.1f/s) errors %d busy %d | latency ms " +
+                "p50 %.1f p90 %.1f p99 %.1f max %.1f", connectionCount, finishedGames, finishedGames / seconds, errors,
+                busy,
+                toMillis(latency.getValueAtPercentile(50.0)), toMillis(latency.getValueAtPercentile(90.0)),
+                toMillis(latency.getValueAtPercentile(99.0)), toMillis(latency.getMax())));
+    }
+
+    private void handle(SelectionKey key) {
+        Client client = (Client) key.attachment();
+        try {
+            if (key.isConnectable()) {
+                client.channel.finishConnect();
+                client.connected(key);
+                return;
+            }
+            if (key.isReadable()) {
+                client.read();
+            }
+            if (key.isValid() && key.isWritable()) {
+                client.flush();
+            }
+        } catch (IOException e) {
+            errors++;
+            client.close();
+        }
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1L);
+    }
+
+    /**
+     * @return the number of games that finished
+     */
+    public long getFinishedGames() {
+        return finishedGames;
+    }
+
+    /**
+     * @return the number of error messages and failed connections
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return the number of games that the overloaded server did not start
+     */
+    public long getBusyCount() {
+        return busy;
+    }
+
+    /**
+     * @return the latency of the finished games in nanoseconds
+     */
+    public Histogram getLatency() {
+        return latency;
+    }
+
+    private class Client {
+        private final SocketChannel channel;
+        private final String name;
+        private final ByteBuffer readBuffer;
+        private final ByteBuffer writeBuffer; // the encoded frames not written yet
+        private SelectionKey key;
+        private long playTime; // System.nanoTime()
+
+        Client(SocketChannel channel, String name) {
+            this.channel = channel;
+            this.name = name;
+            readBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            writeBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+
+        void connected(SelectionKey key) throws IOException {
+            this.key = key;
+            key.interestOps(SelectionKey.OP_READ);
+            playTime = System.nanoTime();
+            WireProtocol.encodeJoin(writeBuffer, name.getBytes(WireProtocol.CHARSET)); // also waits for a game
+            flush();
+        }
+
+        void read() throws IOException {
+            if (channel.read(readBuffer) < 0) {
+                throw new IOException("The server closed the connection.");
+            }
+            readBuffer.flip();
+            while (readBuffer.hasRemaining()) {
+                int size = WireProtocol.serverFrameSize(readBuffer);
+                if (size < 0) {
+                    throw new IOException("Unknown or invalid frame from the server.");
+                }
+                if (size == 0 || size > readBuffer.remaining()) {
+                    break;
+                }
+                int position = readBuffer.position();
+                handle(readBuffer.get(position), position);
+                readBuffer.position(position + size);
+            }
+            readBuffer.compact();
+            flush();
+        }
+
+        private void handle(byte type, int position) {
+            if (type == WireProtocol.REQUEST) {
+                WireProtocol.encodeThrow(writeBuffer, WireProtocol.getGameId(readBuffer, position),
+                        GESTURES[random.nextInt(GESTURES.length)]);
+            } else if (type == WireProtocol.RESULT) {
+                long now = System.nanoTime();
+                latency.record(now - playTime);
+                finishedGames++;
+                playTime = now;
+                WireProtocol.encodePlay(writeBuffer);
+            } else if (type == WireProtocol.ERROR) {
+                if (WireProtocol.getErrorCode(readBuffer, position) == WireProtocol.ERROR_BUSY) {
+                    busy++; // the game was shed, wait for the next one
+                    WireProtocol.encodePlay(writeBuffer);
+                } else {
+                    errors++;
+                }
+            }
+        }
+
+        void flush() throws IOException {
+            writeBuffer.flip();
+            channel.write(writeBuffer);
+            key.interestOps(writeBuffer.hasRemaining() ? SelectionKey.OP_READ | SelectionKey.OP_WRITE :
+                    SelectionKey.OP_READ);
+            writeBuffer.compact();
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // closing anyway
+            }
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.net;
+
+import gg.pistol.scissors.player.GameObserver;
+
+/**
+ * The place where the clients of the {@link GameServer} wait for games.
+ *
+ * <p>The methods are called by the selector threads of the server, so the implementations should be thread-safe and
+ * should not block (e.g. the games should be refereed by other threads).
+ *
+ * @author Bogdan Pistol
+ */
+public interface Lobby {
+
+    /**
+     * The player is waiting for a game.
+     *
+     * @param player
+     */
+    void playerReady(RemotePlayer player);
+
+    /**
+     * The player disconnected.
+     *
+     * @param player
+     */
+    void playerLeft(RemotePlayer player);
+
+    /**
+     * The observer wants to watch the games.
+     *
+     * @param observer
+     */
+    void observerJoined(GameObserver observer);
+
+    /**
+     * The observer disconnected.
+     *
+     * @param observer
+     */
+    void observerLeft(GameObserver observer);
+
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.net;
+
+import gg.pistol.scissors.game.RefereeMonitor;
+import gg.pistol.scissors.game.RefereeWorkerGroups;
+import gg.pistol.scissors.match.AdmissionController;
+import gg.pistol.scissors.match.AdmissionPolicy;
+import gg.pistol.scissors.match.DrainReport;
+import gg.pistol.scissors.match.GamePriority;
+import gg.pistol.scissors.match.GameStarter;
+import gg.pistol.scissors.match.MatchTicket;
+import gg.pistol.scissors.match.Matchmaker;
+import gg.pistol.scissors.match.RefereeStarter;
+import gg.pistol.scissors.match.RejectedGameHandler;
+import gg.pistol.scissors.metrics.MetricsRegistry;
+import gg.pistol.scissors.player.GameObserver;
+import gg.pistol.scissors.player.Player;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Lobby that forms the games with a {@link Matchmaker}, so the selector threads only queue the players without
+ * taking a lock.
+ *
+ * <p>The games are started through an {@link AdmissionController}, the players of the games that are not started
+ * because the server is overloaded receive a busy error and can ask for a new game. The players that joined ranked
+ * are matched by a separate matchmaker (with the metrics prefixed by <code>matchmaker.ranked</code>) and their games
+ * are admitted with the {@link GamePriority#RANKED} priority, the others are matched and admitted as casual. The
+ * players still waiting when the lobby is closed receive a busy error.
+ *
+ * <p>The observers watch all the games that start after they joined.
+ *
+ * @author Bogdan Pistol
+ */
+@ThreadSafe
+public class MatchmakingLobby implements Lobby {
+
+    private final Matchmaker casualMatchmaker;
+    private final Matchmaker rankedMatchmaker;
+    private final AdmissionController admission;
+    private final List<GameObserver> observers;
+    private final ConcurrentMap<RemotePlayer, MatchTicket> tickets;
+
+    /**
+     * @param playersPerGame the number of players of every game
+     * @param countdownStart from where to start the countdown
+     * @param timeBetweenCounts how much time to wait between counts in millis
+     * @param throwTimeLimit how much time to wait for every player to throw the gesture in millis
+     * @param monitors the monitors of the referees
+     * @param workerGroups the threads shared by the referees or null for new threads for every game
+     * @param admissionPolicy what to do with the games over the running games limit
+     * @param maxRunningGames the limit of the running games
+     * @param maxPendingGames the capacity of the queue of the games over the limit
+     * @param registry where to create the metrics of the matchmaker and of the admission
+     */
+    public MatchmakingLobby(int playersPerGame, int countdownStart, long timeBetweenCounts, long throwTimeLimit,
+                            List<RefereeMonitor> monitors, @Nullable RefereeWorkerGroups workerGroups,
+                            AdmissionPolicy admissionPolicy, int maxRunningGames, int maxPendingGames,
+                            MetricsRegistry registry) {
+        if (monitors == null) {
+            throw new NullPointerException("The monitors are null.");
+        }
+        observers = new CopyOnWriteArrayList<GameObserver>();
+        RefereeStarter starter = new RefereeStarter(countdownStart, timeBetweenCounts, throwTimeLimit, observers,
+                monitors, workerGroups);
+        // the degraded games skip the countdown and the observers
+        RefereeStarter degradedStarter = new RefereeStarter(0, 0L, throwTimeLimit,
+                Collections.<GameObserver>emptyList(), monitors, workerGroups);
+        admission = new AdmissionController(admissionPolicy, maxRunningGames, maxPendingGames,
+                starter, degradedStarter, new RejectedGameHandler() {
+                    @Override
+                    public void gameRejected(List<Player> players, GamePriority priority) {
+                        for (Player player : players) {
+                            ((RemotePlayer) player).gameRejected();
+                        }
+                    }
+                }, registry);
+        tickets = new ConcurrentHashMap<RemotePlayer, MatchTicket>();
+        casualMatchmaker = new Matchmaker(playersPerGame, new LaneStarter(GamePriority.CASUAL), registry);
+        rankedMatchmaker = new Matchmaker(playersPerGame, 1, null, 0.0, new LaneStarter(GamePriority.RANKED),
+                registry, Matchmaker.DEFAULT_NAME + ".ranked");
+    }
+
+    /**
+     * Start matching the players.
+     */
+    public void start() {
+        casualMatchmaker.start();
+        rankedMatchmaker.start();
+    }
+
+    /**
+     * Stop matching the players, the waiting players receive a busy error.
+     */
+    public void close() {
+        closeMatchmakers();
+    }
+
+    /**
+     * @return the number of players that were still waiting
+     */
+    private int closeMatchmakers() {
+        int abandoned = 0;
+        for (Matchmaker matchmaker : new Matchmaker[] {casualMatchmaker, rankedMatchmaker}) {
+            for (MatchTicket ticket : matchmaker.close()) {
+                RemotePlayer player = (RemotePlayer) ticket.getPlayer();
+                tickets.remove(player, ticket);
+                player.gameRejected();
+                abandoned++;
+            }
+        }
+        return abandoned;
+    }
+
+    /**
+     * Stop forming games and drain the running ones (see {@link AdmissionController#drain}), the players still waiting
+     * for a match receive a busy error and are counted in the report.
+     *
+     * @param timeout how long to wait for the running games in millis
+     * @param sinks the sinks to close after the games ended
+     * @return the report of the drain
+     * @throws InterruptedException
+     */
+    public DrainReport drain(long timeout, List<? extends Closeable> sinks) throws InterruptedException {
+        int abandoned = closeMatchmakers();
+        return admission.drain(timeout, sinks).withAbandonedPlayers(abandoned);
+    }
+
+    @Override
+    public void playerReady(RemotePlayer player) {
+        if (player == null) {
+            throw new NullPointerException("The player is null.");
+        }
+        MatchTicket ticket = getMatchmaker(player.getPriority()).enqueue(player);
+        tickets.put(player, ticket);
+        if (ticket.isMatched()) {
+            // matched before it was put, the starter did not see it
+            tickets.remove(player, ticket);
+        }
+    }
+
+    @Override
+    public void playerLeft(RemotePlayer player) {
+        if (player == null) {
+            return;
+        }
+        MatchTicket ticket = tickets.remove(player);
+        if (ticket != null) {
+            getMatchmaker(player.getPriority()).cancel(ticket);
+        }
+    }
+
+    @Override
+    public void observerJoined(GameObserver observer) {
+        if (observer == null) {
+            throw new NullPointerException("The observer is null.");
+        }
+        observers.add(observer);
+    }
+
+    @Override
+    public void observerLeft(GameObserver observer) {
+        observers.remove(observer);
+    }
+
+    /**
+     * @param priority the priority of the games
+     * @return the matchmaker that forms the games of the priority
+     */
+    public Matchmaker getMatchmaker(GamePriority priority) {
+        if (priority == null) {
+            throw new NullPointerException("The priority is null.");
+        }
+        return priority == GamePriority.RANKED ? rankedMatchmaker : casualMatchmaker;
+    }
+
+    /**
+     * Admits the games formed by the matchmaker of a priority, the matched players can only leave their game.
+     */
+    private class LaneStarter implements GameStarter {
+        private final GamePriority priority;
+
+        LaneStarter(GamePriority priority) {
+            this.priority = priority;
+        }
+
+        @Override
+        public void startGame(List<Player> players) {
+            for (Player player : players) {
+                MatchTicket ticket = tickets.get(player);
+                if (ticket != null && ticket.isMatched()) {
+                    tickets.remove(player, ticket);
+                }
+            }
+            admission.admit(players, priority);
+        }
+    }
+
+}
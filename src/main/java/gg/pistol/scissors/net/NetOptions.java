@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.net;
+
+import gg.pistol.scissors.match.AdmissionPolicy;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * The options of the {@link GameServer} and of the {@link LoadClient}, parsed from the command line.
+ *
+ * @author Bogdan Pistol
+ */
+@Immutable
+public final class NetOptions {
+
+    public static final String USAGE =
+            "Usage: server [options] | client [options]\n" +
+            "  --host HOST            the server host of the client (default localhost)\n" +
+            "  --port N               the server port (default 7070)\n" +
+            "  --selectors N          the selector threads of the server (default the number of processors)\n" +
+            "  --players N            the players per game of the server (default 2)\n" +
+            "  --countdown N          from where the referee counts down (default 0)\n" +
+            "  --count-interval MILLIS  the time between counts (default 0)\n" +
+            "  --throw-limit MILLIS   the throw time limit (default 2000)\n" +
+            "  --admission POLICY     reject, queue or degrade the games over the limit (default queue)\n" +
+            "  --max-games N          the limit of the running games of the server (default 10000)\n" +
+            "  --max-pending N        the games over the limit that can wait (default 10000)\n" +
+            "  --drain SECONDS        how long the running games can finish when the server stops (default 30)\n" +
+            "  --connections N        the connections of the client (default 100)\n" +
+            "  --duration SECONDS     how long the client plays (default 30)";
+
+    private static final String DEFAULT_HOST = "localhost";
+    private static final int DEFAULT_PORT = 7070;
+    private static final int DEFAULT_PLAYERS = 2;
+    private static final long DEFAULT_THROW_TIME_LIMIT = 2000L;
+    private static final int DEFAULT_MAX_GAMES = 10000;
+    private static final int DEFAULT_MAX_PENDING = 10000;
+    private static final long DEFAULT_DRAIN_TIMEOUT = 30000L;
+    private static final int DEFAULT_CONNECTIONS = 100;
+    private static final long DEFAULT_DURATION = 30000L;
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final int MAX_PORT = 0xffff;
+
+    private final String host;
+    private final int port;
+    private final int selectorThreads;
+    private final int playersPerGame;
+    private final int countdownStart;
+    private final long timeBetweenCounts; // millis
+    private final long throwTimeLimit; // millis
+    private final AdmissionPolicy admissionPolicy;
+    private final int maxRunningGames;
+    private final int maxPendingGames;
+    private final long drainTimeout; // millis
+    private final int connections;
+    private final long duration; // millis
+
+    /**
+     * @param host the server host of the client
+     * @param port the server port
+     * @param selectorThreads the selector threads of the server
+     * @param playersPerGame the players per game of the server
+     * @param countdownStart from where to start the countdown
+     * @param timeBetweenCounts how much time to wait between counts in millis
+     * @param throwTimeLimit how much time to wait for every player to throw the gesture in millis
+     * @param admissionPolicy what the server does with the games over the running games limit
+     * @param maxRunningGames the limit of the running games of the server
+     * @param maxPendingGames the games over the limit that can wait
+     * @param drainTimeout how long the running games can finish when the server stops in millis
+     * @param connections the connections of the client
+     * @param duration how long the client plays in millis
+     */
+    public NetOptions(String host, int port, int selectorThreads, int playersPerGame, int countdownStart,
+                      long timeBetweenCounts, long throwTimeLimit, AdmissionPolicy admissionPolicy,
+                      int maxRunningGames, int maxPendingGames, long drainTimeout, int connections,
+                      long duration) {
+        if (host == null || admissionPolicy == null) {
+            throw new NullPointerException("The host or/and the admission policy are null.");
+        }
+        if (maxRunningGames <= 0 || maxPendingGames < 0) {
+            throw new IllegalArgumentException("The max games must be positive and the max pending cannot be " +
+                    "negative.");
+        }
+        if (port < 0 || port > MAX_PORT) {
+            throw new IllegalArgumentException("The port is not valid.");
+        }
+        if (selectorThreads <= 0 || connections <= 0 || duration <= 0) {
+            throw new IllegalArgumentException("The selectors, the connections and the duration must be positive.");
+        }
+        if (playersPerGame < 2) {
+            throw new IllegalArgumentException("A game needs at least 2 players.");
+        }
+        if (countdownStart < 0 || timeBetweenCounts < 0 || throwTimeLimit < 0 || drainTimeout < 0) {
+            throw new IllegalArgumentException("The counts and the times cannot be negative.");
+        }
+        this.host = host;
+        this.port = port;
+        this.selectorThreads = selectorThreads;
+        this.playersPerGame = playersPerGame;
+        this.countdownStart = countdownStart;
+        this.timeBetweenCounts = timeBetweenCounts;
+        this.throwTimeLimit = throwTimeLimit;
+        this.admissionPolicy = admissionPolicy;
+        this.maxRunningGames = maxRunningGames;
+        this.maxPendingGames = maxPendingGames;
+        this.drainTimeout = drainTimeout;
+        this.connections = connections;
+        this.duration = duration;
+    }
+
+    /**
+     * Parse the options from the command line arguments (see {@link #USAGE}).
+     *
+     * @param args
+     * @return the options
+     * @throws IllegalArgumentException in case the arguments are not valid
+     */
+    public static NetOptions parse(String[] args) {
+        if (args == null) {
+            throw new NullPointerException("The args are null.");
+        }
+        String host = DEFAULT_HOST;
+        int port = DEFAULT_PORT;
+        int selectorThreads = Runtime.getRuntime().availableProcessors();
+        int playersPerGame = DEFAULT_PLAYERS;
+        int countdownStart = 0;
+        long timeBetweenCounts = 0;
+        long throwTimeLimit = DEFAULT_THROW_TIME_LIMIT;
+        AdmissionPolicy admissionPolicy = AdmissionPolicy.QUEUE;
+        int maxRunningGames = DEFAULT_MAX_GAMES;
+        int maxPendingGames = DEFAULT_MAX_PENDING;
+        long drainTimeout = DEFAULT_DRAIN_TIMEOUT;
+        int connections = DEFAULT_CONNECTIONS;
+        long duration = DEFAULT_DURATION;
+
+        for (int i = 0; i < args.length; i += 2) {
+            String option = args[i];
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing the value of the option " + option);
+            }
+            if ("--host".equals(option)) {
+                host = args[i + 1];
+                continue;
+            }
+            if ("--admission".equals(option)) {
+                admissionPolicy = parsePolicy(args[i + 1]);
+                continue;
+            }
+            long value = parseValue(option, args[i + 1]);
+            if ("--port".equals(option)) {
+                port = toInt(option, value);
+            } else if ("--selectors".equals(option)) {
+                selectorThreads = toInt(option, value);
+            } else if ("--players".equals(option)) {
+                playersPerGame = toInt(option, value);
+            } else if ("--countdown".equals(option)) {
+                countdownStart = toInt(option, value);
+            } else if ("--count-interval".equals(option)) {
+                timeBetweenCounts = value;
+            } else if ("--throw-limit".equals(option)) {
+                throwTimeLimit = value;
+            } else if ("--max-games".equals(option)) {
+                maxRunningGames = toInt(option, value);
+            } else if ("--max-pending".equals(option)) {
+                maxPendingGames = toInt(option, value);
+            } else if ("--drain".equals(option)) {
+                drainTimeout = value * MILLIS_PER_SECOND;
+            } else if ("--connections".equals(option)) {
+                connections = toInt(option, value);
+            } else if ("--duration".equals(option)) {
+                duration = value * MILLIS_PER_SECOND;
+            } else {
+                throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+        return new NetOptions(host, port, selectorThreads, playersPerGame, countdownStart, timeBetweenCounts,
+                throwTimeLimit, admissionPolicy, maxRunningGames, maxPendingGames, drainTimeout, connections,
+                duration);
+    }
+
+    private static AdmissionPolicy parsePolicy(String value) {
+        for (AdmissionPolicy policy : AdmissionPolicy.values()) {
+            if (policy.name().equalsIgnoreCase(value)) {
+                return policy;
+            }
+        }
+        throw new IllegalArgumentException("Unknown admission policy " + value);
+    }
+
+    private static long parseValue(String option, String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("The value of the option " + option + " is not a number: " + value);
+        }
+    }
+
+    private static int toInt(String option, long value) {
+        if (value > Integer.MAX_VALUE || value < Integer.MIN_VALUE) {
+            throw new IllegalArgumentException("The value of the option " + option + " is too large: " + value);
+        }
+        return (int) value;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public int getSelectorThreads() {
+        return selectorThreads;
+    }
+
+    public int getPlayersPerGame() {
+        return playersPerGame;
+    }
+
+    public int getCountdownStart() {
+        return countdownStart;
+    }
+
+    /**
+     * @return the time between counts in millis
+     */
+    public long getTimeBetweenCounts() {
+        return timeBetweenCounts;
+    }
+
+    /**
+     * @return the throw time limit in millis
+     */
+    public long getThrowTimeLimit() {
+        return throwTimeLimit;
+    }
+
+    public AdmissionPolicy getAdmissionPolicy() {
+        return admissionPolicy;
+    }
+
+    public int getMaxRunningGames() {
+        return maxRunningGames;
+    }
+
+    public int getMaxPendingGames() {
+        return maxPendingGames;
+    }
+
+    /**
+     * @return how long the running games can finish when the server stops in millis
+     */
+    public long getDrainTimeout() {
+        return drainTimeout;
+    }
+
+    public int getConnections() {
+        return connections;
+    }
+
+    /**
+     * @return how long the client plays in millis
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+}
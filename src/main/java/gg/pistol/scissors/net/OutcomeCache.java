@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.net;
+
+import gg.pistol.scissors.game.Game;
+import gg.pistol.scissors.game.GameResult;
+import gg.pistol.scissors.game.Gesture;
+import gg.pistol.scissors.player.Player;
+import gg.pistol.scissors.player.PlayerDirectory;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The encoded outcomes of the recently finished games, shared by the RESULT and FINISHED frames of all the recipients
+ * of a game (see {@link WireProtocol}).
+ *
+ * <p>The outcomes are kept in a fixed number of slots selected by the game id, so an outcome is replaced by a newer
+ * game and the cache does not need to be cleaned. The recipients of a game are released together, so they usually
+ * miss the cache together: the first one installs the outcome of the game with a compare and set and all of them use
+ * that instance, which encodes the game once (the others wait for the encoding instead of repeating it).
+ *
+ * @author Bogdan Pistol
+ */
+// package private
+@ThreadSafe
+class OutcomeCache {
+
+    private static final int SLOTS = 1024; // a power of 2
+
+    private final PlayerDirectory directory;
+    private final AtomicReferenceArray<Outcome> slots;
+
+    OutcomeCache(PlayerDirectory directory) {
+        this.directory = directory;
+        slots = new AtomicReferenceArray<Outcome>(SLOTS);
+    }
+
+    /**
+     * @param game a finished game
+     * @return the read-only encoded outcome of the game, every recipient should write a duplicate of it
+     */
+    ByteBuffer getOutcome(Game game) {
+        long gameId = game.getId();
+        int slot = (int) gameId & (SLOTS - 1);
+        Outcome outcome = slots.get(slot);
+        if (outcome == null || outcome.gameId != gameId) {
+            Outcome created = new Outcome(gameId);
+            while (!slots.compareAndSet(slot, outcome, created)) {
+                outcome = slots.get(slot);
+                if (outcome != null && outcome.gameId == gameId) { // installed by another recipient
+                    return outcome.getEncoded(game);
+                }
+            }
+            outcome = created;
+        }
+        return outcome.getEncoded(game);
+    }
+
+    private ByteBuffer encode(Game game) {
+        List<Player> players = game.getPlayers();
+        int[] playerIds = new int[players.size()];
+        Gesture[] gestures = new Gesture[players.size()];
+        GameResult[] results = new GameResult[players.size()];
+        for (int i = 0; i < playerIds.length; i++) {
+            Player player = players.get(i);
+            playerIds[i] = directory.getId(player);
+            gestures[i] = game.getPlayerGesture(player);
+            results[i] = game.getPlayerResult(player);
+        }
+        ByteBuffer encoded = ByteBuffer.allocateDirect(WireProtocol.OUTCOME_RECORD_SIZE * playerIds.length);
+        WireProtocol.encodeOutcome(encoded, playerIds, gestures, results);
+        encoded.flip();
+        return encoded.asReadOnlyBuffer();
+    }
+
+    private class Outcome {
+        private final long gameId;
+        @GuardedBy("this") @Nullable private ByteBuffer encoded;
+
+        Outcome(long gameId) {
+            this.gameId = gameId;
+        }
+
+        synchronized ByteBuffer getEncoded(Game game) {
+            if (encoded == null) {
+                encoded = encode(game);
+            }
+            return encoded;
+        }
+    }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.net;
+
+import gg.pistol.scissors.game.Game;
+import gg.pistol.scissors.game.Gesture;
+import gg.pistol.scissors.player.GameObserver;
+import gg.pistol.scissors.player.Player;
+import gg.pistol.scissors.player.PlayerDirectory;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Game observer connected to the {@link GameServer}, the gestures and the outcomes of the games are sent to the client
+ * as frames.
+ *
+ * @author Bogdan Pistol
+ */
+// package private
+@ThreadSafe
+class RemoteObserver implements GameObserver {
+
+    private final Connection connection;
+    private final PlayerDirectory directory;
+    private final OutcomeCache outcomes;
+
+    RemoteObserver(Connection connection, PlayerDirectory directory, OutcomeCache outcomes) {
+        this.connection = connection;
+        this.directory = directory;
+        this.outcomes = outcomes;
+    }
+
+    @Override
+    public void gestureThrown(Player player, Gesture gesture) {
+        // the observer events do not tell the game, the players of the server know it
+        long gameId = player instanceof RemotePlayer ? ((RemotePlayer) player).getGameId() : RemotePlayer.NO_GAME;
+        connection.sendGesture(gameId, directory.getId(player), gesture);
+    }
+
+    @Override
+    public void countdown(int count) {
+        // not sent: the observer watches many games and the countdown does not tell which one
+    }
+
+    @Override
+    public void gameFinished(Game game) {
+        connection.sendOutcome(game.getId(), null, game.getPlayers().size(), outcomes.getOutcome(game));
+    }
+
+}
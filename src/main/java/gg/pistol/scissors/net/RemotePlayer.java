@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.net;
+
+import gg.pistol.scissors.game.Game;
+import gg.pistol.scissors.game.GameResult;
+import gg.pistol.scissors.game.Gesture;
+import gg.pistol.scissors.match.GamePriority;
+import gg.pistol.scissors.player.AbstractPlayer;
+import gg.pistol.scissors.player.AsyncPlayer;
+import gg.pistol.scissors.player.GestureCallback;
+import gg.pistol.scissors.player.OpponentAwarePlayer;
+import gg.pistol.scissors.player.Player;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Player connected to the {@link GameServer}.
+ *
+ * <p>The referee events are sent to the client as frames and the gesture requests are completed by the selector
+ * thread when the client throws, so no thread is waiting for the client. The player is aware of its game only to
+ * tag the frames with the game id.
+ *
+ * @author Bogdan Pistol
+ */
+@ThreadSafe
+public class RemotePlayer extends AbstractPlayer implements AsyncPlayer, OpponentAwarePlayer {
+
+    /**
+     * The game id of a player that did not play yet.
+     */
+    public static final long NO_GAME = -1L;
+
+    private final int id;
+    private final GamePriority priority;
+    private final Connection connection;
+    private final OutcomeCache outcomes;
+    private final AtomicReference<GestureCallback> pendingRequest;
+    private final AtomicBoolean playing; // waiting for a game or playing one
+    private volatile long gameId;
+
+    // package private
+    RemotePlayer(String name, int id, GamePriority priority, Connection connection, OutcomeCache outcomes) {
+        super(name);
+        this.id = id;
+        this.priority = priority;
+        this.connection = connection;
+        this.outcomes = outcomes;
+        pendingRequest = new AtomicReference<GestureCallback>();
+        playing = new AtomicBoolean();
+        gameId = NO_GAME;
+    }
+
+    /**
+     * @return the identifier of the player on the server
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return the priority of the games of the player, chosen when joining
+     */
+    public GamePriority getPriority() {
+        return priority;
+    }
+
+    /**
+     * @return the id of the current (or last) game of the player or {@link #NO_GAME}
+     */
+    public long getGameId() {
+        return gameId;
+    }
+
+    /**
+     * @return true if the client is still connected
+     */
+    public boolean isConnected() {
+        return !connection.isClosed();
+    }
+
+    @Override
+    public void observeGame(Game game, List<Player> opponentPlayers) {
+        gameId = game.getId();
+    }
+
+    @Override
+    public void requestPlayerGesture(GestureCallback callback) {
+        if (callback == null) {
+            throw new NullPointerException("The callback is null.");
+        }
+        pendingRequest.set(callback);
+        if (connection.isClosed()) {
+            disconnected();
+            return;
+        }
+        connection.sendRequest(gameId);
+    }
+
+    /**
+     * Wait for the gesture of the client. Prefer {@link #requestPlayerGesture}, that does not block a thread.
+     */
+    @Override
+    @Nullable
+    public Gesture getPlayerGesture() {
+        final AtomicReference<Gesture> gesture = new AtomicReference<Gesture>();
+        final CountDownLatch completed = new CountDownLatch(1);
+        requestPlayerGesture(new GestureCallback() {
+            @Override
+            public void complete(@Nullable Gesture thrown) {
+                gesture.set(thrown);
+                completed.countDown();
+            }
+        });
+        try {
+            completed.await();
+        } catch (InterruptedException e) {
+            return null; // the game was stopped
+        }
+        return gesture.get();
+    }
+
+    /**
+     * Handle the gesture thrown by the client. The gestures that were not requested (e.g. for a previous game) are
+     * ignored.
+     */
+    // package private
+    void gestureReceived(long thrownGameId, Gesture gesture) {
+        if (thrownGameId != gameId) {
+            return;
+        }
+        GestureCallback callback = pendingRequest.getAndSet(null);
+        if (callback != null) {
+            callback.complete(gesture);
+        }
+    }
+
+    /**
+     * Complete the pending request without a gesture when the client disconnected.
+     */
+    // package private
+    void disconnected() {
+        GestureCallback callback = pendingRequest.getAndSet(null);
+        if (callback != null) {
+            callback.complete(null);
+        }
+    }
+
+    /**
+     * Mark the player as waiting for a game.
+     *
+     * @return false if the player is already waiting for a game or playing one
+     */
+    // package private
+    boolean startPlaying() {
+        return playing.compareAndSet(false, true);
+    }
+
+    /**
+     * The game of the player was not started because the server is overloaded.
+     */
+    // package private
+    void gameRejected() {
+        playing.set(false); // before the error is sent because the client can ask for a new game right after it
+        connection.sendError(WireProtocol.ERROR_BUSY);
+    }
+
+    @Override
+    public void countdown(int count) {
+        connection.sendCountdown(gameId, count);
+    }
+
+    @Override
+    public void gameFinished(Game game) {
+        pendingRequest.set(null);
+        GameResult result = game.getPlayerResult(this);
+        playing.set(false); // before the result is sent because the client can ask for a new game right after it
+        connection.sendOutcome(game.getId(), result, game.getPlayers().size(), outcomes.getOutcome(game));
+    }
+
+    @Override
+    public String toString() {
+        return "RemotePlayer{" +
+                "name='" + getName() + '\'' +
+                ", id=" + id +
+                '}';
+    }
+
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.net;
+
+import gg.pistol.scissors.log.AsyncLogger;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+
+/**
+ * A selector thread that multiplexes many connections: it reads the client messages and writes the queued server
+ * messages of its connections. The first loop of the {@link GameServer} also accepts the new connections.
+ *
+ * <p>The other threads never touch the selector directly, they queue the new connections and the flush requests
+ * and wake up the selector (at most once until it runs again). The flush requests are pushed on a stack linked
+ * through the connections (a connection is requested at most once until it is flushed), so requesting a flush does
+ * not allocate.
+ *
+ * @author Bogdan Pistol
+ */
+// package private
+@ThreadSafe
+class SelectorLoop implements Runnable {
+
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(SelectorLoop.class.getName());
+
+    /**
+     * Acceptor of the new connections.
+     */
+    interface Acceptor {
+        void accept(ServerSocketChannel serverChannel) throws IOException;
+    }
+
+    private final Selector selector;
+    private final Queue<Connection> registrations;
+    private final AtomicReference<Connection> flushes; // the top of the stack
+    private final AtomicBoolean wakeupPending;
+    private volatile boolean closed;
+
+    SelectorLoop() throws IOException {
+        selector = Selector.open();
+        registrations = new ConcurrentLinkedQueue<Connection>();
+        flushes = new AtomicReference<Connection>();
+        wakeupPending = new AtomicBoolean();
+    }
+
+    /**
+     * Register the server channel for accepting, before the loop runs.
+     */
+    void registerAcceptor(ServerSocketChannel serverChannel, Acceptor acceptor) throws ClosedChannelException {
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT, acceptor);
+    }
+
+    /**
+     * Serve the connection from the loop thread.
+     */
+    void register(Connection connection) {
+        registrations.offer(connection);
+        wakeup();
+    }
+
+    /**
+     * Write the pending messages of the connection from the loop thread.
+     */
+    void requestFlush(Connection connection) {
+        for (;;) {
+            Connection top = flushes.get();
+            connection.nextFlush = top;
+            if (flushes.compareAndSet(top, connection)) {
+                break;
+            }
+        }
+        wakeup();
+    }
+
+    private void wakeup() {
+        if (wakeupPending.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * @return the number of connections served by the loop
+     */
+    int getConnectionCount() {
+        return selector.keys().size();
+    }
+
+    void close() {
+        closed = true;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!closed) {
+                selector.select();
+                wakeupPending.set(false);
+                registerConnections();
+                flushConnections();
+                handleSelectedKeys();
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "The selector failed {}", e);
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void registerConnections() {
+        for (Connection connection = registrations.poll(); connection != null; connection = registrations.poll()) {
+            try {
+                connection.setKey(connection.getChannel().register(selector, SelectionKey.OP_READ, connection));
+            } catch (ClosedChannelException e) {
+                connection.close();
+            }
+        }
+    }
+
+    private void flushConnections() {
+        Connection connection = flushes.getAndSet(null);
+        while (connection != null) {
+            Connection next = connection.nextFlush;
+            connection.nextFlush = null;
+            connection.flush(); // the connection can be requested again from now on
+            connection = next;
+        }
+    }
+
+    private void handleSelectedKeys() throws IOException {
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            if (!key.isValid()) {
+                continue;
+            }
+            Object attachment = key.attachment();
+            if (attachment instanceof Acceptor) {
+                ((Acceptor) attachment).accept((ServerSocketChannel) key.channel());
+                continue;
+            }
+            Connection connection = (Connection) attachment;
+            if (key.isReadable()) {
+                connection.read();
+            }
+            if (key.isValid() && key.isWritable()) {
+                connection.flush();
+            }
+        }
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : new ArrayList<SelectionKey>(selector.keys())) {
+            Object attachment = key.attachment();
+            if (attachment instanceof Connection) {
+                ((Connection) attachment).close();
+            }
+        }
+        for (Connection connection = registrations.poll(); connection != null; connection = registrations.poll()) {
+            connection.close();
+        }
+        flushConnections(); // returns the buffers of the closed connections
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // closing anyway
+        }
+    }
+
+}
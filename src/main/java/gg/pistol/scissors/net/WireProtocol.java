@@ -0,0 +1,287 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.net;
+
+import gg.pistol.scissors.game.GameResult;
+import gg.pistol.scissors.game.Gesture;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * The binary frames exchanged by the {@link GameServer} and its clients.
+ *
+ * <p>Every frame starts with its type byte and all the frames except JOIN and the game outcomes have a fixed size. The
+ * multi-byte values are big endian, the gestures and the results are their ordinals (-1 for no gesture). The client
+ * frames are:
+ * <pre>
+ * type      size  fields
+ * JOIN      2+n   name length (1 byte), name (UTF-8, n bytes)    play as the named player, waiting for a game
+ * JOIN_RANKED 2+n name length (1 byte), name (UTF-8, n bytes)    the same as JOIN, the games of the player (also
+ *                                                                after PLAY) are ranked and admitted first
+ * PLAY      1                                                    wait for the next game
+ * WATCH     1                                                    observe the games that start from now on
+ * THROW     10    game id (8), gesture (1)                       throw the gesture requested by the server
+ * </pre>
+ * The server frames are:
+ * <pre>
+ * WELCOME   5     player id (4)                                  the player joined
+ * COUNTDOWN 13    game id (8), count (4)                         the countdown of the game
+ * REQUEST   9     game id (8)                                    the gesture of the player is requested
+ * GESTURE   14    game id (8), player id (4), gesture (1)        a player threw (sent to the observers, without the
+ *                                                                countdown)
+ * RESULT    14+6p game id (8), result (1), player count (4), outcome  the result of the player in the finished game
+ * FINISHED  14+6p game id (8), -1 (1), player count (4), outcome      the game finished (sent to the observers)
+ * ERROR     2     error code (1)                                 the client frame was not accepted or the game was
+ *                                                                not started (busy server)
+ * </pre>
+ * The outcome of a game has a record for every player: player id (4), gesture (1), result (1). It is encoded once per
+ * game and shared by the frames of all the recipients (see {@link #encodeOutcome}).
+ *
+ * <p>The referee delivers the events to the players concurrently, so a REQUEST can overtake the last COUNTDOWN and
+ * the observers can receive the gestures in any order.
+ *
+ * @author Bogdan Pistol
+ */
+// package private
+final class WireProtocol {
+
+    static final Charset CHARSET = Charset.forName("UTF-8");
+    static final int MAX_NAME_LENGTH = 64; // chars
+
+    static final byte JOIN = 1;
+    static final byte PLAY = 2;
+    static final byte WATCH = 3;
+    static final byte THROW = 4;
+    static final byte JOIN_RANKED = 5;
+
+    static final byte WELCOME = 16;
+    static final byte COUNTDOWN = 17;
+    static final byte REQUEST = 18;
+    static final byte GESTURE = 19;
+    static final byte RESULT = 20;
+    static final byte FINISHED = 21;
+    static final byte ERROR = 22;
+
+    static final int PLAY_SIZE = 1;
+    static final int WATCH_SIZE = 1;
+    static final int THROW_SIZE = 10;
+    static final int JOIN_HEADER_SIZE = 2;
+    static final int WELCOME_SIZE = 5;
+    static final int COUNTDOWN_SIZE = 13;
+    static final int REQUEST_SIZE = 9;
+    static final int GESTURE_SIZE = 14;
+    static final int OUTCOME_HEADER_SIZE = 14;
+    static final int OUTCOME_RECORD_SIZE = 6;
+    static final int ERROR_SIZE = 2;
+
+    /**
+     * The size of the buffers that can hold any fixed-size frame.
+     */
+    static final int MAX_FIXED_FRAME_SIZE = 16;
+
+    static final byte ERROR_UNKNOWN_FRAME = 1;
+    static final byte ERROR_NOT_JOINED = 2;
+    static final byte ERROR_ALREADY_JOINED = 3;
+    static final byte ERROR_INVALID_NAME = 4;
+    static final byte ERROR_NAME_TAKEN = 5;
+    static final byte ERROR_ALREADY_PLAYING = 6;
+    static final byte ERROR_UNKNOWN_GESTURE = 7;
+    static final byte ERROR_BUSY = 8; // the server is overloaded and did not start the game, PLAY again later
+
+    static final byte NO_GESTURE = -1;
+    static final byte NO_RESULT = -1;
+
+    private static final Gesture[] GESTURES = Gesture.values();
+    private static final GameResult[] RESULTS = GameResult.values();
+
+    private WireProtocol() {
+    }
+
+    /**
+     * Compute the size of the client frame at the buffer position.
+     *
+     * @return the size of the frame, 0 when more bytes are needed to know it or -1 for an unknown frame type
+     */
+    static int clientFrameSize(ByteBuffer buffer) {
+        int position = buffer.position();
+        switch (buffer.get(position)) {
+            case PLAY:
+                return PLAY_SIZE;
+            case WATCH:
+                return WATCH_SIZE;
+            case THROW:
+                return THROW_SIZE;
+            case JOIN:
+            case JOIN_RANKED:
+                return buffer.remaining() < JOIN_HEADER_SIZE ? 0 :
+                        JOIN_HEADER_SIZE + (buffer.get(position + 1) & 0xFF);
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Compute the size of the server frame at the buffer position.
+     *
+     * @return the size of the frame, 0 when more bytes are needed to know it or -1 for an unknown frame type or an
+     *         outcome frame that is invalid or larger than the buffer
+     */
+    static int serverFrameSize(ByteBuffer buffer) {
+        int position = buffer.position();
+        switch (buffer.get(position)) {
+            case WELCOME:
+                return WELCOME_SIZE;
+            case COUNTDOWN:
+                return COUNTDOWN_SIZE;
+            case REQUEST:
+                return REQUEST_SIZE;
+            case GESTURE:
+                return GESTURE_SIZE;
+            case ERROR:
+                return ERROR_SIZE;
+            case RESULT:
+            case FINISHED:
+                if (buffer.remaining() < OUTCOME_HEADER_SIZE) {
+                    return 0;
+                }
+                int playerCount = buffer.getInt(position + 10);
+                // a frame that cannot fit in the buffer would never be complete
+                if (playerCount < 0 || playerCount > (buffer.capacity() - OUTCOME_HEADER_SIZE) / OUTCOME_RECORD_SIZE) {
+                    return -1;
+                }
+                return OUTCOME_HEADER_SIZE + OUTCOME_RECORD_SIZE * playerCount;
+            default:
+                return -1;
+        }
+    }
+
+    static void encodeJoin(ByteBuffer buffer, byte[] name) {
+        buffer.put(JOIN).put((byte) name.length).put(name);
+    }
+
+    static void encodePlay(ByteBuffer buffer) {
+        buffer.put(PLAY);
+    }
+
+    static void encodeWatch(ByteBuffer buffer) {
+        buffer.put(WATCH);
+    }
+
+    static void encodeThrow(ByteBuffer buffer, long gameId, Gesture gesture) {
+        buffer.put(THROW).putLong(gameId).put((byte) gesture.ordinal());
+    }
+
+    static void encodeWelcome(ByteBuffer buffer, int playerId) {
+        buffer.put(WELCOME).putInt(playerId);
+    }
+
+    static void encodeCountdown(ByteBuffer buffer, long gameId, int count) {
+        buffer.put(COUNTDOWN).putLong(gameId).putInt(count);
+    }
+
+    static void encodeRequest(ByteBuffer buffer, long gameId) {
+        buffer.put(REQUEST).putLong(gameId);
+    }
+
+    static void encodeGesture(ByteBuffer buffer, long gameId, int playerId, Gesture gesture) {
+        buffer.put(GESTURE).putLong(gameId).putInt(playerId).put((byte) gesture.ordinal());
+    }
+
+    /**
+     * Encode the header of a RESULT or FINISHED frame, it is followed by the outcome of the game.
+     *
+     * @param result the result of the recipient player or null for the observers (FINISHED)
+     */
+    static void encodeOutcomeHeader(ByteBuffer buffer, long gameId, @Nullable GameResult result, int playerCount) {
+        buffer.put(result != null ? RESULT : FINISHED).putLong(gameId)
+                .put(result != null ? (byte) result.ordinal() : NO_RESULT).putInt(playerCount);
+    }
+
+    /**
+     * Encode the outcome of a game, shared by the RESULT and FINISHED frames of all the recipients.
+     */
+    static void encodeOutcome(ByteBuffer buffer, int[] playerIds, Gesture[] gestures, GameResult[] results) {
+        for (int i = 0; i < playerIds.length; i++) {
+            buffer.putInt(playerIds[i]).put(gestures[i] != null ? (byte) gestures[i].ordinal() : NO_GESTURE)
+                    .put((byte) results[i].ordinal());
+        }
+    }
+
+    static void encodeError(ByteBuffer buffer, byte code) {
+        buffer.put(ERROR).put(code);
+    }
+
+    /**
+     * @return the error code of the ERROR frame at the position
+     */
+    static byte getErrorCode(ByteBuffer buffer, int position) {
+        return buffer.get(position + 1);
+    }
+
+    /**
+     * @return the game id of the frame at the position (THROW, COUNTDOWN, REQUEST, GESTURE, RESULT, FINISHED)
+     */
+    static long getGameId(ByteBuffer buffer, int position) {
+        return buffer.getLong(position + 1);
+    }
+
+    /**
+     * @return the gesture of the THROW frame at the position or null for an invalid gesture
+     */
+    @Nullable
+    static Gesture getThrownGesture(ByteBuffer buffer, int position) {
+        return toGesture(buffer.get(position + 9));
+    }
+
+    /**
+     * @return the name of the JOIN (or JOIN_RANKED) frame at the position
+     */
+    static String getName(ByteBuffer buffer, int position) {
+        int length = buffer.get(position + 1) & 0xFF;
+        byte[] name = new byte[length];
+        for (int i = 0; i < length; i++) {
+            name[i] = buffer.get(position + JOIN_HEADER_SIZE + i);
+        }
+        return new String(name, CHARSET);
+    }
+
+    /**
+     * @return the result of the RESULT frame at the position
+     */
+    static GameResult getResult(ByteBuffer buffer, int position) {
+        return RESULTS[buffer.get(position + 9)];
+    }
+
+    @Nullable
+    static Gesture toGesture(byte ordinal) {
+        return ordinal >= 0 && ordinal < GESTURES.length ? GESTURES[ordinal] : null;
+    }
+
+    static boolean isValidName(String name) {
+        if (name.length() == 0 || name.length() > MAX_NAME_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (Character.isWhitespace(name.charAt(i)) || Character.isISOControl(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.player;
+
+/**
+ * Player that throws the gesture asynchronously.
+ *
+ * <p>A player that waits for an external input (e.g. a remote player waiting for a network message) would block a
+ * referee thread for the whole throw time with {@link #getPlayerGesture}. Instead, the Referee requests the gesture
+ * from an asynchronous player and the player completes the request when the gesture arrives, so no thread is waiting
+ * for the player in the meantime.
+ *
+ * <p>The implementations of this interface are thread-safe.
+ *
+ * @author Bogdan Pistol
+ */
+public interface AsyncPlayer extends Player {
+
+    /**
+     * The Referee asks for the player gesture. This method should return immediately and the gesture is thrown by
+     * completing the callback later (the Referee ignores the gestures that are completed after the throw limit).
+     *
+     * @param callback the callback to complete with the thrown gesture
+     */
+    void requestPlayerGesture(GestureCallback callback);
+
+}
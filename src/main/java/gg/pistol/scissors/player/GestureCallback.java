@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.player;
+
+import gg.pistol.scissors.game.Gesture;
+
+import javax.annotation.Nullable;
+
+/**
+ * Completion of an asynchronous gesture request (see {@link AsyncPlayer}).
+ *
+ * <p>The implementations of this interface are thread-safe.
+ *
+ * @author Bogdan Pistol
+ */
+public interface GestureCallback {
+
+    /**
+     * Complete the gesture request. Only the first completion is taken into account and it should not block the
+     * calling thread (e.g. a network thread that serves many players).
+     *
+     * @param gesture the gesture the player throws or null in case the player does not throw
+     */
+    void complete(@Nullable Gesture gesture);
+
+}
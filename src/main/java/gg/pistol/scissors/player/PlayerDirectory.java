@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.player;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Directory that assigns dense integer identifiers to players.
+ *
+ * <p>The players are identified by their names (see {@link AbstractPlayer#equals}) and the first player with a new
+ * name receives the next free identifier starting from zero. The identifiers are compact enough to be used as array
+ * indexes and to be stored in binary records instead of the player names.
+ *
+ * @author Bogdan Pistol
+ */
+@ThreadSafe
+public class PlayerDirectory {
+
+    private final ConcurrentMap<String, Integer> ids;
+    @GuardedBy("lock") private final List<String> names;
+    private final Lock lock;
+
+    public PlayerDirectory() {
+        ids = new ConcurrentHashMap<String, Integer>();
+        names = new ArrayList<String>();
+        lock = new ReentrantLock();
+    }
+
+    /**
+     * Return the identifier of a player, assigning a new one if the player was not seen before.
+     *
+     * @param player
+     * @return the player identifier
+     */
+    public int getId(Player player) {
+        if (player == null) {
+            throw new NullPointerException("The player is null.");
+        }
+        return getId(player.getName());
+    }
+
+    /**
+     * Return the identifier of a player name, assigning a new one if the name was not seen before.
+     *
+     * @param name
+     * @return the player identifier
+     */
+    public int getId(String name) {
+        if (name == null) {
+            throw new NullPointerException("The name is null.");
+        }
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        lock.lock();
+        try {
+            id = ids.get(name);
+            if (id == null) {
+                id = names.size();
+                names.add(name);
+                ids.put(name, id);
+            }
+            return id;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param name
+     * @return the identifier of the player name or -1 in case the name was not seen before
+     */
+    public int findId(String name) {
+        if (name == null) {
+            throw new NullPointerException("The name is null.");
+        }
+        Integer id = ids.get(name);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * @param id
+     * @return the name of the player with the identifier or null in case there is no such identifier
+     */
+    @Nullable
+    public String getName(int id) {
+        lock.lock();
+        try {
+            return id >= 0 && id < names.size() ? names.get(id) : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of identifiers assigned so far
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return names.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
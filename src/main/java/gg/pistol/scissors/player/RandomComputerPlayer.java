@@ -17,12 +17,11 @@ package gg.pistol.scissors.player;
 
 import gg.pistol.scissors.game.Game;
 import gg.pistol.scissors.game.Gesture;
+import gg.pistol.scissors.log.AsyncLogger;
 
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import java.util.Random;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 /**
  * A computer player that returns random gestures.
@@ -32,7 +31,8 @@ import java.util.logging.Logger;
 @ThreadSafe
 public class RandomComputerPlayer extends AbstractPlayer {
 
-    private static final Logger LOG = Logger.getLogger(RandomComputerPlayer.class.getName());
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(RandomComputerPlayer.class.getName());
+    private static final Gesture[] GESTURES = Gesture.values(); // values() clones the array on every call
 
     private final Random random;
 
@@ -43,17 +43,13 @@ public class RandomComputerPlayer extends AbstractPlayer {
 
     @Override
     public void countdown(int count) {
-        if (LOG.isLoggable(Level.INFO)) {
-            LOG.info("Countdown " + count);
-        }
+        LOG.info("Countdown {}", count);
     }
 
     @Override
     public Gesture getPlayerGesture() {
-        Gesture gesture = Gesture.values()[random.nextInt(Gesture.values().length)];
-        if (LOG.isLoggable(Level.INFO)) {
-            LOG.info(getName() + " throws " + gesture);
-        }
+        Gesture gesture = GESTURES[random.nextInt(GESTURES.length)];
+        LOG.info("{} throws {}", getName(), gesture);
         return gesture;
     }
 
@@ -62,9 +58,7 @@ public class RandomComputerPlayer extends AbstractPlayer {
         if (game == null) {
             throw new NullPointerException("The game is null.");
         }
-        if (LOG.isLoggable(Level.INFO)) {
-            LOG.info(getName() + "' game result: " + game.getPlayerResult(this));
-        }
+        LOG.info("{}' game result: {}", getName(), game.getPlayerResult(this));
     }
 
 }
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.player;
+
+import gg.pistol.scissors.game.Game;
+import gg.pistol.scissors.game.Gesture;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Player that stands in for a human: it thinks for a while and then throws the next gesture of a script, repeating
+ * the script from the beginning when it reaches the end.
+ *
+ * @author Bogdan Pistol
+ */
+@ThreadSafe
+public class ScriptedPlayer extends AbstractPlayer {
+
+    private final Gesture[] script;
+    private final long thinkTime; // millis
+    private final AtomicInteger position;
+
+    /**
+     * @param name
+     * @param script the gestures to throw in order
+     * @param thinkTime how long to wait before throwing in millis
+     */
+    public ScriptedPlayer(String name, List<Gesture> script, long thinkTime) {
+        super(name);
+        if (script == null) {
+            throw new NullPointerException("The script is null.");
+        }
+        if (script.isEmpty() || script.contains(null)) {
+            throw new IllegalArgumentException("The script is empty or contains null gestures.");
+        }
+        if (thinkTime < 0) {
+            throw new IllegalArgumentException("The thinkTime is negative.");
+        }
+        this.script = script.toArray(new Gesture[script.size()]);
+        this.thinkTime = thinkTime;
+        position = new AtomicInteger();
+    }
+
+    @Override
+    @Nullable
+    public Gesture getPlayerGesture() {
+        if (thinkTime > 0) {
+            try {
+                Thread.sleep(thinkTime);
+            } catch (InterruptedException e) {
+                return null; // the game was stopped
+            }
+        }
+        int next = position.getAndIncrement() & Integer.MAX_VALUE;
+        return script[next % script.length];
+    }
+
+    @Override
+    public void countdown(int count) {
+    }
+
+    @Override
+    public void gameFinished(Game game) {
+    }
+
+}
@@ -18,16 +18,16 @@ package gg.pistol.scissors.player;
 import gg.pistol.scissors.game.Game;
 import gg.pistol.scissors.game.Gesture;
 import gg.pistol.scissors.game.GestureComparator;
+import gg.pistol.scissors.log.AsyncLogger;
 
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 /**
  * A computer player that waits until the last moment to throw the gesture while trying to peek at
@@ -38,9 +38,12 @@ import java.util.logging.Logger;
 @ThreadSafe
 public class SmartComputerPlayer extends AbstractPlayer implements OpponentAwarePlayer {
 
-    private static final Logger LOG = Logger.getLogger(RandomComputerPlayer.class.getName());
-    private static final long SAFE_LIMIT_DELTA = 150L; // the number of millis to subtract from the thrown limit to be safe
-    private static final long POLL_INTERVAL = 100L; // the number of millis to wait until peeking again at the opponent
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(RandomComputerPlayer.class.getName());
+    private static final Gesture[] GESTURES = Gesture.values(); // values() clones the array on every call
+    // the time before the throw deadline when the gesture is thrown, enough for the referee to receive it in time
+    private static final long SAFE_MARGIN = TimeUnit.MILLISECONDS.toNanos(20L);
+    // the time to wait until peeking again at the opponent
+    private static final long POLL_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100L);
 
     private final Random random;
     private final Lock lock;
@@ -70,24 +73,19 @@ public class SmartComputerPlayer extends AbstractPlayer implements OpponentAware
 
     @Override
     public void countdown(int count) {
-        if (LOG.isLoggable(Level.INFO)) {
-            LOG.info("Countdown " + count);
-        }
+        LOG.info("Countdown {}", count);
     }
 
     @Override
     public Gesture getPlayerGesture() {
-        long throwStart = System.currentTimeMillis();
         lock.lock();
         try {
             if (game == null || opponentPlayers == null) {
                 throw new IllegalStateException("OpponentAwarePlayer.observeGame() was not called.");
             }
 
-            Gesture gesture = getPlayerGesture0(throwStart);
-            if (LOG.isLoggable(Level.INFO)) {
-                LOG.info(getName() + " throws " + gesture);
-            }
+            Gesture gesture = getPlayerGesture0();
+            LOG.info("{} throws {}", getName(), gesture);
 
             return gesture;
         } finally {
@@ -96,11 +94,10 @@ public class SmartComputerPlayer extends AbstractPlayer implements OpponentAware
     }
 
     @Nullable
-    private Gesture getPlayerGesture0(long throwStart) {
+    private Gesture getPlayerGesture0() {
         if (opponentPlayers.isEmpty()) {
             return getRandomGesture();
         }
-        long safeLimit = game.getThrowTimeLimit() - SAFE_LIMIT_DELTA;
 
         for (;;) {
             Gesture opponentGesture = getOpponentGesture();
@@ -108,14 +105,14 @@ public class SmartComputerPlayer extends AbstractPlayer implements OpponentAware
                 return getHigherGesture(opponentGesture);
             }
 
-            // Math.abs() is used because in some cases (e.g. NTP, bad hardware) the difference could be negative.
-            long delay = Math.abs(System.currentTimeMillis() - throwStart);
-            if (delay > safeLimit) {
+            // the remaining time is measured by the game from its monotonic deadline
+            long available = game.getThrowTimeRemaining() - SAFE_MARGIN;
+            if (available <= 0) {
                 break;
             }
 
             try {
-                Thread.sleep(POLL_INTERVAL);
+                TimeUnit.NANOSECONDS.sleep(Math.min(available, POLL_INTERVAL));
             } catch (InterruptedException e) {
                 break;
             }
@@ -140,12 +137,12 @@ public class SmartComputerPlayer extends AbstractPlayer implements OpponentAware
     }
 
     private Gesture getRandomGesture() {
-        return Gesture.values()[random.nextInt(Gesture.values().length)];
+        return GESTURES[random.nextInt(GESTURES.length)];
     }
 
     private Gesture getHigherGesture(Gesture gesture) {
         GestureComparator gestureComparator = Gesture.getGestureComparator();
-        for (Gesture g : Gesture.values()) {
+        for (Gesture g : GESTURES) {
             if (gestureComparator.compare(gesture, g) < 0) {
                 return g;
             }
@@ -158,8 +155,6 @@ public class SmartComputerPlayer extends AbstractPlayer implements OpponentAware
         if (game == null) {
             throw new NullPointerException("The game is null.");
         }
-        if (LOG.isLoggable(Level.INFO)) {
-            LOG.info(getName() + "' game result: " + game.getPlayerResult(this));
-        }
+        LOG.info("{}' game result: {}", getName(), game.getPlayerResult(this));
     }
 }
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.stats;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Snapshot of the outcomes between two players. Every game in which the two players met counts as a win for
+ * the player with the winning gesture (see {@link gg.pistol.scissors.game.GestureComparator}) or as a tie.
+ *
+ * @author Bogdan Pistol
+ */
+@Immutable
+public final class HeadToHead {
+
+    private final int playerId;
+    private final int opponentId;
+    private final long wins;
+    private final long losses;
+    private final long ties;
+
+    // package private
+    HeadToHead(int playerId, int opponentId, long wins, long losses, long ties) {
+        this.playerId = playerId;
+        this.opponentId = opponentId;
+        this.wins = wins;
+        this.losses = losses;
+        this.ties = ties;
+    }
+
+    public int getPlayerId() {
+        return playerId;
+    }
+
+    public int getOpponentId() {
+        return opponentId;
+    }
+
+    /**
+     * @return how many times the player beat the opponent
+     */
+    public long getWins() {
+        return wins;
+    }
+
+    /**
+     * @return how many times the opponent beat the player
+     */
+    public long getLosses() {
+        return losses;
+    }
+
+    public long getTies() {
+        return ties;
+    }
+
+    public long getGameCount() {
+        return wins + losses + ties;
+    }
+
+    @Override
+    public String toString() {
+        return "HeadToHead{" +
+                "playerId=" + playerId +
+                ", opponentId=" + opponentId +
+                ", wins=" + wins +
+                ", losses=" + losses +
+                ", ties=" + ties +
+                '}';
+    }
+
+}
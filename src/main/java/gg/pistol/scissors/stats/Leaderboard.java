@@ -0,0 +1,308 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.stats;
+
+import gg.pistol.scissors.game.Game;
+import gg.pistol.scissors.game.GameResult;
+import gg.pistol.scissors.game.Gesture;
+import gg.pistol.scissors.history.GameRecord;
+import gg.pistol.scissors.player.GameObserver;
+import gg.pistol.scissors.player.Player;
+import gg.pistol.scissors.player.PlayerDirectory;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Elo rating ladder updated from the results of the finished games.
+ *
+ * <p>A game with more than 2 players is rated as all its pairs of players, with the K-factor divided by the number of
+ * opponents. In a pair the player with a win against a player with a loss scores 1, any other combination is a draw.
+ *
+ * <p>The ratings are indexed twice: a concurrent skip list ordered by rating answers the top K queries in
+ * O(log N + K) and a {@link RatingHistogram} (a Fenwick tree over the quantized ratings) answers the rank queries in
+ * O(log R) where R is the number of rating buckets. The players with the same quantized rating share the same rank.
+ * Updating a rating locks only the players of the game (in identifier order, to avoid deadlocks) and the queries
+ * never lock.
+ *
+ * @author Bogdan Pistol
+ */
+@ThreadSafe
+public class Leaderboard implements GameObserver {
+
+    public static final double DEFAULT_INITIAL_RATING = 1500.0;
+    public static final double DEFAULT_K_FACTOR = 32.0;
+    private static final double MAX_RATING = 5000.0;
+    private static final int RESOLUTION = 10; // rank buckets per rating point
+
+    private static final Comparator<LeaderboardEntry> BY_RATING = new Comparator<LeaderboardEntry>() {
+        @Override
+        public int compare(LeaderboardEntry e1, LeaderboardEntry e2) {
+            int ret = Double.compare(e2.getRating(), e1.getRating()); // descending rating
+            if (ret != 0) {
+                return ret;
+            }
+            return e1.getPlayerId() < e2.getPlayerId() ? -1 : (e1.getPlayerId() == e2.getPlayerId() ? 0 : 1);
+        }
+    };
+
+    private final PlayerDirectory playerDirectory;
+    private final double initialRating;
+    private final double kFactor;
+    private final ConcurrentMap<Integer, Rating> ratings;
+    private final ConcurrentSkipListSet<LeaderboardEntry> ladder;
+    private final RatingHistogram histogram;
+
+    public Leaderboard(PlayerDirectory playerDirectory) {
+        this(playerDirectory, DEFAULT_INITIAL_RATING, DEFAULT_K_FACTOR);
+    }
+
+    /**
+     * @param playerDirectory the directory assigning the player identifiers
+     * @param initialRating the rating of a player before his/her first game
+     * @param kFactor the maximum rating change of a 2 players game
+     */
+    public Leaderboard(PlayerDirectory playerDirectory, double initialRating, double kFactor) {
+        if (playerDirectory == null) {
+            throw new NullPointerException("The playerDirectory is null.");
+        }
+        if (initialRating < 0 || initialRating > MAX_RATING || kFactor <= 0) {
+            throw new IllegalArgumentException("The initialRating or/and the kFactor are out of range.");
+        }
+        this.playerDirectory = playerDirectory;
+        this.initialRating = initialRating;
+        this.kFactor = kFactor;
+        ratings = new ConcurrentHashMap<Integer, Rating>();
+        ladder = new ConcurrentSkipListSet<LeaderboardEntry>(BY_RATING);
+        histogram = new RatingHistogram(MAX_RATING, RESOLUTION);
+    }
+
+    @Override
+    public void countdown(int count) {
+    }
+
+    @Override
+    public void gestureThrown(Player player, Gesture gesture) {
+    }
+
+    @Override
+    public void gameFinished(Game game) {
+        if (game == null) {
+            throw new NullPointerException("The game is null.");
+        }
+        List<Player> players = game.getPlayers();
+        int[] ids = new int[players.size()];
+        GameResult[] results = new GameResult[players.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = playerDirectory.getId(players.get(i));
+            results[i] = game.getPlayerResult(players.get(i));
+            if (results[i] == null) {
+                throw new IllegalStateException("The game is not finished.");
+            }
+        }
+        update(ids, results);
+    }
+
+    /**
+     * Rate a game from the history. The player identifiers of the record must be the ones assigned by the directory
+     * of this leaderboard.
+     *
+     * @param record
+     */
+    public void add(GameRecord record) {
+        if (record == null) {
+            throw new NullPointerException("The record is null.");
+        }
+        int[] ids = new int[record.getPlayerCount()];
+        GameResult[] results = new GameResult[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = record.getPlayerId(i);
+            results[i] = record.getResult(i);
+        }
+        update(ids, results);
+    }
+
+    private void update(int[] ids, GameResult[] results) {
+        if (ids.length < 2) {
+            return;
+        }
+        Rating[] players = new Rating[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            players[i] = getRating(ids[i]);
+        }
+        Rating[] lockOrder = players.clone();
+        Arrays.sort(lockOrder);
+        for (int i = 0; i < lockOrder.length; i++) {
+            if (i == 0 || lockOrder[i] != lockOrder[i - 1]) {
+                lockOrder[i].lock.lock();
+            }
+        }
+        try {
+            double k = kFactor / (ids.length - 1);
+            double[] deltas = new double[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                for (int j = i + 1; j < ids.length; j++) {
+                    double expected = 1.0 / (1.0 + Math.pow(10.0, (players[j].value - players[i].value) / 400.0));
+                    double delta = k * (score(results[i], results[j]) - expected);
+                    deltas[i] += delta;
+                    deltas[j] -= delta;
+                }
+            }
+            for (int i = 0; i < ids.length; i++) {
+                setRating(players[i], players[i].value + deltas[i]);
+            }
+        } finally {
+            for (int i = 0; i < lockOrder.length; i++) {
+                if (i == 0 || lockOrder[i] != lockOrder[i - 1]) {
+                    lockOrder[i].lock.unlock();
+                }
+            }
+        }
+    }
+
+    private static double score(GameResult result, GameResult opponentResult) {
+        if (result == GameResult.WIN && opponentResult == GameResult.LOSS) {
+            return 1.0;
+        }
+        if (result == GameResult.LOSS && opponentResult == GameResult.WIN) {
+            return 0.0;
+        }
+        return 0.5;
+    }
+
+    private Rating getRating(int id) {
+        Rating rating = ratings.get(id);
+        if (rating == null) {
+            Rating newRating = new Rating(id, initialRating);
+            // locked before it is published, so an update of the new player waits for its initial entries
+            newRating.lock.lock();
+            try {
+                rating = ratings.putIfAbsent(id, newRating);
+                if (rating == null) {
+                    rating = newRating;
+                    histogram.add(initialRating);
+                    ladder.add(new LeaderboardEntry(id, initialRating));
+                }
+            } finally {
+                newRating.lock.unlock();
+            }
+        }
+        return rating;
+    }
+
+    private void setRating(Rating rating, double value) {
+        double clamped = Math.max(0.0, Math.min(value, MAX_RATING));
+        LeaderboardEntry old = new LeaderboardEntry(rating.id, rating.value);
+        // add the new entry before removing the old one so that the player never disappears from the ladder
+        histogram.add(clamped);
+        ladder.add(new LeaderboardEntry(rating.id, clamped));
+        rating.value = clamped;
+        if (!old.equals(new LeaderboardEntry(rating.id, clamped))) {
+            ladder.remove(old);
+        }
+        histogram.remove(old.getRating());
+    }
+
+    /**
+     * @param player
+     * @return the rating of the player (the initial rating in case the player has no rated games)
+     */
+    public double getRating(Player player) {
+        if (player == null) {
+            throw new NullPointerException("The player is null.");
+        }
+        Rating rating = ratings.get(playerDirectory.findId(player.getName()));
+        return rating != null ? rating.value : initialRating;
+    }
+
+    /**
+     * @param player
+     * @return the rank of the player starting from 1 or -1 in case the player has no rated games
+     */
+    public int getRank(Player player) {
+        if (player == null) {
+            throw new NullPointerException("The player is null.");
+        }
+        return getRank(playerDirectory.findId(player.getName()));
+    }
+
+    /**
+     * @param playerId
+     * @return the rank of the player starting from 1 or -1 in case the player has no rated games
+     */
+    public int getRank(int playerId) {
+        Rating rating = ratings.get(playerId);
+        return rating != null ? histogram.countAbove(rating.value) + 1 : -1;
+    }
+
+    /**
+     * @param count
+     * @return the best rated players, at most <code>count</code> of them, in decreasing rating order
+     */
+    public List<LeaderboardEntry> getTop(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("The count is negative.");
+        }
+        List<LeaderboardEntry> top = new ArrayList<LeaderboardEntry>(Math.min(count, 1024));
+        for (LeaderboardEntry entry : ladder) {
+            if (top.size() == count) {
+                break;
+            }
+            Rating rating = ratings.get(entry.getPlayerId());
+            if (rating != null && rating.value == entry.getRating()) { // skip the entries being replaced
+                top.add(entry);
+            }
+        }
+        return top;
+    }
+
+    /**
+     * @return the number of rated players
+     */
+    public int size() {
+        return ratings.size();
+    }
+
+    /**
+     * The current rating of a player.
+     */
+    private static class Rating implements Comparable<Rating> {
+        private final int id;
+        private final Lock lock;
+        @GuardedBy("lock") private volatile double value; // volatile for the lock free queries
+
+        Rating(int id, double value) {
+            this.id = id;
+            this.value = value;
+            lock = new ReentrantLock();
+        }
+
+        @Override
+        public int compareTo(Rating o) {
+            return id < o.id ? -1 : (id == o.id ? 0 : 1);
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.stats;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * The rating of a player at the time the leaderboard was queried.
+ *
+ * @author Bogdan Pistol
+ */
+@Immutable
+public final class LeaderboardEntry {
+
+    private final int playerId;
+    private final double rating;
+
+    // package private
+    LeaderboardEntry(int playerId, double rating) {
+        this.playerId = playerId;
+        this.rating = rating;
+    }
+
+    public int getPlayerId() {
+        return playerId;
+    }
+
+    public double getRating() {
+        return rating;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof LeaderboardEntry)) return false;
+
+        LeaderboardEntry that = (LeaderboardEntry) o;
+
+        if (playerId != that.playerId) return false;
+        if (Double.compare(that.rating, rating) != 0) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        long bits = Double.doubleToLongBits(rating);
+        return 31 * playerId + (int) (bits ^ (bits >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return "LeaderboardEntry{" +
+                "playerId=" + playerId +
+                ", rating=" + rating +
+                '}';
+    }
+
+}
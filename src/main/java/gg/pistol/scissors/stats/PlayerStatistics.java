@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.stats;
+
+import gg.pistol.scissors.game.GameResult;
+import gg.pistol.scissors.game.Gesture;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Snapshot of the statistics of a player.
+ *
+ * @author Bogdan Pistol
+ */
+@Immutable
+public final class PlayerStatistics {
+
+    private final int playerId;
+    private final long wins;
+    private final long losses;
+    private final long ties;
+    private final long[] gestureCounts; // by gesture ordinal, the last one counts the games without a gesture
+
+    // package private
+    PlayerStatistics(int playerId, long wins, long losses, long ties, long[] gestureCounts) {
+        this.playerId = playerId;
+        this.wins = wins;
+        this.losses = losses;
+        this.ties = ties;
+        this.gestureCounts = gestureCounts.clone();
+    }
+
+    public int getPlayerId() {
+        return playerId;
+    }
+
+    public long getWins() {
+        return wins;
+    }
+
+    public long getLosses() {
+        return losses;
+    }
+
+    public long getTies() {
+        return ties;
+    }
+
+    public long getGameCount() {
+        return wins + losses + ties;
+    }
+
+    public long getResultCount(GameResult result) {
+        if (result == null) {
+            throw new NullPointerException("The result is null.");
+        }
+        switch (result) {
+            case WIN:
+                return wins;
+            case LOSS:
+                return losses;
+            default:
+                return ties;
+        }
+    }
+
+    /**
+     * @param gesture the gesture or null for the games in which the player did not throw
+     * @return how many times the player threw the gesture
+     */
+    public long getGestureCount(@Nullable Gesture gesture) {
+        return gestureCounts[gesture != null ? gesture.ordinal() : gestureCounts.length - 1];
+    }
+
+    /**
+     * @return the ratio of won games or 0 in case the player has no games
+     */
+    public double getWinRate() {
+        long games = getGameCount();
+        return games > 0 ? (double) wins / games : 0.0;
+    }
+
+    @Override
+    public String toString() {
+        return "PlayerStatistics{" +
+                "playerId=" + playerId +
+                ", wins=" + wins +
+                ", losses=" + losses +
+                ", ties=" + ties +
+                ", rock=" + getGestureCount(Gesture.ROCK) +
+                ", paper=" + getGestureCount(Gesture.PAPER) +
+                ", scissors=" + getGestureCount(Gesture.SCISSORS) +
+                ", noGesture=" + getGestureCount(null) +
+                '}';
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.stats;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Counts the players by rating with a Fenwick tree (binary indexed tree) so that the number of players rated above
+ * a value is found in logarithmic time. The ratings are quantized to a fixed resolution and clamped to a fixed range.
+ *
+ * @author Bogdan Pistol
+ */
+// package private
+@ThreadSafe
+class RatingHistogram {
+
+    private final double maxRating;
+    private final int resolution; // buckets per rating point
+    private final AtomicIntegerArray tree; // 1-based Fenwick tree over the buckets
+
+    RatingHistogram(double maxRating, int resolution) {
+        if (maxRating <= 0 || resolution <= 0) {
+            throw new IllegalArgumentException("The maxRating and the resolution must be positive.");
+        }
+        this.maxRating = maxRating;
+        this.resolution = resolution;
+        tree = new AtomicIntegerArray((int) Math.ceil(maxRating * resolution) + 2);
+    }
+
+    private int bucket(double rating) {
+        double clamped = Math.max(0.0, Math.min(rating, maxRating));
+        return (int) (clamped * resolution) + 1;
+    }
+
+    void add(double rating) {
+        update(bucket(rating), 1);
+    }
+
+    void remove(double rating) {
+        update(bucket(rating), -1);
+    }
+
+    private void update(int bucket, int delta) {
+        for (int i = bucket; i < tree.length(); i += i & -i) {
+            tree.addAndGet(i, delta);
+        }
+    }
+
+    /**
+     * @return the number of players with a rating in a bucket higher than the bucket of the given rating
+     */
+    int countAbove(double rating) {
+        return prefix(tree.length() - 1) - prefix(bucket(rating));
+    }
+
+    private int prefix(int bucket) {
+        int sum = 0;
+        for (int i = bucket; i > 0; i -= i & -i) {
+            sum += tree.get(i);
+        }
+        return sum;
+    }
+
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.stats;
+
+import gg.pistol.scissors.game.Game;
+import gg.pistol.scissors.game.GameResult;
+import gg.pistol.scissors.game.Gesture;
+import gg.pistol.scissors.game.GestureComparator;
+import gg.pistol.scissors.history.GameRecord;
+import gg.pistol.scissors.player.GameObserver;
+import gg.pistol.scissors.player.Player;
+import gg.pistol.scissors.player.PlayerDirectory;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory statistics of the finished games, updated incrementally as the games finish.
+ *
+ * <p>For every player the index keeps the number of wins, losses, ties and how many times every gesture was thrown.
+ * For every pair of players that met in a game it keeps the head-to-head outcomes. The totals over all the games are
+ * kept in {@link LongAdder}s because all the referee threads update them. The counters of a player (and of a
+ * pair of players) are plain atomic counters: a player takes part in one game at a time, so they are rarely
+ * contended.
+ *
+ * <p>Updating the index for a finished game costs a constant amount of work for every player (and for every pair of
+ * players when the game has at most {@link #MAX_HEAD_TO_HEAD_PLAYERS} players). The queries never lock: they read
+ * the counters and return immutable snapshots.
+ *
+ * @author Bogdan Pistol
+ */
+@ThreadSafe
+public class StatisticsIndex implements GameObserver {
+
+    /**
+     * Games with more players do not update the head-to-head statistics (the number of pairs grows quadratically).
+     */
+    public static final int MAX_HEAD_TO_HEAD_PLAYERS = 32;
+
+    // the layout of the counters of a player
+    private static final int RESULT_OFFSET = 0; // by GameResult ordinal
+    private static final int GESTURE_OFFSET = GameResult.values().length; // by Gesture ordinal
+    private static final int NO_GESTURE = GESTURE_OFFSET + Gesture.values().length;
+    private static final int PLAYER_COUNTERS = NO_GESTURE + 1;
+
+    // the layout of the counters of a pair of players (the pair key starts with the smaller player identifier)
+    private static final int FIRST_WINS = 0;
+    private static final int SECOND_WINS = 1;
+    private static final int TIES = 2;
+    private static final int PAIR_COUNTERS = 3;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final PlayerDirectory playerDirectory;
+    private final GestureComparator comparator;
+    private final LongAdder games;
+    private final LongAdder[] results; // by GameResult ordinal
+    private final LongAdder[] gestures; // by Gesture ordinal, the last one for the missing gestures
+    private final ConcurrentMap<Long, AtomicLongArray> pairs;
+
+    private volatile AtomicReferenceArray<AtomicLongArray> players; // by player identifier, replaced under the lock
+    private final Lock lock;
+
+    /**
+     * @param playerDirectory the directory assigning the player identifiers
+     */
+    public StatisticsIndex(PlayerDirectory playerDirectory) {
+        if (playerDirectory == null) {
+            throw new NullPointerException("The playerDirectory is null.");
+        }
+        this.playerDirectory = playerDirectory;
+        comparator = Gesture.getGestureComparator();
+        games = new LongAdder();
+        results = new LongAdder[GameResult.values().length];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = new LongAdder();
+        }
+        gestures = new LongAdder[Gesture.values().length + 1];
+        for (int i = 0; i < gestures.length; i++) {
+            gestures[i] = new LongAdder();
+        }
+        pairs = new ConcurrentHashMap<Long, AtomicLongArray>();
+        players = new AtomicReferenceArray<AtomicLongArray>(INITIAL_CAPACITY);
+        lock = new ReentrantLock();
+    }
+
+    @Override
+    public void countdown(int count) {
+    }
+
+    @Override
+    public void gestureThrown(Player player, Gesture gesture) {
+    }
+
+    @Override
+    public void gameFinished(Game game) {
+        if (game == null) {
+            throw new NullPointerException("The game is null.");
+        }
+        List<Player> gamePlayers = game.getPlayers();
+        int count = gamePlayers.size();
+        int[] ids = new int[count];
+        Gesture[] gamePlayerGestures = new Gesture[count];
+        GameResult[] gamePlayerResults = new GameResult[count];
+        for (int i = 0; i < count; i++) {
+            Player player = gamePlayers.get(i);
+            ids[i] = playerDirectory.getId(player);
+            gamePlayerGestures[i] = game.getPlayerGesture(player);
+            gamePlayerResults[i] = game.getPlayerResult(player);
+            if (gamePlayerResults[i] == null) {
+                throw new IllegalStateException("The game is not finished.");
+            }
+        }
+        update(ids, gamePlayerGestures, gamePlayerResults);
+    }
+
+    /**
+     * Add a game from the history (e.g. to rebuild the index after a restart). The player identifiers of the record
+     * must be the ones assigned by the directory of this index.
+     *
+     * @param record
+     */
+    public void add(GameRecord record) {
+        if (record == null) {
+            throw new NullPointerException("The record is null.");
+        }
+        int count = record.getPlayerCount();
+        int[] ids = new int[count];
+        Gesture[] recordGestures = new Gesture[count];
+        GameResult[] recordResults = new GameResult[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = record.getPlayerId(i);
+            recordGestures[i] = record.getGesture(i);
+            recordResults[i] = record.getResult(i);
+        }
+        update(ids, recordGestures, recordResults);
+    }
+
+    private void update(int[] ids, Gesture[] playerGestures, GameResult[] playerResults) {
+        games.increment();
+        for (int i = 0; i < ids.length; i++) {
+            Gesture gesture = playerGestures[i];
+            AtomicLongArray counters = getPlayerCounters(ids[i]);
+            counters.incrementAndGet(RESULT_OFFSET + playerResults[i].ordinal());
+            counters.incrementAndGet(gesture != null ? GESTURE_OFFSET + gesture.ordinal() : NO_GESTURE);
+            results[playerResults[i].ordinal()].increment();
+            gestures[gesture != null ? gesture.ordinal() : gestures.length - 1].increment();
+        }
+        if (ids.length > MAX_HEAD_TO_HEAD_PLAYERS) {
+            return;
+        }
+        for (int i = 0; i < ids.length; i++) {
+            for (int j = i + 1; j < ids.length; j++) {
+                if (ids[i] == ids[j]) {
+                    continue;
+                }
+                boolean inOrder = ids[i] < ids[j];
+                AtomicLongArray counters = getPairCounters(pairKey(ids[i], ids[j]));
+                int comparison = comparator.compare(playerGestures[i], playerGestures[j]);
+                if (comparison == 0) {
+                    counters.incrementAndGet(TIES);
+                } else if ((comparison > 0) == inOrder) {
+                    counters.incrementAndGet(FIRST_WINS);
+                } else {
+                    counters.incrementAndGet(SECOND_WINS);
+                }
+            }
+        }
+    }
+
+    private static long pairKey(int playerId, int opponentId) {
+        int first = Math.min(playerId, opponentId);
+        int second = Math.max(playerId, opponentId);
+        return ((long) first << 32) | (second & 0xFFFFFFFFL);
+    }
+
+    private AtomicLongArray getPairCounters(long key) {
+        AtomicLongArray counters = pairs.get(key);
+        if (counters == null) {
+            counters = new AtomicLongArray(PAIR_COUNTERS);
+            AtomicLongArray existing = pairs.putIfAbsent(key, counters);
+            if (existing != null) {
+                counters = existing;
+            }
+        }
+        return counters;
+    }
+
+    private AtomicLongArray getPlayerCounters(int id) {
+        AtomicReferenceArray<AtomicLongArray> current = players;
+        if (id < current.length()) {
+            AtomicLongArray counters = current.get(id);
+            if (counters != null) {
+                return counters;
+            }
+        }
+        // Slow path taken once for every player: the counters are created (and the table grown) under the lock so that
+        // a concurrent growth cannot lose them.
+        lock.lock();
+        try {
+            current = players;
+            if (id >= current.length()) {
+                int capacity = current.length();
+                while (capacity <= id) {
+                    capacity *= 2;
+                }
+                AtomicReferenceArray<AtomicLongArray> grown = new AtomicReferenceArray<AtomicLongArray>(capacity);
+                for (int i = 0; i < current.length(); i++) {
+                    grown.set(i, current.get(i));
+                }
+                players = grown;
+                current = grown;
+            }
+            AtomicLongArray counters = current.get(id);
+            if (counters == null) {
+                counters = new AtomicLongArray(PLAYER_COUNTERS);
+                current.set(id, counters);
+            }
+            return counters;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param player
+     * @return the statistics of the player or null in case the player has no finished games
+     */
+    @Nullable
+    public PlayerStatistics getPlayerStatistics(Player player) {
+        if (player == null) {
+            throw new NullPointerException("The player is null.");
+        }
+        int id = playerDirectory.findId(player.getName());
+        return id >= 0 ? getPlayerStatistics(id) : null;
+    }
+
+    /**
+     * @param playerId
+     * @return the statistics of the player or null in case the player has no finished games
+     */
+    @Nullable
+    public PlayerStatistics getPlayerStatistics(int playerId) {
+        AtomicReferenceArray<AtomicLongArray> current = players;
+        AtomicLongArray counters = playerId >= 0 && playerId < current.length() ? current.get(playerId) : null;
+        if (counters == null) {
+            return null;
+        }
+        long[] gestureCounts = new long[NO_GESTURE - GESTURE_OFFSET + 1];
+        for (int i = 0; i < gestureCounts.length; i++) {
+            gestureCounts[i] = counters.get(GESTURE_OFFSET + i);
+        }
+        return new PlayerStatistics(playerId,
+                counters.get(RESULT_OFFSET + GameResult.WIN.ordinal()),
+                counters.get(RESULT_OFFSET + GameResult.LOSS.ordinal()),
+                counters.get(RESULT_OFFSET + GameResult.TIE.ordinal()),
+                gestureCounts);
+    }
+
+    /**
+     * @param player
+     * @param opponent
+     * @return the outcomes of the games between the player and the opponent, seen from the player side
+     */
+    public HeadToHead getHeadToHead(Player player, Player opponent) {
+        if (player == null || opponent == null) {
+            throw new NullPointerException("The player or/and the opponent are null.");
+        }
+        return getHeadToHead(playerDirectory.findId(player.getName()), playerDirectory.findId(opponent.getName()));
+    }
+
+    /**
+     * @param playerId
+     * @param opponentId
+     * @return the outcomes of the games between the player and the opponent, seen from the player side
+     */
+    public HeadToHead getHeadToHead(int playerId, int opponentId) {
+        AtomicLongArray counters = pairs.get(pairKey(playerId, opponentId));
+        if (counters == null) {
+            return new HeadToHead(playerId, opponentId, 0L, 0L, 0L);
+        }
+        long firstWins = counters.get(FIRST_WINS);
+        long secondWins = counters.get(SECOND_WINS);
+        long ties = counters.get(TIES);
+        return playerId <= opponentId ? new HeadToHead(playerId, opponentId, firstWins, secondWins, ties)
+                : new HeadToHead(playerId, opponentId, secondWins, firstWins, ties);
+    }
+
+    /**
+     * @return the number of finished games
+     */
+    public long getGameCount() {
+        return games.sum();
+    }
+
+    /**
+     * @param result
+     * @return how many times a player had the result over all the games
+     */
+    public long getResultCount(GameResult result) {
+        if (result == null) {
+            throw new NullPointerException("The result is null.");
+        }
+        return results[result.ordinal()].sum();
+    }
+
+    /**
+     * @param gesture the gesture or null for the players that did not throw
+     * @return how many times the gesture was thrown over all the games
+     */
+    public long getGestureCount(@Nullable Gesture gesture) {
+        return gestures[gesture != null ? gesture.ordinal() : gestures.length - 1].sum();
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.tournament;
+
+import gg.pistol.scissors.player.Player;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A match of the bracket: the node of the dependency graph fed by two earlier matches (or seeded players).
+ *
+ * <p>Each feeder writes the player it advances in its own slot and the last feeder to arrive makes the match ready,
+ * so the match starts as soon as both opponents are known regardless of the other matches of its round.
+ *
+ * @author Bogdan Pistol
+ */
+// package private
+class BracketMatch {
+
+    private final int round;
+    private final Player[] players;
+    private final long[] feederChains; // the critical path leading to every slot in nanos
+    private final AtomicInteger missing; // the slots without a player
+    @Nullable private BracketMatch parent;
+    private int parentSlot;
+
+    // accessed by one game of the match at a time, the next game is started after the previous one finished
+    private int games;
+    private long startTime;
+
+    BracketMatch(int round) {
+        this.round = round;
+        players = new Player[2];
+        feederChains = new long[2];
+        missing = new AtomicInteger(2);
+    }
+
+    /**
+     * Link the match to the match that its winner advances to. Called before the bracket starts.
+     */
+    void setParent(BracketMatch parent, int slot) {
+        this.parent = parent;
+        parentSlot = slot;
+    }
+
+    @Nullable
+    BracketMatch getParent() {
+        return parent;
+    }
+
+    int getParentSlot() {
+        return parentSlot;
+    }
+
+    int getRound() {
+        return round;
+    }
+
+    /**
+     * Fill a slot with a player.
+     *
+     * @param slot the slot of the player
+     * @param player the seeded player or the winner of the feeder match
+     * @param chain the critical path that led the player to this match in nanos
+     * @return whether the match is ready to be played
+     */
+    boolean advance(int slot, Player player, long chain) {
+        players[slot] = player;
+        feederChains[slot] = chain;
+        return missing.decrementAndGet() == 0; // publishes the slot to the thread that plays the match
+    }
+
+    Player getPlayer(int slot) {
+        return players[slot];
+    }
+
+    /**
+     * @return the longest critical path of the two feeders in nanos
+     */
+    long getFeederChain() {
+        return Math.max(feederChains[0], feederChains[1]);
+    }
+
+    /**
+     * Count a new game of the match (there is more than one game when the players tie).
+     *
+     * @return the number of games played so far, including the new one
+     */
+    int newGame() {
+        if (games == 0) {
+            startTime = System.nanoTime();
+        }
+        return ++games;
+    }
+
+    /**
+     * @return the number of games played so far
+     */
+    int getGames() {
+        return games;
+    }
+
+    /**
+     * @return when the first game of the match started ({@link System#nanoTime()})
+     */
+    long getStartTime() {
+        return startTime;
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.tournament;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How fast a {@link BracketRunner} finished its bracket compared to the bounds given by the dependencies of the
+ * matches.
+ *
+ * <p>The critical path is the longest chain of dependent matches (the sum of their durations), no schedule can finish
+ * the bracket faster. The round barrier time is how long the bracket would take if every round waited for its slowest
+ * match before the next round started (the sum of the longest match of every round).
+ *
+ * @author Bogdan Pistol
+ */
+@Immutable
+public final class BracketReport {
+
+    private final int playerCount;
+    private final int matchCount;
+    private final int gameCount;
+    private final int roundCount;
+    private final long wallTime; // nanos
+    private final long criticalPath; // nanos
+    private final long roundBarrierTime; // nanos
+
+    /**
+     * @param playerCount the players of the bracket
+     * @param matchCount the matches of the bracket
+     * @param gameCount the games played, more than the matches when the players tied
+     * @param roundCount the rounds of the bracket
+     * @param wallTime how long the bracket took in nanoseconds
+     * @param criticalPath the duration of the longest chain of dependent matches in nanoseconds
+     * @param roundBarrierTime the sum of the longest match of every round in nanoseconds
+     */
+    public BracketReport(int playerCount, int matchCount, int gameCount, int roundCount, long wallTime,
+                         long criticalPath, long roundBarrierTime) {
+        this.playerCount = playerCount;
+        this.matchCount = matchCount;
+        this.gameCount = gameCount;
+        this.roundCount = roundCount;
+        this.wallTime = wallTime;
+        this.criticalPath = criticalPath;
+        this.roundBarrierTime = roundBarrierTime;
+    }
+
+    public int getPlayerCount() {
+        return playerCount;
+    }
+
+    public int getMatchCount() {
+        return matchCount;
+    }
+
+    /**
+     * @return the games played, more than the matches when the players tied
+     */
+    public int getGameCount() {
+        return gameCount;
+    }
+
+    public int getRoundCount() {
+        return roundCount;
+    }
+
+    /**
+     * @return how long the bracket took in nanoseconds
+     */
+    public long getWallTime() {
+        return wallTime;
+    }
+
+    /**
+     * @return the duration of the longest chain of dependent matches in nanoseconds
+     */
+    public long getCriticalPath() {
+        return criticalPath;
+    }
+
+    /**
+     * @return the sum of the longest match of every round in nanoseconds
+     */
+    public long getRoundBarrierTime() {
+        return roundBarrierTime;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "Bracket of %d players finished in %d ms: critical path %d ms, round " +
+                "barriers %d ms, %d rounds, %d matches, %d games", playerCount,
+                TimeUnit.NANOSECONDS.toMillis(wallTime), TimeUnit.NANOSECONDS.toMillis(criticalPath),
+                TimeUnit.NANOSECONDS.toMillis(roundBarrierTime), roundCount, matchCount, gameCount);
+    }
+
+}
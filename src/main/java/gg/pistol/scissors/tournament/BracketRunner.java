@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.tournament;
+
+import gg.pistol.scissors.game.Game;
+import gg.pistol.scissors.game.GameResult;
+import gg.pistol.scissors.game.GameState;
+import gg.pistol.scissors.game.RefereeMonitorAdapter;
+import gg.pistol.scissors.log.AsyncLogger;
+import gg.pistol.scissors.match.RefereeStarter;
+import gg.pistol.scissors.player.Player;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+
+/**
+ * Runner of a single elimination (knockout) bracket.
+ *
+ * <p>The matches form a dependency graph: every match is fed by two earlier matches or seeded players and the winner
+ * advances to the next match. A match starts the moment both of its feeders finished, without waiting for the rest
+ * of its round, so the independent branches of the bracket are refereed in parallel (on the worker groups of the
+ * starter when it has them) and the bracket finishes as fast as its longest chain of matches allows. The
+ * {@link BracketReport} compares the wall time with the critical path of the bracket.
+ *
+ * <p>The players are given in seed order and the bracket is split in halves recursively, so when the number of
+ * players is not a power of two the higher seeds play one match less. A tied game is replayed, after
+ * {@link #MAX_TIES} ties the higher seed of the match advances.
+ *
+ * @author Bogdan Pistol
+ */
+@ThreadSafe
+public class BracketRunner {
+
+    /**
+     * The number of tied games after which the higher seed of a match advances.
+     */
+    public static final int MAX_TIES = 10;
+
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(BracketRunner.class.getName());
+
+    private final RefereeStarter starter;
+    private final int playerCount;
+    private final int roundCount;
+    private final List<BracketMatch> seededMatches; // the matches ready when the bracket starts
+    private final AtomicLongArray roundMaxDurations; // the longest match of every round in nanos
+    private final AtomicInteger gameCount;
+    private final AtomicBoolean started;
+    private final CountDownLatch done;
+    private volatile long startTime;
+    private volatile boolean failed;
+    @Nullable private volatile Player champion;
+    @Nullable private volatile BracketReport report;
+
+    /**
+     * @param players the players in seed order
+     * @param starter the starter of the games
+     */
+    public BracketRunner(List<Player> players, RefereeStarter starter) {
+        if (players == null || starter == null) {
+            throw new NullPointerException("The players or/and the starter are null.");
+        }
+        if (players.size() < 2) {
+            throw new IllegalArgumentException("The bracket needs at least 2 players.");
+        }
+        for (Player player : players) {
+            if (player == null) {
+                throw new NullPointerException("A player is null.");
+            }
+        }
+        this.starter = starter;
+        playerCount = players.size();
+        seededMatches = new ArrayList<BracketMatch>();
+        roundCount = build(new ArrayList<Player>(players)).getRound();
+        roundMaxDurations = new AtomicLongArray(roundCount);
+        gameCount = new AtomicInteger();
+        started = new AtomicBoolean();
+        done = new CountDownLatch(1);
+    }
+
+    /**
+     * Build the matches of the players recursively, the upper half feeds the first slot of the match.
+     *
+     * @return the final match of the players
+     */
+    private BracketMatch build(List<Player> players) {
+        int half = players.size() / 2; // the upper half is the smaller one, its higher seeds get the byes
+        List<Player> upper = players.subList(0, half);
+        List<Player> lower = players.subList(half, players.size());
+        BracketMatch upperMatch = upper.size() > 1 ? build(upper) : null;
+        BracketMatch lowerMatch = lower.size() > 1 ? build(lower) : null;
+
+        int round = 1 + Math.max(upperMatch != null ? upperMatch.getRound() : 0,
+                lowerMatch != null ? lowerMatch.getRound() : 0);
+        BracketMatch match = new BracketMatch(round);
+        link(match, 0, upper, upperMatch);
+        link(match, 1, lower, lowerMatch);
+        return match;
+    }
+
+    private void link(BracketMatch match, int slot, List<Player> players, @Nullable BracketMatch feeder) {
+        if (feeder != null) {
+            feeder.setParent(match, slot);
+        } else if (match.advance(slot, players.get(0), 0)) {
+            seededMatches.add(match);
+        }
+    }
+
+    /**
+     * Start the matches of the seeded players, the rest of the bracket follows as the matches finish.
+     *
+     * @throws IllegalStateException in case the bracket was already started
+     */
+    public void start() {
+        if (!started.compareAndSet(false, true)) {
+            throw new IllegalStateException("The bracket is already started.");
+        }
+        startTime = System.nanoTime();
+        for (BracketMatch match : seededMatches) {
+            play(match);
+        }
+    }
+
+    private void play(BracketMatch match) {
+        if (failed) {
+            return;
+        }
+        match.newGame();
+        gameCount.incrementAndGet();
+        List<Player> players = Arrays.asList(match.getPlayer(0), match.getPlayer(1));
+        try {
+            starter.startGame(players, new MatchMonitor(match));
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Cannot start the bracket match of {}: {}", players, e);
+            fail();
+        }
+    }
+
+    private void matchGameFinished(BracketMatch match, Game game) {
+        GameResult result = game.getPlayerResult(match.getPlayer(0));
+        int winner;
+        if (result == GameResult.WIN) {
+            winner = 0;
+        } else if (result == GameResult.LOSS) {
+            winner = 1;
+        } else if (match.getGames() < MAX_TIES) {
+            play(match);
+            return;
+        } else {
+            winner = 0;
+        }
+
+        long now = System.nanoTime();
+        long duration = now - match.getStartTime();
+        long chain = match.getFeederChain() + duration;
+        updateMax(roundMaxDurations, match.getRound() - 1, duration);
+
+        BracketMatch parent = match.getParent();
+        if (parent == null) {
+            complete(match.getPlayer(winner), now, chain);
+        } else if (parent.advance(match.getParentSlot(), match.getPlayer(winner), chain)) {
+            play(parent);
+        }
+    }
+
+    private static void updateMax(AtomicLongArray array, int index, long value) {
+        for (long max = array.get(index); value > max; max = array.get(index)) {
+            if (array.compareAndSet(index, max, value)) {
+                return;
+            }
+        }
+    }
+
+    private void complete(Player winner, long finishTime, long criticalPath) {
+        long roundBarrierTime = 0;
+        for (int i = 0; i < roundCount; i++) {
+            roundBarrierTime += roundMaxDurations.get(i);
+        }
+        report = new BracketReport(playerCount, playerCount - 1, gameCount.get(), roundCount,
+                finishTime - startTime, criticalPath, roundBarrierTime);
+        champion = winner;
+        done.countDown();
+    }
+
+    private void fail() {
+        failed = true;
+        done.countDown();
+    }
+
+    /**
+     * Wait for the bracket to finish.
+     *
+     * @param timeout how much time to wait in millis
+     * @return whether the bracket finished (or failed) before the timeout
+     * @throws InterruptedException
+     */
+    public boolean awaitCompletion(long timeout) throws InterruptedException {
+        return done.await(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return whether a game of the bracket could not be started or was stopped, the bracket has no champion then
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * @return the winner of the bracket or null in case the bracket did not finish
+     */
+    @Nullable
+    public Player getChampion() {
+        return champion;
+    }
+
+    /**
+     * @return the report of the bracket or null in case the bracket did not finish
+     */
+    @Nullable
+    public BracketReport getReport() {
+        return report;
+    }
+
+    /**
+     * Monitor of a game of a match, the winner advances when the game finishes.
+     */
+    private class MatchMonitor extends RefereeMonitorAdapter {
+        private final BracketMatch match;
+        private final AtomicBoolean ended = new AtomicBoolean();
+
+        MatchMonitor(BracketMatch match) {
+            this.match = match;
+        }
+
+        @Override
+        public void stateChanged(Game game, GameState state) {
+            if (state == GameState.STOPPED && ended.compareAndSet(false, true)) {
+                LOG.log(Level.WARNING, "The bracket game {} was stopped", game.getId());
+                fail();
+            }
+        }
+
+        @Override
+        public void gameFinished(Game game) {
+            if (ended.compareAndSet(false, true)) {
+                matchGameFinished(match, game);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.tournament;
+
+/**
+ * Receiver of the pairings of a Swiss round as soon as {@link SwissPairing} forms them.
+ *
+ * @author Bogdan Pistol
+ */
+public interface PairingListener {
+
+    /**
+     * Two players were paired for the current round.
+     *
+     * @param player1 the identifier of the higher ranked player
+     * @param player2 the identifier of the lower ranked player
+     */
+    void paired(int player1, int player2);
+
+    /**
+     * A player sits out the current round (the number of players is odd) and receives the points of a win.
+     *
+     * @param player the identifier of the player
+     */
+    void bye(int player);
+
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.tournament;
+
+import gg.pistol.scissors.game.GameResult;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Swiss-system pairing of a large number of players identified by dense integers (their seeds, 0 being the top seed).
+ *
+ * <p>Every round the players are ranked by score (counting sort over the score buckets, the seed breaking the ties)
+ * and every unpaired player is paired with the next unpaired player in the ranking that it did not meet yet. The
+ * players of a score bucket are paired together and the player left without an opponent in its bucket floats down to
+ * the next bucket. When the number of players is odd the lowest ranked player without a bye sits out the round.
+ * Only when every remaining player was already met a rematch is allowed (see {@link #getRematchCount()}).
+ *
+ * <p>The past opponents are kept in a flat array with a slot for every round of every player, and the opponents of
+ * the player being paired are stamped into an array indexed by the player identifier, so checking a candidate is
+ * O(1). The next unpaired player is found through skip pointers with path compression, which makes a round
+ * O(N * R) for N players and R rounds and takes milliseconds for 100 000 players.
+ *
+ * <p>The scores are counted in half points: {@link #WIN_POINTS} for a win or a bye, {@link #TIE_POINTS} for a tie.
+ *
+ * @author Bogdan Pistol
+ */
+@NotThreadSafe
+public class SwissPairing {
+
+    public static final int WIN_POINTS = 2;
+    public static final int TIE_POINTS = 1;
+
+    private static final int NO_PLAYER = -1;
+
+    private final int playerCount;
+    private final int maxRounds;
+    private final int[] scores;
+    private final int[] opponents; // the opponents of the player p are at p * maxRounds
+    private final int[] opponentCounts;
+    private final boolean[] hadBye;
+    private final int[] ranking; // the player identifiers by rank, refreshed every round
+    private final int[] nextUnpaired; // skip pointers over the ranking, nextUnpaired[i] <= the next unpaired rank
+    private final int[] metStamps; // metStamps[p] == stamp when p was met by the player being paired
+    private int stamp;
+    private int round;
+    private int rematchCount;
+
+    /**
+     * @param playerCount the number of players
+     * @param maxRounds the number of rounds that will be paired
+     */
+    public SwissPairing(int playerCount, int maxRounds) {
+        if (playerCount < 2 || maxRounds < 1) {
+            throw new IllegalArgumentException("The player count must be at least 2 and the rounds at least 1.");
+        }
+        this.playerCount = playerCount;
+        this.maxRounds = maxRounds;
+        scores = new int[playerCount];
+        opponents = new int[playerCount * maxRounds];
+        opponentCounts = new int[playerCount];
+        hadBye = new boolean[playerCount];
+        ranking = new int[playerCount];
+        nextUnpaired = new int[playerCount + 1];
+        metStamps = new int[playerCount];
+        for (int i = 0; i < playerCount; i++) {
+            ranking[i] = i;
+        }
+    }
+
+    /**
+     * @param playerCount the number of players
+     * @return the number of rounds needed for a single player to win all its games (the ceiling of log2)
+     */
+    public static int roundsFor(int playerCount) {
+        if (playerCount < 2) {
+            throw new IllegalArgumentException("The player count must be at least 2.");
+        }
+        return 32 - Integer.numberOfLeadingZeros(playerCount - 1);
+    }
+
+    /**
+     * Pair the next round. The pairs are passed to the listener as soon as they are formed, from the top of the
+     * ranking down, so their games can start while the rest of the round is paired.
+     *
+     * @param listener the receiver of the pairs and of the bye
+     * @throws IllegalStateException in case all the rounds were paired
+     */
+    public void pairRound(PairingListener listener) {
+        if (listener == null) {
+            throw new NullPointerException("The listener is null.");
+        }
+        if (round == maxRounds) {
+            throw new IllegalStateException("All the rounds were paired.");
+        }
+        rank();
+        round++;
+        for (int i = 0; i <= playerCount; i++) {
+            nextUnpaired[i] = i;
+        }
+
+        if (playerCount % 2 != 0) {
+            int byeRank = playerCount - 1;
+            for (int i = playerCount - 1; i >= 0; i--) {
+                if (!hadBye[ranking[i]]) {
+                    byeRank = i;
+                    break;
+                }
+            }
+            int player = ranking[byeRank];
+            hadBye[player] = true;
+            scores[player] += WIN_POINTS;
+            nextUnpaired[byeRank] = byeRank + 1;
+            listener.bye(player);
+        }
+
+        for (int i = findUnpaired(0); i < playerCount; i = findUnpaired(i + 1)) {
+            nextUnpaired[i] = i + 1;
+            int player = ranking[i];
+            markOpponents(player);
+            int first = findUnpaired(i + 1);
+            int j = first;
+            while (j < playerCount && metStamps[ranking[j]] == stamp) {
+                j = findUnpaired(j + 1);
+            }
+            if (j == playerCount) { // everybody left was met already
+                j = first;
+                rematchCount++;
+            }
+            nextUnpaired[j] = j + 1;
+            int opponent = ranking[j];
+            addOpponent(player, opponent);
+            addOpponent(opponent, player);
+            listener.paired(player, opponent);
+        }
+    }
+
+    /**
+     * Rank the players by descending score and ascending identifier with a counting sort over the score buckets
+     * (nobody can have more than the points of winning all the rounds played so far).
+     */
+    private void rank() {
+        int maxScore = WIN_POINTS * round;
+        int[] bucketStarts = new int[maxScore + 2];
+        for (int player = 0; player < playerCount; player++) {
+            bucketStarts[maxScore - scores[player] + 1]++;
+        }
+        for (int b = 1; b < bucketStarts.length; b++) {
+            bucketStarts[b] += bucketStarts[b - 1];
+        }
+        for (int player = 0; player < playerCount; player++) {
+            ranking[bucketStarts[maxScore - scores[player]]++] = player;
+        }
+    }
+
+    /**
+     * @return the first unpaired rank starting from the given rank or the player count if there is none
+     */
+    private int findUnpaired(int rank) {
+        int r = rank;
+        while (nextUnpaired[r] != r) {
+            nextUnpaired[r] = nextUnpaired[nextUnpaired[r]]; // path halving
+            r = nextUnpaired[r];
+        }
+        return r;
+    }
+
+    private void markOpponents(int player) {
+        stamp++;
+        int base = player * maxRounds;
+        for (int k = 0; k < opponentCounts[player]; k++) {
+            metStamps[opponents[base + k]] = stamp;
+        }
+    }
+
+    private void addOpponent(int player, int opponent) {
+        opponents[player * maxRounds + opponentCounts[player]++] = opponent;
+    }
+
+    /**
+     * Record the result of a game of the current round.
+     *
+     * @param player1 the identifier of a player
+     * @param player2 the identifier of the opponent
+     * @param result the result of the first player
+     */
+    public void recordResult(int player1, int player2, GameResult result) {
+        if (result == null) {
+            throw new NullPointerException("The result is null.");
+        }
+        switch (result) {
+            case WIN:
+                scores[player1] += WIN_POINTS;
+                break;
+            case LOSS:
+                scores[player2] += WIN_POINTS;
+                break;
+            default:
+                scores[player1] += TIE_POINTS;
+                scores[player2] += TIE_POINTS;
+        }
+    }
+
+    /**
+     * @param player the identifier of the player
+     * @return the score of the player in half points
+     */
+    public int getScore(int player) {
+        return scores[player];
+    }
+
+    /**
+     * @return the players ranked by descending score and ascending identifier
+     */
+    public int[] getStandings() {
+        rank();
+        return ranking.clone();
+    }
+
+    /**
+     * @return the number of rounds paired so far
+     */
+    public int getRound() {
+        return round;
+    }
+
+    /**
+     * @return the number of pairs of players that met more than once
+     */
+    public int getRematchCount() {
+        return rematchCount;
+    }
+
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.tournament;
+
+import gg.pistol.scissors.game.Game;
+import gg.pistol.scissors.game.GameResult;
+import gg.pistol.scissors.game.GameState;
+import gg.pistol.scissors.game.RefereeMonitorAdapter;
+import gg.pistol.scissors.log.AsyncLogger;
+import gg.pistol.scissors.match.RefereeStarter;
+import gg.pistol.scissors.player.Player;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+/**
+ * Swiss-system tournament for open events with too many players for a round-robin.
+ *
+ * <p>Every round pairs the players with equal scores who did not meet yet (see {@link SwissPairing}). The pairing,
+ * the refereeing of the games and the standings updates run as a pipeline: the tournament thread starts every game
+ * as soon as its pair is formed (at most <code>maxRunningGames</code> at a time) and applies the results in the order
+ * the games finish, while the rest of the round is still played. When there is no free place the pairing waits for
+ * the next result and applies it (the ranking of the round is taken before the pairing, so the new scores do not
+ * change the pairs of the round). The next round is paired when the last result of the round arrives, because its
+ * pairs depend on all the scores.
+ *
+ * <p>The players of a game can tie, a tie is worth half of a win. A game that cannot be started or that is stopped
+ * fails the tournament.
+ *
+ * @author Bogdan Pistol
+ */
+@ThreadSafe
+public class SwissTournament {
+
+    private static final AsyncLogger LOG = AsyncLogger.getLogger(SwissTournament.class.getName());
+    private static final GameOutcome FAILURE = new GameOutcome(-1, -1, null);
+
+    private final List<Player> players;
+    private final int rounds;
+    private final RefereeStarter starter;
+    private final Semaphore runningGames;
+    private final BlockingQueue<GameOutcome> outcomes; // from the referee threads to the tournament thread
+    private final SwissPairing pairing; // confined to the tournament thread
+    private final AtomicBoolean started;
+    private final CountDownLatch done;
+    private volatile boolean failed;
+    private volatile long maxPairingTime; // nanos
+    @Nullable private volatile List<Player> standings;
+    @Nullable private volatile int[] standingScores;
+
+    /**
+     * @param players the players in seed order
+     * @param rounds the number of rounds (see {@link SwissPairing#roundsFor})
+     * @param maxRunningGames the maximum number of games running at the same time
+     * @param starter the starter of the games
+     */
+    public SwissTournament(List<Player> players, int rounds, int maxRunningGames, RefereeStarter starter) {
+        if (players == null || starter == null) {
+            throw new NullPointerException("The players or/and the starter are null.");
+        }
+        if (players.size() < 2 || rounds < 1 || maxRunningGames < 1) {
+            throw new IllegalArgumentException("The tournament needs at least 2 players, 1 round and 1 running game.");
+        }
+        for (Player player : players) {
+            if (player == null) {
+                throw new NullPointerException("A player is null.");
+            }
+        }
+        this.players = new ArrayList<Player>(players);
+        this.rounds = rounds;
+        this.starter = starter;
+        runningGames = new Semaphore(maxRunningGames);
+        outcomes = new LinkedBlockingQueue<GameOutcome>();
+        pairing = new SwissPairing(players.size(), rounds);
+        started = new AtomicBoolean();
+        done = new CountDownLatch(1);
+    }
+
+    /**
+     * Start the tournament thread.
+     *
+     * @throws IllegalStateException in case the tournament was already started
+     */
+    public void start() {
+        if (!started.compareAndSet(false, true)) {
+            throw new IllegalStateException("The tournament is already started.");
+        }
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    runRounds();
+                } catch (InterruptedException e) {
+                    failed = true;
+                } catch (RuntimeException e) {
+                    LOG.log(Level.WARNING, "The tournament failed: {}", e);
+                    failed = true;
+                } finally {
+                    done.countDown();
+                }
+            }
+        }, "swiss-tournament");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void runRounds() throws InterruptedException {
+        RoundStarter roundStarter = new RoundStarter();
+        for (int round = 0; round < rounds; round++) {
+            roundStarter.games = 0;
+            roundStarter.results = 0;
+            long start = System.nanoTime();
+            pairing.pairRound(roundStarter);
+            maxPairingTime = Math.max(maxPairingTime, System.nanoTime() - start); // includes the waits for a place
+
+            while (!failed && roundStarter.results < roundStarter.games) {
+                roundStarter.record(outcomes.take());
+            }
+            if (failed) {
+                return;
+            }
+        }
+
+        int[] ranking = pairing.getStandings();
+        Player[] ranked = new Player[ranking.length];
+        int[] scores = new int[ranking.length];
+        for (int i = 0; i < ranking.length; i++) {
+            ranked[i] = players.get(ranking[i]);
+            scores[i] = pairing.getScore(ranking[i]);
+        }
+        standingScores = scores;
+        standings = Collections.unmodifiableList(Arrays.asList(ranked));
+    }
+
+    /**
+     * Wait for the tournament to finish.
+     *
+     * @param timeout how much time to wait in millis
+     * @return whether the tournament finished (or failed) before the timeout
+     * @throws InterruptedException
+     */
+    public boolean awaitCompletion(long timeout) throws InterruptedException {
+        return done.await(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return whether a game of the tournament could not be started or was stopped, there are no standings then
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * @return the players ranked by their final score (the seed breaking the ties) or null in case the tournament
+     *         did not finish
+     */
+    @Nullable
+    public List<Player> getStandings() {
+        return standings;
+    }
+
+    /**
+     * @param rank the rank of the player in the standings
+     * @return the final score of the player in half points (see {@link SwissPairing})
+     * @throws IllegalStateException in case the tournament did not finish
+     */
+    public int getScore(int rank) {
+        int[] scores = standingScores;
+        if (scores == null) {
+            throw new IllegalStateException("The tournament did not finish.");
+        }
+        return scores[rank];
+    }
+
+    /**
+     * @return the longest time it took to pair a round in nanoseconds, including the waits for a free place to start
+     *         the games
+     */
+    public long getMaxPairingTime() {
+        return maxPairingTime;
+    }
+
+    /**
+     * Starter of the games of a round, called by the pairing on the tournament thread.
+     */
+    private class RoundStarter implements PairingListener {
+        private int games; // the started games of the round
+        private int results; // the applied results of the round
+
+        @Override
+        public void paired(int player1, int player2) {
+            try {
+                // a game releases its place before passing its outcome, so a place is free after taking an outcome
+                while (!failed && !runningGames.tryAcquire()) {
+                    record(outcomes.take());
+                }
+            } catch (InterruptedException e) {
+                failed = true;
+                Thread.currentThread().interrupt();
+            }
+            if (failed) {
+                return; // the rest of the round is not started
+            }
+            games++;
+            List<Player> game = Arrays.asList(players.get(player1), players.get(player2));
+            try {
+                starter.startGame(game, new OutcomeMonitor(player1, player2));
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Cannot start the tournament game of {}: {}", game, e);
+                runningGames.release();
+                outcomes.add(FAILURE);
+            }
+        }
+
+        @Override
+        public void bye(int player) {
+        }
+
+        /**
+         * Apply the outcome of a game of the round to the standings.
+         */
+        void record(GameOutcome outcome) {
+            results++;
+            if (outcome == FAILURE) {
+                failed = true;
+            } else {
+                pairing.recordResult(outcome.player1, outcome.player2, outcome.result);
+            }
+        }
+    }
+
+    /**
+     * Monitor of a tournament game that passes its outcome to the tournament thread.
+     */
+    private class OutcomeMonitor extends RefereeMonitorAdapter {
+        private final int player1;
+        private final int player2;
+        private final AtomicBoolean ended = new AtomicBoolean();
+
+        OutcomeMonitor(int player1, int player2) {
+            this.player1 = player1;
+            this.player2 = player2;
+        }
+
+        @Override
+        public void stateChanged(Game game, GameState state) {
+            if (state == GameState.STOPPED && ended.compareAndSet(false, true)) {
+                runningGames.release();
+                outcomes.add(FAILURE);
+            }
+        }
+
+        @Override
+        public void gameFinished(Game game) {
+            if (ended.compareAndSet(false, true)) {
+                GameResult result = game.getPlayerResult(players.get(player1));
+                runningGames.release();
+                outcomes.add(result != null ? new GameOutcome(player1, player2, result) : FAILURE);
+            }
+        }
+    }
+
+    /**
+     * The result of a finished game.
+     */
+    private static class GameOutcome {
+        private final int player1;
+        private final int player2;
+        @Nullable private final GameResult result; // of the first player
+
+        GameOutcome(int player1, int player2, @Nullable GameResult result) {
+            this.player1 = player1;
+            this.player2 = player2;
+            this.result = result;
+        }
+    }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.trace;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writer of game timelines in the JSON trace event format, that can be opened by the trace viewers (e.g.
+ * <code>chrome://tracing</code> or Perfetto).
+ *
+ * <p>Every game is a process named after the game and every track of a game (the referee and the players) is a
+ * thread of the process. The spans are complete events with the timestamps in microseconds since the earliest span
+ * of the written timelines.
+ *
+ * @author Bogdan Pistol
+ */
+@NotThreadSafe
+public class ChromeTraceWriter {
+
+    private static final String CATEGORY = "scissors";
+
+    private final Writer out;
+    private boolean firstEvent;
+
+    /**
+     * @param out where to write the trace, it is not closed by the writer
+     */
+    public ChromeTraceWriter(Writer out) {
+        if (out == null) {
+            throw new NullPointerException("The out is null.");
+        }
+        this.out = out;
+    }
+
+    /**
+     * Write a trace document with the timelines.
+     *
+     * @param timelines
+     * @throws IOException
+     */
+    public void write(Collection<GameTimeline> timelines) throws IOException {
+        if (timelines == null) {
+            throw new NullPointerException("The timelines are null.");
+        }
+        long origin = Long.MAX_VALUE;
+        for (GameTimeline timeline : timelines) {
+            for (TraceSpan span : timeline.getSpans()) {
+                origin = Math.min(origin, span.getStart());
+            }
+        }
+
+        firstEvent = true;
+        out.write("{\"traceEvents\":[");
+        for (GameTimeline timeline : timelines) {
+            long pid = timeline.getGameId();
+            writeMetadata("process_name", pid, 0, "game " + pid);
+            List<String> tracks = timeline.getTracks();
+            for (int i = 0; i < tracks.size(); i++) {
+                writeMetadata("thread_name", pid, i, tracks.get(i));
+            }
+            for (TraceSpan span : timeline.getSpans()) {
+                writeSpan(pid, span, origin);
+            }
+        }
+        out.write("\n],\"displayTimeUnit\":\"ms\"}\n");
+        out.flush();
+    }
+
+    private void writeMetadata(String name, long pid, int tid, String value) throws IOException {
+        startEvent();
+        out.write("{\"name\":\"");
+        out.write(name);
+        out.write("\",\"ph\":\"M\",\"pid\":");
+        out.write(Long.toString(pid));
+        out.write(",\"tid\":");
+        out.write(Integer.toString(tid));
+        out.write(",\"args\":{\"name\":");
+        writeString(value);
+        out.write("}}");
+    }
+
+    private void writeSpan(long pid, TraceSpan span, long origin) throws IOException {
+        startEvent();
+        out.write("{\"name\":");
+        writeString(span.getName());
+        out.write(",\"cat\":\"" + CATEGORY + "\",\"ph\":\"X\",\"ts\":");
+        writeMicros(span.getStart() - origin);
+        out.write(",\"dur\":");
+        writeMicros(span.getDuration());
+        out.write(",\"pid\":");
+        out.write(Long.toString(pid));
+        out.write(",\"tid\":");
+        out.write(Integer.toString(span.getTrack()));
+        if (!span.getArgs().isEmpty()) {
+            out.write(",\"args\":{");
+            boolean first = true;
+            for (Map.Entry<String, Long> arg : span.getArgs().entrySet()) {
+                if (!first) {
+                    out.write(',');
+                }
+                first = false;
+                writeString(arg.getKey());
+                out.write(':');
+                out.write(Long.toString(arg.getValue()));
+            }
+            out.write('}');
+        }
+        out.write('}');
+    }
+
+    private void startEvent() throws IOException {
+        out.write(firstEvent ? "\n" : ",\n");
+        firstEvent = false;
+    }
+
+    /**
+     * Write nanoseconds as microseconds with 3 decimals (independent of the default locale).
+     */
+    private void writeMicros(long nanos) throws IOException {
+        out.write(Long.toString(nanos / 1000));
+        out.write('.');
+        String fraction = Long.toString(nanos % 1000);
+        for (int i = fraction.length(); i < 3; i++) {
+            out.write('0');
+        }
+        out.write(fraction);
+    }
+
+    private void writeString(String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.write("\\\"");
+                    break;
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        String hex = Integer.toHexString(c);
+                        out.write("\\u00");
+                        if (hex.length() < 2) {
+                            out.write('0');
+                        }
+                        out.write(hex);
+                    } else {
+                        out.write(c);
+                    }
+                    break;
+            }
+        }
+        out.write('"');
+    }
+
+}
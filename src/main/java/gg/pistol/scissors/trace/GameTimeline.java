@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.trace;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The spans of a game, on a track for the referee and a track for every player.
+ *
+ * @author Bogdan Pistol
+ */
+@ThreadSafe
+public class GameTimeline {
+
+    /**
+     * The track of the referee, the players have the following tracks in the order of the game players.
+     */
+    public static final int REFEREE_TRACK = 0;
+
+    private final long gameId;
+    private final List<String> tracks; // unmodifiable
+    @GuardedBy("lock") private final List<TraceSpan> spans;
+    private final Lock lock;
+
+    // package private
+    GameTimeline(long gameId, List<String> tracks) {
+        if (tracks == null) {
+            throw new NullPointerException("The tracks are null.");
+        }
+        this.gameId = gameId;
+        this.tracks = Collections.unmodifiableList(new ArrayList<String>(tracks));
+        spans = new ArrayList<TraceSpan>();
+        lock = new ReentrantLock();
+    }
+
+    // package private
+    void addSpan(TraceSpan span) {
+        lock.lock();
+        try {
+            spans.add(span);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getGameId() {
+        return gameId;
+    }
+
+    /**
+     * @return the names of the tracks (unmodifiable)
+     */
+    public List<String> getTracks() {
+        return tracks;
+    }
+
+    /**
+     * @return a snapshot of the spans in the order they ended
+     */
+    public List<TraceSpan> getSpans() {
+        lock.lock();
+        try {
+            return new ArrayList<TraceSpan>(spans);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
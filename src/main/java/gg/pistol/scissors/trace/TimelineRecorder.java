@@ -0,0 +1,364 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.trace;
+
+import gg.pistol.scissors.game.Game;
+import gg.pistol.scissors.game.GameState;
+import gg.pistol.scissors.game.Gesture;
+import gg.pistol.scissors.game.RefereeListener;
+import gg.pistol.scissors.game.RefereeMonitorAdapter;
+import gg.pistol.scissors.metrics.Histogram;
+import gg.pistol.scissors.metrics.MetricsRegistry;
+import gg.pistol.scissors.player.Player;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Monitor that records the timeline of every game and the latency of the game phases (see {@link TracePhase}).
+ *
+ * <p>The timeline has spans for the referee construction, the counting, every count down delivery (with the drift of
+ * the count pacing), the throw window of every player (with the used percentage of the throw time limit), the wait
+ * after the last gesture and the results delivery. The timelines of the running games and of a bounded number of
+ * recently ended games are kept and can be exported with {@link ChromeTraceWriter}.
+ *
+ * <p>The phase latencies of all the games are recorded in histograms of a {@link MetricsRegistry} (named by
+ * {@link TracePhase#getMetricName()}), so their percentiles can be tracked against latency objectives.
+ *
+ * @author Bogdan Pistol
+ */
+@ThreadSafe
+public class TimelineRecorder extends RefereeMonitorAdapter {
+
+    public static final int DEFAULT_RECENT_GAMES = 100;
+    public static final String THROW_WINDOW_UTILIZATION = "trace.throwWindowUtilization";
+
+    private static final long PERCENT = 100L;
+
+    private final int recentGameLimit;
+    private final Map<TracePhase, Histogram> phases;
+    private final Histogram throwWindowUtilization; // percents of the throw time limit
+    private final ConcurrentMap<Long, RunningGame> runningGames;
+    @GuardedBy("lock") private final Map<Long, GameTimeline> recentGames; // in the order the games ended
+    private final Lock lock;
+
+    public TimelineRecorder() {
+        this(new MetricsRegistry(), DEFAULT_RECENT_GAMES);
+    }
+
+    /**
+     * @param registry where to create the phase histograms
+     * @param recentGameLimit how many ended games to keep the timeline of
+     */
+    public TimelineRecorder(MetricsRegistry registry, int recentGameLimit) {
+        if (registry == null) {
+            throw new NullPointerException("The registry is null.");
+        }
+        if (recentGameLimit < 0) {
+            throw new IllegalArgumentException("The recentGameLimit is negative.");
+        }
+        this.recentGameLimit = recentGameLimit;
+        phases = new EnumMap<TracePhase, Histogram>(TracePhase.class);
+        for (TracePhase phase : TracePhase.values()) {
+            phases.put(phase, registry.histogram(phase.getMetricName()));
+        }
+        throwWindowUtilization = registry.histogram(THROW_WINDOW_UTILIZATION);
+        runningGames = new ConcurrentHashMap<Long, RunningGame>();
+        recentGames = new LinkedHashMap<Long, GameTimeline>();
+        lock = new ReentrantLock();
+    }
+
+    @Override
+    public void gameCreated(Game game) {
+        long now = System.nanoTime();
+        List<String> tracks = new ArrayList<String>();
+        tracks.add("referee");
+        for (Player player : game.getPlayers()) {
+            tracks.add(player.getName());
+        }
+        RunningGame running = new RunningGame(new GameTimeline(game.getId(), tracks));
+        addSpan(running, TracePhase.CONSTRUCTION, "construction", GameTimeline.REFEREE_TRACK,
+                game.getCreationTime(), now);
+        runningGames.put(game.getId(), running);
+    }
+
+    @Override
+    public void stateChanged(Game game, GameState state) {
+        long now = System.nanoTime();
+        RunningGame running = runningGames.get(game.getId());
+        if (running == null) {
+            return;
+        }
+        running.lock.lock();
+        try {
+            switch (state) {
+                case COUNTING:
+                    running.counting = now;
+                    break;
+                case THROWING:
+                    running.throwing = now;
+                    addSpan(running, null, "counting", GameTimeline.REFEREE_TRACK, running.counting, now);
+                    break;
+                case FINISHED:
+                    running.finishing = now;
+                    finishThrowing(game, running, now);
+                    break;
+                default:
+                    break;
+            }
+        } finally {
+            running.lock.unlock();
+        }
+        if (state == GameState.STOPPED) {
+            endGame(game.getId());
+        }
+    }
+
+    @GuardedBy("running.lock")
+    private void finishThrowing(Game game, RunningGame running, long now) {
+        addSpan(running, null, "throwing", GameTimeline.REFEREE_TRACK, running.throwing, now);
+        List<Player> players = game.getPlayers();
+        for (int i = 0; i < players.size(); i++) {
+            // the players with a gesture have their span added when the referee reports the gesture
+            if (!running.thrown[i] && game.getPlayerGesture(players.get(i)) == null) {
+                running.thrown[i] = true;
+                Map<String, Long> args = new LinkedHashMap<String, Long>();
+                args.put("utilization", PERCENT);
+                args.put("timedOut", 1L);
+                addSpan(running, null, "throw window", i + 1, running.throwing, now, args);
+                throwWindowUtilization.record(PERCENT);
+            }
+        }
+        if (running.lastGesture != 0L) {
+            addSpan(running, TracePhase.LAST_GESTURE_TO_FINISH, "last gesture to finish", GameTimeline.REFEREE_TRACK,
+                    running.lastGesture, now);
+        }
+    }
+
+    @Override
+    public void eventDelivered(Game game, List<RefereeListener> recipients, long sendTime, long[] deliveryTimes) {
+        RunningGame running = runningGames.get(game.getId());
+        if (running == null) {
+            return;
+        }
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        for (long time : deliveryTimes) {
+            first = Math.min(first, time);
+            last = Math.max(last, time);
+        }
+        Map<String, Long> args = new LinkedHashMap<String, Long>();
+        args.put("recipients", (long) deliveryTimes.length);
+        args.put("skew", last - first);
+
+        running.lock.lock();
+        try {
+            if (running.throwing == 0L) {
+                // only the count down events are delivered while counting
+                int count = game.getCountdownStart() - running.countdowns;
+                if (running.countdowns == 0) {
+                    addSpan(running, TracePhase.FIRST_COUNTDOWN, "first countdown", GameTimeline.REFEREE_TRACK,
+                            running.counting, last);
+                } else {
+                    long drift = sendTime - running.lastCountdown -
+                            TimeUnit.MILLISECONDS.toNanos(game.getTimeBetweenCounts());
+                    args.put("drift", drift);
+                    phases.get(TracePhase.COUNT_DRIFT).record(drift);
+                }
+                running.countdowns++;
+                running.lastCountdown = sendTime;
+                addSpan(running, null, "countdown " + count, GameTimeline.REFEREE_TRACK, sendTime, last, args);
+            } else if (running.finishing != 0L) {
+                addSpan(running, null, "results dispatch", GameTimeline.REFEREE_TRACK, sendTime, last, args);
+            }
+        } finally {
+            running.lock.unlock();
+        }
+    }
+
+    @Override
+    public void gestureReceived(Game game, Player player, Gesture gesture) {
+        Long arrivalTime = game.getGestureArrivalTime(player);
+        long now = arrivalTime != null ? arrivalTime : System.nanoTime();
+        RunningGame running = runningGames.get(game.getId());
+        if (running == null) {
+            return;
+        }
+        int index = game.getPlayers().indexOf(player);
+        running.lock.lock();
+        try {
+            if (index < 0 || running.thrown[index] || running.throwing == 0L) {
+                return;
+            }
+            if (running.finishing != 0L && game.getPlayerGesture(player) == null) {
+                return; // too late, the player timed out
+            }
+            running.thrown[index] = true;
+            running.lastGesture = Math.max(running.lastGesture, now);
+            long limit = TimeUnit.MILLISECONDS.toNanos(game.getThrowTimeLimit());
+            long utilization = limit > 0 ? Math.min(PERCENT, (now - running.throwing) * PERCENT / limit) : PERCENT;
+            Map<String, Long> args = new LinkedHashMap<String, Long>();
+            args.put("utilization", utilization);
+            addSpan(running, TracePhase.THROW, "throw window", index + 1, running.throwing, now, args);
+            throwWindowUtilization.record(utilization);
+        } finally {
+            running.lock.unlock();
+        }
+    }
+
+    @Override
+    public void gameFinished(Game game) {
+        long now = System.nanoTime();
+        RunningGame running = runningGames.get(game.getId());
+        if (running == null) {
+            return;
+        }
+        running.lock.lock();
+        try {
+            addSpan(running, TracePhase.RESULTS_DELIVERY, "results", GameTimeline.REFEREE_TRACK, running.finishing,
+                    now);
+            addSpan(running, TracePhase.GAME, "game " + game.getId(), GameTimeline.REFEREE_TRACK,
+                    game.getCreationTime(), now);
+        } finally {
+            running.lock.unlock();
+        }
+        endGame(game.getId());
+    }
+
+    private void addSpan(RunningGame running, @Nullable TracePhase phase, String name, int track, long start,
+                         long end) {
+        addSpan(running, phase, name, track, start, end, Collections.<String, Long>emptyMap());
+    }
+
+    private void addSpan(RunningGame running, @Nullable TracePhase phase, String name, int track, long start,
+                         long end, Map<String, Long> args) {
+        running.timeline.addSpan(new TraceSpan(name, track, start, end, args));
+        if (phase != null) {
+            phases.get(phase).record(end - start);
+        }
+    }
+
+    private void endGame(long gameId) {
+        RunningGame running = runningGames.remove(gameId);
+        if (running == null || recentGameLimit == 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            recentGames.put(gameId, running.timeline);
+            if (recentGames.size() > recentGameLimit) {
+                recentGames.remove(recentGames.keySet().iterator().next());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param gameId
+     * @return the timeline of a running or recently ended game or null in case the game is not known
+     */
+    @Nullable
+    public GameTimeline getTimeline(long gameId) {
+        RunningGame running = runningGames.get(gameId);
+        if (running != null) {
+            return running.timeline;
+        }
+        lock.lock();
+        try {
+            return recentGames.get(gameId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the timelines of the recently ended games in the order they ended
+     */
+    public List<GameTimeline> getRecentTimelines() {
+        lock.lock();
+        try {
+            return new ArrayList<GameTimeline>(recentGames.values());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param phase
+     * @return the latency of the phase over all the games in nanoseconds
+     */
+    public Histogram getPhaseLatency(TracePhase phase) {
+        if (phase == null) {
+            throw new NullPointerException("The phase is null.");
+        }
+        return phases.get(phase);
+    }
+
+    /**
+     * @return how much of the throw time limit the players used, in percents
+     */
+    public Histogram getThrowWindowUtilization() {
+        return throwWindowUtilization;
+    }
+
+    /**
+     * Write the timelines of the recently ended games as a trace (see {@link ChromeTraceWriter}).
+     *
+     * @param out
+     * @throws IOException
+     */
+    public void writeTrace(Writer out) throws IOException {
+        new ChromeTraceWriter(out).write(getRecentTimelines());
+    }
+
+    /**
+     * The timeline of a running game and when the game entered its phases ({@link System#nanoTime()}, 0 until
+     * entered).
+     */
+    private static class RunningGame {
+        private final GameTimeline timeline;
+        private final Lock lock;
+        @GuardedBy("lock") private final boolean[] thrown; // the players with a throw window span
+        @GuardedBy("lock") private long counting;
+        @GuardedBy("lock") private long throwing;
+        @GuardedBy("lock") private long finishing;
+        @GuardedBy("lock") private long lastGesture;
+        @GuardedBy("lock") private long lastCountdown;
+        @GuardedBy("lock") private int countdowns;
+
+        RunningGame(GameTimeline timeline) {
+            this.timeline = timeline;
+            lock = new ReentrantLock();
+            thrown = new boolean[timeline.getTracks().size() - 1];
+        }
+    }
+
+}
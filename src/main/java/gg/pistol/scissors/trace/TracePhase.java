@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.trace;
+
+/**
+ * The phases of a game measured by the {@link TimelineRecorder}, in nanoseconds.
+ *
+ * @author Bogdan Pistol
+ */
+public enum TracePhase {
+
+    /**
+     * The construction of the referee (wiring the opponents and the threads), from the game creation until the
+     * monitors are told about the game.
+     */
+    CONSTRUCTION("trace.construction"),
+
+    /**
+     * From the start of the game until the first count down was delivered to all the recipients.
+     */
+    FIRST_COUNTDOWN("trace.firstCountdown"),
+
+    /**
+     * How much later than the time between counts every count was sent, the drift of the count pacing.
+     */
+    COUNT_DRIFT("trace.countDrift"),
+
+    /**
+     * From the start of the throwing until the gesture of a player was received, for every player that threw.
+     */
+    THROW("trace.throw"),
+
+    /**
+     * From the last received gesture until the referee started finishing the game.
+     */
+    LAST_GESTURE_TO_FINISH("trace.lastGestureToFinish"),
+
+    /**
+     * From the end of the throwing until the results were delivered to all the recipients.
+     */
+    RESULTS_DELIVERY("trace.resultsDelivery"),
+
+    /**
+     * The whole game, from its creation until the results were delivered.
+     */
+    GAME("trace.game");
+
+    private final String metricName;
+
+    private TracePhase(String metricName) {
+        this.metricName = metricName;
+    }
+
+    /**
+     * @return the name of the histogram of the phase in the {@link gg.pistol.scissors.metrics.MetricsRegistry}
+     */
+    public String getMetricName() {
+        return metricName;
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.trace;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Named interval of a game timeline, on one of the tracks of the timeline (the referee or a player).
+ *
+ * @author Bogdan Pistol
+ */
+@Immutable
+public final class TraceSpan {
+
+    private final String name;
+    private final int track;
+    private final long start; // nanos
+    private final long end; // nanos
+    private final Map<String, Long> args;
+
+    // package private
+    TraceSpan(String name, int track, long start, long end) {
+        this(name, track, start, end, Collections.<String, Long>emptyMap());
+    }
+
+    // package private
+    TraceSpan(String name, int track, long start, long end, Map<String, Long> args) {
+        if (name == null || args == null) {
+            throw new NullPointerException("The name or/and the args are null.");
+        }
+        this.name = name;
+        this.track = track;
+        this.start = start;
+        this.end = Math.max(start, end);
+        this.args = Collections.unmodifiableMap(new LinkedHashMap<String, Long>(args));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the index of the track in {@link GameTimeline#getTracks()}
+     */
+    public int getTrack() {
+        return track;
+    }
+
+    /**
+     * @return when the span started ({@link System#nanoTime()})
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * @return when the span ended ({@link System#nanoTime()})
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    public long getDuration() {
+        return end - start;
+    }
+
+    /**
+     * @return the measurements attached to the span by their name (unmodifiable)
+     */
+    public Map<String, Long> getArgs() {
+        return args;
+    }
+
+    @Override
+    public String toString() {
+        return "TraceSpan{" +
+                "name='" + name + '\'' +
+                ", track=" + track +
+                ", start=" + start +
+                ", end=" + end +
+                ", args=" + args +
+                '}';
+    }
+
+}
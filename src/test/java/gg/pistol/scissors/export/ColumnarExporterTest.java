@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.export;
+
+import gg.pistol.scissors.game.GameResult;
+import gg.pistol.scissors.game.Gesture;
+import gg.pistol.scissors.history.GameRecord;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ColumnarExporterTest {
+
+    private static final int SMALL_BUDGET = 2048; // 32 player slots per block
+
+    private static List<GameRecord> createGames(int count) {
+        Random random = new Random(42);
+        List<GameRecord> games = new ArrayList<GameRecord>();
+        long finishTime = 1380000000000L;
+        for (int i = 0; i < count; i++) {
+            int players = 2 + random.nextInt(3);
+            int[] ids = new int[players];
+            Gesture[] gestures = new Gesture[players];
+            GameResult[] results = new GameResult[players];
+            long[] throwTimes = new long[players];
+            finishTime += random.nextInt(1000);
+            for (int j = 0; j < players; j++) {
+                ids[j] = random.nextInt(50);
+                boolean thrown = random.nextInt(5) > 0;
+                gestures[j] = thrown ? Gesture.values()[random.nextInt(Gesture.values().length)] : null;
+                results[j] = GameResult.values()[random.nextInt(GameResult.values().length)];
+                throwTimes[j] = thrown ? finishTime - random.nextInt(3000) : GameRecord.NO_THROW;
+            }
+            games.add(new GameRecord(1000L + i * (1 + random.nextInt(3)), finishTime, ids, gestures, results,
+                    throwTimes));
+        }
+        return games;
+    }
+
+    private static byte[] export(List<GameRecord> games, int budget) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ColumnarExporter exporter = new ColumnarExporter(bytes, budget);
+        for (GameRecord game : games) {
+            exporter.add(game);
+        }
+        exporter.close();
+        assertEquals(games.size(), exporter.getExportedGameCount());
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        List<GameRecord> games = createGames(1000);
+        ColumnarReader reader = new ColumnarReader(new ByteArrayInputStream(export(games,
+                ColumnarExporter.DEFAULT_MEMORY_BUDGET)));
+        for (GameRecord game : games) {
+            assertEquals(game, reader.next());
+        }
+        assertNull(reader.next());
+        reader.close();
+    }
+
+    @Test
+    public void testRoundTripMultipleBlocks() throws Exception {
+        List<GameRecord> games = createGames(1000);
+        ColumnarReader reader = new ColumnarReader(new ByteArrayInputStream(export(games, SMALL_BUDGET)));
+        for (GameRecord game : games) {
+            assertEquals(game, reader.next());
+        }
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void testCompression() throws Exception {
+        List<GameRecord> games = createGames(1000);
+        int slots = 0;
+        for (GameRecord game : games) {
+            slots += game.getPlayerCount();
+        }
+        // the history uses a 32 bytes record per slot
+        assertTrue(export(games, ColumnarExporter.DEFAULT_MEMORY_BUDGET).length * 4 < slots * 32);
+    }
+
+    @Test
+    public void testAggregateWinRates() throws Exception {
+        List<GameRecord> games = createGames(1000);
+        long[][] expected = new long[50][GameResult.values().length];
+        for (GameRecord game : games) {
+            for (int i = 0; i < game.getPlayerCount(); i++) {
+                expected[game.getPlayerId(i)][game.getResult(i).ordinal()]++;
+            }
+        }
+
+        ColumnarReader reader = new ColumnarReader(new ByteArrayInputStream(export(games, SMALL_BUDGET)));
+        WinRates rates = reader.aggregateWinRates();
+        assertNull(reader.next());
+        assertTrue(rates.getPlayerCount() <= 50);
+        for (int id = 0; id < 50; id++) {
+            assertEquals(expected[id][GameResult.WIN.ordinal()], rates.getWins(id));
+            assertEquals(expected[id][GameResult.LOSS.ordinal()], rates.getLosses(id));
+            assertEquals(expected[id][GameResult.TIE.ordinal()], rates.getTies(id));
+        }
+        assertEquals(0L, rates.getGameCount(100));
+        assertEquals(0.0, rates.getWinRate(100), 0.0);
+    }
+
+    @Test
+    public void testEmptyExport() throws Exception {
+        ColumnarReader reader = new ColumnarReader(new ByteArrayInputStream(export(new ArrayList<GameRecord>(),
+                SMALL_BUDGET)));
+        assertNull(reader.next());
+        assertEquals(0, reader.aggregateWinRates().getPlayerCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSmallBudget() {
+        new ColumnarExporter(new ByteArrayOutputStream(), 100);
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.game;
+
+import gg.pistol.scissors.player.Player;
+import gg.pistol.scissors.player.RandomComputerPlayer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+/**
+ * Fails when the game core allocates more bytes per game than the budget configured by the
+ * <code>scissors.allocationBudget.game</code> system property (see the surefire configuration).
+ */
+public class AllocationBudgetTest {
+
+    private static final int WARMUP_GAMES = 50000;
+    private static final int MEASURED_GAMES = 20000;
+    private static final long DEFAULT_GAME_BUDGET = 1280L;
+    private static final int COMPARISONS = 100000;
+
+    // the bytes allocated by reading the counters and by the runtime, a single boxed result per comparison would be
+    // orders of magnitude more
+    private static final long COMPARE_TOLERANCE = 1024L;
+
+    private com.sun.management.ThreadMXBean threadBean;
+    private List<Player> players;
+
+    @Before
+    public void setUp() throws Exception {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threadBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        players = Arrays.<Player>asList(new RandomComputerPlayer("player 1"), new RandomComputerPlayer("player 2"));
+    }
+
+    private long allocatedBytes() {
+        return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private GameResult playGame(int gameIndex) {
+        GameImpl game = new GameImpl(0, 0L, 0L, players);
+        game.setState(GameState.THROWING);
+        game.setPlayerGesture(players.get(0), Gesture.ROCK);
+        game.setPlayerGesture(players.get(1), gameIndex % 2 == 0 ? Gesture.PAPER : Gesture.SCISSORS);
+        game.getPlayerGesture(players.get(0));
+        game.setState(GameState.FINISHED);
+        RefereeImpl.computeResults(game);
+        return game.getPlayerResult(players.get(0));
+    }
+
+    @Test
+    public void testGameAllocation() {
+        long budget = Long.getLong("scissors.allocationBudget.game", DEFAULT_GAME_BUDGET);
+        int wins = 0;
+        for (int i = 0; i < WARMUP_GAMES; i++) {
+            wins += playGame(i) == GameResult.WIN ? 1 : 0;
+        }
+        long start = allocatedBytes();
+        for (int i = 0; i < MEASURED_GAMES; i++) {
+            wins += playGame(i) == GameResult.WIN ? 1 : 0;
+        }
+        long perGame = (allocatedBytes() - start) / MEASURED_GAMES;
+        assertEquals((WARMUP_GAMES + MEASURED_GAMES) / 2, wins);
+        assertTrue("Allocated " + perGame + " bytes per game, the budget is " + budget, perGame <= budget);
+    }
+
+    @Test
+    public void testCompareDoesNotAllocate() {
+        GestureComparator comparator = Gesture.getGestureComparator();
+        Gesture[] gestures = {Gesture.ROCK, Gesture.PAPER, Gesture.SCISSORS, null};
+        int sum = compare(comparator, gestures);
+        long start = allocatedBytes();
+        sum += compare(comparator, gestures);
+        long allocated = allocatedBytes() - start;
+        assertEquals(0, sum);
+        assertTrue("Allocated " + allocated + " bytes for " + COMPARISONS + " comparisons",
+                allocated <= COMPARE_TOLERANCE);
+    }
+
+    private int compare(GestureComparator comparator, Gesture[] gestures) {
+        int sum = 0;
+        for (int i = 0; i < COMPARISONS; i++) {
+            sum += comparator.compare(gestures[i & 3], gestures[(i >> 2) & 3]);
+        }
+        return sum;
+    }
+
+}
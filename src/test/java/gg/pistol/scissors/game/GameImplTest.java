@@ -20,6 +20,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
@@ -116,6 +117,38 @@ public class GameImplTest {
         assertTrue(game.isGameFinishReady());
     }
 
+    @Test
+    public void testThrowDeadline() throws Exception {
+        long limit = TimeUnit.MILLISECONDS.toNanos(throwTimeLimit);
+        assertEquals(limit, game.getThrowTimeRemaining());
+        long before = System.nanoTime();
+        game.setState(GameState.THROWING);
+        long deadline = game.getThrowDeadline();
+        assertTrue(deadline - before >= limit && deadline - System.nanoTime() <= limit);
+        assertTrue(game.getThrowTimeRemaining() > 0 && game.getThrowTimeRemaining() <= limit);
+
+        game.setState(GameState.FINISHED);
+        assertEquals(deadline, game.getThrowDeadline());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testThrowDeadlineNotThrowing() throws Exception {
+        game.setState(GameState.COUNTING);
+        game.getThrowDeadline();
+    }
+
+    @Test
+    public void testGestureArrivalTime() throws Exception {
+        assertNull(game.getGestureArrivalTime(player1));
+        game.setPlayerGesture(player2, Gesture.PAPER, 5L); // too early, only the arrival is recorded
+        game.setState(GameState.THROWING);
+        game.setPlayerGesture(player1, Gesture.ROCK, 10L);
+        assertEquals(Long.valueOf(10L), game.getGestureArrivalTime(player1));
+        assertEquals(Long.valueOf(5L), game.getGestureArrivalTime(player2));
+        assertNull(game.getPlayerGesture(player2));
+        assertNull(game.getGestureArrivalTime(mock(Player.class)));
+    }
+
     @Test
     public void testSetState() throws Exception {
         assertEquals(GameState.NOT_STARTED, game.getState());
@@ -129,4 +162,38 @@ public class GameImplTest {
         game.setState(GameState.NOT_STARTED);
     }
 
+    @Test
+    public void testCompareAndSetState() throws Exception {
+        assertTrue(game.compareAndSetState(GameState.NOT_STARTED, GameState.COUNTING));
+        assertFalse(game.compareAndSetState(GameState.NOT_STARTED, GameState.COUNTING));
+        assertEquals(GameState.COUNTING, game.getState());
+    }
+
+    @Test
+    public void testDuplicatePlayers() throws Exception {
+        Player player3 = mock(Player.class);
+        GameImpl other = new GameImpl(countdownStart, timeBetweenCounts, throwTimeLimit,
+                Arrays.<Player>asList(player1, player2, player1, player3, player2));
+        assertEquals(Arrays.asList(player1, player2, player3), other.getPlayers());
+        other.setState(GameState.THROWING);
+        other.setPlayerGesture(player3, Gesture.SCISSORS);
+        assertEquals(Gesture.SCISSORS, other.getPlayerGesture(player3));
+        assertNull(other.getPlayerGesture(player1));
+    }
+
+    @Test
+    public void testSetPlayerResults() throws Exception {
+        game.setState(GameState.FINISHED);
+        game.setPlayerResults(new GameResult[] {GameResult.WIN, GameResult.LOSS});
+        assertEquals(GameResult.WIN, game.getPlayerResult(player1));
+        assertEquals(GameResult.LOSS, game.getPlayerResult(player2));
+        assertNull(game.getPlayerResult(mock(Player.class)));
+    }
+
+    @Test
+    public void testGetId() throws Exception {
+        GameImpl other = new GameImpl(countdownStart, timeBetweenCounts, throwTimeLimit, Arrays.<Player>asList(player1));
+        assertTrue(other.getId() > game.getId());
+    }
+
 }
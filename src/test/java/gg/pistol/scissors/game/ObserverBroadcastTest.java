@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.game;
+
+import gg.pistol.scissors.player.GameObserver;
+import gg.pistol.scissors.player.Player;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class ObserverBroadcastTest {
+
+    @Test(timeout = 5000L)
+    public void testBroadcast() throws Exception {
+        Game game = mock(Game.class);
+        Player player = mock(Player.class);
+        List<GameObserver> observers = new ArrayList<GameObserver>();
+        for (int i = 0; i < 1100; i++) {
+            observers.add(new RecordingObserver());
+        }
+        final AtomicInteger shardDeliveries = new AtomicInteger();
+        final AtomicInteger deliveries = new AtomicInteger();
+        final List<Integer> shards = new CopyOnWriteArrayList<Integer>();
+        RefereeMonitor monitor = new RefereeMonitorAdapter() {
+            @Override
+            public void broadcastDelivered(Game game, int shard, List<GameObserver> observers, long publishTime,
+                                           long[] deliveryTimes) {
+                shardDeliveries.incrementAndGet();
+                deliveries.addAndGet(deliveryTimes.length);
+                assertEquals(observers.size(), deliveryTimes.length);
+                assertTrue(deliveryTimes[0] >= publishTime);
+                if (!shards.contains(shard)) {
+                    shards.add(shard);
+                }
+            }
+        };
+
+        ObserverBroadcast broadcast = new ObserverBroadcast(game, observers, 16, Arrays.asList(monitor));
+        assertEquals(4, broadcast.getWorkerCount()); // limited by the minimum shard size
+        ExecutorService executor = Executors.newCachedThreadPool();
+        broadcast.start(executor);
+        broadcast.publish(new ObserverBroadcast.CountdownNotice(1));
+        broadcast.publish(new ObserverBroadcast.CountdownNotice(0));
+        broadcast.publish(new ObserverBroadcast.GestureNotice(player, Gesture.ROCK));
+        broadcast.publish(new ObserverBroadcast.FinishNotice(game));
+        broadcast.close();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(4, TimeUnit.SECONDS));
+
+        List<String> expected = Arrays.asList("countdown 1", "countdown 0", "gesture ROCK", "finished");
+        for (GameObserver observer : observers) {
+            assertEquals(expected, ((RecordingObserver) observer).events);
+        }
+        assertEquals(4 * 4, shardDeliveries.get());
+        assertEquals(4 * 1100, deliveries.get());
+        assertEquals(4, shards.size());
+    }
+
+    @Test(timeout = 5000L)
+    public void testFailingObserver() throws Exception {
+        RecordingObserver failing = new RecordingObserver() {
+            @Override
+            public void countdown(int count) {
+                throw new IllegalStateException("failing observer");
+            }
+        };
+        RecordingObserver observer = new RecordingObserver();
+        ObserverBroadcast broadcast = new ObserverBroadcast(mock(Game.class), Arrays.<GameObserver>asList(failing,
+                observer), 4, Collections.<RefereeMonitor>emptyList());
+        assertEquals(1, broadcast.getWorkerCount());
+        ExecutorService executor = Executors.newCachedThreadPool();
+        broadcast.start(executor);
+        broadcast.publish(new ObserverBroadcast.CountdownNotice(0));
+        broadcast.close();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(4, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("countdown 0"), observer.events);
+    }
+
+    private static class RecordingObserver implements GameObserver {
+        // written only by the worker of the shard
+        private final List<String> events = new CopyOnWriteArrayList<String>();
+
+        @Override
+        public void gestureThrown(Player player, Gesture gesture) {
+            events.add("gesture " + gesture);
+        }
+
+        @Override
+        public void countdown(int count) {
+            events.add("countdown " + count);
+        }
+
+        @Override
+        public void gameFinished(Game game) {
+            events.add("finished");
+        }
+    }
+
+}
@@ -15,14 +15,21 @@
  */
 package gg.pistol.scissors.game;
 
+import gg.pistol.scissors.player.AbstractPlayer;
+import gg.pistol.scissors.player.AsyncPlayer;
 import gg.pistol.scissors.player.GameObserver;
+import gg.pistol.scissors.player.GestureCallback;
 import gg.pistol.scissors.player.OpponentAwarePlayer;
 import gg.pistol.scissors.player.Player;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
@@ -93,6 +100,154 @@ public class RefereeImplTest {
         assertEquals(GameResult.WIN, referee.getGame().getPlayerResult(player2));
     }
 
+    @Test
+    public void testAsyncPlayer() throws Exception {
+        AsyncPlayer asyncPlayer = mock(AsyncPlayer.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                final GestureCallback callback = (GestureCallback) invocation.getArguments()[0];
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.complete(Gesture.SCISSORS);
+                        callback.complete(Gesture.ROCK); // ignored
+                    }
+                }).start();
+                return null;
+            }
+        }).when(asyncPlayer).requestPlayerGesture(any(GestureCallback.class));
+        when(player2.getPlayerGesture()).thenReturn(Gesture.PAPER);
+        referee.stopGame();
+        referee = new RefereeImpl(countdownStart, timeBetweenCounts, throwTimeLimit,
+                Arrays.<Player>asList(asyncPlayer, player2), Arrays.<GameObserver>asList(observer));
+
+        referee.startGame();
+        referee.waitGameFinish(finishMaxTime);
+
+        verify(asyncPlayer, never()).getPlayerGesture();
+        verify(observer).gestureThrown(asyncPlayer, Gesture.SCISSORS);
+        verify(observer, never()).gestureThrown(asyncPlayer, Gesture.ROCK);
+        assertEquals(GameResult.WIN, referee.getGame().getPlayerResult(asyncPlayer));
+        assertEquals(GameResult.LOSS, referee.getGame().getPlayerResult(player2));
+    }
+
+    @Test
+    public void testAllPlayersLose() throws Exception {
+        Player player3 = mock(Player.class);
+        when(player1.getPlayerGesture()).thenReturn(Gesture.ROCK);
+        when(player2.getPlayerGesture()).thenReturn(Gesture.PAPER);
+        when(player3.getPlayerGesture()).thenReturn(Gesture.SCISSORS);
+        referee.stopGame();
+        referee = new RefereeImpl(countdownStart, timeBetweenCounts, throwTimeLimit,
+                Arrays.<Player>asList(player1, player2, player3), Arrays.<GameObserver>asList(observer));
+
+        referee.startGame();
+        referee.waitGameFinish(finishMaxTime);
+
+        verify(observer).gameFinished(referee.getGame());
+        assertEquals(GameResult.TIE, referee.getGame().getPlayerResult(player1));
+        assertEquals(GameResult.TIE, referee.getGame().getPlayerResult(player2));
+        assertEquals(GameResult.TIE, referee.getGame().getPlayerResult(player3));
+    }
+
+    @Test
+    public void testComputeResults() throws Exception {
+        Player player3 = mock(Player.class);
+        Player player4 = mock(Player.class);
+        GameImpl game = new GameImpl(0, 0L, 0L, Arrays.<Player>asList(player1, player2, player3, player4));
+        game.setState(GameState.THROWING);
+        game.setPlayerGesture(player1, Gesture.ROCK);
+        game.setPlayerGesture(player2, Gesture.SCISSORS);
+        game.setPlayerGesture(player3, Gesture.ROCK);
+        game.setState(GameState.FINISHED);
+        RefereeImpl.computeResults(game);
+
+        assertEquals(GameResult.WIN, game.getPlayerResult(player1));
+        assertEquals(GameResult.LOSS, game.getPlayerResult(player2));
+        assertEquals(GameResult.WIN, game.getPlayerResult(player3));
+        assertEquals(GameResult.LOSS, game.getPlayerResult(player4)); // did not throw
+    }
+
+    @Test(timeout = 10000L)
+    public void testLargeGame() throws Exception {
+        int playerCount = 100000;
+        List<Player> players = new ArrayList<Player>(playerCount);
+        for (int i = 0; i < playerCount; i++) {
+            players.add(new OpponentAwareTestPlayer("player" + i));
+        }
+        referee.stopGame();
+        referee = new RefereeImpl(countdownStart, timeBetweenCounts, throwTimeLimit, players,
+                Arrays.<GameObserver>asList(observer));
+
+        OpponentAwareTestPlayer middle = (OpponentAwareTestPlayer) players.get(playerCount / 2);
+        assertEquals(playerCount - 1, middle.opponents.size());
+        assertFalse(middle.opponents.contains(middle));
+        assertSame(players.get(playerCount / 2 + 1), middle.opponents.get(playerCount / 2));
+
+        GameImpl game = (GameImpl) referee.getGame();
+        game.setState(GameState.THROWING);
+        for (int i = 0; i < playerCount; i++) {
+            game.setPlayerGesture(players.get(i), i % 3 == 0 ? Gesture.PAPER : Gesture.ROCK);
+        }
+        game.setState(GameState.FINISHED);
+        RefereeImpl.computeResults(game);
+        assertEquals(GameResult.WIN, game.getPlayerResult(players.get(0)));
+        assertEquals(GameResult.LOSS, game.getPlayerResult(players.get(playerCount - 2)));
+    }
+
+    private static class OpponentAwareTestPlayer extends AbstractPlayer implements OpponentAwarePlayer {
+        private List<Player> opponents;
+
+        OpponentAwareTestPlayer(String name) {
+            super(name);
+        }
+
+        @Override
+        public void observeGame(Game game, List<Player> opponentPlayers) {
+            opponents = opponentPlayers;
+        }
+
+        @Override
+        public Gesture getPlayerGesture() {
+            return Gesture.ROCK;
+        }
+
+        @Override
+        public void countdown(int count) {
+        }
+
+        @Override
+        public void gameFinished(Game game) {
+        }
+    }
+
+    @Test
+    public void testLargeAudience() throws Exception {
+        List<GameObserver> observers = new ArrayList<GameObserver>();
+        for (int i = 0; i < 1000; i++) {
+            observers.add(mock(GameObserver.class));
+        }
+        when(player1.getPlayerGesture()).thenReturn(Gesture.ROCK);
+        when(player2.getPlayerGesture()).thenReturn(Gesture.PAPER);
+        RefereeMonitor monitor = mock(RefereeMonitor.class);
+        referee.stopGame();
+        referee = new RefereeImpl(countdownStart, timeBetweenCounts, throwTimeLimit,
+                Arrays.<Player>asList(player1, player2), observers, Arrays.asList(monitor));
+
+        referee.startGame();
+        referee.waitGameFinish(finishMaxTime);
+
+        for (GameObserver observer : observers) {
+            verify(observer).countdown(0);
+            verify(observer).gestureThrown(player1, Gesture.ROCK);
+            verify(observer).gameFinished(referee.getGame());
+        }
+        verify(player1).gameFinished(referee.getGame());
+        verify(monitor, atLeastOnce()).broadcastDelivered(eq(referee.getGame()), anyInt(),
+                anyListOf(GameObserver.class), anyLong(), any(long[].class));
+    }
+
     @Test
     public void testStopGame() throws Exception {
         referee.startGame();
@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.game;
+
+import gg.pistol.scissors.player.AbstractPlayer;
+import gg.pistol.scissors.player.GameObserver;
+import gg.pistol.scissors.player.Player;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class RefereeWorkerGroupsTest {
+
+    private RefereeWorkerGroups groups;
+
+    @Before
+    public void setUp() throws Exception {
+        groups = new RefereeWorkerGroups(2);
+    }
+
+    @Test
+    public void testGamesShareThreads() throws Exception {
+        Player player1 = mock(Player.class);
+        Player player2 = mock(Player.class);
+        when(player1.getPlayerGesture()).thenReturn(Gesture.ROCK);
+        when(player2.getPlayerGesture()).thenReturn(Gesture.SCISSORS);
+
+        for (int i = 0; i < 20; i++) {
+            RefereeImpl referee = new RefereeImpl(1, 0L, 1000L, Arrays.asList(player1, player2),
+                    Arrays.asList(mock(GameObserver.class)), Arrays.<RefereeMonitor>asList(), groups);
+            referee.startGame();
+            referee.waitGameFinish(2000L);
+            assertEquals(GameState.FINISHED, referee.getGame().getState());
+            assertEquals(GameResult.WIN, referee.getGame().getPlayerResult(player1));
+        }
+        long tasks = 0;
+        for (int i = 0; i < groups.getGroupCount(); i++) {
+            tasks += groups.getTaskCount(i);
+            assertEquals(0, groups.getGameCount(i));
+            // a game needs at most a referee task and a task per recipient at the same time
+            assertTrue(groups.getThreadCount(i) <= 8);
+        }
+        assertTrue(tasks >= 20 * 10);
+    }
+
+    @Test
+    public void testThrowingListenerDoesNotKeepTheGameAlive() throws Exception {
+        Player player1 = mock(Player.class);
+        Player player2 = mock(Player.class);
+        when(player1.getPlayerGesture()).thenReturn(Gesture.ROCK);
+        when(player2.getPlayerGesture()).thenReturn(Gesture.SCISSORS);
+        doThrow(new IllegalStateException()).when(player1).countdown(anyInt());
+
+        RefereeImpl referee = new RefereeImpl(1, 0L, 1000L, Arrays.asList(player1, player2),
+                Arrays.<GameObserver>asList(), Arrays.<RefereeMonitor>asList(), groups);
+        long start = System.nanoTime();
+        referee.startGame();
+        referee.waitGameFinish(2000L);
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        assertEquals(GameState.FINISHED, referee.getGame().getState());
+        assertEquals(0, groups.getGameCount(0) + groups.getGameCount(1));
+    }
+
+    @Test
+    public void testIdleGroupStealsTasks() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        groups.execute(0, new Runnable() {
+            @Override
+            public void run() {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    // quit task
+                }
+            }
+        });
+        blocked.await();
+        groups.execute(1, new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+        while (groups.getBusyCount(1) > 0 || groups.getTaskCount(1) == 0) {
+            Thread.sleep(10L);
+        }
+        Thread.sleep(200L); // the idle thread of the group 1 waits for tasks
+
+        final CountDownLatch stolen = new CountDownLatch(1);
+        groups.execute(0, new Runnable() {
+            @Override
+            public void run() {
+                stolen.countDown();
+            }
+        });
+        assertTrue(stolen.await(2, TimeUnit.SECONDS));
+        assertEquals(1, groups.getStolenCount(1));
+        assertEquals(1, groups.getThreadCount(0));
+        assertEquals(1, groups.getThreadCount(1));
+        release.countDown();
+    }
+
+    @Test
+    public void testStopOneGame() throws Exception {
+        CountDownLatch stoppedThrowing = new CountDownLatch(2);
+        CountDownLatch otherThrowing = new CountDownLatch(2);
+        AtomicBoolean otherInterrupted = new AtomicBoolean();
+        RefereeImpl stopped = blockingGame(stoppedThrowing, new AtomicBoolean());
+        RefereeImpl other = blockingGame(otherThrowing, otherInterrupted);
+        stopped.startGame();
+        other.startGame();
+        assertTrue(stoppedThrowing.await(2, TimeUnit.SECONDS));
+        assertTrue(otherThrowing.await(2, TimeUnit.SECONDS));
+
+        stopped.stopGame();
+        stopped.waitGameFinish(2000L); // the retrievers and the throw time limit wait were interrupted
+        assertEquals(GameState.STOPPED, stopped.getGame().getState());
+        stopped.stopGame(); // no effect
+        assertEquals(GameState.THROWING, other.getGame().getState());
+        assertFalse(otherInterrupted.get());
+        assertEquals(1, groups.getGameCount(0) + groups.getGameCount(1));
+
+        other.stopGame();
+        other.waitGameFinish(2000L);
+        assertTrue(otherInterrupted.get());
+    }
+
+    /**
+     * A game whose players wait for their gestures until they are interrupted.
+     */
+    private RefereeImpl blockingGame(final CountDownLatch throwing, final AtomicBoolean interrupted) {
+        Player[] players = new Player[2];
+        for (int i = 0; i < players.length; i++) {
+            players[i] = new AbstractPlayer("blocked" + i) {
+                @Override
+                public Gesture getPlayerGesture() {
+                    throwing.countDown();
+                    try {
+                        Thread.sleep(60000L);
+                    } catch (InterruptedException e) {
+                        interrupted.set(true);
+                    }
+                    return null;
+                }
+
+                @Override
+                public void countdown(int count) {
+                }
+
+                @Override
+                public void gameFinished(Game game) {
+                }
+            };
+        }
+        return new RefereeImpl(0, 0L, 60000L, Arrays.asList(players), Arrays.<GameObserver>asList(),
+                Arrays.<RefereeMonitor>asList(), groups);
+    }
+
+    @Test
+    public void testShutdownNow() throws Exception {
+        ExecutorService executor = groups.newGameExecutor(0L, new CancellationToken());
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicBoolean interrupted = new AtomicBoolean();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    interrupted.set(true);
+                }
+            }
+        });
+        started.await();
+        assertEquals(1, groups.getGameCount(0));
+        assertFalse(executor.awaitTermination(10L, TimeUnit.MILLISECONDS));
+
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(2, TimeUnit.SECONDS));
+        assertTrue(interrupted.get());
+        assertTrue(executor.isTerminated());
+        assertEquals(0, groups.getGameCount(0));
+        try {
+            executor.execute(mock(Runnable.class));
+            fail();
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+
+        // the shared thread does not carry the interrupt to the next game
+        ExecutorService next = groups.newGameExecutor(0L, new CancellationToken());
+        final AtomicBoolean nextInterrupted = new AtomicBoolean(true);
+        next.execute(new Runnable() {
+            @Override
+            public void run() {
+                nextInterrupted.set(Thread.currentThread().isInterrupted());
+            }
+        });
+        next.shutdown();
+        assertTrue(next.awaitTermination(2, TimeUnit.SECONDS));
+        assertFalse(nextInterrupted.get());
+    }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.history;
+
+import gg.pistol.scissors.game.Game;
+import gg.pistol.scissors.game.GameResult;
+import gg.pistol.scissors.game.Gesture;
+import gg.pistol.scissors.player.GameObserver;
+import gg.pistol.scissors.player.Player;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class HistoryWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private Player player1;
+    private Player player2;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = folder.newFolder("history");
+        player1 = mock(Player.class);
+        player2 = mock(Player.class);
+        when(player1.getName()).thenReturn("player 1");
+        when(player2.getName()).thenReturn("player 2");
+    }
+
+    private Game createGame(long id, Gesture gesture1, GameResult result1, Gesture gesture2, GameResult result2) {
+        Game game = mock(Game.class);
+        when(game.getId()).thenReturn(id);
+        when(game.getPlayers()).thenReturn(Arrays.asList(player1, player2));
+        when(game.getPlayerGesture(player1)).thenReturn(gesture1);
+        when(game.getPlayerGesture(player2)).thenReturn(gesture2);
+        when(game.getPlayerResult(player1)).thenReturn(result1);
+        when(game.getPlayerResult(player2)).thenReturn(result2);
+        return game;
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        HistoryWriter writer = new HistoryWriter(directory);
+        GameObserver observer = writer.newGameObserver();
+        observer.gestureThrown(player1, Gesture.ROCK);
+        observer.gameFinished(createGame(7L, Gesture.ROCK, GameResult.WIN, null, GameResult.LOSS));
+        writer.newGameObserver().gameFinished(createGame(8L, Gesture.PAPER, GameResult.TIE,
+                Gesture.PAPER, GameResult.TIE));
+        writer.close();
+        assertEquals(2, writer.getWrittenGameCount());
+        assertEquals(0, writer.getDroppedGameCount());
+
+        HistoryReader reader = new HistoryReader(directory);
+        GameRecord first = reader.next();
+        assertEquals(7L, first.getGameId());
+        assertEquals(2, first.getPlayerCount());
+        assertEquals("player 1", reader.getPlayerDirectory().getName(first.getPlayerId(0)));
+        assertEquals("player 2", reader.getPlayerDirectory().getName(first.getPlayerId(1)));
+        assertEquals(Gesture.ROCK, first.getGesture(0));
+        assertNull(first.getGesture(1));
+        assertEquals(GameResult.WIN, first.getResult(0));
+        assertEquals(GameResult.LOSS, first.getResult(1));
+        assertTrue(first.getThrowTime(0) > 0);
+        assertEquals(GameRecord.NO_THROW, first.getThrowTime(1));
+
+        GameRecord second = reader.next();
+        assertEquals(8L, second.getGameId());
+        assertEquals(Gesture.PAPER, second.getGesture(1));
+        assertEquals(GameResult.TIE, second.getResult(1));
+        assertEquals(GameRecord.NO_THROW, second.getThrowTime(0));
+        assertNull(reader.next());
+        reader.close();
+    }
+
+    @Test
+    public void testStoppedGameThrowTimes() throws Exception {
+        HistoryWriter writer = new HistoryWriter(directory);
+        writer.newGameObserver().gestureThrown(player1, Gesture.ROCK); // the game is stopped and never finishes
+        writer.newGameObserver().gameFinished(createGame(2L, null, GameResult.LOSS, null, GameResult.LOSS));
+        writer.close();
+
+        HistoryReader reader = new HistoryReader(directory);
+        GameRecord record = reader.next();
+        assertEquals(2L, record.getGameId());
+        assertEquals(GameRecord.NO_THROW, record.getThrowTime(0));
+        reader.close();
+    }
+
+    @Test
+    public void testGameTooLargeForSegment() throws Exception {
+        // room for the header and a single player
+        HistoryWriter writer = new HistoryWriter(directory, HistoryFormat.HEADER_SIZE + HistoryFormat.RECORD_SIZE,
+                16);
+        writer.newGameObserver().gameFinished(createGame(1L, Gesture.ROCK, GameResult.LOSS, Gesture.PAPER,
+                GameResult.WIN));
+        writer.close();
+        assertEquals(0, writer.getWrittenGameCount());
+        assertEquals(1, writer.getDroppedGameCount());
+    }
+
+    @Test
+    public void testSegmentRolling() throws Exception {
+        // room for the header and 2 games of 2 players
+        HistoryWriter writer = new HistoryWriter(directory, HistoryFormat.HEADER_SIZE + 4 * HistoryFormat.RECORD_SIZE,
+                16);
+        for (int i = 0; i < 5; i++) {
+            writer.newGameObserver().gameFinished(createGame(i, Gesture.ROCK, GameResult.LOSS,
+                    Gesture.PAPER, GameResult.WIN));
+        }
+        writer.close();
+        assertEquals(3, HistoryFormat.listSegments(directory).length);
+
+        HistoryReader reader = new HistoryReader(directory);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, reader.next().getGameId());
+        }
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        HistoryWriter writer = new HistoryWriter(directory);
+        writer.newGameObserver().gameFinished(createGame(1L, Gesture.ROCK, GameResult.LOSS,
+                Gesture.PAPER, GameResult.WIN));
+        writer.close();
+
+        writer = new HistoryWriter(directory);
+        assertEquals(2, writer.getPlayerDirectory().size());
+        writer.newGameObserver().gameFinished(createGame(2L, Gesture.SCISSORS, GameResult.LOSS,
+                Gesture.ROCK, GameResult.WIN));
+        writer.close();
+
+        HistoryReader reader = new HistoryReader(directory);
+        GameRecord first = reader.next();
+        GameRecord second = reader.next();
+        assertNull(reader.next());
+        assertEquals(1L, first.getGameId());
+        assertEquals(2L, second.getGameId());
+        assertEquals(first.getPlayerId(0), second.getPlayerId(0));
+        assertEquals(2, reader.getPlayerDirectory().size());
+    }
+
+    @Test
+    public void testDropAfterClose() throws Exception {
+        HistoryWriter writer = new HistoryWriter(directory);
+        writer.close();
+        writer.newGameObserver().gameFinished(createGame(1L, Gesture.ROCK, GameResult.LOSS,
+                Gesture.PAPER, GameResult.WIN));
+        assertEquals(1, writer.getDroppedGameCount());
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.jfr;
+
+import gg.pistol.scissors.game.Gesture;
+import gg.pistol.scissors.game.RefereeImpl;
+import gg.pistol.scissors.game.RefereeMonitor;
+import gg.pistol.scissors.player.GameObserver;
+import gg.pistol.scissors.player.Player;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+import static org.mockito.Mockito.*;
+
+public class JfrMonitorTest {
+
+    private static final String[] EVENTS = {"GameStart", "GamePhase", "Dispatch", "Gesture", "GameFinish"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test(timeout = 10000L)
+    public void testEvents() throws Exception {
+        assumeTrue(JfrSupport.isAvailable());
+        RefereeMonitor jfrMonitor = JfrSupport.createMonitor();
+        assertTrue(jfrMonitor instanceof JfrMonitor);
+        RefereeMonitor monitor = mock(RefereeMonitor.class); // called after the Flight Recorder monitor
+        Player player1 = mock(Player.class);
+        Player player2 = mock(Player.class);
+        when(player1.getName()).thenReturn("player 1");
+        when(player2.getName()).thenReturn("player 2");
+        when(player1.getPlayerGesture()).thenReturn(Gesture.ROCK);
+        when(player2.getPlayerGesture()).thenReturn(Gesture.PAPER);
+
+        Recording recording = new Recording();
+        for (String event : EVENTS) {
+            recording.enable("gg.pistol.scissors." + event);
+        }
+        recording.start();
+        RefereeImpl referee = new RefereeImpl(1, 0L, 1000L, Arrays.asList(player1, player2),
+                Collections.<GameObserver>emptyList(), Arrays.asList(jfrMonitor, monitor));
+        referee.startGame();
+        verify(monitor, timeout(5000)).gameFinished(referee.getGame());
+        recording.stop();
+        File file = folder.newFile("recording.jfr");
+        recording.dump(file.toPath());
+        recording.close();
+
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+            assertEquals(referee.getGame().getId(), event.getLong("gameId"));
+            String name = event.getEventType().getName();
+            counts.put(name, counts.containsKey(name) ? counts.get(name) + 1 : 1);
+        }
+        assertEquals(Integer.valueOf(1), counts.get("gg.pistol.scissors.GameStart"));
+        assertEquals(Integer.valueOf(2), counts.get("gg.pistol.scissors.GamePhase")); // counting and throwing
+        assertEquals(Integer.valueOf(2), counts.get("gg.pistol.scissors.Gesture"));
+        assertEquals(Integer.valueOf(1), counts.get("gg.pistol.scissors.GameFinish"));
+        // 2 countdowns, the gesture retrieval and the results (there are no observers for the thrown gestures)
+        assertEquals(Integer.valueOf(4), counts.get("gg.pistol.scissors.Dispatch"));
+        referee.stopGame();
+    }
+
+}
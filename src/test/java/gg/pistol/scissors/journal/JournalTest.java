@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.journal;
+
+import gg.pistol.scissors.game.Game;
+import gg.pistol.scissors.game.GameResult;
+import gg.pistol.scissors.game.GameState;
+import gg.pistol.scissors.game.Gesture;
+import gg.pistol.scissors.game.RefereeImpl;
+import gg.pistol.scissors.game.RefereeMonitor;
+import gg.pistol.scissors.player.GameObserver;
+import gg.pistol.scissors.player.Player;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class JournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private Player player1;
+    private Player player2;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = folder.newFolder("journal");
+        player1 = mock(Player.class);
+        player2 = mock(Player.class);
+        when(player1.getName()).thenReturn("player 1");
+        when(player2.getName()).thenReturn("player 2");
+    }
+
+    private Game createGame(long id) {
+        Game game = mock(Game.class);
+        when(game.getId()).thenReturn(id);
+        when(game.getCountdownStart()).thenReturn(3);
+        when(game.getTimeBetweenCounts()).thenReturn(10L);
+        when(game.getThrowTimeLimit()).thenReturn(100L);
+        when(game.getPlayers()).thenReturn(Arrays.asList(player1, player2));
+        when(game.getPlayerResult(player1)).thenReturn(GameResult.WIN);
+        when(game.getPlayerResult(player2)).thenReturn(GameResult.LOSS);
+        return game;
+    }
+
+    private void playGame(RefereeMonitor monitor, Game game) {
+        monitor.gameCreated(game);
+        monitor.stateChanged(game, GameState.COUNTING);
+        monitor.countdownSent(game, 0);
+        monitor.stateChanged(game, GameState.THROWING);
+        monitor.gestureReceived(game, player1, Gesture.ROCK);
+        monitor.gestureReceived(game, player2, Gesture.SCISSORS);
+        monitor.stateChanged(game, GameState.FINISHED);
+        monitor.gameFinished(game);
+    }
+
+    @Test(timeout = 5000L)
+    public void testRefereeGame() throws Exception {
+        when(player1.getPlayerGesture()).thenReturn(Gesture.PAPER);
+        when(player2.getPlayerGesture()).thenReturn(Gesture.ROCK);
+        Journal journal = new Journal(directory);
+        RefereeImpl referee = new RefereeImpl(1, 0L, 1000L, Arrays.asList(player1, player2),
+                Collections.<GameObserver>emptyList(), Arrays.<RefereeMonitor>asList(journal));
+        referee.startGame();
+        while (referee.getGame().getState() != GameState.FINISHED || referee.getGame().getPlayerResult(player2) == null) {
+            Thread.sleep(10L);
+        }
+        Thread.sleep(100L); // the results are announced to the monitors after the listeners
+        journal.close();
+
+        journal = new Journal(directory);
+        int id1 = journal.getPlayerDirectory().findId("player 1");
+        int id2 = journal.getPlayerDirectory().findId("player 2");
+        assertEquals(1, journal.getRecoveredStandings().getWins(id1));
+        assertEquals(1, journal.getRecoveredStandings().getLosses(id2));
+        assertTrue(journal.getInterruptedGames().isEmpty());
+        journal.close();
+    }
+
+    @Test
+    public void testInterruptedGame() throws Exception {
+        Journal journal = new Journal(directory);
+        Game game = createGame(5L);
+        journal.gameCreated(game);
+        journal.stateChanged(game, GameState.COUNTING);
+        journal.countdownSent(game, 3);
+        journal.close();
+
+        journal = new Journal(directory);
+        assertEquals(1, journal.getInterruptedGames().size());
+        InterruptedGame interrupted = journal.getInterruptedGames().get(0);
+        assertEquals(5L, interrupted.getGameId());
+        assertEquals(Arrays.asList("player 1", "player 2"), interrupted.getPlayerNames());
+        assertEquals(3, interrupted.getCountdownStart());
+        assertEquals(10L, interrupted.getTimeBetweenCounts());
+        assertEquals(100L, interrupted.getThrowTimeLimit());
+        assertEquals(GameState.COUNTING, interrupted.getState());
+        journal.close();
+
+        // the interrupted games are reported only once
+        journal = new Journal(directory);
+        assertTrue(journal.getInterruptedGames().isEmpty());
+        journal.close();
+    }
+
+    @Test
+    public void testRecoveryBoundedBySnapshots() throws Exception {
+        int snapshotInterval = 20;
+        Journal journal = new Journal(directory, snapshotInterval, 16);
+        for (int i = 0; i < 100; i++) {
+            playGame(journal, createGame(i));
+        }
+        journal.close();
+
+        journal = new Journal(directory);
+        int id1 = journal.getPlayerDirectory().findId("player 1");
+        assertEquals(100, journal.getRecoveredStandings().getWins(id1));
+        assertTrue(journal.getRecoveredEventCount() < snapshotInterval + 16);
+        journal.close();
+    }
+
+    @Test
+    public void testTornEvent() throws Exception {
+        Journal journal = new Journal(directory);
+        playGame(journal, createGame(1L));
+        journal.close();
+
+        File[] logs = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".log");
+            }
+        });
+        assertEquals(1, logs.length);
+        FileOutputStream out = new FileOutputStream(logs[0], true);
+        out.write(new byte[] {0, 0, 0, 20, 1, 2}); // an event with its length but without its content
+        out.close();
+
+        journal = new Journal(directory);
+        assertEquals(1, journal.getRecoveredStandings().getWins(journal.getPlayerDirectory().findId("player 1")));
+        journal.close();
+    }
+
+}
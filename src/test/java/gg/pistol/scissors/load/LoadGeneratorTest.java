@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.load;
+
+import gg.pistol.scissors.game.Game;
+import gg.pistol.scissors.game.RefereeMonitor;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class LoadGeneratorTest {
+
+    @Test
+    public void testParse() {
+        LoadOptions options = LoadOptions.parse(new String[] {"--concurrency", "4", "--games", "100",
+                "--ramp-up", "2", "--smart", "1", "--scripted", "1", "--think-time", "50", "--throw-limit", "500"});
+        assertEquals(4, options.getConcurrency());
+        assertEquals(100L, options.getGameCount());
+        assertEquals(0L, options.getDuration());
+        assertEquals(2000L, options.getRampUp());
+        assertEquals(2, options.getRandomPlayers());
+        assertEquals(1, options.getSmartPlayers());
+        assertEquals(1, options.getScriptedPlayers());
+        assertEquals(50L, options.getThinkTime());
+        assertEquals(500L, options.getThrowTimeLimit());
+
+        assertEquals(60000L, LoadOptions.parse(new String[0]).getDuration());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseUnknownOption() {
+        LoadOptions.parse(new String[] {"--players", "2"});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseMissingValue() {
+        LoadOptions.parse(new String[] {"--games"});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseTooFewPlayers() {
+        LoadOptions.parse(new String[] {"--random", "1"});
+    }
+
+    @Test(timeout = 10000L)
+    public void testRun() throws Exception {
+        LoadOptions options = new LoadOptions(3, 12, 0L, 100L, 50L, 1, 0, 2, 1L, 1, 1L, 1000L);
+        RefereeMonitor monitor = mock(RefereeMonitor.class);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        LoadGenerator generator = new LoadGenerator(options, new PrintStream(bytes, true), Arrays.asList(monitor));
+        generator.run();
+
+        assertEquals(12L, generator.getFinishedGames());
+        assertEquals(0L, generator.getStoppedGames());
+        assertEquals(12L, generator.getLatency().getCount());
+        verify(monitor, times(12)).gameCreated(any(Game.class));
+        String report = bytes.toString();
+        assertTrue(report, report.contains("Total:"));
+        assertTrue(report, report.contains("games 12 "));
+    }
+
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+
+public class EventLogTest {
+
+    private Logger logger;
+    private RecordingHandler handler;
+    private EventLog eventLog;
+
+    @Before
+    public void setUp() {
+        logger = Logger.getLogger(EventLogTest.class.getName());
+        logger.setUseParentHandlers(false);
+        logger.setLevel(Level.INFO);
+        handler = new RecordingHandler();
+        logger.addHandler(handler);
+        eventLog = new EventLog(16);
+    }
+
+    @After
+    public void tearDown() {
+        eventLog.close();
+        logger.removeHandler(handler);
+        logger.setUseParentHandlers(true);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCapacity() {
+        new EventLog(10);
+    }
+
+    @Test
+    public void testFormat() throws Exception {
+        AsyncLogger log = new AsyncLogger(logger, eventLog);
+        log.info("no arguments");
+        log.info("count {}", 3);
+        log.info("{} throws {}", "p1", "rock");
+        log.info("game {} players {}", 7L, "[p1, p2]");
+        log.info("{} waits {} millis", "p2", 250L);
+        log.info("missing {} {}", "x");
+        log.info("extra {}", "x", "y");
+        log.info("null {}", (Object) null);
+        log.log(Level.FINE, "not loggable {}", 1L);
+        eventLog.flush();
+
+        assertEquals(8, handler.records.size());
+        assertEquals("no arguments", handler.records.get(0).getMessage());
+        assertEquals("count 3", handler.records.get(1).getMessage());
+        assertEquals("p1 throws rock", handler.records.get(2).getMessage());
+        assertEquals("game 7 players [p1, p2]", handler.records.get(3).getMessage());
+        assertEquals("p2 waits 250 millis", handler.records.get(4).getMessage());
+        assertEquals("missing x {}", handler.records.get(5).getMessage());
+        assertEquals("extra x", handler.records.get(6).getMessage());
+        assertEquals("null null", handler.records.get(7).getMessage());
+
+        LogRecord record = handler.records.get(0);
+        assertEquals(Level.INFO, record.getLevel());
+        assertEquals(logger.getName(), record.getLoggerName());
+        assertTrue(record.getMillis() <= System.currentTimeMillis());
+        assertEquals(0, eventLog.getDroppedCount());
+    }
+
+    @Test
+    public void testFullRing() throws Exception {
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        logger.addHandler(new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        AsyncLogger log = new AsyncLogger(logger, eventLog);
+        log.info("blocking");
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 20; i++) {
+            log.info("message {}", i);
+        }
+        assertEquals(4, eventLog.getDroppedCount());
+
+        release.countDown();
+        eventLog.flush();
+        assertEquals(17, handler.records.size());
+        assertEquals("message 15", handler.records.get(16).getMessage());
+    }
+
+    @Test
+    public void testIdleConsumerParksUntilPublished() throws Exception {
+        Set<Thread> existing = Thread.getAllStackTraces().keySet();
+        EventLog idleLog = new EventLog(16);
+        try {
+            Thread consumer = null;
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if ("event-log".equals(thread.getName()) && !existing.contains(thread)) {
+                    consumer = thread;
+                }
+            }
+            assertNotNull(consumer);
+            long deadline = System.currentTimeMillis() + 5000L;
+            while (consumer.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10L);
+            }
+            assertEquals(Thread.State.WAITING, consumer.getState()); // no timed wakeups while idle
+
+            AsyncLogger log = new AsyncLogger(logger, idleLog);
+            for (int i = 0; i < 100; i++) {
+                log.info("message {}", i);
+                if (i % 10 == 0) {
+                    idleLog.flush(); // the consumer parks again between the bursts
+                }
+            }
+            idleLog.flush();
+            assertEquals(100, handler.records.size());
+        } finally {
+            idleLog.close();
+        }
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        AsyncLogger log = new AsyncLogger(logger, eventLog);
+        for (int i = 0; i < 10; i++) {
+            log.info("message {}", i);
+        }
+        eventLog.close();
+        assertEquals(10, handler.records.size());
+
+        log.info("after close");
+        assertEquals(1, eventLog.getDroppedCount());
+    }
+
+    private static class RecordingHandler extends Handler {
+        private final List<LogRecord> records = new CopyOnWriteArrayList<LogRecord>();
+
+        @Override
+        public void publish(LogRecord record) {
+            records.add(record);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.match;
+
+import gg.pistol.scissors.game.Game;
+import gg.pistol.scissors.game.GameState;
+import gg.pistol.scissors.game.Referee;
+import gg.pistol.scissors.game.RefereeMonitor;
+import gg.pistol.scissors.metrics.Histogram;
+import gg.pistol.scissors.metrics.MetricsRegistry;
+import gg.pistol.scissors.player.Player;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import static gg.pistol.scissors.match.AdmissionController.Admission.*;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class AdmissionControllerTest {
+
+    private RefereeStarter starter;
+    private RefereeStarter degradedStarter;
+    private RejectedGameHandler handler;
+    private MetricsRegistry registry;
+
+    @Before
+    public void setUp() throws Exception {
+        starter = mock(RefereeStarter.class);
+        degradedStarter = mock(RefereeStarter.class);
+        handler = mock(RejectedGameHandler.class);
+        registry = new MetricsRegistry();
+    }
+
+    private AdmissionController create(AdmissionPolicy policy, int maxRunning, int maxPending) {
+        return new AdmissionController(policy, maxRunning, maxPending, starter, degradedStarter, handler, registry);
+    }
+
+    @Test
+    public void testQueue() throws Exception {
+        AdmissionController admission = create(AdmissionPolicy.QUEUE, 2, 2);
+        List<Player> game1 = game();
+        List<Player> game3 = game();
+        List<Player> game5 = game();
+        assertEquals(STARTED, admission.admit(game1, GamePriority.CASUAL));
+        assertEquals(STARTED, admission.admit(game(), GamePriority.CASUAL));
+        assertEquals(QUEUED, admission.admit(game3, GamePriority.CASUAL));
+        assertEquals(QUEUED, admission.admit(game(), GamePriority.CASUAL));
+        assertEquals(REJECTED, admission.admit(game5, GamePriority.CASUAL));
+        verify(handler).gameRejected(game5, GamePriority.CASUAL);
+        assertEquals(2, admission.getRunningCount());
+        assertEquals(2, admission.getPendingCount());
+
+        finish(game1, false);
+        verify(starter).startGame(eq(game3), any(RefereeMonitor.class));
+        assertEquals(2, admission.getRunningCount());
+        assertEquals(1, admission.getPendingCount());
+
+        assertEquals(3L, ((LongAdder) registry.getMetric("admission.started")).sum());
+        assertEquals(2L, ((LongAdder) registry.getMetric("admission.queued.casual")).sum());
+        assertEquals(1L, ((LongAdder) registry.getMetric("admission.rejected.casual")).sum());
+        assertEquals(1L, ((Histogram) registry.getMetric("admission.queueTime")).getCount());
+    }
+
+    @Test
+    public void testStoppedGameFreesItsPlace() throws Exception {
+        AdmissionController admission = create(AdmissionPolicy.QUEUE, 1, 1);
+        List<Player> game1 = game();
+        admission.admit(game1, GamePriority.CASUAL);
+        finish(game1, true);
+        assertEquals(0, admission.getRunningCount());
+        assertEquals(STARTED, admission.admit(game(), GamePriority.CASUAL));
+    }
+
+    @Test
+    public void testReject() throws Exception {
+        AdmissionController admission = create(AdmissionPolicy.REJECT, 1, 10);
+        assertEquals(STARTED, admission.admit(game(), GamePriority.CASUAL));
+        assertEquals(REJECTED, admission.admit(game(), GamePriority.RANKED));
+        assertEquals(0, admission.getPendingCount());
+        assertEquals(1L, ((LongAdder) registry.getMetric("admission.rejected.ranked")).sum());
+    }
+
+    @Test
+    public void testPriorityLanes() throws Exception {
+        AdmissionController admission = create(AdmissionPolicy.QUEUE, 1, 2);
+        List<Player> running = game();
+        List<Player> casual1 = game();
+        List<Player> casual2 = game();
+        List<Player> ranked1 = game();
+        List<Player> ranked2 = game();
+        List<Player> ranked3 = game();
+        admission.admit(running, GamePriority.CASUAL);
+        admission.admit(casual1, GamePriority.CASUAL);
+        admission.admit(casual2, GamePriority.CASUAL);
+
+        // the most recent casual game makes room for the ranked games
+        assertEquals(QUEUED, admission.admit(ranked1, GamePriority.RANKED));
+        verify(handler).gameRejected(casual2, GamePriority.CASUAL);
+        assertEquals(QUEUED, admission.admit(ranked2, GamePriority.RANKED));
+        verify(handler).gameRejected(casual1, GamePriority.CASUAL);
+        assertEquals(REJECTED, admission.admit(ranked3, GamePriority.RANKED));
+
+        finish(running, false);
+        verify(starter).startGame(eq(ranked1), any(RefereeMonitor.class));
+        finish(ranked1, false);
+        verify(starter).startGame(eq(ranked2), any(RefereeMonitor.class));
+    }
+
+    @Test
+    public void testRankedGamesStartFirst() throws Exception {
+        AdmissionController admission = create(AdmissionPolicy.QUEUE, 1, 5);
+        List<Player> running = game();
+        List<Player> casual = game();
+        List<Player> ranked = game();
+        admission.admit(running, GamePriority.CASUAL);
+        admission.admit(casual, GamePriority.CASUAL);
+        admission.admit(ranked, GamePriority.RANKED);
+        finish(running, false);
+        verify(starter).startGame(eq(ranked), any(RefereeMonitor.class));
+        verify(starter, never()).startGame(eq(casual), any(RefereeMonitor.class));
+    }
+
+    @Test
+    public void testDegrade() throws Exception {
+        AdmissionController admission = create(AdmissionPolicy.DEGRADE, 1, 4);
+        List<Player> game1 = game();
+        List<Player> game2 = game();
+        List<Player> game3 = game();
+        admission.admit(game1, GamePriority.CASUAL);
+        admission.admit(game2, GamePriority.CASUAL);
+        admission.admit(game3, GamePriority.CASUAL);
+
+        finish(game1, false); // the queue is half full
+        verify(degradedStarter).startGame(eq(game2), any(RefereeMonitor.class));
+        finish(game2, true);
+        verify(starter).startGame(eq(game3), any(RefereeMonitor.class));
+        assertEquals(1L, ((LongAdder) registry.getMetric("admission.degraded")).sum());
+    }
+
+    @Test
+    public void testDegradeWithoutQueue() throws Exception {
+        AdmissionController admission = create(AdmissionPolicy.DEGRADE, 1, 0);
+        List<Player> game1 = game();
+        admission.admit(game1, GamePriority.CASUAL);
+        assertEquals(REJECTED, admission.admit(game(), GamePriority.CASUAL));
+        finish(game1, false);
+        assertEquals(0, admission.getRunningCount());
+        assertEquals(STARTED, admission.admit(game(), GamePriority.CASUAL));
+        verify(degradedStarter, never()).startGame(anyListOf(Player.class), any(RefereeMonitor.class));
+    }
+
+    @Test
+    public void testStartFailure() throws Exception {
+        AdmissionController admission = create(AdmissionPolicy.QUEUE, 1, 1);
+        List<Player> failing = game();
+        doThrow(new IllegalStateException()).when(starter).startGame(eq(failing), any(RefereeMonitor.class));
+        admission.admit(failing, GamePriority.CASUAL);
+        assertEquals(0, admission.getRunningCount());
+    }
+
+    @Test
+    public void testManyStartFailures() throws Exception {
+        int failures = 20000; // deeper than the stack if every failed start recursed into the next one
+        AdmissionController admission = create(AdmissionPolicy.QUEUE, 1, failures);
+        List<Player> game1 = game();
+        List<Player> failing = game();
+        List<Player> last = game();
+        doThrow(new IllegalStateException()).when(starter).startGame(eq(failing), any(RefereeMonitor.class));
+        admission.admit(game1, GamePriority.CASUAL);
+        for (int i = 0; i < failures - 1; i++) {
+            admission.admit(failing, GamePriority.CASUAL);
+        }
+        admission.admit(last, GamePriority.CASUAL);
+
+        finish(game1, false);
+        verify(starter).startGame(eq(last), any(RefereeMonitor.class));
+        assertEquals(1, admission.getRunningCount());
+        assertEquals(0, admission.getPendingCount());
+    }
+
+    @Test
+    public void testDrain() throws Exception {
+        AdmissionController admission = create(AdmissionPolicy.QUEUE, 1, 1);
+        final List<Player> running = game();
+        Referee referee = mock(Referee.class);
+        when(starter.startGame(anyListOf(Player.class), any(RefereeMonitor.class))).thenReturn(referee);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                finish(running, true);
+                return null;
+            }
+        }).when(referee).stopGame();
+        List<Player> pending = game();
+        admission.admit(running, GamePriority.CASUAL);
+        admission.admit(pending, GamePriority.CASUAL);
+        Closeable sink = mock(Closeable.class);
+        Closeable failingSink = mock(Closeable.class);
+        doThrow(new IOException()).when(failingSink).close();
+
+        DrainReport report = admission.drain(10, Arrays.asList(sink, failingSink));
+        verify(handler).gameRejected(pending, GamePriority.CASUAL);
+        verify(referee).stopGame(); // the running game outlived the timeout
+        verify(sink).close();
+        assertEquals(1, report.getInFlightGames());
+        assertEquals(1, report.getStoppedGames());
+        assertEquals(1, report.getRejectedGames());
+        assertEquals(1, report.getSinkFailures());
+        assertEquals(REJECTED, admission.admit(game(), GamePriority.RANKED));
+    }
+
+    @Test
+    public void testDrainWaitsForRunningGames() throws Exception {
+        AdmissionController admission = create(AdmissionPolicy.QUEUE, 1, 1);
+        Referee referee = mock(Referee.class);
+        when(starter.startGame(anyListOf(Player.class), any(RefereeMonitor.class))).thenReturn(referee);
+        List<Player> running = game();
+        admission.admit(running, GamePriority.CASUAL);
+
+        finishLater(running, 50, false);
+        DrainReport report = admission.drain(60000, Collections.<Closeable>emptyList());
+        assertEquals(1, report.getInFlightGames());
+        assertEquals(0, report.getStoppedGames());
+        verify(referee, never()).stopGame();
+    }
+
+    @Test
+    public void testDrainClosesTheSinksAfterTheStoppedGames() throws Exception {
+        final AdmissionController admission = create(AdmissionPolicy.QUEUE, 1, 1);
+        final List<Player> running = game();
+        Referee referee = mock(Referee.class);
+        when(starter.startGame(anyListOf(Player.class), any(RefereeMonitor.class))).thenReturn(referee);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                finishLater(running, 50, true); // the referee task ends after it is interrupted
+                return null;
+            }
+        }).when(referee).stopGame();
+        admission.admit(running, GamePriority.CASUAL);
+        final int[] runningAtClose = {-1};
+        Closeable sink = new Closeable() {
+            @Override
+            public void close() {
+                runningAtClose[0] = admission.getRunningCount();
+            }
+        };
+
+        DrainReport report = admission.drain(10, Collections.singletonList(sink));
+        assertEquals(1, report.getStoppedGames());
+        assertEquals(0, runningAtClose[0]);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testDrainTwice() throws Exception {
+        AdmissionController admission = create(AdmissionPolicy.QUEUE, 1, 1);
+        admission.drain(0, Collections.<Closeable>emptyList());
+        admission.drain(0, Collections.<Closeable>emptyList());
+    }
+
+    private void finishLater(final List<Player> players, final long delay, final boolean stopped) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                finish(players, stopped);
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static List<Player> game() {
+        return Arrays.asList(mock(Player.class), mock(Player.class));
+    }
+
+    /**
+     * Simulate the end of a started game through the monitor passed to its starter.
+     */
+    private void finish(List<Player> players, boolean stopped) {
+        ArgumentCaptor<RefereeMonitor> monitor = ArgumentCaptor.forClass(RefereeMonitor.class);
+        try {
+            verify(starter).startGame(eq(players), monitor.capture());
+        } catch (AssertionError e) {
+            verify(degradedStarter).startGame(eq(players), monitor.capture());
+        }
+        Game game = mock(Game.class);
+        if (stopped) {
+            monitor.getValue().stateChanged(game, GameState.STOPPED);
+        } else {
+            monitor.getValue().gameFinished(game);
+        }
+        monitor.getValue().gameFinished(game); // counted once
+    }
+
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.match;
+
+import gg.pistol.scissors.metrics.MetricsRegistry;
+import gg.pistol.scissors.player.Player;
+import gg.pistol.scissors.stats.Leaderboard;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class MatchmakerTest {
+
+    private Matchmaker matchmaker;
+
+    @After
+    public void tearDown() {
+        if (matchmaker != null) {
+            matchmaker.close();
+        }
+    }
+
+    @Test
+    public void testConcurrentEnqueue() throws Exception {
+        final int threads = 4;
+        final int playersPerThread = 250;
+        RecordingStarter starter = new RecordingStarter(threads * playersPerThread / 4);
+        MetricsRegistry registry = new MetricsRegistry();
+        matchmaker = new Matchmaker(4, starter, registry);
+        matchmaker.start();
+
+        final CountDownLatch go = new CountDownLatch(1);
+        List<Thread> producers = new ArrayList<Thread>();
+        final List<Player> all = Collections.synchronizedList(new ArrayList<Player>());
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            Thread producer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        go.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < playersPerThread; i++) {
+                        Player player = player("p" + id + "-" + i);
+                        all.add(player);
+                        matchmaker.enqueue(player);
+                    }
+                }
+            });
+            producer.start();
+            producers.add(producer);
+        }
+        go.countDown();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assertTrue(starter.done.await(10, TimeUnit.SECONDS));
+
+        Set<Player> matched = new HashSet<Player>();
+        for (List<Player> game : starter.getGames()) {
+            assertEquals(4, game.size());
+            matched.addAll(game);
+        }
+        assertEquals(new HashSet<Player>(all), matched); // every player exactly once
+        assertEquals(250, matchmaker.getGameCount());
+        assertEquals(0, matchmaker.getWaitingCount());
+        assertEquals(1000, matchmaker.getTimeToMatch().getCount());
+        assertSame(matchmaker.getTimeToMatch(), registry.getMetric("matchmaker.timeToMatch"));
+    }
+
+    @Test
+    public void testRatingBuckets() throws Exception {
+        Leaderboard leaderboard = mock(Leaderboard.class);
+        List<Player> low = new ArrayList<Player>();
+        List<Player> high = new ArrayList<Player>();
+        for (int i = 0; i < 4; i++) {
+            Player player = player("low" + i);
+            when(leaderboard.getRating(player)).thenReturn(1400.0 + i);
+            low.add(player);
+            player = player("high" + i);
+            when(leaderboard.getRating(player)).thenReturn(1600.0 + i);
+            high.add(player);
+        }
+        RecordingStarter starter = new RecordingStarter(4);
+        matchmaker = new Matchmaker(2, 3, leaderboard, 100.0, starter, new MetricsRegistry());
+        matchmaker.start();
+        for (int i = 0; i < 4; i++) {
+            matchmaker.enqueue(low.get(i));
+            matchmaker.enqueue(high.get(i));
+        }
+        assertTrue(starter.done.await(10, TimeUnit.SECONDS));
+
+        for (List<Player> game : starter.getGames()) {
+            assertTrue(low.containsAll(game) || high.containsAll(game));
+        }
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        RecordingStarter starter = new RecordingStarter(1);
+        matchmaker = new Matchmaker(2, starter, new MetricsRegistry());
+        matchmaker.start();
+        Player first = player("first");
+        Player second = player("second");
+        Player third = player("third");
+
+        MatchTicket ticket = matchmaker.enqueue(first);
+        assertTrue(matchmaker.cancel(ticket));
+        assertFalse(matchmaker.cancel(ticket));
+        MatchTicket secondTicket = matchmaker.enqueue(second);
+        matchmaker.enqueue(third);
+        assertTrue(starter.done.await(10, TimeUnit.SECONDS));
+
+        assertEquals(new HashSet<Player>(starter.getGames().get(0)), new HashSet<Player>(
+                Arrays.asList(second, third)));
+        assertFalse(ticket.isMatched());
+        assertTrue(secondTicket.isMatched());
+        assertFalse(matchmaker.cancel(secondTicket));
+        assertEquals(0, matchmaker.getWaitingCount());
+    }
+
+    @Test
+    public void testConcurrentCancel() throws Exception {
+        final int players = 2000;
+        RecordingStarter starter = new RecordingStarter(0);
+        matchmaker = new Matchmaker(3, starter, new MetricsRegistry());
+        matchmaker.start();
+        final List<MatchTicket> tickets = Collections.synchronizedList(new ArrayList<MatchTicket>());
+        final Set<Player> cancelled = Collections.synchronizedSet(new HashSet<Player>());
+        Thread canceller = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < players; i += 2) {
+                    while (tickets.size() <= i) {
+                        Thread.yield();
+                    }
+                    MatchTicket ticket = tickets.get(i);
+                    if (matchmaker.cancel(ticket)) {
+                        cancelled.add(ticket.getPlayer());
+                    }
+                }
+            }
+        });
+        canceller.start();
+        for (int i = 0; i < players; i++) {
+            tickets.add(matchmaker.enqueue(player("p" + i)));
+        }
+        canceller.join();
+        List<MatchTicket> abandoned = matchmaker.close();
+
+        // every player is either in a single game, cancelled or still waiting
+        Set<Player> matched = new HashSet<Player>();
+        for (List<Player> game : starter.getGames()) {
+            for (Player player : game) {
+                assertTrue(matched.add(player));
+                assertFalse(cancelled.contains(player));
+            }
+        }
+        Set<Player> waiting = new HashSet<Player>();
+        for (MatchTicket ticket : abandoned) {
+            assertFalse(ticket.isMatched());
+            waiting.add(ticket.getPlayer());
+        }
+        assertEquals(players, matched.size() + cancelled.size() + waiting.size());
+        assertEquals(0, matchmaker.getWaitingCount());
+    }
+
+    @Test
+    public void testCloseReturnsTheWaitingPlayers() throws Exception {
+        matchmaker = new Matchmaker(4, new RecordingStarter(0), new MetricsRegistry());
+        matchmaker.start();
+        MatchTicket first = matchmaker.enqueue(player("first"));
+        MatchTicket second = matchmaker.enqueue(player("second"));
+        MatchTicket third = matchmaker.enqueue(player("third"));
+        assertTrue(matchmaker.cancel(second));
+
+        assertEquals(Arrays.asList(first, third), matchmaker.close());
+        assertFalse(matchmaker.cancel(first));
+        assertEquals(0, matchmaker.getWaitingCount());
+        assertTrue(matchmaker.close().isEmpty());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testEnqueueClosed() {
+        matchmaker = new Matchmaker(2, new RecordingStarter(0), new MetricsRegistry());
+        matchmaker.start();
+        matchmaker.close();
+        matchmaker.enqueue(player("late"));
+    }
+
+    private static Player player(String name) {
+        Player player = mock(Player.class);
+        when(player.getName()).thenReturn(name);
+        return player;
+    }
+
+    private static class RecordingStarter implements GameStarter {
+        private final List<List<Player>> games = Collections.synchronizedList(new ArrayList<List<Player>>());
+        private final CountDownLatch done;
+
+        RecordingStarter(int expectedGames) {
+            done = new CountDownLatch(expectedGames);
+        }
+
+        @Override
+        public void startGame(List<Player> players) {
+            games.add(players);
+            done.countDown();
+        }
+
+        List<List<Player>> getGames() {
+            return games;
+        }
+    }
+
+}
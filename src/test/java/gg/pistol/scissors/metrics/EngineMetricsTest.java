@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.metrics;
+
+import gg.pistol.scissors.game.GameAlreadyStartedException;
+import gg.pistol.scissors.game.Gesture;
+import gg.pistol.scissors.game.RefereeImpl;
+import gg.pistol.scissors.game.RefereeMonitor;
+import gg.pistol.scissors.player.GameObserver;
+import gg.pistol.scissors.player.Player;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class EngineMetricsTest {
+
+    private MetricsRegistry registry;
+    private RefereeMonitor monitor; // called after the metrics
+    private Player player1;
+    private Player player2;
+
+    @Before
+    public void setUp() throws Exception {
+        registry = new MetricsRegistry();
+        monitor = mock(RefereeMonitor.class);
+        player1 = mock(Player.class);
+        player2 = mock(Player.class);
+    }
+
+    private RefereeImpl createReferee(long throwTimeLimit) {
+        return new RefereeImpl(1, 0L, throwTimeLimit, Arrays.asList(player1, player2),
+                Collections.<GameObserver>emptyList(),
+                Arrays.<RefereeMonitor>asList(new EngineMetrics(registry), monitor));
+    }
+
+    private long count(String name) {
+        return ((LongAdder) registry.getMetric(name)).sum();
+    }
+
+    private long value(String name) {
+        return ((Gauge) registry.getMetric(name)).getValue();
+    }
+
+    private Histogram histogram(String name) {
+        return (Histogram) registry.getMetric(name);
+    }
+
+    @Test(timeout = 5000L)
+    public void testFinishedGame() throws Exception {
+        when(player1.getPlayerGesture()).thenReturn(Gesture.ROCK);
+        when(player2.getPlayerGesture()).thenReturn(null);
+        RefereeImpl referee = createReferee(100L);
+        referee.startGame();
+        try {
+            referee.startGame();
+            fail();
+        } catch (GameAlreadyStartedException e) {
+            // expected
+        }
+        verify(monitor, timeout(4000)).gameFinished(referee.getGame());
+
+        assertEquals(1L, count("games.started"));
+        assertEquals(1L, count("games.finished"));
+        assertEquals(0L, count("games.stopped"));
+        assertEquals(1L, count("games.alreadyStarted"));
+        assertEquals(1L, count("gestures.timedOut"));
+        assertEquals(0L, value("games.live"));
+        assertEquals(1L, histogram("gestures.throwLatency").getCount());
+        assertEquals(1L, histogram("phases.counting").getCount());
+        assertEquals(1L, histogram("phases.throwing").getCount());
+        assertEquals(1L, histogram("phases.finishing").getCount());
+        assertTrue(histogram("phases.throwing").getMax() >= 100L * 1000L * 1000L); // waited for the time limit
+
+        referee.stopGame(); // after finishing the game is not counted as stopped
+        assertEquals(0L, count("games.stopped"));
+    }
+
+    @Test
+    public void testStoppedGame() throws Exception {
+        RefereeImpl referee = createReferee(10000L);
+        referee.startGame();
+        assertEquals(1L, value("games.live"));
+        referee.stopGame();
+        assertEquals(1L, count("games.stopped"));
+        assertEquals(0L, value("games.live"));
+        assertTrue(value("referee.threads") >= 0L);
+        assertTrue(value("referee.queuedEvents") >= 0L);
+    }
+
+}
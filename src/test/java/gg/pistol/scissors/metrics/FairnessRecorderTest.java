@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.metrics;
+
+import gg.pistol.scissors.game.Game;
+import gg.pistol.scissors.game.GameState;
+import gg.pistol.scissors.game.Gesture;
+import gg.pistol.scissors.game.RefereeImpl;
+import gg.pistol.scissors.game.RefereeListener;
+import gg.pistol.scissors.game.RefereeMonitor;
+import gg.pistol.scissors.player.GameObserver;
+import gg.pistol.scissors.player.Player;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class FairnessRecorderTest {
+
+    @Test
+    public void testEventDelivered() {
+        FairnessRecorder recorder = new FairnessRecorder();
+        Game game = mock(Game.class);
+        when(game.getId()).thenReturn(3L);
+        RefereeListener listener1 = mock(RefereeListener.class);
+        RefereeListener listener2 = mock(RefereeListener.class);
+
+        recorder.gameCreated(game);
+        recorder.stateChanged(game, GameState.COUNTING);
+        recorder.eventDelivered(game, Arrays.asList(listener1, listener2), 900L, new long[] {1000L, 1400L});
+        recorder.eventDelivered(game, Arrays.asList(listener1, listener2), 900L, new long[] {2200L, 2000L});
+
+        GameFairness fairness = recorder.getGameFairness(3L);
+        assertEquals(2, fairness.getSkew().getCount());
+        assertEquals(400L, fairness.getSkew().getMax());
+        assertEquals(4, fairness.getLag().getCount());
+        assertEquals(200L, fairness.getMaxLag(listener1));
+        assertEquals(100.0, fairness.getMeanLag(listener1), 0.0);
+        assertEquals(400L, fairness.getMaxLag(listener2));
+        assertEquals(2, fairness.getRecipients().size());
+        assertEquals(2, recorder.getSkew().getCount());
+
+        recorder.gameFinished(game);
+        assertSame(fairness, recorder.getGameFairness(3L));
+    }
+
+    @Test
+    public void testRecentGameLimit() {
+        FairnessRecorder recorder = new FairnessRecorder(2);
+        for (long id = 1; id <= 3; id++) {
+            Game game = mock(Game.class);
+            when(game.getId()).thenReturn(id);
+            recorder.gameCreated(game);
+            recorder.stateChanged(game, GameState.COUNTING);
+            recorder.stateChanged(game, GameState.STOPPED);
+        }
+        assertNull(recorder.getGameFairness(1L));
+        assertNotNull(recorder.getGameFairness(2L));
+        assertNotNull(recorder.getGameFairness(3L));
+    }
+
+    @Test
+    public void testGameNotStarted() {
+        FairnessRecorder recorder = new FairnessRecorder();
+        Game game = mock(Game.class);
+        when(game.getId()).thenReturn(5L);
+        recorder.gameCreated(game);
+        assertNull(recorder.getGameFairness(5L));
+    }
+
+    @Test(timeout = 5000L)
+    public void testRefereeGame() throws Exception {
+        FairnessRecorder recorder = new FairnessRecorder();
+        Player player1 = mock(Player.class);
+        Player player2 = mock(Player.class);
+        GameObserver observer = mock(GameObserver.class);
+        RefereeMonitor monitor = mock(RefereeMonitor.class); // called after the recorder
+        when(player1.getPlayerGesture()).thenReturn(Gesture.ROCK);
+        when(player2.getPlayerGesture()).thenReturn(Gesture.SCISSORS);
+
+        RefereeImpl referee = new RefereeImpl(1, 0L, 1000L, Arrays.asList(player1, player2),
+                Arrays.asList(observer), Arrays.<RefereeMonitor>asList(recorder, monitor));
+        referee.startGame();
+        verify(monitor, timeout(4000)).gameFinished(referee.getGame());
+        GameFairness fairness = recorder.getGameFairness(referee.getGame().getId());
+
+        // 2 countdowns, the gesture retrieval, 2 thrown gestures and the results
+        assertEquals(6, fairness.getSkew().getCount());
+        assertEquals(3 * 2 + 2 + 2 * 1 + 3, fairness.getLag().getCount());
+        assertEquals(new HashSet<RefereeListener>(Arrays.asList(player1, player2, observer)),
+                new HashSet<RefereeListener>(fairness.getRecipients()));
+        referee.stopGame();
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HistogramTest {
+
+    @Test
+    public void testBuckets() {
+        for (long value = 0; value < 100000; value++) {
+            int bucket = Histogram.bucket(value);
+            assertTrue(value <= Histogram.bucketMax(bucket));
+            assertTrue(bucket == 0 || value > Histogram.bucketMax(bucket - 1));
+        }
+        assertTrue(Histogram.bucketMax(Histogram.bucket(Long.MAX_VALUE)) == Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testStatistics() {
+        Histogram histogram = new Histogram();
+        assertEquals(0L, histogram.getValueAtPercentile(99.0));
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        histogram.record(-5);
+        assertEquals(1001, histogram.getCount());
+        assertEquals(1000, histogram.getMax());
+        assertEquals(500.0, histogram.getMean(), 1.0);
+
+        long median = histogram.getValueAtPercentile(50.0);
+        assertTrue(median >= 500 && median <= 500 + 500 / Histogram.SUB_BUCKETS);
+        assertEquals(1000, histogram.getValueAtPercentile(100.0));
+        assertEquals(0, histogram.getValueAtPercentile(0.0));
+    }
+
+    @Test
+    public void testAdd() {
+        Histogram histogram = new Histogram();
+        Histogram other = new Histogram();
+        histogram.record(10);
+        other.record(20);
+        other.record(30000);
+        histogram.add(other);
+        assertEquals(3, histogram.getCount());
+        assertEquals(30000, histogram.getMax());
+        assertEquals(10, histogram.getValueAtPercentile(10.0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalPercentile() {
+        new Histogram().getValueAtPercentile(101.0);
+    }
+
+}
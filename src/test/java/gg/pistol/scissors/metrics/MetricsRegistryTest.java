@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.metrics;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import java.io.StringWriter;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.Assert.*;
+
+public class MetricsRegistryTest {
+
+    private MetricsRegistry registry;
+    private MBeanServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        registry = new MetricsRegistry("test");
+        server = MBeanServerFactory.newMBeanServer();
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        LongAdder counter = registry.counter("counter");
+        assertSame(counter, registry.counter("counter"));
+        assertSame(counter, registry.getMetric("counter"));
+        Histogram histogram = registry.histogram("histogram");
+        assertSame(histogram, registry.histogram("histogram"));
+        assertNull(registry.getMetric("missing"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDifferentKind() throws Exception {
+        registry.counter("metric");
+        registry.histogram("metric");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateGauge() throws Exception {
+        registry.gauge("gauge", new ConstantGauge(1L));
+        registry.gauge("gauge", new ConstantGauge(2L));
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+        registry.counter("games").add(3L);
+        registry.gauge("live", new ConstantGauge(7L));
+        registry.histogram("latency").record(100L);
+        StringWriter out = new StringWriter();
+        registry.writeSnapshot(out);
+
+        assertEquals("games count=3\n" +
+                "latency count=1 mean=100.0 p50=100 p99=100 p999=100 max=100\n" +
+                "live value=7\n", out.toString());
+    }
+
+    @Test
+    public void testMBeans() throws Exception {
+        registry.counter("games").add(3L);
+        registry.registerMBeans(server);
+        registry.gauge("live", new ConstantGauge(7L));
+        registry.histogram("latency").record(100L);
+
+        assertEquals(3L, server.getAttribute(new ObjectName("test:type=Counter,name=games"), "Count"));
+        assertEquals(7L, server.getAttribute(new ObjectName("test:type=Gauge,name=live"), "Value"));
+        ObjectName latency = new ObjectName("test:type=Histogram,name=latency");
+        assertEquals(1L, server.getAttribute(latency, "Count"));
+        assertEquals(100L, server.getAttribute(latency, "Max"));
+
+        registry.unregisterMBeans();
+        assertFalse(server.isRegistered(latency));
+    }
+
+    private static class ConstantGauge implements Gauge {
+        private final long value;
+
+        ConstantGauge(long value) {
+            this.value = value;
+        }
+
+        @Override
+        public long getValue() {
+            return value;
+        }
+    }
+
+}
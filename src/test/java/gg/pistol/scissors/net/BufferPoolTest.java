@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.net;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class BufferPoolTest {
+
+    @Test
+    public void testAcquireRelease() throws Exception {
+        BufferPool pool = new BufferPool(16, 4);
+        Set<Integer> taken = new HashSet<Integer>();
+        for (int i = 0; i < 4; i++) {
+            int index = pool.acquire();
+            assertTrue(taken.add(index));
+            ByteBuffer buffer = pool.get(index);
+            assertTrue(buffer.isDirect());
+            assertEquals(16, buffer.capacity());
+            assertEquals(0, buffer.position());
+            buffer.putLong(i);
+        }
+        assertEquals(BufferPool.NONE, pool.acquire());
+        assertEquals(0, pool.getFreeCount());
+
+        int index = taken.iterator().next();
+        pool.release(index);
+        assertEquals(1, pool.getFreeCount());
+        assertEquals(index, pool.acquire());
+        assertEquals(0, pool.get(index).position()); // cleared when released
+    }
+
+    @Test
+    public void testSlicesDoNotOverlap() throws Exception {
+        BufferPool pool = new BufferPool(8, 3);
+        int first = pool.acquire();
+        int second = pool.acquire();
+        pool.get(first).putLong(0, -1L);
+        assertEquals(0L, pool.get(second).getLong(0));
+    }
+
+    @Test(timeout = 10000L)
+    public void testConcurrentAccess() throws Exception {
+        final BufferPool pool = new BufferPool(4, 8);
+        final AtomicBoolean failed = new AtomicBoolean();
+        final CountDownLatch done = new CountDownLatch(4);
+        for (int t = 0; t < 4; t++) {
+            final int marker = t;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 100000; i++) {
+                        int index = pool.acquire();
+                        if (index == BufferPool.NONE) {
+                            continue;
+                        }
+                        ByteBuffer buffer = pool.get(index);
+                        buffer.putInt(0, marker);
+                        Thread.yield();
+                        if (buffer.getInt(0) != marker) {
+                            failed.set(true); // the buffer was given to two threads
+                        }
+                        pool.release(index);
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+        assertFalse(failed.get());
+        assertEquals(8, pool.getFreeCount());
+    }
+
+}
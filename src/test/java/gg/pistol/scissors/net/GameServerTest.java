@@ -0,0 +1,308 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.net;
+
+import gg.pistol.scissors.game.GameResult;
+import gg.pistol.scissors.game.Gesture;
+import gg.pistol.scissors.game.RefereeMonitor;
+import gg.pistol.scissors.match.AdmissionPolicy;
+import gg.pistol.scissors.match.DrainReport;
+import gg.pistol.scissors.match.GamePriority;
+import gg.pistol.scissors.metrics.MetricsRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.Assert.*;
+
+public class GameServerTest {
+
+    private GameServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        FifoLobby lobby = new FifoLobby(2, 1, 10L, 2000L, Collections.<RefereeMonitor>emptyList());
+        server = new GameServer(new InetSocketAddress("localhost", 0), 2, lobby);
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+        server.awaitTermination();
+    }
+
+    @Test(timeout = 10000L)
+    public void testGame() throws Exception {
+        TestClient watcher = new TestClient();
+        watcher.out.writeByte(WireProtocol.WATCH);
+        TestClient alice = new TestClient();
+        TestClient bob = new TestClient();
+        int aliceId = alice.join("alice");
+        int bobId = bob.join("bob");
+        assertTrue(aliceId != bobId);
+
+        // the countdown is delivered concurrently with the gesture request, so REQUEST can overtake COUNTDOWN 0
+        long gameId = alice.receiveUntilRequest(2);
+        alice.throwGesture(gameId, Gesture.ROCK);
+        assertEquals(gameId, bob.receiveUntilRequest(2));
+        bob.throwGesture(gameId, Gesture.PAPER);
+
+        alice.receiveOutcome(WireProtocol.RESULT, gameId, GameResult.LOSS, aliceId, bobId);
+        bob.receiveOutcome(WireProtocol.RESULT, gameId, GameResult.WIN, aliceId, bobId);
+        Set<Integer> throwers = new HashSet<Integer>();
+        for (int i = 0; i < 2; i++) {
+            assertEquals(WireProtocol.GESTURE, watcher.in.readByte());
+            assertEquals(gameId, watcher.in.readLong());
+            int playerId = watcher.in.readInt();
+            throwers.add(playerId);
+            assertEquals(playerId == aliceId ? Gesture.ROCK.ordinal() : Gesture.PAPER.ordinal(),
+                    watcher.in.readByte());
+        }
+        assertEquals(new HashSet<Integer>(Arrays.asList(aliceId, bobId)), throwers);
+        watcher.receiveOutcome(WireProtocol.FINISHED, gameId, null, aliceId, bobId);
+
+        // the players can play again
+        alice.out.writeByte(WireProtocol.PLAY);
+        bob.out.writeByte(WireProtocol.PLAY);
+        long nextGameId = alice.receiveUntilRequest(2);
+        assertTrue(nextGameId != gameId);
+        alice.throwGesture(gameId, Gesture.ROCK); // the previous game is ignored
+        alice.throwGesture(nextGameId, Gesture.SCISSORS);
+        bob.receiveUntilRequest(2);
+        bob.throwGesture(nextGameId, Gesture.ROCK);
+        alice.receiveOutcome(WireProtocol.RESULT, nextGameId, GameResult.LOSS, aliceId, bobId);
+        alice.close();
+        bob.close();
+        watcher.close();
+    }
+
+    @Test(timeout = 10000L)
+    public void testErrors() throws Exception {
+        TestClient alice = new TestClient();
+        alice.out.writeByte(WireProtocol.PLAY);
+        alice.receiveError(WireProtocol.ERROR_NOT_JOINED);
+        alice.join("alice");
+        alice.out.writeByte(WireProtocol.PLAY);
+        alice.receiveError(WireProtocol.ERROR_ALREADY_PLAYING);
+        alice.out.writeByte(WireProtocol.THROW);
+        alice.out.writeLong(1L);
+        alice.out.writeByte(7);
+        alice.receiveError(WireProtocol.ERROR_UNKNOWN_GESTURE);
+
+        TestClient impostor = new TestClient();
+        impostor.sendJoin("alice");
+        impostor.receiveError(WireProtocol.ERROR_NAME_TAKEN);
+        impostor.sendJoin("bad name");
+        impostor.receiveError(WireProtocol.ERROR_INVALID_NAME);
+        impostor.out.writeByte(99);
+        impostor.receiveError(WireProtocol.ERROR_UNKNOWN_FRAME);
+        assertEquals(-1, impostor.in.read()); // the connection is closed
+        alice.close();
+        impostor.close();
+    }
+
+    @Test(timeout = 10000L)
+    public void testRankedGame() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        MatchmakingLobby lobby = restartWithMatchmaking(registry);
+        try {
+            TestClient alice = new TestClient();
+            TestClient bob = new TestClient();
+            TestClient carol = new TestClient();
+            alice.join("alice");
+            int bobId = bob.join("bob", WireProtocol.JOIN_RANKED);
+            int carolId = carol.join("carol", WireProtocol.JOIN_RANKED);
+
+            // the casual player is not matched with the ranked ones
+            long gameId = bob.receiveUntilRequest(2);
+            bob.throwGesture(gameId, Gesture.ROCK);
+            assertEquals(gameId, carol.receiveUntilRequest(2));
+            carol.throwGesture(gameId, Gesture.SCISSORS);
+            bob.receiveOutcome(WireProtocol.RESULT, gameId, GameResult.WIN, bobId, carolId);
+            assertEquals(0, alice.in.available());
+            assertEquals(1L, ((LongAdder) registry.getMetric("matchmaker.ranked.games")).sum());
+            assertEquals(0L, ((LongAdder) registry.getMetric("matchmaker.games")).sum());
+            assertEquals(1L, lobby.getMatchmaker(GamePriority.CASUAL).getWaitingCount());
+            alice.close();
+            bob.close();
+            carol.close();
+        } finally {
+            lobby.close();
+        }
+    }
+
+    @Test(timeout = 10000L)
+    public void testDrainNotifiesTheWaitingPlayers() throws Exception {
+        MatchmakingLobby lobby = restartWithMatchmaking(new MetricsRegistry());
+        TestClient alice = new TestClient();
+        alice.join("alice");
+        while (lobby.getMatchmaker(GamePriority.CASUAL).getWaitingCount() == 0) {
+            Thread.sleep(10L);
+        }
+
+        DrainReport report = lobby.drain(1000L, Collections.<Closeable>emptyList());
+        assertEquals(1, report.getAbandonedPlayers());
+        assertEquals(0, report.getInFlightGames());
+        alice.receiveError(WireProtocol.ERROR_BUSY);
+        alice.close();
+    }
+
+    @Test(timeout = 20000L)
+    public void testLoadClient() throws Exception {
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        LoadClient client = new LoadClient(new InetSocketAddress("localhost", server.getLocalPort()), 50, 1500L,
+                new PrintStream(report));
+        client.run();
+
+        assertTrue(client.getFinishedGames() > 0);
+        assertEquals(0L, client.getErrors());
+        assertEquals(client.getFinishedGames(), client.getLatency().getCount());
+        assertTrue(report.toString().startsWith("50 connections: games "));
+    }
+
+    /**
+     * Replace the server with one that forms the games with a {@link MatchmakingLobby}.
+     */
+    private MatchmakingLobby restartWithMatchmaking(MetricsRegistry registry) throws Exception {
+        server.close();
+        server.awaitTermination();
+        MatchmakingLobby lobby = new MatchmakingLobby(2, 1, 10L, 2000L, Collections.<RefereeMonitor>emptyList(),
+                null, AdmissionPolicy.QUEUE, 10, 10, registry);
+        lobby.start();
+        server = new GameServer(new InetSocketAddress("localhost", 0), 2, lobby);
+        server.start();
+        return lobby;
+    }
+
+    private class TestClient {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        TestClient() throws IOException {
+            socket = new Socket("localhost", server.getLocalPort());
+            in = new DataInputStream(socket.getInputStream());
+            out = new DataOutputStream(socket.getOutputStream()); // not buffered, every write is sent
+        }
+
+        void sendJoin(String name) throws IOException {
+            sendJoin(name, WireProtocol.JOIN);
+        }
+
+        void sendJoin(String name, byte type) throws IOException {
+            byte[] bytes = name.getBytes("UTF-8");
+            out.writeByte(type);
+            out.writeByte(bytes.length);
+            out.write(bytes);
+        }
+
+        /**
+         * @return the player id
+         */
+        int join(String name) throws IOException {
+            return join(name, WireProtocol.JOIN);
+        }
+
+        /**
+         * @return the player id
+         */
+        int join(String name, byte type) throws IOException {
+            sendJoin(name, type);
+            assertEquals(WireProtocol.WELCOME, in.readByte());
+            return in.readInt();
+        }
+
+        void throwGesture(long gameId, Gesture gesture) throws IOException {
+            out.writeByte(WireProtocol.THROW);
+            out.writeLong(gameId);
+            out.writeByte(gesture.ordinal());
+        }
+
+        /**
+         * Receive the countdown frames and the gesture request.
+         *
+         * @return the game id
+         */
+        long receiveUntilRequest(int countdownFrames) throws IOException {
+            long gameId = RemotePlayer.NO_GAME;
+            int countdowns = 0;
+            for (;;) {
+                byte type = in.readByte();
+                long id = in.readLong();
+                assertTrue(gameId == RemotePlayer.NO_GAME || gameId == id);
+                gameId = id;
+                if (type == WireProtocol.REQUEST) {
+                    break;
+                }
+                assertEquals(WireProtocol.COUNTDOWN, type);
+                in.readInt();
+                countdowns++;
+            }
+            if (countdowns < countdownFrames) {
+                // the last countdown was overtaken by the request
+                assertEquals(WireProtocol.COUNTDOWN, in.readByte());
+                assertEquals(gameId, in.readLong());
+                assertEquals(0, in.readInt());
+                countdowns++;
+            }
+            assertEquals(countdownFrames, countdowns);
+            return gameId;
+        }
+
+        void receiveOutcome(byte type, long gameId, @Nullable GameResult result, int... playerIds)
+                throws IOException {
+            assertEquals(type, in.readByte());
+            assertEquals(gameId, in.readLong());
+            assertEquals(result != null ? result.ordinal() : WireProtocol.NO_RESULT, in.readByte());
+            assertEquals(playerIds.length, in.readInt());
+            Set<Integer> expected = new HashSet<Integer>();
+            Set<Integer> received = new HashSet<Integer>();
+            for (int playerId : playerIds) {
+                expected.add(playerId);
+                received.add(in.readInt()); // in the order the players joined the game
+                in.readByte(); // gesture
+                in.readByte(); // result
+            }
+            assertEquals(expected, received);
+        }
+
+        void receiveError(byte code) throws IOException {
+            assertEquals(WireProtocol.ERROR, in.readByte());
+            assertEquals(code, in.readByte());
+        }
+
+        void close() throws IOException {
+            socket.close();
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.net;
+
+import gg.pistol.scissors.game.Game;
+import gg.pistol.scissors.game.GameResult;
+import gg.pistol.scissors.game.Gesture;
+import gg.pistol.scissors.player.Player;
+import gg.pistol.scissors.player.PlayerDirectory;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class OutcomeCacheTest {
+
+    @Test
+    public void testRecipientsShareOneEncoding() throws Exception {
+        final OutcomeCache cache = new OutcomeCache(new PlayerDirectory());
+        final Game game = game(7L);
+        final CountDownLatch release = new CountDownLatch(1);
+        ExecutorService recipients = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<ByteBuffer>> outcomes = new ArrayList<Future<ByteBuffer>>();
+            for (int i = 0; i < 8; i++) {
+                outcomes.add(recipients.submit(new Callable<ByteBuffer>() {
+                    @Override
+                    public ByteBuffer call() throws Exception {
+                        release.await(); // released together, like the recipients of a game
+                        return cache.getOutcome(game);
+                    }
+                }));
+            }
+            release.countDown();
+            ByteBuffer first = outcomes.get(0).get();
+            for (Future<ByteBuffer> outcome : outcomes) {
+                assertSame(first, outcome.get());
+            }
+            verify(game, times(1)).getPlayers(); // encoded once
+        } finally {
+            recipients.shutdown();
+        }
+    }
+
+    @Test
+    public void testNewerGameReplacesTheSlot() throws Exception {
+        OutcomeCache cache = new OutcomeCache(new PlayerDirectory());
+        Game game = game(1L);
+        Game newer = game(1L + 1024L); // the same slot
+        ByteBuffer outcome = cache.getOutcome(game);
+        assertSame(outcome, cache.getOutcome(game));
+        assertNotSame(outcome, cache.getOutcome(newer));
+        assertSame(cache.getOutcome(newer), cache.getOutcome(newer));
+    }
+
+    private static Game game(long id) {
+        Player player1 = mock(Player.class);
+        Player player2 = mock(Player.class);
+        when(player1.getName()).thenReturn("player1-" + id);
+        when(player2.getName()).thenReturn("player2-" + id);
+        Game game = mock(Game.class);
+        when(game.getId()).thenReturn(id);
+        when(game.getPlayers()).thenReturn(Arrays.asList(player1, player2));
+        when(game.getPlayerGesture(player1)).thenReturn(Gesture.ROCK);
+        when(game.getPlayerGesture(player2)).thenReturn(Gesture.PAPER);
+        when(game.getPlayerResult(player1)).thenReturn(GameResult.LOSS);
+        when(game.getPlayerResult(player2)).thenReturn(GameResult.WIN);
+        return game;
+    }
+
+}
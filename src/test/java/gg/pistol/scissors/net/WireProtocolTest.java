@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.net;
+
+import gg.pistol.scissors.game.GameResult;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class WireProtocolTest {
+
+    @Test
+    public void testServerFrameSize() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        WireProtocol.encodeCountdown(buffer, 1L, 3);
+        buffer.flip();
+        assertEquals(WireProtocol.COUNTDOWN_SIZE, WireProtocol.serverFrameSize(buffer));
+
+        buffer.clear();
+        WireProtocol.encodeOutcomeHeader(buffer, 1L, GameResult.WIN, 2);
+        buffer.flip();
+        assertEquals(WireProtocol.OUTCOME_HEADER_SIZE + 2 * WireProtocol.OUTCOME_RECORD_SIZE,
+                WireProtocol.serverFrameSize(buffer));
+
+        buffer.limit(WireProtocol.OUTCOME_HEADER_SIZE - 1);
+        assertEquals(0, WireProtocol.serverFrameSize(buffer));
+    }
+
+    @Test
+    public void testServerFrameSizeInvalidPlayerCount() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        WireProtocol.encodeOutcomeHeader(buffer, 1L, GameResult.WIN, -1);
+        buffer.flip();
+        assertEquals(-1, WireProtocol.serverFrameSize(buffer));
+
+        buffer.clear();
+        WireProtocol.encodeOutcomeHeader(buffer, 1L, GameResult.WIN, 9); // 14 + 9 * 6 bytes do not fit in 64
+        buffer.flip();
+        assertEquals(-1, WireProtocol.serverFrameSize(buffer));
+
+        buffer.clear();
+        WireProtocol.encodeOutcomeHeader(buffer, 1L, null, Integer.MAX_VALUE);
+        buffer.flip();
+        assertEquals(-1, WireProtocol.serverFrameSize(buffer));
+    }
+
+}
@@ -25,9 +25,12 @@ import org.junit.Test;
 import org.mockito.Mockito;
 
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -53,4 +56,14 @@ public class SmartComputerPlayerTest {
         assertEquals(Gesture.SCISSORS, playerGesture);
     }
 
+    @Test(timeout = 1000L)
+    public void testGetPlayerGestureDeadline() throws Exception {
+        player.observeGame(game, Arrays.asList(opponentPlayer));
+        // the opponent did not throw and the deadline is too close to wait for it
+        when(game.getThrowTimeRemaining()).thenReturn(TimeUnit.MILLISECONDS.toNanos(40L), 0L);
+
+        assertNotNull(player.getPlayerGesture());
+        verify(game, times(2)).getThrowTimeRemaining();
+    }
+
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.stats;
+
+import gg.pistol.scissors.game.Game;
+import gg.pistol.scissors.game.GameResult;
+import gg.pistol.scissors.player.Player;
+import gg.pistol.scissors.player.PlayerDirectory;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class LeaderboardTest {
+
+    private PlayerDirectory directory;
+    private Leaderboard leaderboard;
+    private Player player1;
+    private Player player2;
+    private Player player3;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = new PlayerDirectory();
+        leaderboard = new Leaderboard(directory);
+        player1 = createPlayer("player 1");
+        player2 = createPlayer("player 2");
+        player3 = createPlayer("player 3");
+    }
+
+    private Player createPlayer(String name) {
+        Player player = mock(Player.class);
+        when(player.getName()).thenReturn(name);
+        return player;
+    }
+
+    private Game createGame(Player winner, Player loser) {
+        Game game = mock(Game.class);
+        when(game.getPlayers()).thenReturn(Arrays.asList(winner, loser));
+        when(game.getPlayerResult(winner)).thenReturn(GameResult.WIN);
+        when(game.getPlayerResult(loser)).thenReturn(GameResult.LOSS);
+        return game;
+    }
+
+    @Test
+    public void testRating() throws Exception {
+        assertEquals(-1, leaderboard.getRank(player1));
+        leaderboard.gameFinished(createGame(player1, player2));
+
+        assertEquals(Leaderboard.DEFAULT_INITIAL_RATING + 16.0, leaderboard.getRating(player1), 1e-9);
+        assertEquals(Leaderboard.DEFAULT_INITIAL_RATING - 16.0, leaderboard.getRating(player2), 1e-9);
+        assertEquals(Leaderboard.DEFAULT_INITIAL_RATING, leaderboard.getRating(player3), 1e-9);
+        assertEquals(1, leaderboard.getRank(player1));
+        assertEquals(2, leaderboard.getRank(player2));
+        assertEquals(2, leaderboard.size());
+    }
+
+    @Test
+    public void testTop() throws Exception {
+        leaderboard.gameFinished(createGame(player1, player2));
+        leaderboard.gameFinished(createGame(player3, player2));
+        leaderboard.gameFinished(createGame(player3, player1));
+
+        List<LeaderboardEntry> top = leaderboard.getTop(10);
+        assertEquals(3, top.size());
+        assertEquals(directory.getId(player3), top.get(0).getPlayerId());
+        assertEquals(directory.getId(player1), top.get(1).getPlayerId());
+        assertEquals(directory.getId(player2), top.get(2).getPlayerId());
+        assertTrue(top.get(0).getRating() > top.get(1).getRating());
+
+        assertEquals(1, leaderboard.getTop(1).size());
+        assertEquals(1, leaderboard.getRank(player3));
+        assertEquals(2, leaderboard.getRank(player1));
+        assertEquals(3, leaderboard.getRank(player2));
+    }
+
+    @Test
+    public void testTie() throws Exception {
+        Game game = mock(Game.class);
+        when(game.getPlayers()).thenReturn(Arrays.asList(player1, player2));
+        when(game.getPlayerResult(player1)).thenReturn(GameResult.TIE);
+        when(game.getPlayerResult(player2)).thenReturn(GameResult.TIE);
+        leaderboard.gameFinished(game);
+
+        assertEquals(Leaderboard.DEFAULT_INITIAL_RATING, leaderboard.getRating(player1), 1e-9);
+        assertEquals(1, leaderboard.getRank(player1));
+        assertEquals(1, leaderboard.getRank(player2));
+        assertEquals(2, leaderboard.getTop(5).size());
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.stats;
+
+import gg.pistol.scissors.game.Game;
+import gg.pistol.scissors.game.GameResult;
+import gg.pistol.scissors.game.Gesture;
+import gg.pistol.scissors.player.Player;
+import gg.pistol.scissors.player.PlayerDirectory;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class StatisticsIndexTest {
+
+    private StatisticsIndex index;
+    private Player player1;
+    private Player player2;
+
+    @Before
+    public void setUp() throws Exception {
+        index = new StatisticsIndex(new PlayerDirectory());
+        player1 = mock(Player.class);
+        player2 = mock(Player.class);
+        when(player1.getName()).thenReturn("player 1");
+        when(player2.getName()).thenReturn("player 2");
+    }
+
+    private Game createGame(Gesture gesture1, GameResult result1, Gesture gesture2, GameResult result2) {
+        Game game = mock(Game.class);
+        when(game.getPlayers()).thenReturn(Arrays.asList(player1, player2));
+        when(game.getPlayerGesture(player1)).thenReturn(gesture1);
+        when(game.getPlayerGesture(player2)).thenReturn(gesture2);
+        when(game.getPlayerResult(player1)).thenReturn(result1);
+        when(game.getPlayerResult(player2)).thenReturn(result2);
+        return game;
+    }
+
+    @Test
+    public void testGameFinished() throws Exception {
+        assertNull(index.getPlayerStatistics(player1));
+
+        index.gameFinished(createGame(Gesture.ROCK, GameResult.WIN, Gesture.SCISSORS, GameResult.LOSS));
+        index.gameFinished(createGame(Gesture.ROCK, GameResult.LOSS, Gesture.PAPER, GameResult.WIN));
+        index.gameFinished(createGame(Gesture.PAPER, GameResult.WIN, null, GameResult.LOSS));
+        index.gameFinished(createGame(Gesture.ROCK, GameResult.TIE, Gesture.ROCK, GameResult.TIE));
+
+        PlayerStatistics stats1 = index.getPlayerStatistics(player1);
+        assertEquals(2, stats1.getWins());
+        assertEquals(1, stats1.getLosses());
+        assertEquals(1, stats1.getTies());
+        assertEquals(3, stats1.getGestureCount(Gesture.ROCK));
+        assertEquals(1, stats1.getGestureCount(Gesture.PAPER));
+        assertEquals(0, stats1.getGestureCount(null));
+        assertEquals(0.5, stats1.getWinRate(), 0.0);
+
+        PlayerStatistics stats2 = index.getPlayerStatistics(player2);
+        assertEquals(1, stats2.getWins());
+        assertEquals(1, stats2.getGestureCount(null));
+
+        HeadToHead headToHead = index.getHeadToHead(player2, player1);
+        assertEquals(1, headToHead.getWins());
+        assertEquals(2, headToHead.getLosses());
+        assertEquals(1, headToHead.getTies());
+
+        assertEquals(4, index.getGameCount());
+        assertEquals(3, index.getResultCount(GameResult.WIN));
+        assertEquals(4, index.getGestureCount(Gesture.ROCK));
+        assertEquals(1, index.getGestureCount(null));
+    }
+
+    @Test
+    public void testConcurrentUpdates() throws Exception {
+        final int threads = 4;
+        final int gamesPerThread = 1000;
+        final Game game = createGame(Gesture.ROCK, GameResult.WIN, Gesture.SCISSORS, GameResult.LOSS);
+        List<Thread> updaters = new ArrayList<Thread>();
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < gamesPerThread; j++) {
+                        index.gameFinished(game);
+                    }
+                }
+            });
+            updaters.add(thread);
+            thread.start();
+        }
+        for (Thread thread : updaters) {
+            thread.join();
+        }
+
+        assertEquals(threads * gamesPerThread, index.getGameCount());
+        assertEquals(threads * gamesPerThread, index.getPlayerStatistics(player1).getWins());
+        assertEquals(threads * gamesPerThread, index.getHeadToHead(player1, player2).getWins());
+    }
+
+}
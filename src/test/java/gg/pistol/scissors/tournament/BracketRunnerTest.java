@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.tournament;
+
+import gg.pistol.scissors.game.Game;
+import gg.pistol.scissors.game.GameResult;
+import gg.pistol.scissors.game.GameState;
+import gg.pistol.scissors.game.RefereeMonitor;
+import gg.pistol.scissors.game.RefereeWorkerGroups;
+import gg.pistol.scissors.match.RefereeStarter;
+import gg.pistol.scissors.player.GameObserver;
+import gg.pistol.scissors.player.Player;
+import gg.pistol.scissors.player.RandomComputerPlayer;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class BracketRunnerTest {
+
+    @Test
+    public void testMatchStartsWhenItsFeedersFinish() throws Exception {
+        RefereeStarter starter = mock(RefereeStarter.class);
+        List<Player> players = players(4);
+        BracketRunner bracket = new BracketRunner(players, starter);
+        bracket.start();
+        List<Player> final1 = Arrays.asList(players.get(0), players.get(2));
+
+        win(starter, players.get(0), players.get(1));
+        verify(starter, never()).startGame(eq(final1), any(RefereeMonitor.class));
+        win(starter, players.get(2), players.get(3));
+        verify(starter).startGame(eq(final1), any(RefereeMonitor.class));
+        win(starter, players.get(2), players.get(0));
+
+        assertTrue(bracket.awaitCompletion(0));
+        assertSame(players.get(2), bracket.getChampion());
+        BracketReport report = bracket.getReport();
+        assertEquals(3, report.getMatchCount());
+        assertEquals(3, report.getGameCount());
+        assertEquals(2, report.getRoundCount());
+        assertTrue(report.getCriticalPath() <= report.getWallTime());
+        assertTrue(report.getCriticalPath() <= report.getRoundBarrierTime());
+    }
+
+    @Test
+    public void testUnevenBracket() throws Exception {
+        RefereeStarter starter = mock(RefereeStarter.class);
+        List<Player> players = players(3);
+        BracketRunner bracket = new BracketRunner(players, starter);
+        bracket.start();
+        verify(starter).startGame(eq(Arrays.asList(players.get(1), players.get(2))), any(RefereeMonitor.class));
+        verifyNoMoreInteractions(starter); // the top seed waits for its opponent
+
+        win(starter, players.get(2), players.get(1));
+        win(starter, players.get(0), players.get(2));
+        assertSame(players.get(0), bracket.getChampion());
+        assertEquals(2, bracket.getReport().getRoundCount());
+    }
+
+    @Test
+    public void testTieIsReplayed() throws Exception {
+        RefereeStarter starter = mock(RefereeStarter.class);
+        List<Player> players = players(2);
+        BracketRunner bracket = new BracketRunner(players, starter);
+        bracket.start();
+        finish(starter, players, 1, GameResult.TIE);
+        assertNull(bracket.getChampion());
+        finish(starter, players, 2, GameResult.LOSS);
+        assertSame(players.get(1), bracket.getChampion());
+        assertEquals(2, bracket.getReport().getGameCount());
+    }
+
+    @Test
+    public void testStoppedGameFailsTheBracket() throws Exception {
+        RefereeStarter starter = mock(RefereeStarter.class);
+        List<Player> players = players(2);
+        BracketRunner bracket = new BracketRunner(players, starter);
+        bracket.start();
+        ArgumentCaptor<RefereeMonitor> monitor = ArgumentCaptor.forClass(RefereeMonitor.class);
+        verify(starter).startGame(eq(players), monitor.capture());
+        monitor.getValue().stateChanged(mock(Game.class), GameState.STOPPED);
+        assertTrue(bracket.awaitCompletion(0));
+        assertTrue(bracket.isFailed());
+        assertNull(bracket.getChampion());
+        assertNull(bracket.getReport());
+    }
+
+    @Test
+    public void testRefereedBracket() throws Exception {
+        RefereeWorkerGroups groups = new RefereeWorkerGroups(2);
+        RefereeStarter starter = new RefereeStarter(0, 0, 2000, Collections.<GameObserver>emptyList(),
+                Collections.<RefereeMonitor>emptyList(), groups);
+        List<Player> players = new ArrayList<Player>();
+        for (int i = 0; i < 13; i++) {
+            players.add(new RandomComputerPlayer("player " + i));
+        }
+        BracketRunner bracket = new BracketRunner(players, starter);
+        bracket.start();
+        assertTrue(bracket.awaitCompletion(60000));
+        assertFalse(bracket.isFailed());
+        assertTrue(players.contains(bracket.getChampion()));
+        BracketReport report = bracket.getReport();
+        assertEquals(12, report.getMatchCount());
+        assertEquals(4, report.getRoundCount());
+        assertTrue(report.getGameCount() >= 12);
+        assertTrue(report.getCriticalPath() <= report.getWallTime());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testStartTwice() throws Exception {
+        BracketRunner bracket = new BracketRunner(players(2), mock(RefereeStarter.class));
+        bracket.start();
+        bracket.start();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSinglePlayer() throws Exception {
+        new BracketRunner(players(1), mock(RefereeStarter.class));
+    }
+
+    private static List<Player> players(int count) {
+        List<Player> players = new ArrayList<Player>();
+        for (int i = 0; i < count; i++) {
+            players.add(mock(Player.class));
+        }
+        return players;
+    }
+
+    /**
+     * Finish the game of the winner against the loser, the winner being in the given slot of the match.
+     */
+    private static void win(RefereeStarter starter, Player winner, Player loser) {
+        List<Player> match = Arrays.asList(winner, loser);
+        try {
+            verify(starter).startGame(eq(match), any(RefereeMonitor.class));
+            finish(starter, match, 1, GameResult.WIN);
+        } catch (AssertionError e) {
+            finish(starter, Arrays.asList(loser, winner), 1, GameResult.LOSS);
+        }
+    }
+
+    /**
+     * Finish the last of the games of a match with the result of the first player.
+     */
+    private static void finish(RefereeStarter starter, List<Player> players, int games, GameResult result) {
+        ArgumentCaptor<RefereeMonitor> monitor = ArgumentCaptor.forClass(RefereeMonitor.class);
+        verify(starter, times(games)).startGame(eq(players), monitor.capture());
+        Game game = mock(Game.class);
+        when(game.getPlayerResult(players.get(0))).thenReturn(result);
+        monitor.getValue().gameFinished(game);
+    }
+
+}
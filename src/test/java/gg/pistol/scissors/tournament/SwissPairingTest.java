@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.tournament;
+
+import gg.pistol.scissors.game.GameResult;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class SwissPairingTest {
+
+    @Test
+    public void testRoundsFor() throws Exception {
+        assertEquals(1, SwissPairing.roundsFor(2));
+        assertEquals(2, SwissPairing.roundsFor(3));
+        assertEquals(3, SwissPairing.roundsFor(8));
+        assertEquals(17, SwissPairing.roundsFor(100000));
+    }
+
+    @Test
+    public void testEqualScoresArePaired() throws Exception {
+        SwissPairing pairing = new SwissPairing(8, 3);
+        RecordingListener listener = new RecordingListener();
+        pairing.pairRound(listener);
+        assertEquals("[0, 1, 2, 3, 4, 5, 6, 7]", listener.pairs.toString());
+        winByLowerId(pairing, listener);
+
+        listener = new RecordingListener();
+        pairing.pairRound(listener);
+        assertEquals("[0, 2, 4, 6, 1, 3, 5, 7]", listener.pairs.toString()); // the winners first
+        winByLowerId(pairing, listener);
+
+        listener = new RecordingListener();
+        pairing.pairRound(listener);
+        assertEquals("[0, 4, 1, 2, 5, 6, 3, 7]", listener.pairs.toString());
+        winByLowerId(pairing, listener);
+
+        assertEquals(0, pairing.getRematchCount());
+        assertEquals(3 * SwissPairing.WIN_POINTS, pairing.getScore(0));
+        assertEquals(0, pairing.getScore(7));
+        assertEquals(0, pairing.getStandings()[0]);
+        assertEquals(7, pairing.getStandings()[7]);
+    }
+
+    @Test
+    public void testPlayersDoNotMeetTwice() throws Exception {
+        SwissPairing pairing = new SwissPairing(4, 3);
+        Set<String> met = new HashSet<String>();
+        for (int round = 0; round < 3; round++) {
+            RecordingListener listener = new RecordingListener();
+            pairing.pairRound(listener);
+            for (int i = 0; i < listener.pairs.size(); i += 2) {
+                int p1 = Math.min(listener.pairs.get(i), listener.pairs.get(i + 1));
+                int p2 = Math.max(listener.pairs.get(i), listener.pairs.get(i + 1));
+                assertTrue(met.add(p1 + "-" + p2));
+                pairing.recordResult(p1, p2, GameResult.TIE);
+            }
+        }
+        assertEquals(0, pairing.getRematchCount());
+        assertEquals(6, met.size()); // a complete round-robin
+    }
+
+    @Test
+    public void testByeGoesToTheLowestRankedPlayerOnce() throws Exception {
+        SwissPairing pairing = new SwissPairing(5, 3);
+        Set<Integer> byes = new HashSet<Integer>();
+        for (int round = 0; round < 3; round++) {
+            RecordingListener listener = new RecordingListener();
+            pairing.pairRound(listener);
+            assertEquals(1, listener.byes.size());
+            assertTrue(byes.add(listener.byes.get(0)));
+            if (round == 0) {
+                assertEquals(4, (int) listener.byes.get(0));
+                assertEquals(SwissPairing.WIN_POINTS, pairing.getScore(4)); // the points of the bye
+            }
+            winByLowerId(pairing, listener);
+        }
+    }
+
+    @Test
+    public void testLargeTournament() throws Exception {
+        int players = 100000;
+        int rounds = SwissPairing.roundsFor(players);
+        SwissPairing pairing = new SwissPairing(players, rounds);
+        Random random = new Random(1);
+        GameResult[] results = GameResult.values();
+        int totalScore = 0;
+        for (int round = 0; round < rounds; round++) {
+            RecordingListener listener = new RecordingListener();
+            pairing.pairRound(listener);
+            assertEquals(players, listener.pairs.size());
+            assertEquals(players, new HashSet<Integer>(listener.pairs).size()); // everybody plays exactly once
+            for (int i = 0; i < listener.pairs.size(); i += 2) {
+                pairing.recordResult(listener.pairs.get(i), listener.pairs.get(i + 1),
+                        results[random.nextInt(results.length)]);
+            }
+        }
+        for (int player = 0; player < players; player++) {
+            totalScore += pairing.getScore(player);
+        }
+        assertEquals(rounds * players, totalScore); // every game is worth a win
+        assertEquals(rounds, pairing.getRound());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testTooManyRounds() throws Exception {
+        SwissPairing pairing = new SwissPairing(2, 1);
+        pairing.pairRound(new RecordingListener());
+        pairing.pairRound(new RecordingListener());
+    }
+
+    private static void winByLowerId(SwissPairing pairing, RecordingListener listener) {
+        for (int i = 0; i < listener.pairs.size(); i += 2) {
+            int p1 = listener.pairs.get(i);
+            int p2 = listener.pairs.get(i + 1);
+            pairing.recordResult(p1, p2, p1 < p2 ? GameResult.WIN : GameResult.LOSS);
+        }
+    }
+
+    private static class RecordingListener implements PairingListener {
+        private final List<Integer> pairs = new ArrayList<Integer>();
+        private final List<Integer> byes = new ArrayList<Integer>();
+
+        @Override
+        public void paired(int player1, int player2) {
+            pairs.add(player1);
+            pairs.add(player2);
+        }
+
+        @Override
+        public void bye(int player) {
+            byes.add(player);
+        }
+    }
+
+}
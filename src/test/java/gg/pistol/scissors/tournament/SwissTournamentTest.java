@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.tournament;
+
+import gg.pistol.scissors.game.RefereeMonitor;
+import gg.pistol.scissors.game.RefereeWorkerGroups;
+import gg.pistol.scissors.match.RefereeStarter;
+import gg.pistol.scissors.player.GameObserver;
+import gg.pistol.scissors.player.Player;
+import gg.pistol.scissors.player.RandomComputerPlayer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class SwissTournamentTest {
+
+    @Test
+    public void testRefereedTournament() throws Exception {
+        RefereeStarter starter = new RefereeStarter(0, 0, 2000, Collections.<GameObserver>emptyList(),
+                Collections.<RefereeMonitor>emptyList(), new RefereeWorkerGroups(2));
+        List<Player> players = new ArrayList<Player>();
+        for (int i = 0; i < 11; i++) {
+            players.add(new RandomComputerPlayer("player " + i));
+        }
+        SwissTournament tournament = new SwissTournament(players, 4, 3, starter);
+        tournament.start();
+        assertTrue(tournament.awaitCompletion(60000));
+        assertFalse(tournament.isFailed());
+
+        List<Player> standings = tournament.getStandings();
+        assertEquals(new HashSet<Player>(players), new HashSet<Player>(standings));
+        int totalScore = 0;
+        for (int rank = 0; rank < standings.size(); rank++) {
+            totalScore += tournament.getScore(rank);
+            if (rank > 0) {
+                assertTrue(tournament.getScore(rank) <= tournament.getScore(rank - 1));
+            }
+        }
+        assertEquals(4 * 6 * SwissPairing.WIN_POINTS, totalScore); // 5 games and a bye every round
+    }
+
+    @Test
+    public void testStartFailure() throws Exception {
+        RefereeStarter starter = mock(RefereeStarter.class);
+        when(starter.startGame(anyListOf(Player.class), any(RefereeMonitor.class)))
+                .thenThrow(new IllegalStateException());
+        List<Player> players = new ArrayList<Player>();
+        for (int i = 0; i < 4; i++) {
+            players.add(mock(Player.class));
+        }
+        SwissTournament tournament = new SwissTournament(players, 2, 10, starter);
+        tournament.start();
+        assertTrue(tournament.awaitCompletion(10000));
+        assertTrue(tournament.isFailed());
+        assertNull(tournament.getStandings());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testScoreBeforeTheEnd() throws Exception {
+        List<Player> players = new ArrayList<Player>();
+        players.add(mock(Player.class));
+        players.add(mock(Player.class));
+        new SwissTournament(players, 1, 1, mock(RefereeStarter.class)).getScore(0);
+    }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2013 Bogdan Pistol
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gg.pistol.scissors.trace;
+
+import gg.pistol.scissors.game.Gesture;
+import gg.pistol.scissors.game.RefereeImpl;
+import gg.pistol.scissors.game.RefereeMonitor;
+import gg.pistol.scissors.metrics.MetricsRegistry;
+import gg.pistol.scissors.player.GameObserver;
+import gg.pistol.scissors.player.Player;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class TimelineRecorderTest {
+
+    @Test(timeout = 5000L)
+    public void testRefereeGame() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        TimelineRecorder recorder = new TimelineRecorder(registry, TimelineRecorder.DEFAULT_RECENT_GAMES);
+        Player player1 = mock(Player.class);
+        Player player2 = mock(Player.class);
+        GameObserver observer = mock(GameObserver.class);
+        RefereeMonitor monitor = mock(RefereeMonitor.class); // called after the recorder
+        when(player1.getName()).thenReturn("p1");
+        when(player2.getName()).thenReturn("p\"2");
+        when(player1.getPlayerGesture()).thenReturn(Gesture.ROCK);
+        when(player2.getPlayerGesture()).thenReturn(null); // times out
+
+        RefereeImpl referee = new RefereeImpl(2, 10L, 50L, Arrays.asList(player1, player2),
+                Arrays.asList(observer), Arrays.<RefereeMonitor>asList(recorder, monitor));
+        referee.startGame();
+        verify(monitor, timeout(4000)).gameFinished(referee.getGame());
+        long gameId = referee.getGame().getId();
+
+        GameTimeline timeline = recorder.getTimeline(gameId);
+        assertEquals(Arrays.asList("referee", "p1", "p\"2"), timeline.getTracks());
+        List<String> names = new ArrayList<String>();
+        for (TraceSpan span : timeline.getSpans()) {
+            names.add(span.getName());
+        }
+        assertEquals(Arrays.asList("construction", "first countdown", "countdown 2", "countdown 1", "countdown 0",
+                "counting", "throw window", "throwing", "throw window", "last gesture to finish",
+                "results dispatch", "results", "game " + gameId), names);
+
+        TraceSpan countdown = timeline.getSpans().get(3);
+        assertTrue(countdown.getArgs().get("drift") >= 0L);
+        assertEquals(Long.valueOf(3L), countdown.getArgs().get("recipients"));
+        TraceSpan timedOut = timeline.getSpans().get(8);
+        assertEquals(2, timedOut.getTrack());
+        assertEquals(Long.valueOf(1L), timedOut.getArgs().get("timedOut"));
+        assertEquals(Long.valueOf(100L), timedOut.getArgs().get("utilization"));
+        TraceSpan game = timeline.getSpans().get(12);
+        for (TraceSpan span : timeline.getSpans()) {
+            assertTrue(span.getStart() >= game.getStart() && span.getEnd() <= game.getEnd());
+        }
+
+        assertEquals(1, recorder.getPhaseLatency(TracePhase.CONSTRUCTION).getCount());
+        assertEquals(2, recorder.getPhaseLatency(TracePhase.COUNT_DRIFT).getCount());
+        assertEquals(1, recorder.getPhaseLatency(TracePhase.THROW).getCount());
+        assertEquals(1, recorder.getPhaseLatency(TracePhase.GAME).getCount());
+        assertTrue(recorder.getPhaseLatency(TracePhase.GAME).getMax() >= 70000000L); // 2 counts and the throw limit
+        assertEquals(2, recorder.getThrowWindowUtilization().getCount());
+        assertSame(recorder.getPhaseLatency(TracePhase.THROW), registry.getMetric("trace.throw"));
+        assertEquals(Collections.singletonList(timeline), recorder.getRecentTimelines());
+        referee.stopGame();
+    }
+
+    @Test
+    public void testChromeTrace() throws Exception {
+        GameTimeline timeline = new GameTimeline(7L, Arrays.asList("referee", "p\"1"));
+        timeline.addSpan(new TraceSpan("game 7", 0, 1000L, 2501000L));
+        timeline.addSpan(new TraceSpan("throw window", 1, 2000L, 1234567L,
+                Collections.singletonMap("utilization", 40L)));
+
+        StringWriter out = new StringWriter();
+        new ChromeTraceWriter(out).write(Collections.singletonList(timeline));
+        assertEquals("{\"traceEvents\":[\n" +
+                "{\"name\":\"process_name\",\"ph\":\"M\",\"pid\":7,\"tid\":0,\"args\":{\"name\":\"game 7\"}},\n" +
+                "{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":7,\"tid\":0,\"args\":{\"name\":\"referee\"}},\n" +
+                "{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":7,\"tid\":1,\"args\":{\"name\":\"p\\\"1\"}},\n" +
+                "{\"name\":\"game 7\",\"cat\":\"scissors\",\"ph\":\"X\",\"ts\":0.000,\"dur\":2500.000,\"pid\":7," +
+                "\"tid\":0},\n" +
+                "{\"name\":\"throw window\",\"cat\":\"scissors\",\"ph\":\"X\",\"ts\":1.000,\"dur\":1232.567," +
+                "\"pid\":7,\"tid\":1,\"args\":{\"utilization\":40}}\n" +
+                "],\"displayTimeUnit\":\"ms\"}\n", out.toString());
+    }
+
+}